@@ -0,0 +1,86 @@
+package io.github.charlin2.trees;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH comparison of AVLTree.aggregate against summing a range scan, and of the
+ * cost the cached aggregate adds to put
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class AggregateBenchmark {
+    @Param({ "1000000" })
+    int size;
+
+    /** number of keys in each queried range */
+    @Param({ "16", "1024", "65536" })
+    int width;
+
+    AVLTree<Integer, Long> plain, summed;
+
+    /** start of each queried range and key of each put, boxed once up front */
+    Integer[] probes;
+
+    int next;
+
+    @Setup
+    public void setUp() {
+        // both trees are built the same way so that their layouts in memory match
+        plain = new AVLTree<>(DuplicateKeys.REPLACE);
+        summed = new AVLTree<>(DuplicateKeys.REPLACE, Monoid.of(0L, Long::sum));
+        for (int rank : Workload.shuffled(size, 42)) {
+            plain.put(rank, (long) rank);
+            summed.put(rank, (long) rank);
+        }
+        int[] ranks = Workload.ranks("random", size - width, Workload.PROBES, 42);
+        probes = new Integer[ranks.length];
+        for (int i = 0; i < ranks.length; i++)
+            probes[i] = ranks[i];
+    }
+
+    @Benchmark
+    public long rangeScan() {
+        Integer from = probes[next++ & (Workload.PROBES - 1)];
+        long sum = 0;
+        for (Map.Entry<Integer, Long> entry : plain.range(from, from + width))
+            sum += entry.getValue();
+        return sum;
+    }
+
+    @Benchmark
+    public Long aggregate() {
+        Integer from = probes[next++ & (Workload.PROBES - 1)];
+        return summed.aggregate(from, from + width);
+    }
+
+    @Benchmark
+    public Object putPlain() {
+        Integer key = probes[next++ & (Workload.PROBES - 1)];
+        return plain.put(key, (long) next);
+    }
+
+    @Benchmark
+    public Object putSummed() {
+        Integer key = probes[next++ & (Workload.PROBES - 1)];
+        return summed.put(key, (long) next);
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.charlin2.trees;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH comparison of point lookups in BTree, AVLTree and BinarySearchTree
+ * 
+ * Keys are inserted in random order, so the unbalanced BinarySearchTree stays
+ * about 2.99 log2(n) deep on average rather than degenerating.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class BTreeBenchmark {
+    @Param({ "1000000", "10000000" })
+    int size;
+
+    @Param({ "BTree", "AVLTree", "BinarySearchTree" })
+    String engine;
+
+    /** maximum children per node, used by BTree only */
+    @Param({ "64" })
+    int order;
+
+    @Param({ "Integer" })
+    String keyType;
+
+    SearchTree tree;
+
+    /** keys stored in the tree, in random order */
+    Comparable[] present;
+
+    /** keys absent from the tree, in random order */
+    Comparable[] absent;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        switch (engine) {
+            case "BTree":
+                tree = new BTree(order);
+                break;
+            case "AVLTree":
+                tree = new AVLTree();
+                break;
+            case "BinarySearchTree":
+                tree = new BinarySearchTree();
+                break;
+            default:
+                throw new IllegalArgumentException("unknown engine: " + engine);
+        }
+        for (int rank : Workload.shuffled(size, 7))
+            tree.insert(Workload.key(keyType, 2L * rank), rank);
+        int[] ranks = Workload.ranks("random", size, Workload.PROBES, 42);
+        present = Workload.keys(keyType, ranks, true);
+        absent = Workload.keys(keyType, ranks, false);
+    }
+
+    @Benchmark
+    public Object search() {
+        return tree.search(present[next++ & (Workload.PROBES - 1)]);
+    }
+
+    @Benchmark
+    public Object searchMiss() {
+        return tree.search(absent[next++ & (Workload.PROBES - 1)]);
+    }
+}
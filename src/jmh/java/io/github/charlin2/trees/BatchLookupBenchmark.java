@@ -0,0 +1,84 @@
+package io.github.charlin2.trees;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH comparison of AVLTree.getBatch against one search per key, in batches
+ * per second; every batch is already sorted so both sides do the same work
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class BatchLookupBenchmark {
+    /** value shared by every entry so only the tree structure is measured */
+    static final Object VALUE = new Object();
+
+    @Param({ "1000000" })
+    int size;
+
+    @Param({ "16", "256", "4096" })
+    int batch;
+
+    @Param({ "random", "clustered" })
+    String distribution;
+
+    AVLTree<Integer, Object> tree;
+
+    /** sorted batches of present keys, boxed once up front */
+    Integer[][] batches;
+
+    Object[] out;
+
+    int next;
+
+    @Setup
+    public void setUp() {
+        List<Integer> keys = new ArrayList<>(size);
+        for (int rank = 0; rank < size; rank++)
+            keys.add(2 * rank);
+        tree = AVLTree.fromSorted(keys, Collections.nCopies(size, VALUE));
+        int[] ranks = Workload.ranks(distribution, size, Math.max(Workload.PROBES, 16 * batch), 42);
+        batches = new Integer[ranks.length / batch][batch];
+        for (int b = 0; b < batches.length; b++) {
+            for (int i = 0; i < batch; i++)
+                batches[b][i] = 2 * ranks[b * batch + i];
+            Arrays.sort(batches[b]);
+        }
+        out = new Object[batch];
+    }
+
+    @Benchmark
+    public Object independent() {
+        Integer[] keys = batches[next++ % batches.length];
+        for (int i = 0; i < keys.length; i++)
+            out[i] = tree.search(keys[i]);
+        return out;
+    }
+
+    @Benchmark
+    public Object getBatch() {
+        tree.getBatch(batches[next++ % batches.length], out);
+        return out;
+    }
+}
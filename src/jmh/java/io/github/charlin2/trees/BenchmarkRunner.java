@@ -0,0 +1,22 @@
+package io.github.charlin2.trees;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar: runs JMH with the usual command line options
+ * and always attaches the GC profiler, so every result reports allocated
+ * bytes per operation (gc.alloc.rate.norm) next to ops/s
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,174 @@
+package io.github.charlin2.trees;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks for BinarySearchTree
+ * 
+ * Mutations are measured in batches against a tree that is restored between
+ * invocations, so every operation sees a tree of the configured size. The tree
+ * itself is always built from shuffled keys: built in sorted order it would
+ * degenerate into a list and the larger sizes would never finish setting up.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class BinarySearchTreeBenchmark {
+    /** number of keys inserted or deleted per invocation */
+    static final int BATCH = 1000;
+
+    /** number of entries read by a range scan */
+    static final int SCAN = 100;
+
+    /** tree of the configured size plus the keys used to probe it */
+    @State(Scope.Thread)
+    public static class TreeState {
+        @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+        int size;
+
+        @Param({ "sequential", "random", "zipfian" })
+        String distribution;
+
+        @Param({ "Integer", "String" })
+        String keyType;
+
+        BinarySearchTree tree;
+
+        /** keys stored in the tree, in distribution order */
+        Comparable[] present;
+
+        /** keys absent from the tree, in distribution order */
+        Comparable[] absent;
+
+        /** ranks of the probes, in distribution order */
+        int[] ranks;
+
+        /** index of the next probe */
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            ranks = Workload.ranks(distribution, size, Workload.PROBES, 42);
+            present = Workload.keys(keyType, ranks, true);
+            absent = Workload.keys(keyType, ranks, false);
+            tree = new BinarySearchTree();
+            for (int rank : Workload.shuffled(size, 7))
+                tree.insert(Workload.key(keyType, 2L * rank), rank);
+        }
+
+        /** returns the index of the next probe */
+        int probe() {
+            return next++ & (Workload.PROBES - 1);
+        }
+    }
+
+    /** removes the keys added by one invocation of insert */
+    @State(Scope.Thread)
+    public static class InsertBatch {
+        int start;
+
+        @Setup(Level.Invocation)
+        public void mark(TreeState state) {
+            start = state.next;
+        }
+
+        @TearDown(Level.Invocation)
+        public void undo(TreeState state) {
+            for (int i = start; i != state.next; i++)
+                state.tree.delete(state.absent[i & (Workload.PROBES - 1)]);
+        }
+    }
+
+    /** adds the keys removed by one invocation of delete */
+    @State(Scope.Thread)
+    public static class DeleteBatch {
+        @Setup(Level.Invocation)
+        public void prepare(TreeState state) {
+            for (int i = 0; i < BATCH; i++) {
+                int index = (state.next + i) & (Workload.PROBES - 1);
+                state.tree.insert(state.absent[index], state.ranks[index]);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void insert(TreeState state, InsertBatch batch) {
+        for (int i = 0; i < BATCH; i++) {
+            int index = state.probe();
+            state.tree.insert(state.absent[index], state.ranks[index]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void delete(TreeState state, DeleteBatch batch) {
+        for (int i = 0; i < BATCH; i++)
+            state.tree.delete(state.absent[state.probe()]);
+    }
+
+    @Benchmark
+    public Object search(TreeState state) {
+        return state.tree.search(state.present[state.probe()]);
+    }
+
+    @Benchmark
+    public Object searchMiss(TreeState state) {
+        return state.tree.search(state.absent[state.probe()]);
+    }
+
+    @Benchmark
+    public void rangeScan(TreeState state, Blackhole blackhole) {
+        int count = 0;
+        for (Object entry : state.tree.tailRange(state.present[state.probe()])) {
+            blackhole.consume(entry);
+            if (++count == SCAN)
+                break;
+        }
+    }
+
+    @Benchmark
+    public void inorderRec(TreeState state, Blackhole blackhole) {
+        blackhole.consume(state.tree.inorderRec());
+    }
+
+    @Benchmark
+    public void forEachInOrder(TreeState state, Blackhole blackhole) {
+        state.tree.forEachInOrder((key, value) -> {
+            blackhole.consume(value);
+            return true;
+        });
+    }
+
+    @Benchmark
+    public void iterate(TreeState state, Blackhole blackhole) {
+        for (Object entry : state.tree)
+            blackhole.consume(entry);
+    }
+
+    @Benchmark
+    public Object kthSmallest(TreeState state) {
+        return state.tree.kthSmallest(state.ranks[state.probe()] + 1);
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.charlin2.trees;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH comparison of building a tree from a sorted export with fromSorted
+ * against inserting the keys one at a time
+ * 
+ * Repeated insertion into a BinarySearchTree is quadratic on sorted input, so
+ * it is only run on shuffled keys.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class BulkLoadBenchmark {
+    @Param({ "10000", "1000000" })
+    int size;
+
+    /** keys in ascending order, as they come out of an export */
+    List<Integer> sorted;
+
+    /** the same keys in random order */
+    List<Integer> shuffled;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sorted = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            sorted.add(i);
+        shuffled = new ArrayList<>(size);
+        for (int rank : Workload.shuffled(size, 7))
+            shuffled.add(rank);
+    }
+
+    @Benchmark
+    public Object avlFromSorted() {
+        return AVLTree.fromSorted(sorted, sorted);
+    }
+
+    @Benchmark
+    public Object avlFromUnsorted() {
+        return AVLTree.fromSorted(shuffled, shuffled);
+    }
+
+    @Benchmark
+    public Object avlInsertSorted() {
+        AVLTree<Integer, Integer> tree = new AVLTree<>();
+        for (Integer key : sorted)
+            tree.insert(key, key);
+        return tree;
+    }
+
+    @Benchmark
+    public Object bstFromSorted() {
+        return BinarySearchTree.fromSorted(sorted, sorted);
+    }
+
+    @Benchmark
+    public Object bstInsertShuffled() {
+        BinarySearchTree<Integer, Integer> tree = new BinarySearchTree<>();
+        for (Integer key : shuffled)
+            tree.insert(key, key);
+        return tree;
+    }
+}
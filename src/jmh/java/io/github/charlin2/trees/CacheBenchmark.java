@@ -0,0 +1,93 @@
+package io.github.charlin2.trees;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of AVLCache under a zipfian 50/50 read/write mix at capacity,
+ * against an AVLTree trimmed by hand after every write
+ * 
+ * "manual" deletes the smallest key with select(0) while the tree is over
+ * capacity, the cheapest trimming possible without AVLCache.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class CacheBenchmark {
+    /** value shared by every entry so only the tree structure is measured */
+    static final Object VALUE = new Object();
+
+    /** number of distinct keys in the trace */
+    static final int KEYS = 1 << 20;
+
+    /** well below the number of distinct keys in the trace, so every policy keeps evicting */
+    @Param({ "8192" })
+    int capacity;
+
+    @Param({ "manual", "SMALLEST_KEY", "LARGEST_KEY", "LRU", "TTL" })
+    String policy;
+
+    AVLCache<Integer, Object> cache;
+    AVLTree<Integer, Object> tree;
+
+    /** keys of the trace, boxed once up front */
+    Integer[] keys;
+
+    int next;
+
+    @Setup
+    public void setUp() {
+        if (policy.equals("manual"))
+            tree = new AVLTree<>(DuplicateKeys.REPLACE);
+        else {
+            AVLCache.Eviction eviction = AVLCache.Eviction.valueOf(policy);
+            // a ttl long enough that only the capacity evicts, so every policy does the same work
+            cache = new AVLCache<>(eviction, capacity, Long.MAX_VALUE, null,
+                    eviction == AVLCache.Eviction.TTL ? Duration.ofHours(1) : null, System::nanoTime);
+        }
+        int[] ranks = Workload.ranks("zipfian", KEYS, Workload.PROBES, 42);
+        keys = new Integer[ranks.length];
+        for (int i = 0; i < ranks.length; i++)
+            keys[i] = ranks[i];
+        for (Integer key : keys)
+            write(key);
+    }
+
+    private void write(Integer key) {
+        if (cache != null)
+            cache.put(key, VALUE);
+        else {
+            tree.put(key, VALUE);
+            while (tree.size() > capacity)
+                tree.delete(tree.select(0));
+        }
+    }
+
+    @Benchmark
+    public Object mixed() {
+        int i = next++;
+        Integer key = keys[i & (Workload.PROBES - 1)];
+        if ((i & 1) == 0) {
+            write(key);
+            return key;
+        }
+        return cache != null ? cache.search(key) : tree.search(key);
+    }
+}
@@ -0,0 +1,120 @@
+package io.github.charlin2.trees;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH comparison of ConcurrentAVLTree against an AVLTree behind one global lock
+ * 
+ * Every thread runs the same read/write mix over a shared tree: writePercent of
+ * the operations toggle a random key (insert if absent, delete if present), the
+ * rest search for one. Keys are drawn from twice the initial size, so the tree
+ * stays around half full. Run with -t to vary the thread count.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(4)
+public class ConcurrentTreeBenchmark {
+    /** value shared by every entry so only the tree structure is measured */
+    static final Object VALUE = new Object();
+
+    /**
+     * Tree shared by all benchmark threads
+     */
+    @State(Scope.Benchmark)
+    public static class SharedTree {
+        @Param({ "1000", "1000000" })
+        int size;
+
+        @Param({ "concurrent", "locked" })
+        String engine;
+
+        ConcurrentAVLTree<Integer, Object> concurrent;
+        AVLTree<Integer, Object> locked;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            concurrent = new ConcurrentAVLTree<>();
+            locked = new AVLTree<>();
+            for (int rank : Workload.shuffled(size, 7)) {
+                if (engine.equals("concurrent"))
+                    concurrent.insert(2 * rank, VALUE);
+                else
+                    locked.insert(2 * rank, VALUE);
+            }
+        }
+    }
+
+    /**
+     * Per-thread stream of operations
+     */
+    @State(Scope.Thread)
+    public static class Operations {
+        @Param({ "10" })
+        int writePercent;
+
+        /** keys to operate on, boxed once up front */
+        Integer[] keys;
+
+        /** whether each operation is a write */
+        boolean[] writes;
+
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(SharedTree shared) {
+            long seed = Thread.currentThread().getId();
+            int[] ranks = Workload.ranks("random", 2 * shared.size, Workload.PROBES, seed);
+            keys = new Integer[ranks.length];
+            writes = new boolean[ranks.length];
+            Random random = new Random(seed);
+            for (int i = 0; i < ranks.length; i++) {
+                keys[i] = ranks[i];
+                writes[i] = random.nextInt(100) < writePercent;
+            }
+        }
+    }
+
+    @Benchmark
+    public Object readWrite(SharedTree shared, Operations ops) {
+        int i = ops.next++ & (Workload.PROBES - 1);
+        Integer key = ops.keys[i];
+        if (shared.engine.equals("concurrent")) {
+            ConcurrentAVLTree<Integer, Object> tree = shared.concurrent;
+            if (!ops.writes[i])
+                return tree.search(key);
+            if (tree.remove(key) == null)
+                tree.insert(key, VALUE);
+            return key;
+        }
+        AVLTree<Integer, Object> tree = shared.locked;
+        synchronized (tree) {
+            if (!ops.writes[i])
+                return tree.search(key);
+            if (tree.search(key) == null)
+                tree.insert(key, VALUE);
+            else
+                tree.delete(key);
+            return key;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.charlin2.trees;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH comparison of AVLTree duplicate key modes on a duplicate-heavy ingest:
+ * Workload.PROBES Zipfian keys drawn from a small key space go into a fresh tree
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class DuplicateKeysBenchmark {
+    /** value shared by every entry so only the tree structure is measured */
+    static final Object VALUE = new Object();
+
+    @Param({ "1000" })
+    int keySpace;
+
+    @Param({ "ALLOW", "REPLACE", "BUCKET" })
+    DuplicateKeys duplicates;
+
+    /** keys to ingest, boxed once up front */
+    Integer[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int[] ranks = Workload.ranks("zipfian", keySpace, Workload.PROBES, 42);
+        keys = new Integer[ranks.length];
+        for (int i = 0; i < ranks.length; i++)
+            keys[i] = ranks[i];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Workload.PROBES)
+    public Object ingest() {
+        AVLTree<Integer, Object> tree = new AVLTree<>(duplicates);
+        for (Integer key : keys)
+            tree.insert(key, VALUE);
+        return tree;
+    }
+}
@@ -0,0 +1,99 @@
+package io.github.charlin2.trees;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH measurement of what the write-ahead log costs: batches of inserts into a
+ * DurableTree under each SyncPolicy against the same batches into an AVLTree
+ * behind a lock
+ * 
+ * Scores are batches per second; multiply by batch for entries per second.
+ * Several threads write at once so that group commit can share each fsync.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(4)
+@State(Scope.Benchmark)
+public class DurableTreeBenchmark {
+    /** "memory" for the plain tree, otherwise a DurableTree.SyncPolicy */
+    @Param({ "memory", "NONE", "WRITE", "FSYNC" })
+    String policy;
+
+    /** entries per insertAll call */
+    @Param({ "1", "100", "1000" })
+    int batch;
+
+    Path directory;
+    AVLTree<Integer, Long> memory;
+    DurableTree<Integer, Long> durable;
+
+    /** source of fresh keys shared by all threads */
+    final AtomicInteger nextKey = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("wal");
+        if (policy.equals("memory"))
+            memory = new AVLTree<>();
+        else
+            durable = new DurableTree<>(directory, new AVLTree<>(), Codec.INTEGER, Codec.LONG,
+                    DurableTree.SyncPolicy.valueOf(policy));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (durable != null)
+            durable.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator)
+                Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public Object insertBatch() {
+        int first = nextKey.getAndAdd(batch);
+        List<Map.Entry<Integer, Long>> entries = new ArrayList<>(batch);
+        for (int i = 0; i < batch; i++)
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(first + i, (long) i));
+        if (durable != null) {
+            durable.insertAll(entries);
+            return durable;
+        }
+        synchronized (memory) {
+            for (Map.Entry<Integer, Long> entry : entries)
+                memory.insert(entry.getKey(), entry.getValue());
+        }
+        return memory;
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.charlin2.trees;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH head-to-head of the TreeEngine implementations on a mix of random reads
+ * and writes, to choose an engine per workload
+ * 
+ * readPercent of the operations search a present key. The others write,
+ * alternately inserting an absent key and deleting the key inserted before, so
+ * the tree keeps its size.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class EngineBenchmark {
+    /** value shared by every entry so only the tree structure is measured */
+    static final Object VALUE = new Object();
+
+    @Param({ "1000000" })
+    int size;
+
+    @Param({ "AVL", "RED_BLACK", "BTREE", "BST" })
+    TreeEngine engine;
+
+    @Param({ "0", "50", "90", "100" })
+    int readPercent;
+
+    SearchTree<Integer, Object> tree;
+
+    /** present keys for the reads and absent ones for the writes, boxed once up front */
+    Integer[] present, absent;
+
+    /** whether each operation is a read */
+    boolean[] reads;
+
+    /** key inserted by the last write, deleted by the next one, or null */
+    Integer pending;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tree = engine.create();
+        for (int rank : Workload.shuffled(size, 7))
+            tree.insert(2 * rank, VALUE);
+        int[] ranks = Workload.ranks("random", size, Workload.PROBES, 42);
+        present = new Integer[ranks.length];
+        absent = new Integer[ranks.length];
+        for (int i = 0; i < ranks.length; i++) {
+            present[i] = 2 * ranks[i];
+            absent[i] = 2 * ranks[i] + 1;
+        }
+        reads = new boolean[Workload.PROBES];
+        Random random = new Random(42);
+        for (int i = 0; i < reads.length; i++)
+            reads[i] = random.nextInt(100) < readPercent;
+    }
+
+    @Benchmark
+    public Object mixed() {
+        int i = next++ & (Workload.PROBES - 1);
+        if (reads[i])
+            return tree.search(present[i]);
+        if (pending == null) {
+            pending = absent[i];
+            tree.insert(pending, VALUE);
+        } else {
+            tree.delete(pending);
+            pending = null;
+        }
+        return tree;
+    }
+}
@@ -0,0 +1,95 @@
+package io.github.charlin2.trees;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH comparison of AVLTree cursor accesses against plain root-to-leaf ones on
+ * traces with locality: sequential keys and clustered runs of nearby keys
+ * 
+ * The tree is rebuilt before every iteration so that the inserts of one
+ * iteration do not slow down the next.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class FingerSearchBenchmark {
+    /** value shared by every entry so only the tree structure is measured */
+    static final Object VALUE = new Object();
+
+    @Param({ "1000000" })
+    int size;
+
+    @Param({ "sequential", "clustered" })
+    String trace;
+
+    AVLTree<Integer, Object> tree;
+    AVLTree<Integer, Object>.Cursor cursor;
+
+    /** present keys for the searches and absent ones for the inserts, boxed once up front */
+    Integer[] present, absent;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUpTrace() {
+        int[] ranks = Workload.ranks(trace, size, Workload.PROBES, 42);
+        present = new Integer[ranks.length];
+        absent = new Integer[ranks.length];
+        for (int i = 0; i < ranks.length; i++) {
+            present[i] = 2 * ranks[i];
+            absent[i] = 2 * ranks[i] + 1;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpTree() {
+        List<Integer> keys = new ArrayList<>(size);
+        for (int rank = 0; rank < size; rank++)
+            keys.add(2 * rank);
+        tree = AVLTree.fromSorted(keys, Collections.nCopies(size, VALUE));
+        cursor = tree.cursor();
+    }
+
+    @Benchmark
+    public Object search() {
+        return tree.search(present[next++ & (Workload.PROBES - 1)]);
+    }
+
+    @Benchmark
+    public Object cursorSearch() {
+        return cursor.search(present[next++ & (Workload.PROBES - 1)]);
+    }
+
+    @Benchmark
+    public Object insert() {
+        tree.insert(absent[next++ & (Workload.PROBES - 1)], VALUE);
+        return tree;
+    }
+
+    @Benchmark
+    public Object cursorInsert() {
+        cursor.insert(absent[next++ & (Workload.PROBES - 1)], VALUE);
+        return tree;
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.charlin2.trees;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH comparison of starting from a mapped snapshot against rebuilding an
+ * AVLTree with inserts, and of lookups in each
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class MappedSnapshotBenchmark {
+    @Param({ "1000000" })
+    int size;
+
+    Path file;
+    AVLTree<Integer, Long> tree;
+    MappedAVLSnapshot<Integer, Long> snapshot;
+
+    /** keys inserted by rebuild, in random order */
+    int[] order;
+
+    /** probe keys, boxed once up front */
+    Integer[] probes;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        order = Workload.shuffled(size, 7);
+        tree = new AVLTree<>();
+        for (int rank : order)
+            tree.insert(rank, (long) rank);
+        file = Files.createTempFile("snapshot", ".avls");
+        tree.writeSnapshot(file, Codec.INTEGER, Codec.LONG);
+        snapshot = MappedAVLSnapshot.open(file, Codec.INTEGER, Codec.LONG);
+        int[] ranks = Workload.ranks("random", size, Workload.PROBES, 42);
+        probes = new Integer[ranks.length];
+        for (int i = 0; i < ranks.length; i++)
+            probes[i] = ranks[i];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /** startup from the snapshot: map the file and serve one lookup */
+    @Benchmark
+    public Object openAndSearch() throws IOException {
+        return MappedAVLSnapshot.open(file, Codec.INTEGER, Codec.LONG).search(probes[next++ & (Workload.PROBES - 1)]);
+    }
+
+    /** startup without a snapshot: re-insert every entry */
+    @Benchmark
+    public Object rebuild() {
+        AVLTree<Integer, Long> rebuilt = new AVLTree<>();
+        for (int rank : order)
+            rebuilt.insert(rank, (long) rank);
+        return rebuilt;
+    }
+
+    @Benchmark
+    public Object mappedSearch() {
+        return snapshot.search(probes[next++ & (Workload.PROBES - 1)]);
+    }
+
+    @Benchmark
+    public Object treeSearch() {
+        return tree.search(probes[next++ & (Workload.PROBES - 1)]);
+    }
+}
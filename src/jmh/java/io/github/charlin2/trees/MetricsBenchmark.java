@@ -0,0 +1,75 @@
+package io.github.charlin2.trees;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH measurement of the cost of AVLTree metrics, disabled against enabled
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class MetricsBenchmark {
+    /** value shared by every entry so only the tree structure is measured */
+    static final Object VALUE = new Object();
+
+    @Param({ "1000000" })
+    int size;
+
+    @Param({ "false", "true" })
+    boolean metrics;
+
+    AVLTree<Integer, Object> tree;
+
+    /** present keys for the searches and absent ones for the writes, boxed once up front */
+    Integer[] present, absent;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tree = new AVLTree<>();
+        for (int rank : Workload.shuffled(size, 7))
+            tree.insert(2 * rank, VALUE);
+        if (metrics)
+            tree.enableMetrics();
+        int[] ranks = Workload.ranks("random", size, Workload.PROBES, 42);
+        present = new Integer[ranks.length];
+        absent = new Integer[ranks.length];
+        for (int i = 0; i < ranks.length; i++) {
+            present[i] = 2 * ranks[i];
+            absent[i] = 2 * ranks[i] + 1;
+        }
+    }
+
+    @Benchmark
+    public Object search() {
+        return tree.search(present[next++ & (Workload.PROBES - 1)]);
+    }
+
+    /** inserts then deletes an absent key, leaving the tree as it was */
+    @Benchmark
+    public Object write() {
+        Integer key = absent[next++ & (Workload.PROBES - 1)];
+        tree.insert(key, VALUE);
+        tree.delete(key);
+        return tree;
+    }
+}
@@ -0,0 +1,114 @@
+package io.github.charlin2.trees;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH comparison of the NavigableMap views of the trees against java.util.TreeMap
+ * 
+ * Keys are the even numbers below 2 * size and probes are odd, so every
+ * floor/ceiling query misses and has to fall back to a neighbour.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class NavigableBenchmark {
+    /** value shared by every entry so only the tree structure is measured */
+    static final Object VALUE = new Object();
+
+    /** number of entries visited by a sub-map scan */
+    static final int SCAN = 100;
+
+    @Param({ "1000000" })
+    int size;
+
+    @Param({ "avl", "bst", "treemap" })
+    String map;
+
+    NavigableMap<Integer, Object> navigable;
+
+    /** odd probes, boxed once up front */
+    Integer[] probes;
+
+    int next;
+
+    @Setup
+    public void setUp() {
+        List<Integer> keys = new ArrayList<>(size);
+        for (int rank = 0; rank < size; rank++)
+            keys.add(2 * rank);
+        List<Object> values = Collections.nCopies(size, VALUE);
+        switch (map) {
+            case "avl":
+                navigable = AVLTree.fromSorted(keys, values).asNavigableMap();
+                break;
+            case "bst":
+                navigable = BinarySearchTree.fromSorted(keys, values).asNavigableMap();
+                break;
+            case "treemap":
+                navigable = new TreeMap<>();
+                for (Integer key : keys)
+                    navigable.put(key, VALUE);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown map: " + map);
+        }
+        int[] ranks = Workload.ranks("random", size - SCAN, Workload.PROBES, 42);
+        probes = new Integer[ranks.length];
+        for (int i = 0; i < ranks.length; i++)
+            probes[i] = 2 * ranks[i] + 1;
+    }
+
+    @Benchmark
+    public Object floorEntry() {
+        return navigable.floorEntry(probes[next++ & (Workload.PROBES - 1)]);
+    }
+
+    @Benchmark
+    public Object ceilingKey() {
+        return navigable.ceilingKey(probes[next++ & (Workload.PROBES - 1)]);
+    }
+
+    @Benchmark
+    public Object higherEntry() {
+        return navigable.higherEntry(probes[next++ & (Workload.PROBES - 1)]);
+    }
+
+    @Benchmark
+    public int subMapScan() {
+        Integer from = probes[next++ & (Workload.PROBES - 1)];
+        int count = 0;
+        for (Map.Entry<Integer, Object> entry : navigable.subMap(from, from + 2 * SCAN).entrySet())
+            count += entry.getKey();
+        return count;
+    }
+
+    @Benchmark
+    public Object pollFirstPut() {
+        Map.Entry<Integer, Object> first = navigable.pollFirstEntry();
+        navigable.put(first.getKey(), VALUE);
+        return first;
+    }
+}
@@ -0,0 +1,131 @@
+package io.github.charlin2.trees;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH comparison of the generic AVLTree against IntAVLTree, LongAVLTree and
+ * OffHeapAVLTree
+ * 
+ * The build benchmarks insert BUILD random keys into an empty tree, so their
+ * gc.alloc.rate.norm is the heap cost of one entry (including the garbage left
+ * behind by array resizing).
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class PrimitiveTreeBenchmark {
+    /** number of entries inserted by the build benchmarks */
+    static final int BUILD = 1 << 16;
+
+    /** value shared by every entry so only the tree structure is measured */
+    static final Object VALUE = new Object();
+
+    @Param({ "1000", "1000000" })
+    int size;
+
+    AVLTree<Integer, Object> generic;
+    IntAVLTree<Object> ints;
+    LongAVLTree<Object> longs;
+    OffHeapAVLTree offHeap;
+
+    /** probe keys, boxed once up front for the generic tree */
+    int[] probes;
+    Integer[] boxedProbes;
+
+    /** keys inserted by the build benchmarks */
+    int[] buildKeys;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int[] ranks = Workload.shuffled(size, 7);
+        generic = new AVLTree<>();
+        ints = new IntAVLTree<>();
+        longs = new LongAVLTree<>();
+        offHeap = new OffHeapAVLTree();
+        for (int rank : ranks) {
+            offHeap.insert(rank, rank);
+            generic.insert(rank, VALUE);
+            ints.insert(rank, VALUE);
+            longs.insert(rank, VALUE);
+        }
+        probes = Workload.ranks("random", size, Workload.PROBES, 42);
+        boxedProbes = new Integer[probes.length];
+        for (int i = 0; i < probes.length; i++)
+            boxedProbes[i] = probes[i];
+        buildKeys = Workload.shuffled(BUILD, 11);
+    }
+
+    @Benchmark
+    public Object genericSearch() {
+        return generic.search(boxedProbes[next++ & (Workload.PROBES - 1)]);
+    }
+
+    @Benchmark
+    public Object intSearch() {
+        return ints.search(probes[next++ & (Workload.PROBES - 1)]);
+    }
+
+    @Benchmark
+    public Object longSearch() {
+        return longs.search(probes[next++ & (Workload.PROBES - 1)]);
+    }
+
+    @Benchmark
+    public long offHeapSearch() {
+        return offHeap.search(probes[next++ & (Workload.PROBES - 1)], -1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        offHeap.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BUILD)
+    public Object genericBuild() {
+        AVLTree<Integer, Object> tree = new AVLTree<>();
+        for (int key : buildKeys)
+            tree.insert(key, VALUE);
+        return tree;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BUILD)
+    public Object intBuild() {
+        IntAVLTree<Object> tree = new IntAVLTree<>();
+        for (int key : buildKeys)
+            tree.insert(key, VALUE);
+        return tree;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BUILD)
+    public Object longBuild() {
+        LongAVLTree<Object> tree = new LongAVLTree<>();
+        for (int key : buildKeys)
+            tree.insert(key, VALUE);
+        return tree;
+    }
+}
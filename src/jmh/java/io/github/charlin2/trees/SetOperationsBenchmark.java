@@ -0,0 +1,86 @@
+package io.github.charlin2.trees;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH comparison of the join-based AVLTree.union against inserting every entry
+ * of the delta tree into the base tree
+ * 
+ * Both trees are rebuilt before every invocation since union consumes them.
+ * The delta tree holds deltaPercent percent as many keys as the base tree.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class SetOperationsBenchmark {
+    @Param({ "100000", "1000000", "10000000" })
+    int size;
+
+    @Param({ "1", "100" })
+    int deltaPercent;
+
+    List<Integer> baseKeys, deltaKeys;
+
+    AVLTree<Integer, Integer> base, delta;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        baseKeys = sortedRandomKeys(random, size);
+        deltaKeys = sortedRandomKeys(random, (int) ((long) size * deltaPercent / 100));
+    }
+
+    /** draws distinct-ish random keys and sorts them for fromSorted */
+    private static List<Integer> sortedRandomKeys(Random random, int count) {
+        int[] keys = new int[count];
+        for (int i = 0; i < count; i++)
+            keys[i] = random.nextInt(Integer.MAX_VALUE);
+        Arrays.sort(keys);
+        List<Integer> list = new ArrayList<>(count);
+        for (int key : keys)
+            list.add(key);
+        return list;
+    }
+
+    @Setup(Level.Invocation)
+    public void rebuild() {
+        base = AVLTree.fromSorted(baseKeys, baseKeys);
+        delta = AVLTree.fromSorted(deltaKeys, deltaKeys);
+    }
+
+    @Benchmark
+    public Object union() {
+        base.union(delta);
+        return base;
+    }
+
+    @Benchmark
+    public Object insertEach() {
+        for (Map.Entry<Integer, Integer> entry : delta)
+            base.insert(entry.getKey(), entry.getValue());
+        return base;
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.charlin2.trees;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH comparison of consistent scans: a PersistentAVLTree snapshot against
+ * copying an AVLTree with inorderRec, plus the write cost of path copying
+ * 
+ * Compare gc.alloc.rate.norm: the snapshot scan allocates a constant amount,
+ * the copy scan allocates a list of the whole tree.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class SnapshotBenchmark {
+    /** value shared by every entry so only the tree structure is measured */
+    static final Object VALUE = new Object();
+
+    @Param({ "1000", "1000000" })
+    int size;
+
+    AVLTree<Integer, Object> mutable;
+    PersistentAVLTree<Integer, Object> persistent;
+
+    /** keys toggled by the write benchmarks, boxed once up front */
+    Integer[] probes;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mutable = new AVLTree<>();
+        persistent = new PersistentAVLTree<>();
+        for (int rank : Workload.shuffled(size, 7)) {
+            mutable.insert(2 * rank, VALUE);
+            persistent.insert(2 * rank, VALUE);
+        }
+        int[] ranks = Workload.ranks("random", size, Workload.PROBES, 42);
+        probes = new Integer[ranks.length];
+        for (int i = 0; i < ranks.length; i++)
+            probes[i] = 2 * ranks[i] + 1;
+    }
+
+    @Benchmark
+    public int snapshotScan() {
+        int count = 0;
+        for (Map.Entry<Integer, Object> entry : persistent.snapshot())
+            if (entry.getValue() == VALUE)
+                count++;
+        return count;
+    }
+
+    @Benchmark
+    public int copyScan() {
+        int count = 0;
+        for (Object value : mutable.inorderRec())
+            if (value == VALUE)
+                count++;
+        return count;
+    }
+
+    /** inserts then deletes an absent key, leaving the tree as it was */
+    @Benchmark
+    public Object persistentWrite() {
+        Integer key = probes[next++ & (Workload.PROBES - 1)];
+        persistent.insert(key, VALUE);
+        persistent.delete(key);
+        return persistent;
+    }
+
+    /** inserts then deletes an absent key, leaving the tree as it was */
+    @Benchmark
+    public Object mutableWrite() {
+        Integer key = probes[next++ & (Workload.PROBES - 1)];
+        mutable.insert(key, VALUE);
+        mutable.delete(key);
+        return mutable;
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.charlin2.trees;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH comparison of whole-tree aggregations: summing the values of an AVLTree
+ * through a copied inorderRec list, a sequential stream and a parallel stream
+ * 
+ * The parallel stream splits by rank on the common ForkJoinPool, so its speedup
+ * is bounded by the number of cores.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class StreamBenchmark {
+    @Param({ "1000000", "10000000" })
+    int size;
+
+    AVLTree<Integer, Integer> tree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Integer> keys = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            keys.add(i);
+        tree = AVLTree.fromSorted(keys, keys);
+    }
+
+    @Benchmark
+    public long copy() {
+        long sum = 0;
+        for (int value : tree.inorderRec())
+            sum += value;
+        return sum;
+    }
+
+    @Benchmark
+    public long stream() {
+        return tree.stream().mapToLong(Map.Entry::getValue).sum();
+    }
+
+    @Benchmark
+    public long parallelStream() {
+        return tree.parallelStream().mapToLong(Map.Entry::getValue).sum();
+    }
+}
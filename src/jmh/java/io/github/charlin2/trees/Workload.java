@@ -0,0 +1,180 @@
+package io.github.charlin2.trees;
+
+import java.util.Random;
+
+/**
+ * Key generation shared by the JMH benchmarks
+ * 
+ * Keys are drawn by rank: the tree under test holds the keys of every rank in
+ * [0, size) as even numbers, so a key of rank r is present as 2r and absent as
+ * 2r + 1. String keys are zero padded so that they sort like their integers.
+ * Keys are handed out as raw Comparables so one benchmark can cover both key
+ * types.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public final class Workload {
+    /** number of pre-generated probes, a power of two so that indexes can be masked */
+    public static final int PROBES = 1 << 16;
+
+    /** number of consecutive draws of the clustered distribution around one start */
+    private static final int CLUSTER_RUN = 64;
+
+    /** number of ranks a clustered run is spread over */
+    private static final int CLUSTER_WIDTH = 1024;
+
+    private Workload() {
+    }
+
+    /**
+     * Returns the key with the given numeric value
+     * 
+     * @param keyType "Integer" or "String"
+     * @param value   numeric value of the key
+     * @return the boxed key
+     */
+    @SuppressWarnings("rawtypes")
+    public static Comparable key(String keyType, long value) {
+        switch (keyType) {
+            case "Integer":
+                return Integer.valueOf((int) value);
+            case "String":
+                return String.format("%011d", value);
+            default:
+                throw new IllegalArgumentException("unknown key type: " + keyType);
+        }
+    }
+
+    /**
+     * Converts ranks into keys
+     * 
+     * @param keyType "Integer" or "String"
+     * @param ranks   ranks of the keys
+     * @param present whether the keys should be the ones stored in the tree
+     * @return one key per rank
+     */
+    @SuppressWarnings("rawtypes")
+    public static Comparable[] keys(String keyType, int[] ranks, boolean present) {
+        Comparable[] keys = new Comparable[ranks.length];
+        for (int i = 0; i < ranks.length; i++)
+            keys[i] = key(keyType, 2L * ranks[i] + (present ? 0 : 1));
+        return keys;
+    }
+
+    /**
+     * Draws ranks in [0, n) from a key distribution
+     * 
+     * @param distribution "sequential", "random", "clustered" or "zipfian"
+     * @param n            number of distinct ranks
+     * @param count        number of ranks to draw
+     * @param seed         random seed
+     * @return the drawn ranks
+     */
+    public static int[] ranks(String distribution, int n, int count, long seed) {
+        int[] ranks = new int[count];
+        Random random = new Random(seed);
+        switch (distribution) {
+            case "sequential":
+                for (int i = 0; i < count; i++)
+                    ranks[i] = i % n;
+                break;
+            case "random":
+                for (int i = 0; i < count; i++)
+                    ranks[i] = random.nextInt(n);
+                break;
+            case "clustered":
+                // runs of CLUSTER_RUN draws within CLUSTER_WIDTH ranks of a random start
+                int start = 0;
+                for (int i = 0; i < count; i++) {
+                    if (i % CLUSTER_RUN == 0)
+                        start = random.nextInt(n);
+                    ranks[i] = (start + random.nextInt(Math.min(CLUSTER_WIDTH, n))) % n;
+                }
+                break;
+            case "zipfian":
+                ZipfianGenerator zipf = new ZipfianGenerator(n, random);
+                for (int i = 0; i < count; i++)
+                    ranks[i] = zipf.next();
+                break;
+            default:
+                throw new IllegalArgumentException("unknown distribution: " + distribution);
+        }
+        return ranks;
+    }
+
+    /**
+     * Returns a random permutation of [0, n)
+     * 
+     * @param n    number of ranks
+     * @param seed random seed
+     * @return the shuffled ranks
+     */
+    public static int[] shuffled(int n, long seed) {
+        int[] ranks = new int[n];
+        for (int i = 0; i < n; i++)
+            ranks[i] = i;
+        Random random = new Random(seed);
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = ranks[i];
+            ranks[i] = ranks[j];
+            ranks[j] = temp;
+        }
+        return ranks;
+    }
+
+    /**
+     * Scrambled Zipfian generator as used by YCSB: popular ranks are spread over
+     * the key space instead of being clustered at the low end
+     */
+    public static final class ZipfianGenerator {
+        /** skew of the distribution */
+        private static final double THETA = 0.99;
+
+        private final int n;
+        private final Random random;
+        private final double zetan, alpha, eta;
+
+        /**
+         * Creates a generator over [0, n)
+         * 
+         * @param n      number of items
+         * @param random source of randomness
+         */
+        public ZipfianGenerator(int n, Random random) {
+            this.n = n;
+            this.random = random;
+            double zeta2 = 1 + Math.pow(0.5, THETA);
+            double sum = 0;
+            for (int i = 1; i <= n; i++)
+                sum += 1 / Math.pow(i, THETA);
+            zetan = sum;
+            alpha = 1 / (1 - THETA);
+            eta = (1 - Math.pow(2.0 / n, 1 - THETA)) / (1 - zeta2 / zetan);
+        }
+
+        /**
+         * Returns the next rank
+         * 
+         * @return a rank in [0, n)
+         */
+        public int next() {
+            double u = random.nextDouble();
+            double uz = u * zetan;
+            long rank;
+            if (uz < 1)
+                rank = 0;
+            else if (uz < 1 + Math.pow(0.5, THETA))
+                rank = 1;
+            else
+                rank = (long) (n * Math.pow(eta * u - eta + 1, alpha));
+            // FNV-1a over the rank so the hot items are not all adjacent
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < 8; i++) {
+                hash ^= (rank >>> (i * 8)) & 0xff;
+                hash *= 0x100000001b3L;
+            }
+            return (int) Long.remainderUnsigned(hash, n);
+        }
+    }
+}
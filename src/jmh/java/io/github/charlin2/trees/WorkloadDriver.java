@@ -0,0 +1,427 @@
+package io.github.charlin2.trees;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Command-line driver that runs a mixed workload against AVLTree or
+ * BinarySearchTree and checks every result against java.util.TreeMap
+ * 
+ * The operations are either replayed from a trace file or generated as a
+ * YCSB-style mix. Trace files hold one operation per line, blank lines and
+ * lines starting with # being ignored:
+ * 
+ * <pre>
+ * read   key
+ * insert key
+ * delete key
+ * scan   key length
+ * </pre>
+ * 
+ * Keys are longs. Inserts replace the value of an existing key, as
+ * TreeMap.put does, and a scan reads up to length entries from the first key
+ * not smaller than key. The trees are not thread-safe, so all threads share
+ * one tree behind a read-write lock: reads and scans run in parallel and
+ * writes one at a time. The oracle is updated under the same lock, so with
+ * several threads its cost shows up as contention; pass -check false to
+ * measure the tree alone. Latencies include waiting for the lock.
+ * 
+ * Run from the benchmarks jar, for example
+ * 
+ * <pre>
+ * java -cp target/benchmarks.jar io.github.charlin2.trees.WorkloadDriver -tree avl -threads 4 \
+ *     -read 80 -insert 10 -delete 5 -scan 5 -distribution zipfian -keys 1000000 -ops 10000000
+ * </pre>
+ * 
+ * The exit status is 1 if any result differed from the oracle or any operation threw.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public class WorkloadDriver {
+    /** kinds of operation, in the order they are reported */
+    enum Kind {
+        READ, INSERT, DELETE, SCAN
+    }
+
+    /** one operation of a trace */
+    static final class Operation {
+        final Kind kind;
+        final long key;
+
+        /** number of entries to read, for scans */
+        final int length;
+
+        Operation(Kind kind, long key, int length) {
+            this.kind = kind;
+            this.key = key;
+            this.length = length;
+        }
+    }
+
+    /** options and their defaults */
+    private static final String[][] OPTIONS = {
+            { "tree", "avl", "avl or bst" },
+            { "trace", "", "file of operations to replay instead of generating them" },
+            { "ops", "1000000", "number of operations to generate" },
+            { "read", "50", "relative weight of reads" },
+            { "insert", "30", "relative weight of inserts" },
+            { "delete", "10", "relative weight of deletes" },
+            { "scan", "10", "relative weight of scans" },
+            { "scanLength", "100", "entries read by each generated scan" },
+            { "keys", "100000", "generated keys are drawn from [0, keys)" },
+            { "distribution", "uniform", "uniform, zipfian, sequential or clustered" },
+            { "preload", "", "random keys inserted before the run (default keys/2, or 0 with -trace)" },
+            { "warmup", "0", "operations per thread run before measuring, still checked" },
+            { "threads", "1", "number of threads; the operations are dealt out round-robin" },
+            { "seed", "42", "random seed" },
+            { "check", "true", "whether to check every result against TreeMap" } };
+
+    /** number of mismatches printed before the rest are only counted */
+    private static final int MAX_REPORTED = 10;
+
+    private final NavigableTree<Long, Long> tree;
+    private final TreeMap<Long, Long> oracle = new TreeMap<>();
+    private final boolean check;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong mismatches = new AtomicLong();
+
+    /** number of threads that stopped because an operation threw */
+    private final AtomicLong failures = new AtomicLong();
+
+    WorkloadDriver(NavigableTree<Long, Long> tree, boolean check) {
+        this.tree = tree;
+        this.check = check;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        NavigableTree<Long, Long> tree;
+        switch (options.get("tree")) {
+            case "avl":
+                tree = new AVLTree<>(DuplicateKeys.REPLACE);
+                break;
+            case "bst":
+                tree = new BinarySearchTree<>(DuplicateKeys.REPLACE);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown tree: " + options.get("tree"));
+        }
+        int threads = Integer.parseInt(options.get("threads"));
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        int keys = Integer.parseInt(options.get("keys"));
+        long seed = Long.parseLong(options.get("seed"));
+        boolean replay = !options.get("trace").isEmpty();
+        int preload = options.get("preload").isEmpty() ? (replay ? 0 : keys / 2)
+                : Integer.parseInt(options.get("preload"));
+
+        List<List<Operation>> traces = new ArrayList<>();
+        if (replay) {
+            List<Operation> trace = read(options.get("trace"));
+            for (int t = 0; t < threads; t++)
+                traces.add(new ArrayList<>());
+            for (int i = 0; i < trace.size(); i++)
+                traces.get(i % threads).add(trace.get(i));
+        } else {
+            int ops = Integer.parseInt(options.get("ops"));
+            for (int t = 0; t < threads; t++)
+                traces.add(generate(options, ops / threads + (t < ops % threads ? 1 : 0), seed + t));
+        }
+
+        WorkloadDriver driver = new WorkloadDriver(tree, Boolean.parseBoolean(options.get("check")));
+        int[] ranks = Workload.shuffled(Math.max(keys, preload), seed);
+        // thread t writes values from t << 40 up and its warmup from t << 40 down, so
+        // the preload counts up from the bottom of the range to stay clear of both
+        for (int i = 0; i < preload; i++)
+            driver.apply(new Operation(Kind.INSERT, ranks[i], 0), Long.MIN_VALUE + i, null);
+        driver.run(traces, Integer.parseInt(options.get("warmup")), options.get("tree"));
+        if (driver.mismatches.get() > 0 || driver.failures.get() > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Reads -name value pairs over the defaults
+     */
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String[] option : OPTIONS)
+            options.put(option[0], option[1]);
+        for (int i = 0; i < args.length; i += 2) {
+            String name = args[i].startsWith("-") ? args[i].substring(1) : "";
+            if (!options.containsKey(name) || i + 1 == args.length) {
+                StringBuilder usage = new StringBuilder("unknown option or missing value: " + args[i]
+                        + "\nusage: WorkloadDriver [-option value]...");
+                for (String[] option : OPTIONS)
+                    usage.append(String.format("%n  -%-13s %s (default %s)", option[0], option[2],
+                            option[1].isEmpty() ? "none" : option[1]));
+                throw new IllegalArgumentException(usage.toString());
+            }
+            options.put(name, args[i + 1]);
+        }
+        return options;
+    }
+
+    /**
+     * Parses a trace file
+     */
+    static List<Operation> read(String file) throws IOException {
+        List<Operation> trace = new ArrayList<>();
+        int number = 0;
+        for (String line : Files.readAllLines(Paths.get(file))) {
+            number++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] fields = line.split("\\s+");
+            try {
+                Kind kind = Kind.valueOf(fields[0].toUpperCase());
+                if (fields.length != (kind == Kind.SCAN ? 3 : 2))
+                    throw new IllegalArgumentException("wrong number of fields");
+                int length = kind == Kind.SCAN ? Integer.parseInt(fields[2]) : 0;
+                if (length < 0)
+                    throw new IllegalArgumentException("negative scan length");
+                trace.add(new Operation(kind, Long.parseLong(fields[1]), length));
+            } catch (IllegalArgumentException e) {
+                throw new IOException(file + ":" + number + ": cannot parse \"" + line + "\"", e);
+            }
+        }
+        return trace;
+    }
+
+    /**
+     * Generates a mix of operations
+     */
+    static List<Operation> generate(Map<String, String> options, int count, long seed) {
+        int[] weights = new int[Kind.values().length];
+        int total = 0;
+        for (Kind kind : Kind.values()) {
+            String name = kind.name().toLowerCase();
+            int weight = Integer.parseInt(options.get(name));
+            if (weight < 0)
+                throw new IllegalArgumentException(name + " weight must not be negative: " + weight);
+            total += weights[kind.ordinal()] = weight;
+        }
+        if (total <= 0)
+            throw new IllegalArgumentException("the operation weights add up to " + total);
+        String distribution = options.get("distribution");
+        int[] ranks = Workload.ranks(distribution.equals("uniform") ? "random" : distribution,
+                Integer.parseInt(options.get("keys")), count, seed);
+        int scanLength = Integer.parseInt(options.get("scanLength"));
+        if (scanLength < 0)
+            throw new IllegalArgumentException("scanLength must not be negative: " + scanLength);
+        Random random = new Random(seed);
+        List<Operation> trace = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int draw = random.nextInt(total);
+            Kind kind = Kind.READ;
+            for (Kind candidate : Kind.values()) {
+                kind = candidate;
+                draw -= weights[candidate.ordinal()];
+                if (draw < 0)
+                    break;
+            }
+            trace.add(new Operation(kind, ranks[i], scanLength));
+        }
+        return trace;
+    }
+
+    /**
+     * Runs one trace per thread and prints the report
+     */
+    void run(List<List<Operation>> traces, int warmup, String name) throws Exception {
+        int threads = traces.size();
+        CyclicBarrier start = new CyclicBarrier(threads + 1);
+        List<LatencyHistogram[]> latencies = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<Operation> trace = traces.get(t);
+            LatencyHistogram[] histograms = new LatencyHistogram[Kind.values().length];
+            for (int k = 0; k < histograms.length; k++)
+                histograms[k] = new LatencyHistogram();
+            latencies.add(histograms);
+            long values = (long) t << 40;
+            Thread worker = new Thread(() -> {
+                // every worker reaches the barrier, even after a failed warmup, so main cannot hang
+                Throwable failure = null;
+                try {
+                    for (int i = 0; i < warmup && !trace.isEmpty(); i++)
+                        apply(trace.get(i % trace.size()), values - 1 - i, null);
+                } catch (Throwable e) {
+                    failure = e;
+                }
+                try {
+                    start.await();
+                } catch (Throwable e) {
+                    if (failure == null)
+                        failure = e;
+                }
+                if (failure == null) {
+                    try {
+                        for (int i = 0; i < trace.size(); i++)
+                            apply(trace.get(i), values + i, histograms);
+                    } catch (Throwable e) {
+                        failure = e;
+                    }
+                }
+                if (failure != null) {
+                    failures.incrementAndGet();
+                    System.err.println(Thread.currentThread().getName() + " stopped:");
+                    failure.printStackTrace();
+                }
+            }, "workload-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        start.await();
+        long begin = System.nanoTime();
+        for (Thread worker : workers)
+            worker.join();
+        long elapsed = System.nanoTime() - begin;
+
+        LatencyHistogram[] merged = new LatencyHistogram[Kind.values().length];
+        long operations = 0;
+        for (Kind kind : Kind.values()) {
+            merged[kind.ordinal()] = new LatencyHistogram();
+            for (LatencyHistogram[] histograms : latencies)
+                merged[kind.ordinal()].add(histograms[kind.ordinal()]);
+            operations += merged[kind.ordinal()].count();
+        }
+        if (check)
+            checkContents();
+
+        System.out.printf("tree=%s threads=%d operations=%d elapsed=%.3f s throughput=%.0f ops/s size=%d%n",
+                name, threads, operations, elapsed / 1e9, operations / (elapsed / 1e9), tree.size());
+        System.out.printf("%-8s %12s %10s %10s %10s %10s%n", "op", "count", "p50 us", "p99 us", "p99.9 us",
+                "max us");
+        for (Kind kind : Kind.values()) {
+            LatencyHistogram histogram = merged[kind.ordinal()];
+            if (histogram.count() > 0)
+                System.out.printf("%-8s %12d %10.2f %10.2f %10.2f %10.2f%n", kind.name().toLowerCase(),
+                        histogram.count(), histogram.valueAtPercentile(50) / 1e3,
+                        histogram.valueAtPercentile(99) / 1e3, histogram.valueAtPercentile(99.9) / 1e3,
+                        histogram.max() / 1e3);
+        }
+        System.out.println((check ? "mismatches=" + mismatches.get() : "results not checked") + " failures="
+                + failures.get());
+    }
+
+    /**
+     * Applies one operation to the tree and, if checking, to the oracle
+     * 
+     * @param operation  the operation
+     * @param value      the value written by an insert, unique to the operation
+     * @param histograms where to record the latency by kind, or null not to record it
+     */
+    void apply(Operation operation, long value, LatencyHistogram[] histograms) {
+        Long key = operation.key;
+        boolean write = operation.kind == Kind.INSERT || operation.kind == Kind.DELETE;
+        Lock held = write ? lock.writeLock() : lock.readLock();
+        long begin = System.nanoTime();
+        held.lock();
+        try {
+            switch (operation.kind) {
+                case READ: {
+                    Long actual = tree.search(key);
+                    record(histograms, operation, begin);
+                    if (check)
+                        expect(operation, oracle.get(key), actual);
+                    break;
+                }
+                case INSERT: {
+                    Long previous = tree.put(key, value);
+                    record(histograms, operation, begin);
+                    if (check) {
+                        expect(operation, oracle.put(key, value), previous);
+                        expect(operation, oracle.size(), tree.size());
+                    }
+                    break;
+                }
+                case DELETE: {
+                    tree.delete(key);
+                    record(histograms, operation, begin);
+                    if (check) {
+                        oracle.remove(key);
+                        expect(operation, oracle.size(), tree.size());
+                    }
+                    break;
+                }
+                case SCAN: {
+                    // the read lock keeps the size stable, and bounds the buffer for huge lengths
+                    long[] entries = new long[2 * Math.min(operation.length, tree.size())];
+                    int read = 0;
+                    for (Iterator<Map.Entry<Long, Long>> it = tree.tailRange(key).iterator(); it.hasNext()
+                            && read < operation.length; read++) {
+                        Map.Entry<Long, Long> entry = it.next();
+                        entries[2 * read] = entry.getKey();
+                        entries[2 * read + 1] = entry.getValue();
+                    }
+                    record(histograms, operation, begin);
+                    if (check) {
+                        List<Long> expected = new ArrayList<>(), actual = new ArrayList<>();
+                        for (Map.Entry<Long, Long> entry : oracle.tailMap(key, true).entrySet()) {
+                            if (expected.size() == 2 * operation.length)
+                                break;
+                            expected.add(entry.getKey());
+                            expected.add(entry.getValue());
+                        }
+                        for (int i = 0; i < 2 * read; i++)
+                            actual.add(entries[i]);
+                        expect(operation, expected, actual);
+                    }
+                    break;
+                }
+            }
+        } finally {
+            held.unlock();
+        }
+    }
+
+    private static void record(LatencyHistogram[] histograms, Operation operation, long begin) {
+        if (histograms != null)
+            histograms[operation.kind.ordinal()].record(System.nanoTime() - begin);
+    }
+
+    /**
+     * Counts and, for the first few, prints a result that differs from the oracle
+     */
+    private void expect(Operation operation, Object expected, Object actual) {
+        if (expected == null ? actual == null : expected.equals(actual))
+            return;
+        if (mismatches.incrementAndGet() <= MAX_REPORTED)
+            System.err.printf("mismatch on %s %d: expected %s but was %s%n", operation.kind.name().toLowerCase(),
+                    operation.key, expected, actual);
+    }
+
+    /**
+     * Compares the whole tree with the oracle after the run
+     */
+    private void checkContents() {
+        Iterator<Map.Entry<Long, Long>> expected = oracle.entrySet().iterator();
+        Iterator<Map.Entry<Long, Long>> actual = tree.iterator();
+        while (expected.hasNext() && actual.hasNext()) {
+            Map.Entry<Long, Long> e = expected.next(), a = actual.next();
+            if (!e.getKey().equals(a.getKey()) || !e.getValue().equals(a.getValue())) {
+                mismatches.incrementAndGet();
+                System.err.printf("final contents differ: expected %s but was %s%n", e, a);
+                return;
+            }
+        }
+        if (expected.hasNext() || actual.hasNext()) {
+            mismatches.incrementAndGet();
+            System.err.printf("final contents differ in size: expected %d but was %d%n", oracle.size(), tree.size());
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package io.github.charlin2.trees;
+
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * Ordered cache: an AVLTree bounded by an entry count and/or a total weight,
+ * which evicts entries by an Eviction policy as writes push it over budget
+ * 
+ * Each key holds one value. Victims are found in O(1) (LRU, TTL) or O(log n)
+ * (SMALLEST_KEY, LARGEST_KEY) and removed in O(log n); every write evicts as
+ * many entries as it takes to get back within budget, and under TTL also
+ * sweeps the entries that have expired, so no background thread is needed.
+ * Expired entries that have not been swept yet are invisible to reads but
+ * still counted by size().
+ * 
+ * Not thread-safe, like AVLTree.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public class AVLCache<T extends Comparable<T>, V> implements SearchTree<T, V> {
+    /**
+     * Which entry is evicted when the cache is over budget
+     */
+    public enum Eviction {
+        /** the entry with the smallest key, keeping the largest keys */
+        SMALLEST_KEY,
+        /** the entry with the largest key, keeping the smallest keys */
+        LARGEST_KEY,
+        /** the entry least recently read or written */
+        LRU,
+        /** the entry written longest ago; entries also expire a fixed time after their last write */
+        TTL
+    }
+
+    /** cached entry, linked in access or write order under LRU and TTL */
+    private static final class Entry<V> {
+        /** key of the entry, needed to remove a victim found through the list */
+        private final Object key;
+
+        private V value;
+
+        /** weight charged against the budget */
+        private long weight;
+
+        /** clock reading at which the entry expires under TTL */
+        private long expiresAt;
+
+        /** neighbours in the eviction order, oldest first */
+        private Entry<V> previous, next;
+
+        private Entry(Object key) {
+            this.key = key;
+        }
+    }
+
+    /** the entries by key */
+    private final AVLTree<T, Entry<V>> tree = new AVLTree<>(DuplicateKeys.REPLACE);
+
+    /** configuration given to the constructor */
+    private final Eviction eviction;
+    private final int maxEntries;
+    private final long maxWeight;
+    private final ToLongBiFunction<? super T, ? super V> weigher;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+
+    /** ends of the eviction order list: the next victim and the most recent entry */
+    private Entry<V> oldest, newest;
+
+    /** total weight of the entries */
+    private long weight;
+
+    /** counters */
+    private long hits, misses, evictions;
+
+    /**
+     * Creates a cache bounded by its number of entries
+     * 
+     * @param eviction   SMALLEST_KEY, LARGEST_KEY or LRU
+     * @param maxEntries the number of entries above which entries are evicted
+     */
+    public AVLCache(Eviction eviction, int maxEntries) {
+        this(eviction, maxEntries, Long.MAX_VALUE, null, null, System::nanoTime);
+    }
+
+    /**
+     * Creates a cache
+     * 
+     * @param eviction   the eviction policy
+     * @param maxEntries the number of entries above which entries are evicted, or Integer.MAX_VALUE
+     * @param maxWeight  the total weight above which entries are evicted, or Long.MAX_VALUE
+     * @param weigher    the weight of an entry, or null to weigh each entry as 1
+     * @param ttl        how long an entry lives after its last write, required by TTL and only allowed there
+     * @param clock      a source of nanoseconds, System::nanoTime outside of tests
+     */
+    public AVLCache(Eviction eviction, int maxEntries, long maxWeight, ToLongBiFunction<? super T, ? super V> weigher,
+            Duration ttl, LongSupplier clock) {
+        this.eviction = Objects.requireNonNull(eviction);
+        if (maxEntries < 1)
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        if (maxWeight < 1)
+            throw new IllegalArgumentException("maxWeight must be positive: " + maxWeight);
+        if ((eviction == Eviction.TTL) != (ttl != null))
+            throw new IllegalArgumentException("a ttl is required by TTL eviction and only allowed there");
+        if (ttl != null && (ttl.isNegative() || ttl.isZero()))
+            throw new IllegalArgumentException("ttl must be positive: " + ttl);
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        ttlNanos = ttl == null ? 0 : ttl.toNanos();
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    /**
+     * Whether entries are kept in a list in eviction order
+     */
+    private boolean ordered() {
+        return eviction == Eviction.LRU || eviction == Eviction.TTL;
+    }
+
+    private boolean expired(Entry<V> entry, long now) {
+        return eviction == Eviction.TTL && now - entry.expiresAt >= 0;
+    }
+
+    private void unlink(Entry<V> entry) {
+        if (entry.previous == null)
+            oldest = entry.next;
+        else
+            entry.previous.next = entry.next;
+        if (entry.next == null)
+            newest = entry.previous;
+        else
+            entry.next.previous = entry.previous;
+        entry.previous = entry.next = null;
+    }
+
+    private void append(Entry<V> entry) {
+        entry.previous = newest;
+        if (newest == null)
+            oldest = entry;
+        else
+            newest.next = entry;
+        newest = entry;
+    }
+
+    /**
+     * Removes an entry that is known to be in the cache
+     */
+    @SuppressWarnings("unchecked")
+    private void remove(Entry<V> entry) {
+        tree.delete((T) entry.key);
+        if (ordered())
+            unlink(entry);
+        weight -= entry.weight;
+    }
+
+    /**
+     * Inserts or replaces the value of a key, then evicts until the cache is within budget
+     * 
+     * @param key   the key of the entry
+     * @param value the value of the entry
+     */
+    @Override
+    public void insert(T key, V value) {
+        put(key, value);
+    }
+
+    /**
+     * Inserts or replaces the value of a key, then evicts until the cache is within budget
+     * The new entry itself is evicted if the policy picks it
+     * 
+     * @param key   the key of the entry
+     * @param value the value of the entry
+     * @return the previous value of the key, or null if it was absent or expired
+     */
+    public V put(T key, V value) {
+        long entryWeight = weigher == null ? 1 : weigher.applyAsLong(key, value);
+        if (entryWeight < 0)
+            throw new IllegalArgumentException("negative weight " + entryWeight + " for key " + key);
+        long now = eviction == Eviction.TTL ? clock.getAsLong() : 0;
+        Entry<V> entry = new Entry<>(key);
+        entry.value = value;
+        entry.weight = entryWeight;
+        entry.expiresAt = now + ttlNanos;
+        Entry<V> previous = tree.put(key, entry);
+        V replaced = null;
+        if (previous != null) {
+            if (ordered())
+                unlink(previous);
+            weight -= previous.weight;
+            if (!expired(previous, now))
+                replaced = previous.value;
+        }
+        if (ordered())
+            append(entry);
+        weight += entryWeight;
+        evict(now);
+        return replaced;
+    }
+
+    /**
+     * Sweeps expired entries and evicts entries until the cache is within budget
+     */
+    private void evict(long now) {
+        while (oldest != null && expired(oldest, now)) {
+            remove(oldest);
+            evictions++;
+        }
+        while (tree.size() > maxEntries || weight > maxWeight) {
+            Entry<V> victim;
+            switch (eviction) {
+                case SMALLEST_KEY:
+                    victim = tree.firstEntry().getValue();
+                    break;
+                case LARGEST_KEY:
+                    victim = tree.lastEntry().getValue();
+                    break;
+                default:
+                    victim = oldest;
+            }
+            remove(victim);
+            evictions++;
+        }
+    }
+
+    /**
+     * Returns the value of a key, counting a hit or a miss
+     * Under LRU the entry becomes the most recently used
+     * 
+     * @param key the key to be searched for
+     * @return the value of the key, or null if it is absent or expired
+     */
+    @Override
+    public V search(T key) {
+        Entry<V> entry = tree.search(key);
+        // only TTL needs the time, so other policies do not pay for reading the clock
+        if (entry == null || eviction == Eviction.TTL && expired(entry, clock.getAsLong())) {
+            misses++;
+            return null;
+        }
+        hits++;
+        if (eviction == Eviction.LRU && entry != newest) {
+            unlink(entry);
+            append(entry);
+        }
+        return entry.value;
+    }
+
+    /**
+     * Removes a key if it is in the cache; this does not count as an eviction
+     * 
+     * @param key the key to be deleted
+     */
+    @Override
+    public void delete(T key) {
+        Entry<V> entry = tree.search(key);
+        if (entry != null)
+            remove(entry);
+    }
+
+    /**
+     * Removes every expired entry now rather than on the next write
+     */
+    public void cleanUp() {
+        if (eviction == Eviction.TTL)
+            evict(clock.getAsLong());
+    }
+
+    /**
+     * Returns the number of entries, including expired ones that have not been swept yet
+     * 
+     * @return the size of the cache
+     */
+    @Override
+    public int size() {
+        return tree.size();
+    }
+
+    /**
+     * Returns the total weight of the entries, including expired ones that have not been swept yet
+     * 
+     * @return the weight of the cache
+     */
+    public long weight() {
+        return weight;
+    }
+
+    /** @return the number of searches that found their key */
+    public long hits() {
+        return hits;
+    }
+
+    /** @return the number of searches that did not find their key, or found it expired */
+    public long misses() {
+        return misses;
+    }
+
+    /** @return the number of entries evicted or swept after expiring */
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the live values in key order, without counting them as accesses
+     * 
+     * @return an inorder list of the values in the cache
+     */
+    @Override
+    public List<V> inorderRec() {
+        List<V> values = new ArrayList<>(tree.size());
+        for (Map.Entry<T, V> entry : this)
+            values.add(entry.getValue());
+        return values;
+    }
+
+    /**
+     * Returns an iterator over the live entries in key order, without counting them as accesses
+     * 
+     * @return an iterator over all entries
+     */
+    @Override
+    public Iterator<Map.Entry<T, V>> iterator() {
+        return new LiveIterator(tree.iterator());
+    }
+
+    /**
+     * Returns the live entries with keys in [fromKey, toKey) in key order, without counting
+     * them as accesses
+     * 
+     * @param fromKey the lowest key to include
+     * @param toKey   the key to stop before
+     * @return a lazy view of the entries in the range
+     */
+    public Iterable<Map.Entry<T, V>> range(T fromKey, T toKey) {
+        Iterable<Map.Entry<T, Entry<V>>> entries = tree.range(fromKey, toKey);
+        return () -> new LiveIterator(entries.iterator());
+    }
+
+    /**
+     * Iterator over the tree that skips the entries expired when it was created
+     */
+    private class LiveIterator implements Iterator<Map.Entry<T, V>> {
+        private final Iterator<Map.Entry<T, Entry<V>>> entries;
+
+        /** clock reading the entries are checked against */
+        private final long now = eviction == Eviction.TTL ? clock.getAsLong() : 0;
+
+        /** the next live entry, or null if it has to be looked for */
+        private Map.Entry<T, V> next;
+
+        private LiveIterator(Iterator<Map.Entry<T, Entry<V>>> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && entries.hasNext()) {
+                Map.Entry<T, Entry<V>> entry = entries.next();
+                if (!expired(entry.getValue(), now))
+                    next = new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().value);
+            }
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<T, V> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Map.Entry<T, V> entry = next;
+            next = null;
+            return entry;
+        }
+    }
+}
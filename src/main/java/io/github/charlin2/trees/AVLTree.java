@@ -0,0 +1,1893 @@
+package io.github.charlin2.trees;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * P3 Extra Credit: Implementation of an AVL Tree
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public class AVLTree<T extends Comparable<T>, V> implements NavigableTree<T, V> {
+    /** combined size of two subtrees below which set operations stop forking */
+    private static final int PARALLEL_THRESHOLD = 1 << 12;
+
+    /** root of the AVL Tree */
+    private Node root;
+
+    /** number of structural modifications, used by iterators to detect them */
+    private int modCount;
+
+    /** reusable buffer for the root-to-leaf path of insert and delete */
+    @SuppressWarnings("unchecked")
+    private Node[] path = (Node[]) new AVLTree.Node[32];
+
+    /** instrumentation, or null while metrics are disabled */
+    private TreeMetrics metrics;
+
+    /** what insert does with a key that is already in the tree */
+    private final DuplicateKeys duplicates;
+
+    /** operation whose aggregate of each subtree is cached in its root, or null for none */
+    private final Monoid<V> monoid;
+
+    /**
+     * Individual nodes of the tree, handed out directly as entries by the iterators
+     */
+    private class Node implements Map.Entry<T, V> {
+        /** references to parent and left and right children */
+        private Node right, left;
+
+        /** the key associated with this node */
+        private T key;
+
+        /** the element stored in this node */
+        private V value;
+
+        /** further values of the key in DuplicateKeys.BUCKET mode, null until there are any */
+        private ValueBucket<V> bucket;
+
+        /** height of the subtree rooted at this node (a leaf has height 0) */
+        private int height;
+
+        /** number of nodes in the subtree rooted at this node */
+        private int size;
+
+        /** aggregate of every value in the subtree rooted at this node, if the tree has a monoid */
+        private V aggregate;
+
+        /**
+         * Constructor for tree node
+         * 
+         * @param key   Key used for comparison and value access
+         * @param value Value stored in the node
+         */
+        private Node(T key, V value) {
+            this.key = key;
+            this.value = value;
+            right = left = null;
+            size = 1;
+            aggregate = value;
+        }
+
+        @Override
+        public T getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            if (monoid != null)
+                throw new UnsupportedOperationException("values of an aggregated tree are changed with put");
+            V old = this.value;
+            this.value = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * Creates a new AVL tree that keeps a node for every inserted key, duplicates included
+     */
+    public AVLTree() {
+        this(DuplicateKeys.ALLOW);
+    }
+
+    /**
+     * Creates a new AVL tree
+     * 
+     * @param duplicates what insert does with a key that is already in the tree
+     */
+    public AVLTree(DuplicateKeys duplicates) {
+        this(duplicates, null);
+    }
+
+    /**
+     * Creates a new AVL tree that caches an aggregate of its values for aggregate(fromKey, toKey)
+     * 
+     * @param duplicates what insert does with a key that is already in the tree
+     * @param monoid     the aggregate to maintain, or null for none
+     */
+    public AVLTree(DuplicateKeys duplicates, Monoid<V> monoid) {
+        this.duplicates = Objects.requireNonNull(duplicates);
+        this.monoid = monoid;
+        root = null;
+    }
+
+    /**
+     * Builds a perfectly balanced tree from entries sorted by key in O(n)
+     * Unsorted input is accepted and sorted first, in O(n log n)
+     * 
+     * @param keys   the keys, preferably in ascending order
+     * @param values the value of each key
+     * @return a new tree holding the entries
+     */
+    public static <T extends Comparable<T>, V> AVLTree<T, V> fromSorted(List<? extends T> keys,
+            List<? extends V> values) {
+        if (keys.size() != values.size())
+            throw new IllegalArgumentException("keys and values differ in length");
+        AVLTree<T, V> tree = new AVLTree<>();
+        List<AVLTree<T, V>.Node> nodes = new ArrayList<>(keys.size());
+        Iterator<? extends V> valueIterator = values.iterator();
+        for (T key : keys)
+            nodes.add(tree.new Node(key, valueIterator.next()));
+        tree.load(nodes);
+        return tree;
+    }
+
+    /**
+     * Builds a perfectly balanced tree from a stream of entries sorted by key in O(n)
+     * Unsorted input is accepted and sorted first, in O(n log n)
+     * 
+     * @param entries the entries, preferably in ascending key order
+     * @return a new tree holding the entries
+     */
+    public static <T extends Comparable<T>, V> AVLTree<T, V> bulkLoad(
+            Iterator<? extends Map.Entry<? extends T, ? extends V>> entries) {
+        AVLTree<T, V> tree = new AVLTree<>();
+        List<AVLTree<T, V>.Node> nodes = new ArrayList<>();
+        while (entries.hasNext()) {
+            Map.Entry<? extends T, ? extends V> entry = entries.next();
+            nodes.add(tree.new Node(entry.getKey(), entry.getValue()));
+        }
+        tree.load(nodes);
+        return tree;
+    }
+
+    /**
+     * Replaces the contents of the tree with the given nodes, without rotations
+     * 
+     * @param nodes the new nodes, sorted here if they are not already in key order
+     */
+    private void load(List<Node> nodes) {
+        for (int i = 1; i < nodes.size(); i++) {
+            if (nodes.get(i - 1).key.compareTo(nodes.get(i).key) > 0) {
+                // stable, so duplicate keys keep their input order
+                nodes.sort((a, b) -> a.key.compareTo(b.key));
+                break;
+            }
+        }
+        modCount++;
+        root = build(nodes, 0, nodes.size());
+    }
+
+    /**
+     * Recursively links sorted nodes into a perfectly balanced subtree
+     * 
+     * @param nodes the sorted nodes
+     * @param from  index of the first node of the subtree
+     * @param to    index after the last node of the subtree
+     * @return the root of the subtree
+     */
+    private Node build(List<Node> nodes, int from, int to) {
+        if (from >= to)
+            return null;
+        int middle = (from + to) >>> 1;
+        Node node = nodes.get(middle);
+        node.left = build(nodes, from, middle);
+        node.right = build(nodes, middle + 1, to);
+        update(node);
+        return node;
+    }
+
+    /**
+     * Returns the cached height of a subtree
+     * 
+     * @param root the root of the subtree
+     * @return the height of the subtree, or -1 if it is empty
+     */
+    private int height(Node root) {
+        if (root == null)
+            return -1;
+        return root.height;
+    }
+
+    /**
+     * Returns the cached size of a subtree
+     * 
+     * @param root the root of the subtree
+     * @return the number of nodes in the subtree
+     */
+    private int size(Node root) {
+        if (root == null)
+            return 0;
+        return root.size;
+    }
+
+    /**
+     * Returns the cached aggregate of a subtree
+     * 
+     * @param root the root of the subtree
+     * @return the aggregate of its values, or the identity if it is empty
+     */
+    private V aggregate(Node root) {
+        if (root == null)
+            return monoid.identity();
+        return root.aggregate;
+    }
+
+    /**
+     * Returns the aggregate of the values of a single node, its bucket included
+     * 
+     * @param node the node
+     * @return the aggregate of the node's own values
+     */
+    private V ownAggregate(Node node) {
+        V own = node.value;
+        if (node.bucket != null)
+            for (int i = 0; i < node.bucket.size(); i++)
+                own = monoid.combine(own, node.bucket.get(i));
+        return own;
+    }
+
+    /**
+     * Recomputes the cached height, size and aggregate of a node from its children
+     * 
+     * @param node the node whose children or values have changed
+     */
+    private void update(Node node) {
+        node.size = size(node.left) + size(node.right) + 1;
+        if (monoid != null) {
+            // missing children are skipped rather than combined as the identity
+            V aggregate = ownAggregate(node);
+            if (node.left != null)
+                aggregate = monoid.combine(node.left.aggregate, aggregate);
+            if (node.right != null)
+                aggregate = monoid.combine(aggregate, node.right.aggregate);
+            node.aggregate = aggregate;
+        }
+        int leftHeight = height(node.left);
+        int rightHeight = height(node.right);
+        if (leftHeight > rightHeight)
+            node.height = leftHeight + 1;
+        else
+            node.height = rightHeight + 1;
+    }
+
+    /**
+     * Returns the balance of a subtree
+     * 
+     * @param root the root of the subtree
+     * @return the balance of the subtree
+     */
+    private int getBalance(Node root) {
+        if (root != null)
+            return height(root.right) - height(root.left);
+        return 0;
+    }
+
+    /**
+     * Rightward rotation
+     * 
+     * @param node the node to be rotated around
+     * @return the new root of the subtree after the rotation
+     */
+    private Node rotateRight(Node node) {
+        // save values for rotation
+        Node leftChild = node.left;
+        Node leftRightChild = leftChild.right;
+        // rotate
+        leftChild.right = node;
+        node.left = leftRightChild;
+        // the old root is now the child, so it must be fixed first
+        update(node);
+        update(leftChild);
+        return leftChild;
+    }
+
+    /**
+     * Leftward rotation
+     * 
+     * @param node the node to rotated around
+     * @return the new root of the subtree after the rotation
+     */
+    private Node rotateLeft(Node node) {
+        // save values for rotation
+        Node rightChild = node.right;
+        Node rightLeftChild = rightChild.left;
+        // rotate
+        rightChild.left = node;
+        node.right = rightLeftChild;
+        // the old root is now the child, so it must be fixed first
+        update(node);
+        update(rightChild);
+        return rightChild;
+    }
+
+    /**
+     * Restores the AVL balance of a node whose subtrees are balanced
+     * 
+     * @param node the root of the subtree
+     * @return the new root of the subtree
+     */
+    private Node rebalance(Node node) {
+        update(node);
+        int balance = getBalance(node);
+        if (balance > 1) {
+            // right subtree, left imbalance
+            boolean rightLeft = getBalance(node.right) < 0;
+            if (metrics != null)
+                metrics.rotation(rightLeft ? TreeMetrics.Rotation.RL : TreeMetrics.Rotation.RR);
+            if (rightLeft)
+                node.right = rotateRight(node.right);
+            return rotateLeft(node);
+        }
+        if (balance < -1) {
+            // left subtree, right imbalance
+            boolean leftRight = getBalance(node.left) > 0;
+            if (metrics != null)
+                metrics.rotation(leftRight ? TreeMetrics.Rotation.LR : TreeMetrics.Rotation.LL);
+            if (leftRight)
+                node.left = rotateLeft(node.left);
+            return rotateRight(node);
+        }
+        return node;
+    }
+
+    /**
+     * Walks back up the recorded path after a node was linked or unlinked below
+     * path[depth - 1], rebalancing until a subtree's height stops changing
+     * Above that point only the subtree sizes and aggregates change
+     * 
+     * @param depth      the number of nodes on the path
+     * @param sizeChange +1 after an insertion, -1 after a deletion
+     * @return the number of leading path nodes that are still ancestors of the change
+     */
+    private int retrace(int depth, int sizeChange) {
+        Node[] path = this.path;
+        int kept = depth;
+        for (int i = depth - 1; i >= 0; i--) {
+            Node node = path[i];
+            int oldHeight = node.height;
+            Node subtree = rebalance(node);
+            if (subtree != node) {
+                kept = i;
+                if (i == 0)
+                    root = subtree;
+                else if (path[i - 1].left == node)
+                    path[i - 1].left = subtree;
+                else
+                    path[i - 1].right = subtree;
+            }
+            if (subtree.height == oldHeight) {
+                // no balance factor above can change any more
+                if (monoid != null)
+                    refresh(i);
+                else
+                    for (int j = i - 1; j >= 0; j--)
+                        path[j].size += sizeChange;
+                return kept;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Makes sure the path buffer can hold a root-to-leaf path of the tree
+     */
+    @SuppressWarnings("unchecked")
+    private void ensurePathCapacity() {
+        // a descent visits at most height + 1 nodes before the new leaf
+        if (path.length < height(root) + 2)
+            path = (Node[]) new AVLTree.Node[height(root) + 2];
+    }
+
+    /**
+     * Inserts a key-value pair into the AVL Tree and rebalances accordingly
+     * A key already in the tree is handled as chosen at construction
+     * Iterative: walks down once recording the path, then retraces it
+     * 
+     * @param key   the key of the node being inserted
+     * @param value the value stored by the node being inserted
+     */
+    public void insert(T key, V value) {
+        upsert(key, value, duplicates);
+    }
+
+    /**
+     * Associates a value with a key, replacing the value of an existing node in place
+     * In DuplicateKeys.BUCKET mode the value replaces every value of the key
+     * 
+     * @param key   the key to associate the value with
+     * @param value the new value
+     * @return the previous value of the key, or null if it was not in the tree
+     */
+    public V put(T key, V value) {
+        return upsert(key, value, DuplicateKeys.REPLACE);
+    }
+
+    /**
+     * Timed insertion behind insert and put
+     */
+    private V upsert(T key, V value, DuplicateKeys mode) {
+        ensurePathCapacity();
+        TreeMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        int depth = insert(0, root, key, value, mode != DuplicateKeys.ALLOW);
+        V previous = depth < 0 ? merge(-depth, value, mode) : null;
+        if (metrics != null)
+            metrics.insertLatency.record(System.nanoTime() - start);
+        return previous;
+    }
+
+    /**
+     * Applies an insert to the node that already holds its key, without allocating
+     * unless a new bucket is needed
+     * 
+     * @param depth the length of the recorded path, which ends at the node of the key
+     * @param value the inserted value
+     * @param mode  REPLACE or BUCKET
+     * @return the value that was replaced, or null if the value was added to the bucket
+     */
+    private V merge(int depth, V value, DuplicateKeys mode) {
+        Node node = path[depth - 1];
+        V previous = null;
+        if (mode == DuplicateKeys.BUCKET) {
+            if (node.bucket == null)
+                node.bucket = new ValueBucket<>();
+            node.bucket.add(value);
+        } else {
+            node.bucket = null;
+            previous = node.value;
+            node.value = value;
+        }
+        if (monoid != null)
+            refresh(depth);
+        return previous;
+    }
+
+    /**
+     * Recomputes the aggregates of the first depth nodes of the recorded path, bottom-up
+     * 
+     * @param depth the number of path nodes whose subtrees changed
+     */
+    private void refresh(int depth) {
+        for (int i = depth - 1; i >= 0; i--)
+            update(path[i]);
+    }
+
+    /**
+     * Continues an insertion from a node whose ancestors are already recorded on the path
+     * 
+     * @param depth the number of ancestors of trav on the path
+     * @param trav  the root of the subtree the key belongs in
+     * @param key   the key of the node being inserted
+     * @param value the value stored by the node being inserted
+     * @param merge whether to stop at a node that already holds the key instead of adding one
+     * @return the number of leading path nodes left in place by the rebalancing, or -d if
+     *         the key was found at path[d - 1] and nothing was changed
+     */
+    private int insert(int depth, Node trav, T key, V value, boolean merge) {
+        Node[] path = this.path;
+        int first = depth;
+        boolean left = false;
+        while (trav != null) {
+            path[depth++] = trav;
+            int comparison = key.compareTo(trav.key);
+            if (comparison == 0 && merge) {
+                if (metrics != null)
+                    metrics.comparisons += depth - first;
+                return -depth;
+            }
+            left = comparison < 0;
+            trav = left ? trav.left : trav.right;
+        }
+        if (metrics != null)
+            metrics.comparisons += depth - first;
+        modCount++;
+        // the only allocation, made once the key's position is known
+        Node node = new Node(key, value);
+        if (depth == 0) {
+            root = node;
+            return 0;
+        }
+        if (left)
+            path[depth - 1].left = node;
+        else
+            path[depth - 1].right = node;
+        return retrace(depth, 1);
+    }
+
+    /**
+     * Returns a specified node if it exists
+     * 
+     * @param key the value of the node to be searched for
+     * @return the value associated with the key
+     */
+    public V search(T key) {
+        TreeMetrics metrics = this.metrics;
+        if (metrics == null)
+            return search(root, key);
+        long start = System.nanoTime();
+        V value = search(root, key);
+        metrics.searchLatency.record(System.nanoTime() - start);
+        return value;
+    }
+
+    /**
+     * Searches a subtree with one comparison per visited node
+     * 
+     * @param trav the root of the subtree
+     * @param key  the key to be searched for
+     * @return the value associated with the key, or null if it is not in the subtree
+     */
+    private V search(Node trav, T key) {
+        int visited = 0;
+        while (trav != null) {
+            visited++;
+            int comparison = key.compareTo(trav.key);
+            if (comparison == 0)
+                break;
+            trav = comparison < 0 ? trav.left : trav.right;
+        }
+        if (metrics != null)
+            metrics.comparisons += visited;
+        return trav == null ? null : trav.value;
+    }
+
+    /**
+     * Looks up many keys in one descent: each node splits the sorted probes into
+     * those that continue left and right, so the upper levels of the tree are
+     * compared once per batch rather than once per key
+     * 
+     * @param sortedKeys the keys to look up in ascending order, repeats allowed
+     * @param out        receives the value of sortedKeys[i] at out[i], or null if it is not in the tree
+     * @throws IllegalArgumentException if the keys are not sorted or out is shorter than them
+     */
+    public void getBatch(T[] sortedKeys, V[] out) {
+        if (out.length < sortedKeys.length)
+            throw new IllegalArgumentException("out has " + out.length + " slots for " + sortedKeys.length + " keys");
+        for (int i = 1; i < sortedKeys.length; i++)
+            if (sortedKeys[i - 1].compareTo(sortedKeys[i]) > 0)
+                throw new IllegalArgumentException("keys are not sorted at index " + i);
+        getBatch(root, sortedKeys, 0, sortedKeys.length, out);
+    }
+
+    /**
+     * Looks up a list of keys in any order, sorting a copy of them once
+     * 
+     * @param keys the keys to look up
+     * @return the value of each key in the same order, null where it is not in the tree
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> getBatch(List<? extends T> keys) {
+        int n = keys.size();
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> keys.get(a).compareTo(keys.get(b)));
+        T[] sortedKeys = (T[]) new Comparable[n];
+        for (int i = 0; i < n; i++)
+            sortedKeys[i] = keys.get(order[i]);
+        V[] sortedValues = (V[]) new Object[n];
+        getBatch(root, sortedKeys, 0, n, sortedValues);
+        V[] values = (V[]) new Object[n];
+        for (int i = 0; i < n; i++)
+            values[order[i]] = sortedValues[i];
+        return Arrays.asList(values);
+    }
+
+    /**
+     * Resolves the probes in [from, to) against a subtree
+     * 
+     * @param trav the root of the subtree
+     */
+    private void getBatch(Node trav, T[] keys, int from, int to, V[] out) {
+        while (from < to) {
+            if (trav == null) {
+                Arrays.fill(out, from, to, null);
+                return;
+            }
+            if (to - from == 1) {
+                // a single probe left: an ordinary search is cheaper than splitting
+                out[from] = search(trav, keys[from]);
+                return;
+            }
+            // whole range on one side: descend without searching the probes
+            if (keys[to - 1].compareTo(trav.key) < 0) {
+                trav = trav.left;
+                continue;
+            }
+            if (keys[from].compareTo(trav.key) > 0) {
+                trav = trav.right;
+                continue;
+            }
+            // the node splits the range; find the first probe not smaller than its key
+            int low = from, high = to;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (keys[middle].compareTo(trav.key) < 0)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            int end = low;
+            while (end < to && keys[end].compareTo(trav.key) == 0)
+                out[end++] = trav.value;
+            getBatch(trav.left, keys, from, low, out);
+            from = end;
+            trav = trav.right;
+        }
+    }
+
+    /**
+     * Returns every value stored under a key, in key order of their nodes and then
+     * in insertion order within a bucket
+     * 
+     * @param key the key to be searched for
+     * @return the values of the key, empty if it is not in the tree
+     */
+    public List<V> searchAll(T key) {
+        List<V> values = new ArrayList<>();
+        EntryIterator iterator = new EntryIterator(key, null);
+        while (iterator.hasNext()) {
+            Node node = iterator.nextNode();
+            if (key.compareTo(node.key) != 0)
+                break;
+            values.add(node.value);
+            if (node.bucket != null)
+                node.bucket.addTo(values);
+        }
+        return values;
+    }
+
+    /**
+     * Returns the minimum key in the subtree
+     * Helper method for deletion
+     * 
+     * @param root root of the subtree
+     * @return the node with the smallest key
+     */
+    private Node minKey(Node root) {
+        Node trav = root;
+        while (trav.left != null)
+            trav = trav.left;
+        return trav;
+    }
+
+    /**
+     * Deletes a specified node if it exists
+     * Iterative: walks down once recording the path, then retraces it
+     * 
+     * @param key the key of the node to be deleted
+     */
+    public void delete(T key) {
+        TreeMetrics metrics = this.metrics;
+        if (metrics == null) {
+            deleteKey(key);
+            return;
+        }
+        long start = System.nanoTime();
+        deleteKey(key);
+        metrics.deleteLatency.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Iterative deletion behind delete
+     */
+    private void deleteKey(T key) {
+        ensurePathCapacity();
+        Node[] path = this.path;
+        int depth = 0;
+        Node trav = root;
+        while (trav != null) {
+            int comparison = key.compareTo(trav.key);
+            if (comparison == 0)
+                break;
+            path[depth++] = trav;
+            trav = comparison < 0 ? trav.left : trav.right;
+        }
+        if (metrics != null)
+            metrics.comparisons += trav == null ? depth : depth + 1;
+        if (trav == null)
+            return;
+        modCount++;
+        if (trav.left != null && trav.right != null) {
+            // two children: take over the successor's entry and unlink the successor instead
+            path[depth++] = trav;
+            Node successor = trav.right;
+            while (successor.left != null) {
+                path[depth++] = successor;
+                successor = successor.left;
+            }
+            trav.key = successor.key;
+            trav.value = successor.value;
+            trav.bucket = successor.bucket;
+            trav = successor;
+        }
+        // one or no children
+        Node child = trav.left != null ? trav.left : trav.right;
+        if (depth == 0)
+            root = child;
+        else if (path[depth - 1].left == trav)
+            path[depth - 1].left = child;
+        else
+            path[depth - 1].right = child;
+        retrace(depth, -1);
+    }
+
+    /**
+     * Returns the number of entries in the tree
+     * 
+     * @return the size of the tree
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Returns the k-th smallest key in the tree (0-indexed) in O(log n)
+     * 
+     * @param k the number of keys smaller than the one returned
+     * @return the key of rank k, or null if k is out of range
+     */
+    public T select(int k) {
+        Node node = selectNode(k);
+        if (node == null)
+            return null;
+        return node.key;
+    }
+
+    /**
+     * Returns the value with the k-th smallest key in the tree (1-indexed) in O(log n)
+     * 
+     * @param k the position from the smallest element
+     * @return the k-th smallest value in the tree, or null if k is out of range
+     */
+    public V kthSmallest(int k) {
+        Node node = selectNode(k - 1);
+        if (node == null)
+            return null;
+        return node.value;
+    }
+
+    /**
+     * Finds the node of a given rank using the subtree sizes
+     * 
+     * @param k the rank of the node (0-indexed)
+     * @return the node of rank k, or null if k is out of range
+     */
+    private Node selectNode(int k) {
+        if (k < 0 || k >= size(root))
+            return null;
+        Node trav = root;
+        while (true) {
+            int leftSize = size(trav.left);
+            if (k < leftSize)
+                trav = trav.left;
+            else if (k > leftSize) {
+                k -= leftSize + 1;
+                trav = trav.right;
+            } else
+                return trav;
+        }
+    }
+
+    /**
+     * Returns the number of keys in the tree that are strictly smaller than a key in O(log n)
+     * 
+     * @param key the key to rank, which does not need to be in the tree
+     * @return the rank of the key
+     */
+    public int rank(T key) {
+        int rank = 0;
+        Node trav = root;
+        while (trav != null) {
+            if (key.compareTo(trav.key) <= 0)
+                trav = trav.left;
+            else {
+                rank += size(trav.left) + 1;
+                trav = trav.right;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the aggregate of the values with keys in [fromKey, toKey) in O(log n),
+     * however many entries the range holds
+     * 
+     * @param fromKey the lowest key to include
+     * @param toKey   the key to stop before
+     * @return the aggregate of the values in key order, or the identity if the range is empty
+     * @throws IllegalStateException if the tree was created without a monoid
+     */
+    public V aggregate(T fromKey, T toKey) {
+        Objects.requireNonNull(fromKey);
+        Objects.requireNonNull(toKey);
+        if (monoid == null)
+            throw new IllegalStateException("the tree was created without a monoid");
+        // the first node inside the range splits it into a suffix of its left subtree and a prefix of its right
+        Node split = root;
+        while (split != null) {
+            if (split.key.compareTo(fromKey) < 0)
+                split = split.right;
+            else if (split.key.compareTo(toKey) >= 0)
+                split = split.left;
+            else
+                break;
+        }
+        if (split == null)
+            return monoid.identity();
+        V suffix = monoid.identity();
+        for (Node trav = split.left; trav != null;) {
+            if (trav.key.compareTo(fromKey) >= 0) {
+                // trav and its right subtree precede everything collected so far
+                suffix = monoid.combine(monoid.combine(ownAggregate(trav), aggregate(trav.right)), suffix);
+                trav = trav.left;
+            } else
+                trav = trav.right;
+        }
+        V prefix = monoid.identity();
+        for (Node trav = split.right; trav != null;) {
+            if (trav.key.compareTo(toKey) < 0) {
+                // trav and its left subtree follow everything collected so far
+                prefix = monoid.combine(prefix, monoid.combine(aggregate(trav.left), ownAggregate(trav)));
+                trav = trav.right;
+            } else
+                trav = trav.left;
+        }
+        return monoid.combine(monoid.combine(suffix, ownAggregate(split)), prefix);
+    }
+
+    /**
+     * Returns the aggregate of every value in the tree in O(1)
+     * 
+     * @return the aggregate of the values in key order, or the identity if the tree is empty
+     * @throws IllegalStateException if the tree was created without a monoid
+     */
+    public V aggregate() {
+        if (monoid == null)
+            throw new IllegalStateException("the tree was created without a monoid");
+        return aggregate(root);
+    }
+
+    /**
+     * Returns the entry with the greatest key less than or equal to a key in O(log n)
+     * 
+     * @param key the key to search around, which does not need to be in the tree
+     * @return an immutable snapshot of the entry, or null if there is none
+     */
+    public Map.Entry<T, V> floorEntry(T key) {
+        Node best = null;
+        Node trav = root;
+        while (trav != null) {
+            int comparison = key.compareTo(trav.key);
+            if (comparison == 0)
+                return snapshot(trav);
+            if (comparison < 0)
+                trav = trav.left;
+            else {
+                best = trav;
+                trav = trav.right;
+            }
+        }
+        return snapshot(best);
+    }
+
+    /**
+     * Returns the entry with the least key greater than or equal to a key in O(log n)
+     * 
+     * @param key the key to search around, which does not need to be in the tree
+     * @return an immutable snapshot of the entry, or null if there is none
+     */
+    public Map.Entry<T, V> ceilingEntry(T key) {
+        Node best = null;
+        Node trav = root;
+        while (trav != null) {
+            int comparison = key.compareTo(trav.key);
+            if (comparison == 0)
+                return snapshot(trav);
+            if (comparison > 0)
+                trav = trav.right;
+            else {
+                best = trav;
+                trav = trav.left;
+            }
+        }
+        return snapshot(best);
+    }
+
+    /**
+     * Returns the entry with the greatest key strictly less than a key in O(log n)
+     * 
+     * @param key the key to search around, which does not need to be in the tree
+     * @return an immutable snapshot of the entry, or null if there is none
+     */
+    public Map.Entry<T, V> lowerEntry(T key) {
+        Node best = null;
+        Node trav = root;
+        while (trav != null) {
+            if (key.compareTo(trav.key) <= 0)
+                trav = trav.left;
+            else {
+                best = trav;
+                trav = trav.right;
+            }
+        }
+        return snapshot(best);
+    }
+
+    /**
+     * Returns the entry with the least key strictly greater than a key in O(log n)
+     * 
+     * @param key the key to search around, which does not need to be in the tree
+     * @return an immutable snapshot of the entry, or null if there is none
+     */
+    public Map.Entry<T, V> higherEntry(T key) {
+        Node best = null;
+        Node trav = root;
+        while (trav != null) {
+            if (key.compareTo(trav.key) >= 0)
+                trav = trav.right;
+            else {
+                best = trav;
+                trav = trav.left;
+            }
+        }
+        return snapshot(best);
+    }
+
+    /**
+     * Returns the entry with the smallest key in O(log n)
+     * 
+     * @return an immutable snapshot of the entry, or null if the tree is empty
+     */
+    public Map.Entry<T, V> firstEntry() {
+        if (root == null)
+            return null;
+        Node trav = root;
+        while (trav.left != null)
+            trav = trav.left;
+        return snapshot(trav);
+    }
+
+    /**
+     * Returns the entry with the largest key in O(log n)
+     * 
+     * @return an immutable snapshot of the entry, or null if the tree is empty
+     */
+    public Map.Entry<T, V> lastEntry() {
+        if (root == null)
+            return null;
+        Node trav = root;
+        while (trav.right != null)
+            trav = trav.right;
+        return snapshot(trav);
+    }
+
+    /**
+     * Copies a node into an entry that stays valid after the tree changes
+     * Deletion moves keys between nodes, so nodes are never handed out here
+     */
+    private Map.Entry<T, V> snapshot(Node node) {
+        return node == null ? null : new AbstractMap.SimpleImmutableEntry<>(node.key, node.value);
+    }
+
+    /**
+     * Returns the height of the tree
+     * 
+     * @return the height of the tree, or -1 if it is empty
+     */
+    public int height() {
+        return height(root);
+    }
+
+    /**
+     * Recursive helper method for inorderRec
+     */
+    private List<V> inorder(Node root, List<V> list) {
+        if (root == null)
+            return list;
+        inorder(root.left, list);
+        list.add(root.value);
+        if (root.bucket != null)
+            root.bucket.addTo(list);
+        inorder(root.right, list);
+        return list;
+    }
+
+    /**
+     * Inorder traversal of the BST recursively
+     * 
+     * @return an inorder list of the values in the BST
+     */
+    public List<V> inorderRec() {
+        ArrayList<V> list = new ArrayList<V>();
+        return inorder(root, list);
+    }
+
+    /**
+     * Recursive helper method for postorder
+     */
+    private List<V> postorder(Node root, List<V> list) {
+        if (root == null)
+            return list;
+        postorder(root.left, list);
+        postorder(root.right, list);
+        list.add(root.value);
+        if (root.bucket != null)
+            root.bucket.addTo(list);
+        return list;
+    }
+
+    /**
+     * Returns a list containing the post order traversal of the tree
+     * 
+     * @return list in postorder traversal
+     */
+    public List<V> postorder() {
+        LinkedList<V> list = new LinkedList<>();
+        return postorder(root, list);
+    }
+
+    /**
+     * Result of splitting a subtree around a key
+     */
+    private class Split {
+        /** subtree of the keys before the split key */
+        private Node left;
+
+        /** node holding the split key, or null if the key was not found */
+        private Node middle;
+
+        /** subtree of the keys after the split key */
+        private Node right;
+    }
+
+    /**
+     * Joins two subtrees with a middle node between them into one balanced subtree
+     * Runs in O(|height(left) - height(right)| + 1)
+     * 
+     * @param left   the subtree of the keys before middle
+     * @param middle the node to place between the subtrees
+     * @param right  the subtree of the keys after middle
+     * @return the root of the joined subtree
+     */
+    private Node join(Node left, Node middle, Node right) {
+        if (height(left) > height(right) + 1)
+            return joinRight(left, middle, right);
+        if (height(right) > height(left) + 1)
+            return joinLeft(left, middle, right);
+        middle.left = left;
+        middle.right = right;
+        update(middle);
+        return middle;
+    }
+
+    /**
+     * Joins along the right spine of a left subtree that is more than one level taller
+     */
+    private Node joinRight(Node left, Node middle, Node right) {
+        if (height(left.right) <= height(right) + 1) {
+            middle.left = left.right;
+            middle.right = right;
+            update(middle);
+            left.right = middle;
+            if (height(middle) <= height(left.left) + 1) {
+                update(left);
+                return left;
+            }
+            // right subtree, left imbalance
+            left.right = rotateRight(middle);
+            return rotateLeft(left);
+        }
+        left.right = joinRight(left.right, middle, right);
+        update(left);
+        // right subtree, right imbalance
+        if (height(left.right) > height(left.left) + 1)
+            return rotateLeft(left);
+        return left;
+    }
+
+    /**
+     * Joins along the left spine of a right subtree that is more than one level taller
+     */
+    private Node joinLeft(Node left, Node middle, Node right) {
+        if (height(right.left) <= height(left) + 1) {
+            middle.left = left;
+            middle.right = right.left;
+            update(middle);
+            right.left = middle;
+            if (height(middle) <= height(right.right) + 1) {
+                update(right);
+                return right;
+            }
+            // left subtree, right imbalance
+            right.left = rotateLeft(middle);
+            return rotateRight(right);
+        }
+        right.left = joinLeft(left, middle, right.left);
+        update(right);
+        // left subtree, left imbalance
+        if (height(right.left) > height(right.right) + 1)
+            return rotateRight(right);
+        return right;
+    }
+
+    /**
+     * Joins two subtrees, where every key in left comes before every key in right
+     * 
+     * @return the root of the joined subtree
+     */
+    private Node join2(Node left, Node right) {
+        if (left == null)
+            return right;
+        Split split = new Split();
+        splitLast(left, split);
+        return join(split.left, split.middle, right);
+    }
+
+    /**
+     * Detaches the node with the largest key from a non-empty subtree
+     * 
+     * @param node the root of the subtree
+     * @param out  receives the rest of the subtree as left and the detached node as middle
+     */
+    private void splitLast(Node node, Split out) {
+        if (node.right == null) {
+            out.left = node.left;
+            out.middle = node;
+            return;
+        }
+        splitLast(node.right, out);
+        out.left = join(node.left, node, out.left);
+    }
+
+    /**
+     * Splits a subtree into the keys smaller than, equal to and larger than a key
+     * If the key appears more than once, only one occurrence ends up as middle
+     * 
+     * @param node the root of the subtree
+     * @param key  the key to split around
+     * @param out  receives the three parts
+     */
+    private void split(Node node, T key, Split out) {
+        if (node == null) {
+            out.left = out.middle = out.right = null;
+            return;
+        }
+        int comparison = key.compareTo(node.key);
+        if (comparison < 0) {
+            split(node.left, key, out);
+            out.right = join(out.right, node, node.right);
+        } else if (comparison > 0) {
+            split(node.right, key, out);
+            out.left = join(node.left, node, out.left);
+        } else {
+            out.left = node.left;
+            out.middle = node;
+            out.right = node.right;
+        }
+    }
+
+    /**
+     * Splits a subtree into the keys smaller than a key and the rest
+     * 
+     * @param node the root of the subtree
+     * @param key  the first key of the right part
+     * @param out  receives the parts as left and right
+     */
+    private void splitBefore(Node node, T key, Split out) {
+        if (node == null) {
+            out.left = out.right = null;
+            return;
+        }
+        if (key.compareTo(node.key) <= 0) {
+            splitBefore(node.left, key, out);
+            out.right = join(out.right, node, node.right);
+        } else {
+            splitBefore(node.right, key, out);
+            out.left = join(node.left, node, out.left);
+        }
+    }
+
+    /**
+     * Returns whether a pair of subtrees is worth splitting across threads
+     */
+    private boolean forkable(Node a, Node b) {
+        return size(a) + size(b) >= PARALLEL_THRESHOLD;
+    }
+
+    /**
+     * Recursive union of two subtrees; entries of b win over entries of a with equal keys
+     * Both subtrees are consumed
+     */
+    private Node union(Node a, Node b) {
+        if (a == null)
+            return b;
+        if (b == null)
+            return a;
+        boolean fork = forkable(a, b);
+        Split split = new Split();
+        split(a, b.key, split);
+        Node bLeft = b.left;
+        Node bRight = b.right;
+        Node left, right;
+        if (fork) {
+            ForkJoinTask<Node> task = ForkJoinTask.adapt(() -> union(split.left, bLeft)).fork();
+            right = union(split.right, bRight);
+            left = task.join();
+        } else {
+            left = union(split.left, bLeft);
+            right = union(split.right, bRight);
+        }
+        return join(left, b, right);
+    }
+
+    /**
+     * Recursive intersection of two subtrees, keeping the entries of a
+     * a is consumed, b is only read
+     */
+    private Node intersection(Node a, Node b) {
+        if (a == null || b == null)
+            return null;
+        boolean fork = forkable(a, b);
+        Split split = new Split();
+        split(a, b.key, split);
+        Node left, right;
+        if (fork) {
+            ForkJoinTask<Node> task = ForkJoinTask.adapt(() -> intersection(split.left, b.left)).fork();
+            right = intersection(split.right, b.right);
+            left = task.join();
+        } else {
+            left = intersection(split.left, b.left);
+            right = intersection(split.right, b.right);
+        }
+        if (split.middle != null)
+            return join(left, split.middle, right);
+        return join2(left, right);
+    }
+
+    /**
+     * Recursive difference of two subtrees, keeping the entries of a whose keys are not in b
+     * a is consumed, b is only read
+     */
+    private Node difference(Node a, Node b) {
+        if (a == null)
+            return null;
+        if (b == null)
+            return a;
+        boolean fork = forkable(a, b);
+        Split split = new Split();
+        split(a, b.key, split);
+        Node left, right;
+        if (fork) {
+            ForkJoinTask<Node> task = ForkJoinTask.adapt(() -> difference(split.left, b.left)).fork();
+            right = difference(split.right, b.right);
+            left = task.join();
+        } else {
+            left = difference(split.left, b.left);
+            right = difference(split.right, b.right);
+        }
+        return join2(left, right);
+    }
+
+    /**
+     * Throws if a tree is used in a set operation with itself
+     */
+    private void checkOther(AVLTree<T, V> other) {
+        if (other == this)
+            throw new IllegalArgumentException("a tree cannot be combined with itself");
+        if (other.monoid != monoid)
+            throw new IllegalArgumentException("trees cache different aggregates");
+    }
+
+    /**
+     * Moves all entries of another tree to the end of this one in O(log n)
+     * Every key in this tree must be smaller than or equal to every key in other
+     * 
+     * @param other the tree to append, which is left empty
+     */
+    public void join(AVLTree<T, V> other) {
+        checkOther(other);
+        if (root != null && other.root != null) {
+            Node last = root;
+            while (last.right != null)
+                last = last.right;
+            if (last.key.compareTo(other.minKey(other.root).key) > 0)
+                throw new IllegalArgumentException("trees overlap");
+        }
+        modCount++;
+        other.modCount++;
+        root = join2(root, other.root);
+        other.root = null;
+    }
+
+    /**
+     * Splits the tree around a key in O(log n)
+     * This tree keeps the keys smaller than key, the rest are moved to the returned tree
+     * 
+     * @param key the smallest key of the returned tree
+     * @return a new tree with every entry whose key is at least key
+     */
+    public AVLTree<T, V> split(T key) {
+        Split split = new Split();
+        splitBefore(root, key, split);
+        modCount++;
+        root = split.left;
+        AVLTree<T, V> tail = new AVLTree<>(duplicates, monoid);
+        tail.root = split.right;
+        return tail;
+    }
+
+    /**
+     * Adds every entry of another tree to this one, in O(m log(n/m + 1)) work for sizes m <= n
+     * Entries of other replace entries of this tree with the same key. Large inputs are
+     * processed in parallel on the common ForkJoinPool.
+     * 
+     * @param other the tree to merge in, which is left empty
+     */
+    public void union(AVLTree<T, V> other) {
+        checkOther(other);
+        Node a = root;
+        Node b = other.root;
+        modCount++;
+        other.modCount++;
+        root = ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(() -> union(a, b)));
+        other.root = null;
+    }
+
+    /**
+     * Removes every entry whose key is not in another tree, in O(m log(n/m + 1)) work
+     * Large inputs are processed in parallel on the common ForkJoinPool.
+     * 
+     * @param other the tree whose keys are kept, which is not modified
+     */
+    public void intersection(AVLTree<T, V> other) {
+        checkOther(other);
+        Node a = root;
+        Node b = other.root;
+        modCount++;
+        root = ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(() -> intersection(a, b)));
+    }
+
+    /**
+     * Removes every entry whose key is in another tree, in O(m log(n/m + 1)) work
+     * Large inputs are processed in parallel on the common ForkJoinPool.
+     * 
+     * @param other the tree whose keys are removed, which is not modified
+     */
+    public void difference(AVLTree<T, V> other) {
+        checkOther(other);
+        Node a = root;
+        Node b = other.root;
+        modCount++;
+        root = ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(() -> difference(a, b)));
+    }
+
+    /**
+     * Starts collecting metrics for this tree, or returns the ones already being collected
+     * 
+     * @return the metrics, which can be registered with JMX
+     */
+    public TreeMetrics enableMetrics() {
+        if (metrics == null)
+            metrics = new TreeMetrics(this::size, this::height);
+        return metrics;
+    }
+
+    /**
+     * Stops collecting metrics; metrics already handed out stop being updated
+     */
+    public void disableMetrics() {
+        metrics = null;
+    }
+
+    /**
+     * Returns a snapshot of the metrics of this tree
+     * 
+     * @return the current metrics
+     * @throws IllegalStateException if metrics are not enabled
+     */
+    public TreeStats stats() {
+        if (metrics == null)
+            throw new IllegalStateException("metrics are not enabled");
+        return metrics.stats();
+    }
+
+    /**
+     * Returns a cursor for finger searches starting from the root
+     * 
+     * @return a new cursor over this tree
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Finger into the tree that remembers the root-to-node path of its last access
+     * 
+     * Each level of the path carries the open key interval its subtree covers. An
+     * access climbs from the last position only until the key falls strictly inside
+     * an interval, then descends from there, so runs of nearby keys, sequential
+     * ones in particular, skip the upper levels of the tree. A key far from the last
+     * one still climbs to the root, and costs the same O(log n) as a plain search.
+     * 
+     * Any modification of the tree not made through this cursor sends it back to
+     * the root on its next access.
+     */
+    public class Cursor {
+        /** nodes on the path from the root to the last accessed node */
+        private Node[] nodes;
+
+        /** exclusive key bounds of the subtree at each level, null where unbounded */
+        private T[] lower, upper;
+
+        /** number of nodes on the path */
+        private int depth;
+
+        /** modCount of the tree when the path was recorded */
+        private int expectedModCount;
+
+        @SuppressWarnings("unchecked")
+        private Cursor() {
+            nodes = (Node[]) new AVLTree.Node[32];
+            lower = (T[]) new Comparable[32];
+            upper = (T[]) new Comparable[32];
+            expectedModCount = modCount;
+        }
+
+        /**
+         * Returns whether a key lies strictly inside the interval of a level
+         */
+        private boolean covers(int level, T key) {
+            return (lower[level] == null || key.compareTo(lower[level]) > 0)
+                    && (upper[level] == null || key.compareTo(upper[level]) < 0);
+        }
+
+        /**
+         * Shortens the path to the deepest level whose subtree must hold key
+         * 
+         * @return the number of levels kept, 0 if the access has to start at the root
+         */
+        private int climb(T key) {
+            if (expectedModCount != modCount) {
+                // the recorded nodes may have been rotated or unlinked
+                depth = 0;
+                expectedModCount = modCount;
+            }
+            int level = depth;
+            while (level > 1 && !covers(level - 1, key))
+                level--;
+            return level;
+        }
+
+        /**
+         * Appends a node to the path, deriving its bounds from its parent on the path
+         */
+        private void push(Node node) {
+            if (depth == nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * depth);
+                lower = Arrays.copyOf(lower, 2 * depth);
+                upper = Arrays.copyOf(upper, 2 * depth);
+            }
+            if (depth == 0)
+                lower[0] = upper[0] = null;
+            else {
+                Node parent = nodes[depth - 1];
+                if (parent.left == node) {
+                    lower[depth] = lower[depth - 1];
+                    upper[depth] = parent.key;
+                } else {
+                    lower[depth] = parent.key;
+                    upper[depth] = upper[depth - 1];
+                }
+            }
+            nodes[depth++] = node;
+        }
+
+        /**
+         * Returns the value associated with a key, starting from the last position
+         * 
+         * @param key the key to be searched for
+         * @return the value associated with the key, or null if it is not in the tree
+         */
+        public V search(T key) {
+            long start = metrics == null ? 0 : System.nanoTime();
+            int level = climb(key);
+            Node trav = level == 0 ? root : nodes[level - 1];
+            depth = Math.max(level - 1, 0);
+            while (trav != null) {
+                push(trav);
+                int comparison = key.compareTo(trav.key);
+                if (comparison == 0)
+                    break;
+                trav = comparison < 0 ? trav.left : trav.right;
+            }
+            if (metrics != null) {
+                metrics.comparisons += depth - Math.max(level - 1, 0);
+                metrics.searchLatency.record(System.nanoTime() - start);
+            }
+            return trav == null ? null : trav.value;
+        }
+
+        /**
+         * Inserts a key-value pair, starting from the last position, and rebalances accordingly
+         * A key already in the tree is handled as chosen at construction
+         * 
+         * @param key   the key of the node being inserted
+         * @param value the value stored by the node being inserted
+         */
+        public void insert(T key, V value) {
+            long started = metrics == null ? 0 : System.nanoTime();
+            int level = climb(key);
+            ensurePathCapacity();
+            int start = Math.max(level - 1, 0);
+            System.arraycopy(nodes, 0, path, 0, start);
+            int kept = AVLTree.this.insert(start, level == 0 ? root : nodes[start], key, value,
+                    duplicates != DuplicateKeys.ALLOW);
+            expectedModCount = modCount;
+            if (kept < 0) {
+                // the key was found, so the whole path down to its node is still valid
+                kept = -kept;
+                merge(kept, value, duplicates);
+            }
+            // the levels below the first rotation no longer match the tree
+            depth = Math.min(start, kept);
+            while (depth < kept)
+                push(path[depth]);
+            if (metrics != null)
+                metrics.insertLatency.record(System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Writes the tree to a snapshot file that MappedAVLSnapshot can serve without loading it
+     * In DuplicateKeys.BUCKET mode every value of a key gets its own entry
+     * 
+     * @param file       the file to write, replaced if it exists
+     * @param keyCodec   the encoding of the keys
+     * @param valueCodec the encoding of the values
+     * @throws IOException if the file cannot be written
+     */
+    public void writeSnapshot(Path file, Codec<T> keyCodec, Codec<V> valueCodec) throws IOException {
+        MappedAVLSnapshot.write(file, entries(), keyCodec, valueCodec);
+    }
+
+    /**
+     * Returns an iterator over the entries of the tree in key order
+     * Entries are produced lazily using O(log n) extra memory
+     * In DuplicateKeys.BUCKET mode each key appears once, with its first value
+     * 
+     * @return an iterator over all entries
+     */
+    @Override
+    public Iterator<Map.Entry<T, V>> iterator() {
+        return new EntryIterator(null, null);
+    }
+
+    /**
+     * Returns every value of the tree with its key, in key order
+     * In DuplicateKeys.BUCKET mode a key appears once per value, in insertion order
+     * 
+     * @return the entries, one per value
+     */
+    @Override
+    public Iterable<Map.Entry<T, V>> entries() {
+        return duplicates == DuplicateKeys.BUCKET ? ValueIterator::new : this;
+    }
+
+    /**
+     * Returns a spliterator over the entries of the tree in key order
+     * It splits by rank using the subtree sizes, so both halves know their exact
+     * size and the traversal never materializes a list
+     * 
+     * @return a fail-fast spliterator over all entries
+     */
+    @Override
+    public Spliterator<Map.Entry<T, V>> spliterator() {
+        return new EntrySpliterator(0, size(root), modCount);
+    }
+
+    /**
+     * Returns a sequential stream over the entries of the tree in key order
+     * 
+     * @return a stream of the entries
+     */
+    public Stream<Map.Entry<T, V>> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns a parallel stream over the entries of the tree in key order
+     * 
+     * @return a possibly parallel stream of the entries
+     */
+    public Stream<Map.Entry<T, V>> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Returns the entries with keys in [fromKey, toKey) in key order
+     * Finding the first entry costs O(log n), after which each entry costs O(1) amortized
+     * 
+     * @param fromKey the lowest key to include
+     * @param toKey   the key to stop before
+     * @return a lazy view of the entries in the range
+     */
+    public Iterable<Map.Entry<T, V>> range(T fromKey, T toKey) {
+        Objects.requireNonNull(fromKey);
+        Objects.requireNonNull(toKey);
+        return () -> new EntryIterator(fromKey, toKey);
+    }
+
+    /**
+     * Returns the entries with keys strictly less than toKey in key order
+     * 
+     * @param toKey the key to stop before
+     * @return a lazy view of the entries in the range
+     */
+    public Iterable<Map.Entry<T, V>> headRange(T toKey) {
+        Objects.requireNonNull(toKey);
+        return () -> new EntryIterator(null, toKey);
+    }
+
+    /**
+     * Returns the entries with keys greater than or equal to fromKey in key order
+     * 
+     * @param fromKey the lowest key to include
+     * @return a lazy view of the entries in the range
+     */
+    public Iterable<Map.Entry<T, V>> tailRange(T fromKey) {
+        Objects.requireNonNull(fromKey);
+        return () -> new EntryIterator(fromKey, null);
+    }
+
+    /**
+     * Inorder iterator with an explicit stack bounded by the height of the tree
+     */
+    private class EntryIterator implements Iterator<Map.Entry<T, V>> {
+        /** nodes whose entry and right subtree are still to be visited, next one on top */
+        private final Node[] stack;
+
+        /** number of nodes on the stack */
+        private int top;
+
+        /** the key to stop before, or null to run to the end of the tree */
+        private final T toKey;
+
+        /** modCount of the tree when the iterator was created */
+        private final int expectedModCount;
+
+        /**
+         * Descends to the first entry not smaller than fromKey
+         * 
+         * @param fromKey the lowest key to include, or null to start at the smallest key
+         * @param toKey   the key to stop before, or null to run to the end of the tree
+         */
+        @SuppressWarnings("unchecked")
+        private EntryIterator(T fromKey, T toKey) {
+            stack = (Node[]) new AVLTree.Node[height(root) + 1];
+            this.toKey = toKey;
+            expectedModCount = modCount;
+            Node trav = root;
+            while (trav != null) {
+                if (fromKey == null || fromKey.compareTo(trav.key) <= 0) {
+                    stack[top++] = trav;
+                    trav = trav.left;
+                } else
+                    trav = trav.right;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return top > 0 && (toKey == null || toKey.compareTo(stack[top - 1].key) > 0);
+        }
+
+        @Override
+        public Map.Entry<T, V> next() {
+            return nextNode();
+        }
+
+        /**
+         * Returns the next node, which is also its entry
+         */
+        private Node nextNode() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Node next = stack[--top];
+            // the successors in the right subtree go on the stack, smallest on top
+            for (Node trav = next.right; trav != null; trav = trav.left)
+                stack[top++] = trav;
+            return next;
+        }
+    }
+
+    /**
+     * Iterator over every value of the tree, the values of a bucket following the
+     * entry of their node
+     */
+    private class ValueIterator implements Iterator<Map.Entry<T, V>> {
+        /** the nodes in key order */
+        private final EntryIterator nodes = new EntryIterator(null, null);
+
+        /** the node whose bucket is being produced, or null */
+        private Node node;
+
+        /** position of the next value in the bucket of node */
+        private int index;
+
+        @Override
+        public boolean hasNext() {
+            return node != null || nodes.hasNext();
+        }
+
+        @Override
+        public Map.Entry<T, V> next() {
+            if (node != null) {
+                Map.Entry<T, V> entry = new AbstractMap.SimpleImmutableEntry<>(node.key, node.bucket.get(index++));
+                if (index == node.bucket.size())
+                    node = null;
+                return entry;
+            }
+            Node next = nodes.nextNode();
+            if (next.bucket != null && next.bucket.size() > 0) {
+                node = next;
+                index = 0;
+            }
+            return next;
+        }
+    }
+
+    /**
+     * Spliterator over a range of ranks: splitting halves the range without
+     * touching the tree, and the first traversal descends to the first rank in O(h)
+     */
+    private class EntrySpliterator implements Spliterator<Map.Entry<T, V>> {
+        /** rank of the next entry */
+        private int from;
+
+        /** rank after the last entry */
+        private final int to;
+
+        /** modCount of the tree when the spliterator was created */
+        private final int expectedModCount;
+
+        /** nodes whose entry and right subtree are still to be visited, null until traversal starts */
+        private Node[] stack;
+
+        /** number of nodes on the stack */
+        private int top;
+
+        private EntrySpliterator(int from, int to, int expectedModCount) {
+            this.from = from;
+            this.to = to;
+            this.expectedModCount = expectedModCount;
+        }
+
+        /**
+         * Descends to the node of rank from, stacking the nodes that follow it
+         */
+        @SuppressWarnings("unchecked")
+        private void start() {
+            stack = (Node[]) new AVLTree.Node[height(root) + 1];
+            int k = from;
+            Node trav = root;
+            while (trav != null) {
+                int leftSize = size(trav.left);
+                if (k <= leftSize) {
+                    stack[top++] = trav;
+                    if (k == leftSize)
+                        break;
+                    trav = trav.left;
+                } else {
+                    k -= leftSize + 1;
+                    trav = trav.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Map.Entry<T, V>> action) {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (from >= to)
+                return false;
+            if (stack == null)
+                start();
+            Node next = stack[--top];
+            // the successors in the right subtree go on the stack, smallest on top
+            for (Node trav = next.right; trav != null; trav = trav.left)
+                stack[top++] = trav;
+            from++;
+            action.accept(next);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Map.Entry<T, V>> action) {
+            while (tryAdvance(action))
+                ;
+        }
+
+        @Override
+        public Spliterator<Map.Entry<T, V>> trySplit() {
+            // once traversal has started the stack belongs to this half
+            if (stack != null || to - from < 2)
+                return null;
+            int middle = (from + to) >>> 1;
+            EntrySpliterator prefix = new EntrySpliterator(from, middle, expectedModCount);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            // not DISTINCT: duplicate keys may carry equal values
+            return ORDERED | SORTED | SIZED | SUBSIZED | NONNULL;
+        }
+
+        @Override
+        public Comparator<? super Map.Entry<T, V>> getComparator() {
+            return Map.Entry.comparingByKey();
+        }
+    }
+}
@@ -0,0 +1,553 @@
+package io.github.charlin2.trees;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Implementation of a B-tree (CLRS, chapter 18)
+ * 
+ * Each node keeps up to order - 1 keys in one contiguous array and is searched
+ * by binary search, so a lookup visits about log_order(n) nodes instead of the
+ * log2(n) nodes of a binary tree. Insert splits full nodes and delete tops up
+ * sparse ones on the way down, so both finish in a single pass.
+ * 
+ * Duplicate keys are allowed, as in AVLTree; a new duplicate goes after the
+ * existing ones.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public class BTree<T extends Comparable<T>, V> implements SearchTree<T, V> {
+    /** maximum number of children per node used by the default constructor */
+    public static final int DEFAULT_ORDER = 64;
+
+    /** minimum degree t: every node but the root has between t - 1 and 2t - 1 keys */
+    private final int minDegree;
+
+    /** root of the tree, a leaf with no keys when the tree is empty */
+    private Node root;
+
+    /** number of entries in the tree */
+    private int size;
+
+    /** number of levels below the root */
+    private int height;
+
+    /** number of structural modifications, used by iterators to detect them */
+    private int modCount;
+
+    /**
+     * Individual nodes of the tree
+     */
+    private static final class Node {
+        /** sorted keys of the node; only the first count are in use */
+        private final Object[] keys;
+
+        /** value of each key */
+        private final Object[] values;
+
+        /** count + 1 children, or null for a leaf */
+        private final Node[] children;
+
+        /** number of keys in the node */
+        private int count;
+
+        private Node(int maxKeys, boolean leaf) {
+            keys = new Object[maxKeys];
+            values = new Object[maxKeys];
+            children = leaf ? null : new Node[maxKeys + 1];
+        }
+    }
+
+    /**
+     * Creates a new B-tree with the default order
+     */
+    public BTree() {
+        this(DEFAULT_ORDER);
+    }
+
+    /**
+     * Creates a new B-tree
+     * 
+     * @param order the maximum number of children per node, rounded down to an even number
+     */
+    public BTree(int order) {
+        if (order < 4)
+            throw new IllegalArgumentException("order must be at least 4: " + order);
+        minDegree = order / 2;
+        root = new Node(maxKeys(), true);
+    }
+
+    /**
+     * Returns the maximum number of keys in a node
+     */
+    private int maxKeys() {
+        return 2 * minDegree - 1;
+    }
+
+    /**
+     * Returns the index of the first key in a node that is not smaller than key
+     */
+    @SuppressWarnings("unchecked")
+    private int lowerBound(Node node, T key) {
+        int low = 0, high = node.count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (key.compareTo((T) node.keys[middle]) > 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index of the first key in a node that is larger than key
+     */
+    @SuppressWarnings("unchecked")
+    private int upperBound(Node node, T key) {
+        int low = 0, high = node.count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (key.compareTo((T) node.keys[middle]) >= 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Returns whether key i of a node equals key
+     */
+    @SuppressWarnings("unchecked")
+    private boolean matches(Node node, int i, T key) {
+        return i < node.count && key.compareTo((T) node.keys[i]) == 0;
+    }
+
+    /**
+     * Returns the value associated with a key if it exists
+     * 
+     * @param key the key to be searched for
+     * @return the value associated with the key, or null if it is not in the tree
+     */
+    @SuppressWarnings("unchecked")
+    public V search(T key) {
+        Node node = root;
+        while (true) {
+            int i = lowerBound(node, key);
+            if (matches(node, i, key))
+                return (V) node.values[i];
+            if (node.children == null)
+                return null;
+            node = node.children[i];
+        }
+    }
+
+    /**
+     * Inserts a key-value pair into the tree
+     * 
+     * @param key   the key of the entry being inserted
+     * @param value the value stored with the key
+     */
+    public void insert(T key, V value) {
+        modCount++;
+        if (root.count == maxKeys()) {
+            // the tree grows at the top
+            Node newRoot = new Node(maxKeys(), false);
+            newRoot.children[0] = root;
+            splitChild(newRoot, 0);
+            root = newRoot;
+            height++;
+        }
+        Node node = root;
+        while (true) {
+            int i = upperBound(node, key);
+            if (node.children == null) {
+                System.arraycopy(node.keys, i, node.keys, i + 1, node.count - i);
+                System.arraycopy(node.values, i, node.values, i + 1, node.count - i);
+                node.keys[i] = key;
+                node.values[i] = value;
+                node.count++;
+                size++;
+                return;
+            }
+            // split full nodes on the way down so there is always room for a key from below
+            if (node.children[i].count == maxKeys()) {
+                splitChild(node, i);
+                if (key.compareTo(keyAt(node, i)) >= 0)
+                    i++;
+            }
+            node = node.children[i];
+        }
+    }
+
+    /**
+     * Returns key i of a node
+     */
+    @SuppressWarnings("unchecked")
+    private T keyAt(Node node, int i) {
+        return (T) node.keys[i];
+    }
+
+    /**
+     * Splits the full child i of a node around its median key, which moves up into the node
+     */
+    private void splitChild(Node parent, int i) {
+        int t = minDegree;
+        Node child = parent.children[i];
+        Node sibling = new Node(maxKeys(), child.children == null);
+        System.arraycopy(child.keys, t, sibling.keys, 0, t - 1);
+        System.arraycopy(child.values, t, sibling.values, 0, t - 1);
+        if (child.children != null) {
+            System.arraycopy(child.children, t, sibling.children, 0, t);
+            clear(child.children, t, 2 * t);
+        }
+        sibling.count = t - 1;
+
+        System.arraycopy(parent.keys, i, parent.keys, i + 1, parent.count - i);
+        System.arraycopy(parent.values, i, parent.values, i + 1, parent.count - i);
+        System.arraycopy(parent.children, i + 1, parent.children, i + 2, parent.count - i);
+        parent.keys[i] = child.keys[t - 1];
+        parent.values[i] = child.values[t - 1];
+        parent.children[i + 1] = sibling;
+        parent.count++;
+
+        clear(child.keys, t - 1, 2 * t - 1);
+        clear(child.values, t - 1, 2 * t - 1);
+        child.count = t - 1;
+    }
+
+    /**
+     * Drops references from unused array slots so they can be collected
+     */
+    private static void clear(Object[] array, int from, int to) {
+        for (int i = from; i < to; i++)
+            array[i] = null;
+    }
+
+    /**
+     * Deletes a key if it exists
+     * 
+     * @param key the key to be deleted
+     */
+    public void delete(T key) {
+        if (remove(key)) {
+            size--;
+            modCount++;
+        }
+        if (root.count == 0 && root.children != null) {
+            // the tree shrinks at the top
+            root = root.children[0];
+            height--;
+            modCount++;
+        }
+    }
+
+    /**
+     * Single-pass delete: every child descended into is first given at least t keys
+     * 
+     * @return whether the key was found
+     */
+    private boolean remove(T key) {
+        int t = minDegree;
+        Node node = root;
+        while (true) {
+            int i = lowerBound(node, key);
+            if (matches(node, i, key)) {
+                if (node.children == null) {
+                    removeFromLeaf(node, i);
+                    return true;
+                }
+                // replace the key with its predecessor or successor, whichever can spare one
+                if (node.children[i].count >= t) {
+                    removeLast(node.children[i], node, i);
+                    return true;
+                }
+                if (node.children[i + 1].count >= t) {
+                    removeFirst(node.children[i + 1], node, i);
+                    return true;
+                }
+                // both neighbours are minimal: merge them around the key and continue below
+                merge(node, i);
+                node = node.children[i];
+                continue;
+            }
+            if (node.children == null)
+                return false;
+            node = node.children[fill(node, i)];
+        }
+    }
+
+    /**
+     * Removes the largest entry below a node, storing it into entry i of target
+     */
+    private void removeLast(Node node, Node target, int i) {
+        while (node.children != null)
+            node = node.children[fill(node, node.count)];
+        target.keys[i] = node.keys[node.count - 1];
+        target.values[i] = node.values[node.count - 1];
+        removeFromLeaf(node, node.count - 1);
+    }
+
+    /**
+     * Removes the smallest entry below a node, storing it into entry i of target
+     */
+    private void removeFirst(Node node, Node target, int i) {
+        while (node.children != null)
+            node = node.children[fill(node, 0)];
+        target.keys[i] = node.keys[0];
+        target.values[i] = node.values[0];
+        removeFromLeaf(node, 0);
+    }
+
+    private void removeFromLeaf(Node node, int i) {
+        System.arraycopy(node.keys, i + 1, node.keys, i, node.count - i - 1);
+        System.arraycopy(node.values, i + 1, node.values, i, node.count - i - 1);
+        node.count--;
+        node.keys[node.count] = null;
+        node.values[node.count] = null;
+    }
+
+    /**
+     * Makes sure child i of a node has at least t keys, borrowing from a sibling or merging
+     * This moves entries between nodes even if the key being deleted turns out to be absent,
+     * so it counts as a structural modification
+     * 
+     * @return the index of the child that now covers the keys child i covered
+     */
+    private int fill(Node node, int i) {
+        int t = minDegree;
+        if (node.children[i].count >= t)
+            return i;
+        modCount++;
+        if (i > 0 && node.children[i - 1].count >= t)
+            borrowFromLeft(node, i);
+        else if (i < node.count && node.children[i + 1].count >= t)
+            borrowFromRight(node, i);
+        else if (i < node.count)
+            merge(node, i);
+        else {
+            merge(node, i - 1);
+            return i - 1;
+        }
+        return i;
+    }
+
+    /**
+     * Rotates the last key of child i - 1 through the node into child i
+     */
+    private void borrowFromLeft(Node node, int i) {
+        Node child = node.children[i];
+        Node sibling = node.children[i - 1];
+        System.arraycopy(child.keys, 0, child.keys, 1, child.count);
+        System.arraycopy(child.values, 0, child.values, 1, child.count);
+        child.keys[0] = node.keys[i - 1];
+        child.values[0] = node.values[i - 1];
+        if (child.children != null) {
+            System.arraycopy(child.children, 0, child.children, 1, child.count + 1);
+            child.children[0] = sibling.children[sibling.count];
+            sibling.children[sibling.count] = null;
+        }
+        child.count++;
+
+        node.keys[i - 1] = sibling.keys[sibling.count - 1];
+        node.values[i - 1] = sibling.values[sibling.count - 1];
+        sibling.count--;
+        sibling.keys[sibling.count] = null;
+        sibling.values[sibling.count] = null;
+    }
+
+    /**
+     * Rotates the first key of child i + 1 through the node into child i
+     */
+    private void borrowFromRight(Node node, int i) {
+        Node child = node.children[i];
+        Node sibling = node.children[i + 1];
+        child.keys[child.count] = node.keys[i];
+        child.values[child.count] = node.values[i];
+        if (child.children != null) {
+            child.children[child.count + 1] = sibling.children[0];
+            System.arraycopy(sibling.children, 1, sibling.children, 0, sibling.count);
+            sibling.children[sibling.count] = null;
+        }
+        child.count++;
+
+        node.keys[i] = sibling.keys[0];
+        node.values[i] = sibling.values[0];
+        System.arraycopy(sibling.keys, 1, sibling.keys, 0, sibling.count - 1);
+        System.arraycopy(sibling.values, 1, sibling.values, 0, sibling.count - 1);
+        sibling.count--;
+        sibling.keys[sibling.count] = null;
+        sibling.values[sibling.count] = null;
+    }
+
+    /**
+     * Merges child i + 1 and key i of a node into child i; both children have t - 1 keys
+     */
+    private void merge(Node node, int i) {
+        Node child = node.children[i];
+        Node sibling = node.children[i + 1];
+        child.keys[child.count] = node.keys[i];
+        child.values[child.count] = node.values[i];
+        System.arraycopy(sibling.keys, 0, child.keys, child.count + 1, sibling.count);
+        System.arraycopy(sibling.values, 0, child.values, child.count + 1, sibling.count);
+        if (child.children != null)
+            System.arraycopy(sibling.children, 0, child.children, child.count + 1, sibling.count + 1);
+        child.count += sibling.count + 1;
+
+        System.arraycopy(node.keys, i + 1, node.keys, i, node.count - i - 1);
+        System.arraycopy(node.values, i + 1, node.values, i, node.count - i - 1);
+        System.arraycopy(node.children, i + 2, node.children, i + 1, node.count - i - 1);
+        node.count--;
+        node.keys[node.count] = null;
+        node.values[node.count] = null;
+        node.children[node.count + 1] = null;
+    }
+
+    /**
+     * Returns the number of entries in the tree
+     * 
+     * @return the size of the tree
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the height of the tree in levels of nodes
+     * 
+     * @return the number of levels below the root, or -1 if the tree is empty
+     */
+    public int height() {
+        if (size == 0)
+            return -1;
+        return height;
+    }
+
+    /**
+     * Recursive helper method for inorderRec
+     */
+    @SuppressWarnings("unchecked")
+    private List<V> inorder(Node node, List<V> list) {
+        for (int i = 0; i < node.count; i++) {
+            if (node.children != null)
+                inorder(node.children[i], list);
+            list.add((V) node.values[i]);
+        }
+        if (node.children != null)
+            inorder(node.children[node.count], list);
+        return list;
+    }
+
+    /**
+     * Inorder traversal of the tree recursively
+     * 
+     * @return an inorder list of the values in the tree
+     */
+    public List<V> inorderRec() {
+        return inorder(root, new ArrayList<V>(size));
+    }
+
+    /**
+     * Returns an iterator over the entries of the tree in key order
+     * 
+     * @return an iterator over all entries
+     */
+    @Override
+    public Iterator<Map.Entry<T, V>> iterator() {
+        return new EntryIterator(null, null);
+    }
+
+    /**
+     * Returns the entries with keys in [fromKey, toKey) in key order
+     * 
+     * @param fromKey the lowest key to include
+     * @param toKey   the key to stop before
+     * @return a lazy view of the entries in the range
+     */
+    public Iterable<Map.Entry<T, V>> range(T fromKey, T toKey) {
+        Objects.requireNonNull(fromKey);
+        Objects.requireNonNull(toKey);
+        return () -> new EntryIterator(fromKey, toKey);
+    }
+
+    /**
+     * Inorder iterator with an explicit stack of one position per level
+     */
+    private class EntryIterator implements Iterator<Map.Entry<T, V>> {
+        /** nodes on the path to the next entry, root first */
+        private final Node[] nodes;
+
+        /** index of the next key to visit in each node on the path */
+        private final int[] positions;
+
+        /** number of nodes on the path */
+        private int top;
+
+        /** the key to stop before, or null to run to the end of the tree */
+        private final T toKey;
+
+        /** modCount of the tree when the iterator was created */
+        private final int expectedModCount;
+
+        /**
+         * Descends to the first entry not smaller than fromKey
+         * 
+         * @param fromKey the lowest key to include, or null to start at the smallest key
+         * @param toKey   the key to stop before, or null to run to the end of the tree
+         */
+        private EntryIterator(T fromKey, T toKey) {
+            nodes = new Node[height + 1];
+            positions = new int[height + 1];
+            this.toKey = toKey;
+            expectedModCount = modCount;
+            Node node = root;
+            while (node != null) {
+                int i = fromKey == null ? 0 : lowerBound(node, fromKey);
+                nodes[top] = node;
+                positions[top++] = i;
+                node = node.children == null ? null : node.children[i];
+            }
+            skipFinished();
+        }
+
+        /**
+         * Pops nodes whose keys have all been visited
+         */
+        private void skipFinished() {
+            while (top > 0 && positions[top - 1] >= nodes[top - 1].count)
+                top--;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return top > 0 && (toKey == null || toKey.compareTo(keyAt(nodes[top - 1], positions[top - 1])) > 0);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<T, V> next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Node node = nodes[top - 1];
+            int i = positions[top - 1]++;
+            Map.Entry<T, V> entry = new AbstractMap.SimpleImmutableEntry<>((T) node.keys[i], (V) node.values[i]);
+            // the successors in child i + 1 come next, smallest first
+            for (Node child = node.children == null ? null : node.children[i + 1]; child != null;
+                    child = child.children == null ? null : child.children[0]) {
+                nodes[top] = child;
+                positions[top++] = 0;
+            }
+            skipFinished();
+            return entry;
+        }
+    }
+}
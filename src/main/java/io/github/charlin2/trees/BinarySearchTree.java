@@ -0,0 +1,1245 @@
+package io.github.charlin2.trees;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * P3: Implementation of a Binary Search Tree
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public class BinarySearchTree<T extends Comparable<T>, V> implements NavigableTree<T, V> {
+    /** root of tree */
+    private Node root;
+
+    /** number of structural modifications, used by iterators to detect them */
+    private int modCount;
+
+    /** instrumentation, or null while metrics are disabled */
+    private TreeMetrics metrics;
+
+    /**
+     * height of the BST while metrics are enabled, kept up to date by the thread
+     * using the tree so that metrics readers never walk it; -1 when empty
+     */
+    private volatile int height = -1;
+
+    /** number of nodes at depth height while metrics are enabled */
+    private int deepest;
+
+    /** what insert does with a key that is already in the tree */
+    private final DuplicateKeys duplicates;
+
+    /** node of the tree, handed out directly as an entry by the iterators */
+    private class Node implements Map.Entry<T, V> {
+        /** key to access/sort the node */
+        private T key;
+
+        /** value stored in the node */
+        private V value;
+
+        /** further values of the key in DuplicateKeys.BUCKET mode, null until there are any */
+        private ValueBucket<V> bucket;
+
+        /** reference to left node */
+        private Node left = null;
+
+        /** reference to right node */
+        private Node right = null;
+
+        /** number of nodes in the subtree rooted at this node */
+        private int size = 1;
+
+        /**
+         * Node of a BST
+         * 
+         * @param key   Key used for comparison and value access
+         * @param value Value stored in the node
+         */
+        private Node(T key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public T getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V old = this.value;
+            this.value = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * Creates a new binary search tree that keeps a node for every inserted key, duplicates included
+     */
+    public BinarySearchTree() {
+        this(DuplicateKeys.ALLOW);
+    }
+
+    /**
+     * Creates a new binary search tree
+     * 
+     * @param duplicates what insert does with a key that is already in the tree
+     */
+    public BinarySearchTree(DuplicateKeys duplicates) {
+        this.duplicates = Objects.requireNonNull(duplicates);
+        root = null;
+    }
+
+    /**
+     * Builds a balanced BST from entries sorted by key in O(n)
+     * Unsorted input is accepted and sorted first, in O(n log n)
+     * 
+     * @param keys   the keys, preferably in ascending order
+     * @param values the value of each key
+     * @return a new BST holding the entries
+     */
+    public static <T extends Comparable<T>, V> BinarySearchTree<T, V> fromSorted(List<? extends T> keys,
+            List<? extends V> values) {
+        if (keys.size() != values.size())
+            throw new IllegalArgumentException("keys and values differ in length");
+        BinarySearchTree<T, V> tree = new BinarySearchTree<>();
+        List<BinarySearchTree<T, V>.Node> nodes = new ArrayList<>(keys.size());
+        Iterator<? extends V> valueIterator = values.iterator();
+        for (T key : keys)
+            nodes.add(tree.new Node(key, valueIterator.next()));
+        tree.load(nodes);
+        return tree;
+    }
+
+    /**
+     * Builds a balanced BST from a stream of entries sorted by key in O(n)
+     * Unsorted input is accepted and sorted first, in O(n log n)
+     * 
+     * @param entries the entries, preferably in ascending key order
+     * @return a new BST holding the entries
+     */
+    public static <T extends Comparable<T>, V> BinarySearchTree<T, V> bulkLoad(
+            Iterator<? extends Map.Entry<? extends T, ? extends V>> entries) {
+        BinarySearchTree<T, V> tree = new BinarySearchTree<>();
+        List<BinarySearchTree<T, V>.Node> nodes = new ArrayList<>();
+        while (entries.hasNext()) {
+            Map.Entry<? extends T, ? extends V> entry = entries.next();
+            nodes.add(tree.new Node(entry.getKey(), entry.getValue()));
+        }
+        tree.load(nodes);
+        return tree;
+    }
+
+    /**
+     * Replaces the contents of the BST with the given nodes
+     * 
+     * @param nodes the new nodes, sorted here if they are not already in key order
+     */
+    private void load(List<Node> nodes) {
+        for (int i = 1; i < nodes.size(); i++) {
+            if (nodes.get(i - 1).key.compareTo(nodes.get(i).key) > 0) {
+                // stable, so duplicate keys keep their input order
+                nodes.sort((a, b) -> a.key.compareTo(b.key));
+                break;
+            }
+        }
+        modCount++;
+        root = build(nodes, 0, nodes.size());
+    }
+
+    /**
+     * Recursively links sorted nodes into a balanced subtree
+     * 
+     * @param nodes the sorted nodes
+     * @param from  index of the first node of the subtree
+     * @param to    index after the last node of the subtree
+     * @return the root of the subtree
+     */
+    private Node build(List<Node> nodes, int from, int to) {
+        if (from >= to)
+            return null;
+        // duplicates of the middle key may end up on both sides, which search, delete and
+        // the iterators all allow for
+        int middle = (from + to) >>> 1;
+        Node node = nodes.get(middle);
+        node.left = build(nodes, from, middle);
+        node.right = build(nodes, middle + 1, to);
+        node.size = to - from;
+        return node;
+    }
+
+    /**
+     * Inserts a specified value into the BST
+     * A key already in the BST is handled as chosen at construction
+     * 
+     * @param key   A comparable data type that designates the associated value
+     * @param value The value being inserted into the tree
+     */
+    public void insert(T key, V value) {
+        upsert(key, value, duplicates);
+    }
+
+    /**
+     * Associates a value with a key, replacing the value of an existing node in place
+     * In DuplicateKeys.BUCKET mode the value replaces every value of the key
+     * 
+     * @param key   the key to associate the value with
+     * @param value the new value
+     * @return the previous value of the key, or null if it was not in the BST
+     */
+    public V put(T key, V value) {
+        return upsert(key, value, DuplicateKeys.REPLACE);
+    }
+
+    /**
+     * Timed insertion behind insert and put
+     */
+    private V upsert(T key, V value, DuplicateKeys mode) {
+        TreeMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        // the sizes are raised on the way down, so an existing key has to be found first
+        Node node = mode == DuplicateKeys.ALLOW ? null : find(root, key);
+        V previous = null;
+        if (node != null)
+            previous = merge(node, value, mode);
+        else {
+            int depth = insertKey(key, value);
+            if (metrics != null) {
+                metrics.comparisons += depth;
+                // the new node is a leaf at the depth of its descent
+                if (depth > height) {
+                    height = depth;
+                    deepest = 1;
+                } else if (depth == height)
+                    deepest++;
+            }
+        }
+        if (metrics != null)
+            metrics.insertLatency.record(System.nanoTime() - start);
+        return previous;
+    }
+
+    /**
+     * Applies an insert to the node that already holds its key, without allocating
+     * unless a new bucket is needed
+     * 
+     * @param node  the node of the key
+     * @param value the inserted value
+     * @param mode  REPLACE or BUCKET
+     * @return the value that was replaced, or null if the value was added to the bucket
+     */
+    private V merge(Node node, V value, DuplicateKeys mode) {
+        if (mode == DuplicateKeys.BUCKET) {
+            if (node.bucket == null)
+                node.bucket = new ValueBucket<>();
+            node.bucket.add(value);
+            return null;
+        }
+        node.bucket = null;
+        return node.setValue(value);
+    }
+
+    /**
+     * Links a new node below the node that ends the search for its key
+     * 
+     * @return the depth of the new node
+     */
+    private int insertKey(T key, V value) {
+        Node trav = root;
+        // parent node is separate from trav for the sake of inserting
+        Node parent = root;
+        Node newNode = new Node(key, value);
+        modCount++;
+        int depth = 0;
+        boolean left = false;
+        // traverse to insertion point
+        while (trav != null) {
+            parent = trav;
+            depth++;
+            // the new node will be a descendant of every node on the way down
+            trav.size++;
+            left = key.compareTo(trav.key) < 0;
+            trav = left ? trav.left : trav.right;
+        }
+        // insert new node
+        if (parent == null)
+            root = newNode;
+        else if (left)
+            parent.left = newNode;
+        else
+            parent.right = newNode;
+        return depth;
+    }
+
+    /**
+     * Returns a specified node if it exists
+     * 
+     * @param key the value of the node to be searched for
+     * @return the value associated with the key
+     */
+    public V search(T key) {
+        TreeMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        Node node = find(root, key);
+        if (metrics != null)
+            metrics.searchLatency.record(System.nanoTime() - start);
+        // if key not found, return null
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * Searches a subtree with one comparison per visited node
+     * 
+     * @param trav the root of the subtree
+     * @param key  the key to be searched for
+     * @return the first node found with the key, or null if it is not in the subtree
+     */
+    private Node find(Node trav, T key) {
+        int visited = 0;
+        // traverse through tree
+        while (trav != null) {
+            visited++;
+            int comparison = key.compareTo(trav.key);
+            if (comparison == 0)
+                break;
+            trav = comparison < 0 ? trav.left : trav.right;
+        }
+        if (metrics != null)
+            metrics.comparisons += visited;
+        return trav;
+    }
+
+    /**
+     * Returns every value stored under a key, in key order of their nodes and then
+     * in insertion order within a bucket
+     * 
+     * @param key the key to be searched for
+     * @return the values of the key, empty if it is not in the BST
+     */
+    public List<V> searchAll(T key) {
+        List<V> values = new ArrayList<>();
+        EntryIterator iterator = new EntryIterator(key, null);
+        while (iterator.hasNext()) {
+            Node node = iterator.nextNode();
+            if (key.compareTo(node.key) != 0)
+                break;
+            values.add(node.value);
+            if (node.bucket != null)
+                node.bucket.addTo(values);
+        }
+        return values;
+    }
+
+    /**
+     * Returns the cached size of a subtree
+     * 
+     * @param root the root of the subtree
+     * @return the number of nodes in the subtree
+     */
+    private int size(Node root) {
+        if (root == null)
+            return 0;
+        return root.size;
+    }
+
+    /**
+     * Recursive method to help with delete method
+     * USING LEWICKI'S SLIDES
+     * 
+     * @param toDelete the node to be deleted
+     * @param parent   the parent node of the node to be deleted
+     */
+    private void remove(Node toDelete, Node parent) {
+        // One or no children
+        if (toDelete.left == null || toDelete.right == null) {
+            Node toDeleteChild = null;
+            if (toDelete.left != null)
+                toDeleteChild = toDelete.left;
+            else
+                toDeleteChild = toDelete.right;
+            if (toDelete == root)
+                root = toDeleteChild;
+            else if (parent.left == toDelete)
+                parent.left = toDeleteChild;
+            else
+                parent.right = toDeleteChild;
+        } else { // two children
+            Node replacementParent = toDelete;
+            Node replacement = toDelete.right;
+            // toDelete and the path down to the replacement each lose one node
+            toDelete.size--;
+            // find largest value in left subtree
+            while (replacement.left != null) {
+                replacement.size--;
+                replacementParent = replacement;
+                replacement = replacement.left;
+            }
+            toDelete.key = replacement.key;
+            toDelete.value = replacement.value;
+            toDelete.bucket = replacement.bucket;
+            remove(replacement, replacementParent);
+        }
+    }
+
+    /**
+     * Deletes a specified node if it exists
+     * 
+     * @param key the key of the node to be deleted
+     */
+    public void delete(T key) {
+        TreeMetrics metrics = this.metrics;
+        if (metrics == null) {
+            deleteKey(key);
+            return;
+        }
+        long start = System.nanoTime();
+        deleteKey(key);
+        metrics.deleteLatency.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Finds and unlinks the node of a key behind delete
+     */
+    private void deleteKey(T key) {
+        Node trav = root;
+        Node parent = null;
+        int visited = 0;
+        // traverse to deletion node
+        while (trav != null) {
+            visited++;
+            int comparison = key.compareTo(trav.key);
+            if (comparison == 0)
+                break;
+            parent = trav;
+            trav = comparison < 0 ? trav.left : trav.right;
+        }
+        if (metrics != null)
+            metrics.comparisons += visited;
+        if (trav == null)
+            return;
+        modCount++;
+        if (metrics != null)
+            unlinking(trav, visited - 1);
+        // every ancestor of the deletion node loses a descendant
+        for (Node ancestor = root; ancestor != trav;) {
+            ancestor.size--;
+            if (key.compareTo(ancestor.key) < 0)
+                ancestor = ancestor.left;
+            else
+                ancestor = ancestor.right;
+        }
+        // helper method for deletion
+        remove(trav, parent);
+        if (metrics != null && deepest == 0)
+            measureHeight();
+    }
+
+    /**
+     * Updates the number of deepest nodes for a delete, before the BST changes
+     * The node unlinked is the deleted one or, if it has two children, its
+     * successor; either way only the subtree below it moves up a level, and it is
+     * only walked if it can reach the deepest level.
+     * 
+     * @param node  the node being deleted
+     * @param depth the depth of node
+     */
+    private void unlinking(Node node, int depth) {
+        if (node.left != null && node.right != null) {
+            node = node.right;
+            depth++;
+            while (node.left != null) {
+                node = node.left;
+                depth++;
+            }
+        }
+        Node child = node.left != null ? node.left : node.right;
+        if (depth == height)
+            deepest--;
+        else if (child != null && depth + size(child) >= height) {
+            int[] level = deepestLevel(child, depth + 1);
+            if (level[0] == height)
+                deepest -= level[1];
+        }
+    }
+
+    /**
+     * Visits the entries of the BST in key order until the visitor returns false
+     * Morris traversal: runs in O(n) with O(1) extra space and no recursion, so any
+     * tree shape is safe, including the list that sorted inserts produce. While it
+     * runs it threads empty right links back to their successors, so the visitor
+     * must not modify the BST; the links are restored when the traversal ends,
+     * stops early or the visitor throws.
+     * In DuplicateKeys.BUCKET mode the visitor is called once per value.
+     * 
+     * @param visitor receives each key and value, and returns whether to continue
+     * @return true if every entry was visited, false if the visitor stopped early
+     */
+    public boolean forEachInOrder(BiPredicate<? super T, ? super V> visitor) {
+        Node trav = root;
+        // number of nodes visited, the rank of trav when it is visited
+        int rank = 0;
+        while (trav != null) {
+            if (trav.left != null) {
+                Node predecessor = trav.left;
+                while (predecessor.right != null && predecessor.right != trav)
+                    predecessor = predecessor.right;
+                if (predecessor.right == null) {
+                    // thread the predecessor back to trav and finish the left subtree first
+                    predecessor.right = trav;
+                    trav = trav.left;
+                    continue;
+                }
+                // back from the left subtree
+                predecessor.right = null;
+            }
+            boolean proceed = false;
+            try {
+                proceed = visit(trav, visitor);
+            } finally {
+                if (!proceed)
+                    unthread(rank);
+            }
+            if (!proceed)
+                return false;
+            rank++;
+            trav = trav.right;
+        }
+        return true;
+    }
+
+    /**
+     * Passes the values of a node to a visitor
+     * 
+     * @return whether the visitor wants to continue
+     */
+    private boolean visit(Node node, BiPredicate<? super T, ? super V> visitor) {
+        if (!visitor.test(node.key, node.value))
+            return false;
+        if (node.bucket != null)
+            for (int i = 0; i < node.bucket.size(); i++)
+                if (!visitor.test(node.key, node.bucket.get(i)))
+                    return false;
+        return true;
+    }
+
+    /**
+     * Removes the threads an interrupted Morris traversal left behind
+     * They hang off the predecessors of the ancestors whose left subtree holds the
+     * node being visited, so descending to that node by rank finds all of them in O(h)
+     * 
+     * @param rank the rank of the node the traversal stopped at
+     */
+    private void unthread(int rank) {
+        Node trav = root;
+        while (trav != null) {
+            int leftSize = size(trav.left);
+            if (rank == leftSize)
+                return;
+            if (rank < leftSize) {
+                // trav was threaded before the traversal went left
+                Node predecessor = trav.left;
+                while (predecessor.right != null && predecessor.right != trav)
+                    predecessor = predecessor.right;
+                predecessor.right = null;
+                trav = trav.left;
+            } else {
+                rank -= leftSize + 1;
+                trav = trav.right;
+            }
+        }
+    }
+
+    /**
+     * Inorder traversal of the BST, without recursion
+     * Uses the iterator's stack on the heap, which is faster than threading the
+     * tree when a list of every value is being built anyway
+     * 
+     * @return an inorder list of the values in the BST
+     */
+    public List<V> inorderRec() {
+        ArrayList<V> list = new ArrayList<V>(size(root));
+        EntryIterator iterator = new EntryIterator(null, null);
+        while (iterator.hasNext()) {
+            Node node = iterator.nextNode();
+            list.add(node.value);
+            if (node.bucket != null)
+                node.bucket.addTo(list);
+        }
+        return list;
+    }
+
+    /**
+     * Returns the number of entries in the BST
+     * 
+     * @return the size of the BST
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Sets the height and the number of deepest nodes from a walk of the whole BST
+     */
+    private void measureHeight() {
+        if (root == null) {
+            height = -1;
+            deepest = 0;
+            return;
+        }
+        int[] level = deepestLevel(root, 0);
+        height = level[0];
+        deepest = level[1];
+    }
+
+    /**
+     * Finds the deepest level of a subtree depth-first, in O(n) without recursion
+     * A child is only followed if its subtree is smaller than its parent's, which
+     * rules out a Morris thread back to an ancestor.
+     * 
+     * @param subtree the root of the subtree
+     * @param depth   the depth of subtree in the BST
+     * @return the depth of the deepest level and the number of nodes on it
+     */
+    @SuppressWarnings("unchecked")
+    private int[] deepestLevel(Node subtree, int depth) {
+        int[] level = { depth, 0 };
+        Node[] nodes = (Node[]) new BinarySearchTree.Node[16];
+        int[] depths = new int[16];
+        nodes[0] = subtree;
+        depths[0] = depth;
+        int top = 1;
+        while (top > 0) {
+            Node node = nodes[--top];
+            depth = depths[top];
+            if (depth > level[0]) {
+                level[0] = depth;
+                level[1] = 0;
+            }
+            if (depth == level[0])
+                level[1]++;
+            if (top + 2 > nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+                depths = Arrays.copyOf(depths, 2 * depths.length);
+            }
+            if (node.left != null && node.left.size < node.size) {
+                nodes[top] = node.left;
+                depths[top++] = depth + 1;
+            }
+            if (node.right != null && node.right.size < node.size) {
+                nodes[top] = node.right;
+                depths[top++] = depth + 1;
+            }
+        }
+        return level;
+    }
+
+    /**
+     * Starts collecting metrics for this BST, or returns the ones already being collected
+     * The height is measured here once and then maintained by the thread using the
+     * tree: inserts raise it from the depth of their descent, and deletes count down
+     * the nodes on the deepest level, measuring the whole BST again in O(n) only
+     * once none are left. Reading the metrics never walks the tree.
+     * 
+     * @return the metrics, which can be registered with JMX
+     */
+    public TreeMetrics enableMetrics() {
+        if (metrics == null) {
+            measureHeight();
+            metrics = new TreeMetrics(this::size, () -> height);
+        }
+        return metrics;
+    }
+
+    /**
+     * Stops collecting metrics; metrics already handed out stop being updated
+     */
+    public void disableMetrics() {
+        metrics = null;
+    }
+
+    /**
+     * Returns a snapshot of the metrics of this BST
+     * 
+     * @return the current metrics
+     * @throws IllegalStateException if metrics are not enabled
+     */
+    public TreeStats stats() {
+        if (metrics == null)
+            throw new IllegalStateException("metrics are not enabled");
+        return metrics.stats();
+    }
+
+    /**
+     * Returns the k-th smallest element in the BST (1-indexed)
+     * Runs in O(h) using the subtree sizes instead of an inorder traversal
+     * 
+     * @param k the position from the smallest element
+     * @return the k-th smallest value in the BST
+     */
+    public V kthSmallest(int k) {
+        Node node = selectNode(k - 1);
+        if (node == null)
+            return null;
+        return node.value;
+    }
+
+    /**
+     * Returns the k-th smallest key in the BST (0-indexed) in O(h)
+     * 
+     * @param k the number of keys smaller than the one returned
+     * @return the key of rank k, or null if k is out of range
+     */
+    public T select(int k) {
+        Node node = selectNode(k);
+        if (node == null)
+            return null;
+        return node.key;
+    }
+
+    /**
+     * Finds the node of a given rank using the subtree sizes
+     * 
+     * @param k the rank of the node (0-indexed)
+     * @return the node of rank k, or null if k is out of range
+     */
+    private Node selectNode(int k) {
+        if (k < 0 || k >= size(root))
+            return null;
+        Node trav = root;
+        while (true) {
+            int leftSize = size(trav.left);
+            if (k < leftSize)
+                trav = trav.left;
+            else if (k > leftSize) {
+                k -= leftSize + 1;
+                trav = trav.right;
+            } else
+                return trav;
+        }
+    }
+
+    /**
+     * Returns the number of keys in the BST that are strictly smaller than a key in O(h)
+     * 
+     * @param key the key to rank, which does not need to be in the BST
+     * @return the rank of the key
+     */
+    public int rank(T key) {
+        int rank = 0;
+        Node trav = root;
+        while (trav != null) {
+            if (key.compareTo(trav.key) <= 0)
+                trav = trav.left;
+            else {
+                rank += size(trav.left) + 1;
+                trav = trav.right;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the entry with the greatest key less than or equal to a key in O(h)
+     * 
+     * @param key the key to search around, which does not need to be in the BST
+     * @return an immutable snapshot of the entry, or null if there is none
+     */
+    public Map.Entry<T, V> floorEntry(T key) {
+        Node best = null;
+        Node trav = root;
+        while (trav != null) {
+            int comparison = key.compareTo(trav.key);
+            if (comparison == 0)
+                return snapshot(trav);
+            if (comparison < 0)
+                trav = trav.left;
+            else {
+                best = trav;
+                trav = trav.right;
+            }
+        }
+        return snapshot(best);
+    }
+
+    /**
+     * Returns the entry with the least key greater than or equal to a key in O(h)
+     * 
+     * @param key the key to search around, which does not need to be in the BST
+     * @return an immutable snapshot of the entry, or null if there is none
+     */
+    public Map.Entry<T, V> ceilingEntry(T key) {
+        Node best = null;
+        Node trav = root;
+        while (trav != null) {
+            int comparison = key.compareTo(trav.key);
+            if (comparison == 0)
+                return snapshot(trav);
+            if (comparison > 0)
+                trav = trav.right;
+            else {
+                best = trav;
+                trav = trav.left;
+            }
+        }
+        return snapshot(best);
+    }
+
+    /**
+     * Returns the entry with the greatest key strictly less than a key in O(h)
+     * 
+     * @param key the key to search around, which does not need to be in the BST
+     * @return an immutable snapshot of the entry, or null if there is none
+     */
+    public Map.Entry<T, V> lowerEntry(T key) {
+        Node best = null;
+        Node trav = root;
+        while (trav != null) {
+            if (key.compareTo(trav.key) <= 0)
+                trav = trav.left;
+            else {
+                best = trav;
+                trav = trav.right;
+            }
+        }
+        return snapshot(best);
+    }
+
+    /**
+     * Returns the entry with the least key strictly greater than a key in O(h)
+     * 
+     * @param key the key to search around, which does not need to be in the BST
+     * @return an immutable snapshot of the entry, or null if there is none
+     */
+    public Map.Entry<T, V> higherEntry(T key) {
+        Node best = null;
+        Node trav = root;
+        while (trav != null) {
+            if (key.compareTo(trav.key) >= 0)
+                trav = trav.right;
+            else {
+                best = trav;
+                trav = trav.left;
+            }
+        }
+        return snapshot(best);
+    }
+
+    /**
+     * Returns the entry with the smallest key in O(h)
+     * 
+     * @return an immutable snapshot of the entry, or null if the BST is empty
+     */
+    public Map.Entry<T, V> firstEntry() {
+        if (root == null)
+            return null;
+        Node trav = root;
+        while (trav.left != null)
+            trav = trav.left;
+        return snapshot(trav);
+    }
+
+    /**
+     * Returns the entry with the largest key in O(h)
+     * 
+     * @return an immutable snapshot of the entry, or null if the BST is empty
+     */
+    public Map.Entry<T, V> lastEntry() {
+        if (root == null)
+            return null;
+        Node trav = root;
+        while (trav.right != null)
+            trav = trav.right;
+        return snapshot(trav);
+    }
+
+    /**
+     * Copies a node into an entry that stays valid after the BST changes
+     * Deletion moves keys between nodes, so nodes are never handed out here
+     */
+    private Map.Entry<T, V> snapshot(Node node) {
+        return node == null ? null : new AbstractMap.SimpleImmutableEntry<>(node.key, node.value);
+    }
+
+    /**
+     * Returns an iterator over the entries of the BST in key order
+     * Entries are produced lazily using O(h) extra memory
+     * In DuplicateKeys.BUCKET mode each key appears once, with its first value
+     * 
+     * @return an iterator over all entries
+     */
+    @Override
+    public Iterator<Map.Entry<T, V>> iterator() {
+        return new EntryIterator(null, null);
+    }
+
+    /**
+     * Returns every value of the BST with its key, in key order
+     * In DuplicateKeys.BUCKET mode a key appears once per value, in insertion order
+     * 
+     * @return the entries, one per value
+     */
+    @Override
+    public Iterable<Map.Entry<T, V>> entries() {
+        return duplicates == DuplicateKeys.BUCKET ? ValueIterator::new : this;
+    }
+
+    /**
+     * Returns a spliterator over the entries of the BST in key order
+     * It splits by rank using the subtree sizes, so both halves know their exact
+     * size and the traversal never materializes a list
+     * 
+     * @return a fail-fast spliterator over all entries
+     */
+    @Override
+    public Spliterator<Map.Entry<T, V>> spliterator() {
+        return new EntrySpliterator(0, size(root), modCount);
+    }
+
+    /**
+     * Returns a sequential stream over the entries of the BST in key order
+     * 
+     * @return a stream of the entries
+     */
+    public Stream<Map.Entry<T, V>> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns a parallel stream over the entries of the BST in key order
+     * 
+     * @return a possibly parallel stream of the entries
+     */
+    public Stream<Map.Entry<T, V>> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Returns the entries with keys in [fromKey, toKey) in key order
+     * Finding the first entry costs O(h), after which each entry costs O(1) amortized
+     * 
+     * @param fromKey the lowest key to include
+     * @param toKey   the key to stop before
+     * @return a lazy view of the entries in the range
+     */
+    public Iterable<Map.Entry<T, V>> range(T fromKey, T toKey) {
+        Objects.requireNonNull(fromKey);
+        Objects.requireNonNull(toKey);
+        return () -> new EntryIterator(fromKey, toKey);
+    }
+
+    /**
+     * Returns the entries with keys strictly less than toKey in key order
+     * 
+     * @param toKey the key to stop before
+     * @return a lazy view of the entries in the range
+     */
+    public Iterable<Map.Entry<T, V>> headRange(T toKey) {
+        Objects.requireNonNull(toKey);
+        return () -> new EntryIterator(null, toKey);
+    }
+
+    /**
+     * Returns the entries with keys greater than or equal to fromKey in key order
+     * 
+     * @param fromKey the lowest key to include
+     * @return a lazy view of the entries in the range
+     */
+    public Iterable<Map.Entry<T, V>> tailRange(T fromKey) {
+        Objects.requireNonNull(fromKey);
+        return () -> new EntryIterator(fromKey, null);
+    }
+
+    /**
+     * Inorder iterator with an explicit stack, which only grows as deep as the BST
+     */
+    private class EntryIterator implements Iterator<Map.Entry<T, V>> {
+        /** nodes whose entry and right subtree are still to be visited, next one on top */
+        private Node[] stack;
+
+        /** number of nodes on the stack */
+        private int top;
+
+        /** the key to stop before, or null to run to the end of the BST */
+        private final T toKey;
+
+        /** modCount of the BST when the iterator was created */
+        private final int expectedModCount;
+
+        /**
+         * Descends to the first entry not smaller than fromKey
+         * 
+         * @param fromKey the lowest key to include, or null to start at the smallest key
+         * @param toKey   the key to stop before, or null to run to the end of the BST
+         */
+        @SuppressWarnings("unchecked")
+        private EntryIterator(T fromKey, T toKey) {
+            stack = (Node[]) new BinarySearchTree.Node[16];
+            this.toKey = toKey;
+            expectedModCount = modCount;
+            Node trav = root;
+            while (trav != null) {
+                if (fromKey == null || fromKey.compareTo(trav.key) <= 0) {
+                    push(trav);
+                    trav = trav.left;
+                } else
+                    trav = trav.right;
+            }
+        }
+
+        /**
+         * Pushes a node, growing the stack if the BST is deeper than expected
+         */
+        private void push(Node node) {
+            if (top == stack.length)
+                stack = Arrays.copyOf(stack, top * 2);
+            stack[top++] = node;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return top > 0 && (toKey == null || toKey.compareTo(stack[top - 1].key) > 0);
+        }
+
+        @Override
+        public Map.Entry<T, V> next() {
+            return nextNode();
+        }
+
+        /**
+         * Returns the next node, which is also its entry
+         */
+        private Node nextNode() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Node next = stack[--top];
+            // the successors in the right subtree go on the stack, smallest on top
+            for (Node trav = next.right; trav != null; trav = trav.left)
+                push(trav);
+            return next;
+        }
+    }
+
+    public static void main(String[] args) {
+        BinarySearchTree<Integer, Integer> tree = new BinarySearchTree<>();
+        System.out.println("BinarySearchTree<Integer, Integer> tree = new BinarySearchTree<>()");
+        tree.insert(2, 2);
+        tree.insert(1, 1);
+        tree.insert(4, 4);
+        tree.insert(5, 5);
+        tree.insert(9, 9);
+        tree.insert(3, 3);
+        tree.insert(6, 6);
+        tree.insert(7, 7);
+        tree.insert(10, 10);
+        tree.insert(12, 12);
+        tree.insert(11, 11);
+        System.out.println("tree.insert(2, 2)\ntree.insert(1, 1)\ntree.insert(4, 4)\ntree.insert(5, 5)\ntree.insert(9, 9)\ntree.insert(3, 3)\ntree.insert(6, 6)\ntree.insert(7, 7)\ntree.insert(10, 10)\ntree.insert(12, 12)\ntree.insert(11, 11)");
+        tree.delete(4);
+        tree.delete(9);
+        System.out.println("tree.delete(4)\ntree.delete(9)");
+        System.out.println("tree.inorderRec()\n" + tree.inorderRec().toString());
+        System.out.println("tree.search(12)\n" + tree.search(12));
+        System.out.println("tree.search(4)\n" + tree.search(4));
+        System.out.println("tree.kthSmallest(3)\n" + tree.kthSmallest(3));
+        BinarySearchTree<Character, String> tree2 = new BinarySearchTree<>();
+        System.out.println("BinarySearchTree<Character, String> tree2 = new BinarySearchTree<>()");
+        tree2.insert('G', "George");
+        tree2.insert('S', "Susan");
+        tree2.insert('J', "Jeff");
+        tree2.insert('B', "Bertha");
+        tree2.insert('M', "Matt");
+        tree2.insert('A', "Alyssa");
+        tree2.insert('L', "Lex");
+        tree2.insert('M', "Madeline");
+        System.out.println("tree2.insert('G', \"George\")\ntree2.insert('S', \"Susan\")\ntree2.insert('J', \"Jeff\")\ntree2.insert('B', \"Bertha\")\ntree2.insert('M', \"Matt\")\ntree2.insert('A', \"Alyssa\")\ntree2.insert('L', \"Lex\")\ntree2.insert('M', \"Madeline\")");
+        System.out.println("tree2.inorderRec()\n" + tree2.inorderRec().toString());
+        tree2.delete('M');
+        tree2.delete('J');
+        System.out.println("tree2.delete('M')\ntree2.delete('J')");
+        System.out.println("tree2.inorderRec()\n" + tree2.inorderRec().toString());
+        System.out.println("tree2.kthSmallest(3)\n" + tree2.kthSmallest(3));
+    }
+
+    /**
+     * Iterator over every value of the BST, the values of a bucket following the
+     * entry of their node
+     */
+    private class ValueIterator implements Iterator<Map.Entry<T, V>> {
+        /** the nodes in key order */
+        private final EntryIterator nodes = new EntryIterator(null, null);
+
+        /** the node whose bucket is being produced, or null */
+        private Node node;
+
+        /** position of the next value in the bucket of node */
+        private int index;
+
+        @Override
+        public boolean hasNext() {
+            return node != null || nodes.hasNext();
+        }
+
+        @Override
+        public Map.Entry<T, V> next() {
+            if (node != null) {
+                Map.Entry<T, V> entry = new AbstractMap.SimpleImmutableEntry<>(node.key, node.bucket.get(index++));
+                if (index == node.bucket.size())
+                    node = null;
+                return entry;
+            }
+            Node next = nodes.nextNode();
+            if (next.bucket != null && next.bucket.size() > 0) {
+                node = next;
+                index = 0;
+            }
+            return next;
+        }
+    }
+
+    /**
+     * Spliterator over a range of ranks: splitting halves the range without
+     * touching the BST, and the first traversal descends to the first rank in O(h)
+     */
+    private class EntrySpliterator implements Spliterator<Map.Entry<T, V>> {
+        /** rank of the next entry */
+        private int from;
+
+        /** rank after the last entry */
+        private final int to;
+
+        /** modCount of the BST when the spliterator was created */
+        private final int expectedModCount;
+
+        /** nodes whose entry and right subtree are still to be visited, null until traversal starts */
+        private Node[] stack;
+
+        /** number of nodes on the stack */
+        private int top;
+
+        private EntrySpliterator(int from, int to, int expectedModCount) {
+            this.from = from;
+            this.to = to;
+            this.expectedModCount = expectedModCount;
+        }
+
+        /**
+         * Descends to the node of rank from, stacking the nodes that follow it
+         */
+        @SuppressWarnings("unchecked")
+        private void start() {
+            stack = (Node[]) new BinarySearchTree.Node[16];
+            int k = from;
+            Node trav = root;
+            while (trav != null) {
+                int leftSize = size(trav.left);
+                if (k <= leftSize) {
+                    push(trav);
+                    if (k == leftSize)
+                        break;
+                    trav = trav.left;
+                } else {
+                    k -= leftSize + 1;
+                    trav = trav.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Map.Entry<T, V>> action) {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (from >= to)
+                return false;
+            if (stack == null)
+                start();
+            Node next = stack[--top];
+            // the successors in the right subtree go on the stack, smallest on top
+            for (Node trav = next.right; trav != null; trav = trav.left)
+                push(trav);
+            from++;
+            action.accept(next);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Map.Entry<T, V>> action) {
+            while (tryAdvance(action))
+                ;
+        }
+
+        @Override
+        public Spliterator<Map.Entry<T, V>> trySplit() {
+            // once traversal has started the stack belongs to this half
+            if (stack != null || to - from < 2)
+                return null;
+            int middle = (from + to) >>> 1;
+            EntrySpliterator prefix = new EntrySpliterator(from, middle, expectedModCount);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            // not DISTINCT: duplicate keys may carry equal values
+            return ORDERED | SORTED | SIZED | SUBSIZED | NONNULL;
+        }
+
+        @Override
+        public Comparator<? super Map.Entry<T, V>> getComparator() {
+            return Map.Entry.comparingByKey();
+        }
+
+        /**
+         * Pushes a node, growing the stack if the BST is deeper than expected
+         */
+        private void push(Node node) {
+            if (top == stack.length)
+                stack = Arrays.copyOf(stack, top * 2);
+            stack[top++] = node;
+        }
+    }
+}
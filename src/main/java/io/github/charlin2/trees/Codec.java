@@ -0,0 +1,163 @@
+package io.github.charlin2.trees;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary encoding of keys or values for on-disk snapshots
+ * 
+ * Encoded keys must be comparable in place, without decoding, so that a mapped
+ * snapshot can be searched without allocating.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public interface Codec<E> {
+    /** big-endian 32-bit integers */
+    Codec<Integer> INTEGER = new Codec<Integer>() {
+        @Override
+        public byte[] encode(Integer value) {
+            return ByteBuffer.allocate(Integer.BYTES).putInt(value).array();
+        }
+
+        @Override
+        public int encodedLength(Integer value) {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void encode(Integer value, ByteBuffer buffer, int offset) {
+            buffer.putInt(offset, value);
+        }
+
+        @Override
+        public Integer decode(ByteBuffer buffer, int offset, int length) {
+            return buffer.getInt(offset);
+        }
+
+        @Override
+        public int compare(Integer key, ByteBuffer buffer, int offset, int length) {
+            return Integer.compare(key, buffer.getInt(offset));
+        }
+    };
+
+    /** big-endian 64-bit integers */
+    Codec<Long> LONG = new Codec<Long>() {
+        @Override
+        public byte[] encode(Long value) {
+            return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+        }
+
+        @Override
+        public int encodedLength(Long value) {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void encode(Long value, ByteBuffer buffer, int offset) {
+            buffer.putLong(offset, value);
+        }
+
+        @Override
+        public Long decode(ByteBuffer buffer, int offset, int length) {
+            return buffer.getLong(offset);
+        }
+
+        @Override
+        public int compare(Long key, ByteBuffer buffer, int offset, int length) {
+            return Long.compare(key, buffer.getLong(offset));
+        }
+    };
+
+    /** strings as big-endian UTF-16 chars, so they compare exactly like String.compareTo */
+    Codec<String> STRING = new Codec<String>() {
+        @Override
+        public byte[] encode(String value) {
+            ByteBuffer buffer = ByteBuffer.allocate(value.length() * Character.BYTES);
+            for (int i = 0; i < value.length(); i++)
+                buffer.putChar(value.charAt(i));
+            return buffer.array();
+        }
+
+        @Override
+        public int encodedLength(String value) {
+            return value.length() * Character.BYTES;
+        }
+
+        @Override
+        public void encode(String value, ByteBuffer buffer, int offset) {
+            for (int i = 0; i < value.length(); i++)
+                buffer.putChar(offset + i * Character.BYTES, value.charAt(i));
+        }
+
+        @Override
+        public String decode(ByteBuffer buffer, int offset, int length) {
+            char[] chars = new char[length / Character.BYTES];
+            for (int i = 0; i < chars.length; i++)
+                chars[i] = buffer.getChar(offset + i * Character.BYTES);
+            return new String(chars);
+        }
+
+        @Override
+        public int compare(String key, ByteBuffer buffer, int offset, int length) {
+            int chars = length / Character.BYTES;
+            int common = Math.min(key.length(), chars);
+            for (int i = 0; i < common; i++) {
+                char c = buffer.getChar(offset + i * Character.BYTES);
+                if (key.charAt(i) != c)
+                    return key.charAt(i) - c;
+            }
+            return key.length() - chars;
+        }
+    };
+
+    /**
+     * Encodes a non-null element
+     * 
+     * @param value the element to encode
+     * @return the encoded bytes
+     */
+    byte[] encode(E value);
+
+    /**
+     * Returns the number of bytes a non-null element encodes to; the default
+     * encodes it, so codecs used for logging should override this
+     * 
+     * @param value the element to measure
+     * @return the encoded length
+     */
+    default int encodedLength(E value) {
+        return encode(value).length;
+    }
+
+    /**
+     * Encodes a non-null element into a buffer, which must have room for it
+     * 
+     * @param value  the element to encode
+     * @param buffer the buffer to write to
+     * @param offset the absolute position of the first byte
+     */
+    default void encode(E value, ByteBuffer buffer, int offset) {
+        buffer.put(offset, encode(value));
+    }
+
+    /**
+     * Decodes an element
+     * 
+     * @param buffer the buffer holding the encoded bytes
+     * @param offset the absolute position of the first byte
+     * @param length the number of encoded bytes
+     * @return the decoded element
+     */
+    E decode(ByteBuffer buffer, int offset, int length);
+
+    /**
+     * Compares an element against an encoded one without decoding it
+     * 
+     * @param key    the element to compare
+     * @param buffer the buffer holding the encoded bytes
+     * @param offset the absolute position of the first byte
+     * @param length the number of encoded bytes
+     * @return a negative number, zero or a positive number as key is smaller than,
+     *         equal to or larger than the encoded element
+     */
+    int compare(E key, ByteBuffer buffer, int offset, int length);
+}
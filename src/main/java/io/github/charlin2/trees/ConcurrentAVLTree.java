@@ -0,0 +1,864 @@
+package io.github.charlin2.trees;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe AVL Tree with optimistic reads
+ * 
+ * Follows the relaxed-balance tree of Bronson, Casper, Chafi and Olukotun,
+ * "A Practical Concurrent Binary Search Tree" (PPoPP 2010). Readers take no
+ * locks: every node carries a version number that a rotation bumps when it
+ * shrinks the node's subtree, and a reader that sees a version change retries
+ * from the last node that is still valid. Writers lock only the nodes they
+ * link, unlink or rotate, always parent before child.
+ * 
+ * Deleting a node with two children only clears its value, leaving a routing
+ * node that is unlinked later once it has at most one child. Because of this
+ * the tree holds at most one entry per key: insert replaces the value of an
+ * existing key, and values may not be null.
+ * 
+ * Heights here count a missing child as 0 and a leaf as 1.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public class ConcurrentAVLTree<T extends Comparable<T>, V> implements Iterable<Map.Entry<T, V>> {
+    /** version of a node that has been removed from the tree */
+    private static final long UNLINKED = 0x1L;
+
+    /** version bit set while a rotation is shrinking a node's subtree */
+    private static final long SHRINKING = 0x2L;
+
+    /** version increment recorded by each completed shrink */
+    private static final long SHRINK_COUNT_INCR = 0x4L;
+
+    /** number of times a reader spins on a shrinking node before yielding */
+    private static final int SPIN_COUNT = 100;
+
+    /** marker returned when a step must be retried from its parent */
+    private static final Object RETRY = new Object();
+
+    /** results of nodeCondition other than a new height */
+    private static final int UNLINK_REQUIRED = -1, REBALANCE_REQUIRED = -2, NOTHING_REQUIRED = -3;
+
+    /**
+     * Node of the tree; every field that readers follow is volatile
+     */
+    private static final class Node<T, V> {
+        /** key of the node, null only for the root holder */
+        private final T key;
+
+        /** height of the subtree rooted here */
+        private volatile int height;
+
+        /** version number, see UNLINKED, SHRINKING and SHRINK_COUNT_INCR */
+        private volatile long version;
+
+        /** value of the node, null for a routing node */
+        private volatile V value;
+
+        /** links to the parent and children */
+        private volatile Node<T, V> parent, left, right;
+
+        private Node(T key, V value, Node<T, V> parent) {
+            this.key = key;
+            this.value = value;
+            this.parent = parent;
+            this.height = 1;
+        }
+
+        /** returns the left child for a negative direction, otherwise the right child */
+        private Node<T, V> child(int dir) {
+            return dir < 0 ? left : right;
+        }
+
+        /** sets the left child for a negative direction, otherwise the right child */
+        private void setChild(int dir, Node<T, V> child) {
+            if (dir < 0)
+                left = child;
+            else
+                right = child;
+        }
+    }
+
+    /** sentinel whose right child is the root; it is never rotated, so its version stays 0 */
+    private final Node<T, V> rootHolder = new Node<>(null, null, null);
+
+    /** number of entries in the tree */
+    private final LongAdder size = new LongAdder();
+
+    /**
+     * Creates a new concurrent AVL tree
+     */
+    public ConcurrentAVLTree() {
+        rootHolder.height = 0;
+    }
+
+    /**
+     * Returns the height of a possibly missing node
+     */
+    private static int height(Node<?, ?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    /**
+     * Compares a key against a node, treating a null key as smaller than every key
+     */
+    private static <T extends Comparable<T>> int compare(T key, Node<T, ?> node) {
+        return key == null ? -1 : key.compareTo(node.key);
+    }
+
+    /**
+     * Waits for a rotation that is shrinking a node to finish, without locking
+     */
+    private static void waitUntilNotChanging(Node<?, ?> node) {
+        long version = node.version;
+        if ((version & SHRINKING) == 0)
+            return;
+        for (int i = 0; i < SPIN_COUNT; i++) {
+            if (node.version != version)
+                return;
+            Thread.onSpinWait();
+        }
+        while (node.version == version)
+            Thread.yield();
+    }
+
+    /* ---------------- reads ---------------- */
+
+    /**
+     * Returns the value associated with a key; never blocks
+     * 
+     * @param key the key to be searched for
+     * @return the value associated with the key, or null if it is not in the tree
+     */
+    @SuppressWarnings("unchecked")
+    public V search(T key) {
+        Objects.requireNonNull(key);
+        Object result;
+        do
+            result = attemptGet(key, rootHolder, 1, 0);
+        while (result == RETRY);
+        return (V) result;
+    }
+
+    /**
+     * Optimistic descent below a node that was valid at version nodeVersion
+     * 
+     * @return the value, null if the key is absent, or RETRY if node changed
+     */
+    private Object attemptGet(T key, Node<T, V> node, int dir, long nodeVersion) {
+        while (true) {
+            Node<T, V> child = node.child(dir);
+            if (node.version != nodeVersion)
+                return RETRY;
+            if (child == null)
+                return null;
+            int nextDir = key.compareTo(child.key);
+            if (nextDir == 0)
+                return child.value;
+            long childVersion = child.version;
+            if ((childVersion & SHRINKING) != 0)
+                waitUntilNotChanging(child);
+            else if (childVersion != UNLINKED && child == node.child(dir)) {
+                // the child was still linked after we read its version
+                if (node.version != nodeVersion)
+                    return RETRY;
+                Object result = attemptGet(key, child, nextDir, childVersion);
+                if (result != RETRY)
+                    return result;
+            }
+        }
+    }
+
+    /**
+     * Finds the node with the smallest key after a key, including routing nodes
+     * 
+     * @param key       the key to start after, or null to find the first node
+     * @param inclusive whether a node with exactly key qualifies
+     * @return the node, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    private Node<T, V> successor(T key, boolean inclusive) {
+        Object result;
+        do
+            result = attemptSuccessor(key, inclusive, rootHolder, 1, 0, null);
+        while (result == RETRY);
+        return (Node<T, V>) result;
+    }
+
+    /**
+     * Optimistic descent for successor, carrying the best candidate found so far
+     */
+    private Object attemptSuccessor(T key, boolean inclusive, Node<T, V> node, int dir, long nodeVersion,
+            Node<T, V> best) {
+        while (true) {
+            Node<T, V> child = node.child(dir);
+            if (node.version != nodeVersion)
+                return RETRY;
+            if (child == null)
+                return best;
+            int comparison = compare(key, child);
+            if (comparison == 0 && inclusive)
+                return child;
+            int nextDir = comparison < 0 ? -1 : 1;
+            long childVersion = child.version;
+            if ((childVersion & SHRINKING) != 0)
+                waitUntilNotChanging(child);
+            else if (childVersion != UNLINKED && child == node.child(dir)) {
+                if (node.version != nodeVersion)
+                    return RETRY;
+                Object result = attemptSuccessor(key, inclusive, child, nextDir, childVersion,
+                        nextDir < 0 ? child : best);
+                if (result != RETRY)
+                    return result;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries in the tree
+     * 
+     * @return the size of the tree, exact when no writes are in flight
+     */
+    public int size() {
+        return size.intValue();
+    }
+
+    /**
+     * Returns the height of the tree
+     * 
+     * @return the height of the tree, or -1 if it is empty
+     */
+    public int height() {
+        return height(rootHolder.right) - 1;
+    }
+
+    /* ---------------- writes ---------------- */
+
+    /**
+     * Inserts a key-value pair, replacing the value if the key is already present
+     * 
+     * @param key   the key of the entry
+     * @param value the value to store, not null
+     */
+    public void insert(T key, V value) {
+        put(key, value);
+    }
+
+    /**
+     * Associates a value with a key
+     * 
+     * @param key   the key of the entry
+     * @param value the value to store, not null
+     * @return the previous value of the key, or null if it was absent
+     */
+    @SuppressWarnings("unchecked")
+    public V put(T key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        Object result;
+        do
+            result = attemptPut(key, value, rootHolder, 1, 0);
+        while (result == RETRY);
+        return (V) result;
+    }
+
+    private Object attemptPut(T key, V value, Node<T, V> node, int dir, long nodeVersion) {
+        Object result = RETRY;
+        do {
+            Node<T, V> child = node.child(dir);
+            if (node.version != nodeVersion)
+                return RETRY;
+            if (child == null)
+                result = attemptInsert(key, value, node, dir, nodeVersion);
+            else {
+                int nextDir = key.compareTo(child.key);
+                if (nextDir == 0)
+                    result = attemptUpdate(child, value);
+                else {
+                    long childVersion = child.version;
+                    if ((childVersion & SHRINKING) != 0)
+                        waitUntilNotChanging(child);
+                    else if (childVersion != UNLINKED && child == node.child(dir)) {
+                        if (node.version != nodeVersion)
+                            return RETRY;
+                        result = attemptPut(key, value, child, nextDir, childVersion);
+                    }
+                }
+            }
+        } while (result == RETRY);
+        return result;
+    }
+
+    private Object attemptInsert(T key, V value, Node<T, V> node, int dir, long nodeVersion) {
+        synchronized (node) {
+            if (node.version != nodeVersion || node.child(dir) != null)
+                return RETRY;
+            node.setChild(dir, new Node<>(key, value, node));
+        }
+        size.increment();
+        fixHeightAndRebalance(node);
+        return null;
+    }
+
+    private Object attemptUpdate(Node<T, V> node, V value) {
+        synchronized (node) {
+            if (node.version == UNLINKED)
+                return RETRY;
+            V previous = node.value;
+            node.value = value;
+            if (previous == null) // revived a routing node
+                size.increment();
+            return previous;
+        }
+    }
+
+    /**
+     * Deletes a key if it exists
+     * 
+     * @param key the key to be deleted
+     */
+    public void delete(T key) {
+        remove(key);
+    }
+
+    /**
+     * Deletes a key if it exists
+     * 
+     * @param key the key to be deleted
+     * @return the value the key had, or null if it was absent
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(T key) {
+        Objects.requireNonNull(key);
+        Object result;
+        do
+            result = attemptRemove(key, rootHolder, 1, 0);
+        while (result == RETRY);
+        return (V) result;
+    }
+
+    private Object attemptRemove(T key, Node<T, V> node, int dir, long nodeVersion) {
+        Object result = RETRY;
+        do {
+            Node<T, V> child = node.child(dir);
+            if (node.version != nodeVersion)
+                return RETRY;
+            if (child == null)
+                return null;
+            int nextDir = key.compareTo(child.key);
+            if (nextDir == 0)
+                result = attemptRemoveNode(node, child);
+            else {
+                long childVersion = child.version;
+                if ((childVersion & SHRINKING) != 0)
+                    waitUntilNotChanging(child);
+                else if (childVersion != UNLINKED && child == node.child(dir)) {
+                    if (node.version != nodeVersion)
+                        return RETRY;
+                    result = attemptRemove(key, child, nextDir, childVersion);
+                }
+            }
+        } while (result == RETRY);
+        return result;
+    }
+
+    private static boolean canUnlink(Node<?, ?> node) {
+        return node.left == null || node.right == null;
+    }
+
+    private Object attemptRemoveNode(Node<T, V> parent, Node<T, V> node) {
+        if (node.value == null)
+            return null;
+        V previous;
+        if (!canUnlink(node)) {
+            // two children: leave a routing node behind
+            synchronized (node) {
+                if (node.version == UNLINKED || canUnlink(node))
+                    return RETRY;
+                previous = node.value;
+                node.value = null;
+            }
+            if (previous != null)
+                size.decrement();
+            return previous;
+        }
+        synchronized (parent) {
+            if (parent.version == UNLINKED || node.parent != parent)
+                return RETRY;
+            synchronized (node) {
+                if (node.version == UNLINKED)
+                    return RETRY;
+                previous = node.value;
+                if (previous == null)
+                    return null;
+                if (!canUnlink(node))
+                    return RETRY;
+                Node<T, V> splice = node.left != null ? node.left : node.right;
+                if (parent.left == node)
+                    parent.left = splice;
+                else
+                    parent.right = splice;
+                if (splice != null)
+                    splice.parent = parent;
+                node.version = UNLINKED;
+                node.value = null;
+            }
+        }
+        size.decrement();
+        fixHeightAndRebalance(parent);
+        return previous;
+    }
+
+    /* ---------------- rebalancing ---------------- */
+
+    /**
+     * Returns what a node needs: unlinking, rebalancing, a new height or nothing
+     */
+    private static int nodeCondition(Node<?, ?> node) {
+        Node<?, ?> left = node.left;
+        Node<?, ?> right = node.right;
+        if ((left == null || right == null) && node.value == null)
+            return UNLINK_REQUIRED;
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        int newHeight = 1 + Math.max(leftHeight, rightHeight);
+        int balance = leftHeight - rightHeight;
+        if (balance < -1 || balance > 1)
+            return REBALANCE_REQUIRED;
+        return node.height != newHeight ? newHeight : NOTHING_REQUIRED;
+    }
+
+    /**
+     * Repairs heights and balance from a node up towards the root
+     */
+    private void fixHeightAndRebalance(Node<T, V> node) {
+        while (node != null && node.parent != null) {
+            int condition = nodeCondition(node);
+            if (condition == NOTHING_REQUIRED || node.version == UNLINKED)
+                return;
+            if (condition != UNLINK_REQUIRED && condition != REBALANCE_REQUIRED) {
+                synchronized (node) {
+                    node = fixHeight(node);
+                }
+            } else {
+                Node<T, V> parent = node.parent;
+                synchronized (parent) {
+                    if (parent.version != UNLINKED && node.parent == parent) {
+                        synchronized (node) {
+                            node = rebalance(parent, node);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the height of a locked node
+     * 
+     * @return the next node to repair, or null if nothing is left to do
+     */
+    private Node<T, V> fixHeight(Node<T, V> node) {
+        int condition = nodeCondition(node);
+        switch (condition) {
+            case REBALANCE_REQUIRED:
+            case UNLINK_REQUIRED:
+                // needs the parent's lock too
+                return node;
+            case NOTHING_REQUIRED:
+                return null;
+            default:
+                node.height = condition;
+                return node.parent;
+        }
+    }
+
+    /**
+     * Unlinks, rotates or updates a node; the parent and node are locked
+     * 
+     * @return the next node to repair, or null if nothing is left to do
+     */
+    private Node<T, V> rebalance(Node<T, V> parent, Node<T, V> node) {
+        Node<T, V> left = node.left;
+        Node<T, V> right = node.right;
+        if ((left == null || right == null) && node.value == null) {
+            if (attemptUnlink(parent, node))
+                return fixHeight(parent);
+            return node;
+        }
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        int newHeight = 1 + Math.max(leftHeight, rightHeight);
+        int balance = leftHeight - rightHeight;
+        if (balance > 1)
+            return rebalanceToRight(parent, node, left, rightHeight);
+        if (balance < -1)
+            return rebalanceToLeft(parent, node, right, leftHeight);
+        if (newHeight != node.height) {
+            node.height = newHeight;
+            return fixHeight(parent);
+        }
+        return null;
+    }
+
+    /**
+     * Splices out a routing node with at most one child; the parent and node are locked
+     */
+    private boolean attemptUnlink(Node<T, V> parent, Node<T, V> node) {
+        Node<T, V> parentLeft = parent.left;
+        Node<T, V> parentRight = parent.right;
+        if (parentLeft != node && parentRight != node)
+            return false;
+        Node<T, V> left = node.left;
+        Node<T, V> right = node.right;
+        if (left != null && right != null)
+            return false;
+        Node<T, V> splice = left != null ? left : right;
+        if (parentLeft == node)
+            parent.left = splice;
+        else
+            parent.right = splice;
+        if (splice != null)
+            splice.parent = parent;
+        node.version = UNLINKED;
+        node.value = null;
+        return true;
+    }
+
+    /**
+     * Fixes a node whose left subtree is too tall
+     */
+    private Node<T, V> rebalanceToRight(Node<T, V> parent, Node<T, V> node, Node<T, V> left, int rightHeight) {
+        synchronized (left) {
+            int leftHeight = left.height;
+            if (leftHeight - rightHeight <= 1)
+                return node; // changed since we looked, retry
+            Node<T, V> leftRight = left.right;
+            int leftLeftHeight = height(left.left);
+            int leftRightHeight = height(leftRight);
+            // left subtree, left imbalance
+            if (leftLeftHeight >= leftRightHeight)
+                return rotateRight(parent, node, left, rightHeight, leftLeftHeight, leftRight, leftRightHeight);
+            synchronized (leftRight) {
+                leftRightHeight = leftRight.height;
+                if (leftLeftHeight >= leftRightHeight)
+                    return rotateRight(parent, node, left, rightHeight, leftLeftHeight, leftRight, leftRightHeight);
+                // left subtree, right imbalance
+                int leftRightLeftHeight = height(leftRight.left);
+                int balance = leftLeftHeight - leftRightLeftHeight;
+                if (balance >= -1 && balance <= 1
+                        && !((leftLeftHeight == 0 || leftRightLeftHeight == 0) && left.value == null))
+                    return rotateRightOverLeft(parent, node, left, rightHeight, leftLeftHeight, leftRight,
+                            leftRightLeftHeight);
+            }
+            // a double rotation would leave left unbalanced, so fix left first
+            return rebalanceToLeft(node, left, leftRight, leftLeftHeight);
+        }
+    }
+
+    /**
+     * Fixes a node whose right subtree is too tall
+     */
+    private Node<T, V> rebalanceToLeft(Node<T, V> parent, Node<T, V> node, Node<T, V> right, int leftHeight) {
+        synchronized (right) {
+            int rightHeight = right.height;
+            if (leftHeight - rightHeight >= -1)
+                return node; // changed since we looked, retry
+            Node<T, V> rightLeft = right.left;
+            int rightLeftHeight = height(rightLeft);
+            int rightRightHeight = height(right.right);
+            // right subtree, right imbalance
+            if (rightRightHeight >= rightLeftHeight)
+                return rotateLeft(parent, node, leftHeight, right, rightLeft, rightLeftHeight, rightRightHeight);
+            synchronized (rightLeft) {
+                rightLeftHeight = rightLeft.height;
+                if (rightRightHeight >= rightLeftHeight)
+                    return rotateLeft(parent, node, leftHeight, right, rightLeft, rightLeftHeight,
+                            rightRightHeight);
+                // right subtree, left imbalance
+                int rightLeftRightHeight = height(rightLeft.right);
+                int balance = rightRightHeight - rightLeftRightHeight;
+                if (balance >= -1 && balance <= 1
+                        && !((rightRightHeight == 0 || rightLeftRightHeight == 0) && right.value == null))
+                    return rotateLeftOverRight(parent, node, leftHeight, right, rightLeft, rightRightHeight,
+                            rightLeftRightHeight);
+            }
+            // a double rotation would leave right unbalanced, so fix right first
+            return rebalanceToRight(node, right, rightLeft, rightRightHeight);
+        }
+    }
+
+    /**
+     * Rightward rotation of a locked node under its locked parent
+     */
+    private Node<T, V> rotateRight(Node<T, V> parent, Node<T, V> node, Node<T, V> left, int rightHeight,
+            int leftLeftHeight, Node<T, V> leftRight, int leftRightHeight) {
+        long version = node.version;
+        Node<T, V> parentLeft = parent.left;
+        node.version = version | SHRINKING;
+
+        node.left = leftRight;
+        if (leftRight != null)
+            leftRight.parent = node;
+        left.right = node;
+        node.parent = left;
+        if (parentLeft == node)
+            parent.left = left;
+        else
+            parent.right = left;
+        left.parent = parent;
+
+        int nodeHeight = 1 + Math.max(leftRightHeight, rightHeight);
+        node.height = nodeHeight;
+        left.height = 1 + Math.max(leftLeftHeight, nodeHeight);
+        node.version = version + SHRINK_COUNT_INCR;
+
+        // report whichever node still needs work
+        int nodeBalance = leftRightHeight - rightHeight;
+        if (nodeBalance < -1 || nodeBalance > 1)
+            return node;
+        if ((leftRight == null || rightHeight == 0) && node.value == null)
+            return node;
+        int leftBalance = leftLeftHeight - nodeHeight;
+        if (leftBalance < -1 || leftBalance > 1)
+            return left;
+        if (leftLeftHeight == 0 && left.value == null)
+            return left;
+        return fixHeight(parent);
+    }
+
+    /**
+     * Leftward rotation of a locked node under its locked parent
+     */
+    private Node<T, V> rotateLeft(Node<T, V> parent, Node<T, V> node, int leftHeight, Node<T, V> right,
+            Node<T, V> rightLeft, int rightLeftHeight, int rightRightHeight) {
+        long version = node.version;
+        Node<T, V> parentLeft = parent.left;
+        node.version = version | SHRINKING;
+
+        node.right = rightLeft;
+        if (rightLeft != null)
+            rightLeft.parent = node;
+        right.left = node;
+        node.parent = right;
+        if (parentLeft == node)
+            parent.left = right;
+        else
+            parent.right = right;
+        right.parent = parent;
+
+        int nodeHeight = 1 + Math.max(leftHeight, rightLeftHeight);
+        node.height = nodeHeight;
+        right.height = 1 + Math.max(nodeHeight, rightRightHeight);
+        node.version = version + SHRINK_COUNT_INCR;
+
+        // report whichever node still needs work
+        int nodeBalance = rightLeftHeight - leftHeight;
+        if (nodeBalance < -1 || nodeBalance > 1)
+            return node;
+        if ((rightLeft == null || leftHeight == 0) && node.value == null)
+            return node;
+        int rightBalance = rightRightHeight - nodeHeight;
+        if (rightBalance < -1 || rightBalance > 1)
+            return right;
+        if (rightRightHeight == 0 && right.value == null)
+            return right;
+        return fixHeight(parent);
+    }
+
+    /**
+     * Double rotation: left child leftward, then node rightward
+     */
+    private Node<T, V> rotateRightOverLeft(Node<T, V> parent, Node<T, V> node, Node<T, V> left, int rightHeight,
+            int leftLeftHeight, Node<T, V> leftRight, int leftRightLeftHeight) {
+        long version = node.version;
+        long leftVersion = left.version;
+        Node<T, V> parentLeft = parent.left;
+        Node<T, V> leftRightLeft = leftRight.left;
+        Node<T, V> leftRightRight = leftRight.right;
+        int leftRightRightHeight = height(leftRightRight);
+        node.version = version | SHRINKING;
+        left.version = leftVersion | SHRINKING;
+
+        node.left = leftRightRight;
+        if (leftRightRight != null)
+            leftRightRight.parent = node;
+        left.right = leftRightLeft;
+        if (leftRightLeft != null)
+            leftRightLeft.parent = left;
+        leftRight.left = left;
+        left.parent = leftRight;
+        leftRight.right = node;
+        node.parent = leftRight;
+        if (parentLeft == node)
+            parent.left = leftRight;
+        else
+            parent.right = leftRight;
+        leftRight.parent = parent;
+
+        int nodeHeight = 1 + Math.max(leftRightRightHeight, rightHeight);
+        node.height = nodeHeight;
+        int leftNewHeight = 1 + Math.max(leftLeftHeight, leftRightLeftHeight);
+        left.height = leftNewHeight;
+        leftRight.height = 1 + Math.max(leftNewHeight, nodeHeight);
+        node.version = version + SHRINK_COUNT_INCR;
+        left.version = leftVersion + SHRINK_COUNT_INCR;
+
+        int nodeBalance = leftRightRightHeight - rightHeight;
+        if (nodeBalance < -1 || nodeBalance > 1)
+            return node;
+        if ((leftRightRight == null || rightHeight == 0) && node.value == null)
+            return node;
+        int balance = leftNewHeight - nodeHeight;
+        if (balance < -1 || balance > 1)
+            return leftRight;
+        return fixHeight(parent);
+    }
+
+    /**
+     * Double rotation: right child rightward, then node leftward
+     */
+    private Node<T, V> rotateLeftOverRight(Node<T, V> parent, Node<T, V> node, int leftHeight, Node<T, V> right,
+            Node<T, V> rightLeft, int rightRightHeight, int rightLeftRightHeight) {
+        long version = node.version;
+        long rightVersion = right.version;
+        Node<T, V> parentLeft = parent.left;
+        Node<T, V> rightLeftLeft = rightLeft.left;
+        Node<T, V> rightLeftRight = rightLeft.right;
+        int rightLeftLeftHeight = height(rightLeftLeft);
+        node.version = version | SHRINKING;
+        right.version = rightVersion | SHRINKING;
+
+        node.right = rightLeftLeft;
+        if (rightLeftLeft != null)
+            rightLeftLeft.parent = node;
+        right.left = rightLeftRight;
+        if (rightLeftRight != null)
+            rightLeftRight.parent = right;
+        rightLeft.right = right;
+        right.parent = rightLeft;
+        rightLeft.left = node;
+        node.parent = rightLeft;
+        if (parentLeft == node)
+            parent.left = rightLeft;
+        else
+            parent.right = rightLeft;
+        rightLeft.parent = parent;
+
+        int nodeHeight = 1 + Math.max(leftHeight, rightLeftLeftHeight);
+        node.height = nodeHeight;
+        int rightNewHeight = 1 + Math.max(rightLeftRightHeight, rightRightHeight);
+        right.height = rightNewHeight;
+        rightLeft.height = 1 + Math.max(nodeHeight, rightNewHeight);
+        node.version = version + SHRINK_COUNT_INCR;
+        right.version = rightVersion + SHRINK_COUNT_INCR;
+
+        int nodeBalance = rightLeftLeftHeight - leftHeight;
+        if (nodeBalance < -1 || nodeBalance > 1)
+            return node;
+        if ((rightLeftLeft == null || leftHeight == 0) && node.value == null)
+            return node;
+        int balance = rightNewHeight - nodeHeight;
+        if (balance < -1 || balance > 1)
+            return rightLeft;
+        return fixHeight(parent);
+    }
+
+    /* ---------------- traversal ---------------- */
+
+    /**
+     * Returns a weakly consistent iterator over the entries in key order
+     * Never blocks writers; each step is an optimistic O(log n) successor search
+     * 
+     * @return an iterator over all entries
+     */
+    @Override
+    public Iterator<Map.Entry<T, V>> iterator() {
+        return new EntryIterator(null, null);
+    }
+
+    /**
+     * Returns the entries with keys in [fromKey, toKey) in key order, weakly consistent
+     * 
+     * @param fromKey the lowest key to include
+     * @param toKey   the key to stop before
+     * @return a lazy view of the entries in the range
+     */
+    public Iterable<Map.Entry<T, V>> range(T fromKey, T toKey) {
+        Objects.requireNonNull(fromKey);
+        Objects.requireNonNull(toKey);
+        return () -> new EntryIterator(fromKey, toKey);
+    }
+
+    /**
+     * Inorder traversal of the tree, weakly consistent under concurrent writes
+     * 
+     * @return an inorder list of the values in the tree
+     */
+    public List<V> inorderRec() {
+        List<V> list = new ArrayList<>();
+        for (Map.Entry<T, V> entry : this)
+            list.add(entry.getValue());
+        return list;
+    }
+
+    /**
+     * Iterator that finds each entry with a fresh successor search, so it never
+     * holds on to a position that a rotation could invalidate
+     */
+    private class EntryIterator implements Iterator<Map.Entry<T, V>> {
+        /** the key to stop before, or null to run to the end of the tree */
+        private final T toKey;
+
+        /** the next entry to return, or null at the end */
+        private Map.Entry<T, V> next;
+
+        private EntryIterator(T fromKey, T toKey) {
+            this.toKey = toKey;
+            advance(fromKey, true);
+        }
+
+        /**
+         * Moves to the first live entry after key
+         */
+        private void advance(T key, boolean inclusive) {
+            while (true) {
+                Node<T, V> node = successor(key, inclusive);
+                if (node == null || (toKey != null && toKey.compareTo(node.key) <= 0)) {
+                    next = null;
+                    return;
+                }
+                V value = node.value;
+                if (value != null) {
+                    next = new AbstractMap.SimpleImmutableEntry<>(node.key, value);
+                    return;
+                }
+                // routing node or removed concurrently
+                key = node.key;
+                inclusive = false;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<T, V> next() {
+            if (next == null)
+                throw new NoSuchElementException();
+            Map.Entry<T, V> current = next;
+            advance(current.getKey(), false);
+            return current;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.charlin2.trees;
+
+/**
+ * What insert does with a key that is already in the tree
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public enum DuplicateKeys {
+    /** add another node for the key; search finds one of them, searchAll finds all */
+    ALLOW,
+
+    /** replace the value of the existing node in place, like put */
+    REPLACE,
+
+    /** keep one node per key and append the value to the node's bucket of values */
+    BUCKET
+}
@@ -0,0 +1,608 @@
+package io.github.charlin2.trees;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Crash-safe wrapper that logs every insert and delete of a SearchTree
+ * 
+ * Each mutation is applied to the tree and appended as a checksummed record to
+ * a write-ahead log in a directory. Writers that arrive while a log write is in
+ * progress queue their records behind it, and the next writer to find the log
+ * idle writes (and, depending on the SyncPolicy, forces) all queued records at
+ * once, so concurrent writers share one fsync. When the log outgrows a
+ * threshold a copy of the tree is written to a checkpoint in the
+ * MappedAVLSnapshot format and a fresh log is started, which bounds the work of
+ * recovery. The copy is taken under the lock but written outside it, so
+ * readers and writers only wait for the copy, not for the disk.
+ * 
+ * Opening a directory loads the newest checkpoint and replays the log written
+ * after it, stopping at the first torn or corrupt record. Files are named by
+ * generation: checkpoint-g.avls holds the tree as of the start of wal-g.log.
+ * 
+ * All methods are thread-safe; reads and writes of the tree are serialized.
+ * Readers may see a mutation before it is durable.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public class DurableTree<T extends Comparable<T>, V> implements SearchTree<T, V>, AutoCloseable {
+    /** log size after which a checkpoint is taken, used by the shorter constructor */
+    public static final long DEFAULT_CHECKPOINT_BYTES = 64L << 20;
+
+    /**
+     * When a mutation returns relative to its log record reaching the disk
+     */
+    public enum SyncPolicy {
+        /** after the record has been written and forced to the device (survives power loss) */
+        FSYNC,
+        /** after the record has been written to the file (survives a process crash) */
+        WRITE,
+        /** immediately; records are written once 1 MB is pending, or by flush, checkpoint or close */
+        NONE
+    }
+
+    /** record types */
+    private static final byte INSERT = 1, DELETE = 2;
+
+    /** length stored for a null value */
+    private static final int NULL_LENGTH = -1;
+
+    /** pending bytes after which even SyncPolicy.NONE writes the log */
+    private static final int NONE_BUFFER_BYTES = 1 << 20;
+
+    /** size of a record header: payload length and CRC32C */
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    /** names of the files in the directory, numbered by generation */
+    private static final Pattern CHECKPOINT = Pattern.compile("checkpoint-(\\d+)\\.avls");
+    private static final Pattern LOG = Pattern.compile("wal-(\\d+)\\.log");
+
+    /** the wrapped tree, guarded by this */
+    private final SearchTree<T, V> tree;
+
+    /** configuration given to the constructor */
+    private final Path directory;
+    private final Codec<T> keyCodec;
+    private final Codec<V> valueCodec;
+    private final SyncPolicy policy;
+    private final long checkpointBytes;
+
+    /** records appended but not yet written, encoded in place, guarded by this */
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 12);
+    private int pendingLength;
+
+    /** the buffer last written by the committing thread, swapped with pending on the next write */
+    private ByteBuffer spare = ByteBuffer.allocate(1 << 12);
+
+    /** checksum of the record being appended or replayed, guarded by this */
+    private final CRC32C crc = new CRC32C();
+
+    /** sequence number of the last appended record, guarded by this */
+    private long appended;
+
+    /** the current log and its generation, used only by the committing thread */
+    private FileChannel log;
+    private long generation;
+
+    /** guards the fields below and is waited on by writers whose records are not yet written */
+    private final Object commitLock = new Object();
+
+    /** sequence number of the last record written (and forced, under FSYNC) */
+    private long committed;
+
+    /** whether some thread is writing to the log */
+    private boolean committing;
+
+    /** the error that broke the log, after which the tree refuses writes; set under commitLock */
+    private volatile IOException failure;
+
+    /** whether close has been called, guarded by this */
+    private boolean closed;
+
+    /**
+     * Opens or creates a durable tree in a directory
+     * 
+     * @param directory  the directory holding the log and checkpoints, created if missing
+     * @param tree       an empty tree to recover into and wrap
+     * @param keyCodec   the encoding of the keys
+     * @param valueCodec the encoding of the values
+     * @param policy     when mutations return relative to their log records reaching the disk
+     * @throws IOException if the directory cannot be read or written
+     */
+    public DurableTree(Path directory, SearchTree<T, V> tree, Codec<T> keyCodec, Codec<V> valueCodec,
+            SyncPolicy policy) throws IOException {
+        this(directory, tree, keyCodec, valueCodec, policy, DEFAULT_CHECKPOINT_BYTES);
+    }
+
+    /**
+     * Opens or creates a durable tree in a directory
+     * 
+     * @param directory       the directory holding the log and checkpoints, created if missing
+     * @param tree            an empty tree to recover into and wrap
+     * @param keyCodec        the encoding of the keys
+     * @param valueCodec      the encoding of the values
+     * @param policy          when mutations return relative to their log records reaching the disk
+     * @param checkpointBytes the log size after which a checkpoint is taken
+     * @throws IOException if the directory cannot be read or written
+     */
+    public DurableTree(Path directory, SearchTree<T, V> tree, Codec<T> keyCodec, Codec<V> valueCodec,
+            SyncPolicy policy, long checkpointBytes) throws IOException {
+        if (tree.size() != 0)
+            throw new IllegalArgumentException("tree must be empty");
+        this.directory = directory;
+        this.tree = tree;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.policy = policy;
+        this.checkpointBytes = checkpointBytes;
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    /* ---------------- recovery ---------------- */
+
+    /**
+     * Loads the newest checkpoint, replays its log and removes files of older generations
+     */
+    private void recover() throws IOException {
+        long newest = 0;
+        boolean hasCheckpoint = false;
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> list = Files.list(directory)) {
+            list.forEach(files::add);
+        }
+        for (Path file : files) {
+            Matcher matcher = CHECKPOINT.matcher(file.getFileName().toString());
+            if (matcher.matches() && Long.parseLong(matcher.group(1)) >= newest) {
+                newest = Long.parseLong(matcher.group(1));
+                hasCheckpoint = true;
+            }
+        }
+        generation = newest;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            Matcher checkpoint = CHECKPOINT.matcher(name);
+            Matcher log = LOG.matcher(name);
+            if (checkpoint.matches() && Long.parseLong(checkpoint.group(1)) < newest
+                    || log.matches() && Long.parseLong(log.group(1)) != newest || name.endsWith(".tmp"))
+                Files.delete(file);
+        }
+        if (hasCheckpoint)
+            loadCheckpoint(checkpointFile(newest));
+        log = FileChannel.open(logFile(newest), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long end = replay(log);
+        // drop a torn tail so new records follow the last good one
+        log.truncate(end);
+        log.position(end);
+    }
+
+    private Path checkpointFile(long generation) {
+        return directory.resolve("checkpoint-" + generation + ".avls");
+    }
+
+    private Path logFile(long generation) {
+        return directory.resolve("wal-" + generation + ".log");
+    }
+
+    /**
+     * Inserts the entries of a checkpoint, each subrange's middle entry first, so
+     * that even an unbalanced tree comes out balanced
+     * The entries of the middle key go in together and in order, so the values
+     * of a duplicated key keep the order they were inserted in.
+     */
+    private void loadCheckpoint(Path file) throws IOException {
+        MappedAVLSnapshot<T, V> snapshot = MappedAVLSnapshot.open(file, keyCodec, valueCodec);
+        loadRange(snapshot, 0, snapshot.size());
+    }
+
+    private void loadRange(MappedAVLSnapshot<T, V> snapshot, int from, int to) {
+        if (from >= to)
+            return;
+        int middle = (from + to) >>> 1;
+        T key = snapshot.select(middle);
+        int first = middle, end = middle + 1;
+        while (first > from && snapshot.select(first - 1).compareTo(key) == 0)
+            first--;
+        while (end < to && snapshot.select(end).compareTo(key) == 0)
+            end++;
+        for (int i = first; i < end; i++)
+            tree.insert(key, snapshot.kthSmallest(i + 1));
+        loadRange(snapshot, from, first);
+        loadRange(snapshot, end, to);
+    }
+
+    /**
+     * Applies every intact record of a log to the tree
+     * 
+     * @return the position after the last intact record
+     */
+    private long replay(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        while (position + RECORD_HEADER_BYTES <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            int length = header.getInt(0);
+            int checksum = header.getInt(4);
+            if (length <= 0 || position + RECORD_HEADER_BYTES + length > size)
+                break; // torn write
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(channel, payload, position + RECORD_HEADER_BYTES);
+            crc.reset();
+            crc.update(payload.array(), 0, length);
+            if ((int) crc.getValue() != checksum)
+                break; // corrupt record
+            apply(payload);
+            position += RECORD_HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("unexpected end of log");
+        }
+    }
+
+    /**
+     * Applies one logged mutation to the tree
+     */
+    private void apply(ByteBuffer payload) {
+        byte type = payload.get(0);
+        int keyLength = payload.getInt(1);
+        T key = keyCodec.decode(payload, 5, keyLength);
+        if (type == DELETE) {
+            tree.delete(key);
+            return;
+        }
+        int valueLength = payload.getInt(5 + keyLength);
+        V value = valueLength == NULL_LENGTH ? null : valueCodec.decode(payload, 9 + keyLength, valueLength);
+        tree.insert(key, value);
+    }
+
+    /* ---------------- logging ---------------- */
+
+    /**
+     * Appends a record to the pending buffer; the caller holds this
+     * 
+     * @return the sequence number of the record
+     */
+    private long append(byte type, T key, V value) {
+        if (closed)
+            throw new IllegalStateException("tree is closed");
+        // refuse before the tree is touched, so it never runs ahead of a broken log
+        checkFailure();
+        int keyLength = keyCodec.encodedLength(key);
+        int valueLength = type == INSERT && value != null ? valueCodec.encodedLength(value) : NULL_LENGTH;
+        int length = 1 + 4 + keyLength + (type == INSERT ? 4 + Math.max(valueLength, 0) : 0);
+        int total = RECORD_HEADER_BYTES + length;
+        if (pendingLength + total > pending.capacity())
+            pending = ByteBuffer.wrap(
+                    Arrays.copyOf(pending.array(), Math.max(pendingLength + total, 2 * pending.capacity())));
+        // the payload is encoded straight into the pending buffer, then the header is filled in
+        int start = pendingLength + RECORD_HEADER_BYTES;
+        pending.put(start, type).putInt(start + 1, keyLength);
+        keyCodec.encode(key, pending, start + 5);
+        if (type == INSERT) {
+            pending.putInt(start + 5 + keyLength, valueLength);
+            if (valueLength != NULL_LENGTH)
+                valueCodec.encode(value, pending, start + 9 + keyLength);
+        }
+        crc.reset();
+        crc.update(pending.array(), start, length);
+        pending.putInt(pendingLength, length).putInt(pendingLength + 4, (int) crc.getValue());
+        pendingLength += total;
+        return ++appended;
+    }
+
+    /**
+     * Returns once the record with the given sequence number has been written,
+     * writing it and every record queued with it if no other thread is doing so
+     */
+    private void commit(long sequence) {
+        own(sequence, () -> {
+            long written = writePending(policy == SyncPolicy.FSYNC);
+            if (log.size() >= checkpointBytes)
+                written = checkpointLocked();
+            return written;
+        });
+    }
+
+    /**
+     * Runs an operation that needs the log to itself, unless the record with the
+     * given sequence number is written while waiting for the log
+     * 
+     * @param sequence  the record the caller waits for, or 0 to always run the operation
+     * @param operation the work to do while owning the log
+     */
+    private void own(long sequence, LogOperation operation) {
+        synchronized (commitLock) {
+            while (true) {
+                checkFailure();
+                if (sequence != 0 && committed >= sequence)
+                    return;
+                if (!committing)
+                    break;
+                try {
+                    commitLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted while waiting for the log", e);
+                }
+            }
+            // nobody owns the log, so it cannot be swapped or closed under this check
+            if (!log.isOpen())
+                throw new IllegalStateException("tree is closed");
+            committing = true;
+        }
+        // this thread now owns the log until committing is cleared
+        long written = 0;
+        IOException error = null;
+        try {
+            written = operation.run();
+        } catch (IOException e) {
+            error = e;
+        }
+        synchronized (commitLock) {
+            if (error != null)
+                failure = error;
+            else
+                committed = Math.max(committed, written);
+            committing = false;
+            commitLock.notifyAll();
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() {
+        if (failure != null)
+            throw new UncheckedIOException("write-ahead log failed", failure);
+    }
+
+    /**
+     * Writes every pending record to the log; the caller owns the log
+     * 
+     * @return the sequence number of the last record written
+     */
+    private long writePending(boolean force) throws IOException {
+        int length;
+        long last;
+        synchronized (this) {
+            length = takePending();
+            last = appended;
+        }
+        writeSpare(length, force);
+        return last;
+    }
+
+    /**
+     * Moves the pending records to spare; the caller owns the log and holds this
+     * 
+     * @return the number of bytes moved
+     */
+    private int takePending() {
+        // only the owner of the log swaps, and it is done with spare by now
+        ByteBuffer taken = pending;
+        int length = pendingLength;
+        pending = spare;
+        pendingLength = 0;
+        spare = taken;
+        return length;
+    }
+
+    /**
+     * Writes the records taken from pending to the log; the caller owns the log
+     */
+    private void writeSpare(int length, boolean force) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(spare.array(), 0, length);
+        while (buffer.hasRemaining())
+            log.write(buffer);
+        if (force)
+            log.force(false);
+    }
+
+    /**
+     * Writes the tree to a new checkpoint and starts a new log; the caller owns the log
+     * 
+     * @return the sequence number of the last record covered by the checkpoint
+     */
+    private long checkpointLocked() throws IOException {
+        int length;
+        long last;
+        List<Map.Entry<T, V>> entries;
+        synchronized (this) {
+            // the copy covers exactly the records taken here, which belong to the
+            // old log; records appended from now on go to the new one
+            length = takePending();
+            last = appended;
+            entries = copy(tree.entries());
+        }
+        // the checkpoint is forced before the old log is deleted, so these are safe
+        writeSpare(length, false);
+        long next = generation + 1;
+        // written to a temporary file, forced and renamed into place
+        MappedAVLSnapshot.write(checkpointFile(next), entries, keyCodec, valueCodec);
+        FileChannel newLog = FileChannel.open(logFile(next), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        log.close();
+        log = newLog;
+        Files.deleteIfExists(logFile(generation));
+        Files.deleteIfExists(checkpointFile(generation));
+        generation = next;
+        return last;
+    }
+
+    /**
+     * Work done while owning the log
+     */
+    private interface LogOperation {
+        /**
+         * @return the sequence number of the last record known to be written
+         */
+        long run() throws IOException;
+    }
+
+    /* ---------------- tree operations ---------------- */
+
+    /**
+     * Inserts a key-value pair, returning according to the sync policy
+     * 
+     * @param key   the key of the entry being inserted
+     * @param value the value stored with the key
+     */
+    public void insert(T key, V value) {
+        long sequence;
+        boolean full;
+        synchronized (this) {
+            sequence = append(INSERT, key, value);
+            tree.insert(key, value);
+            full = pendingLength >= NONE_BUFFER_BYTES;
+        }
+        if (policy != SyncPolicy.NONE || full)
+            commit(sequence);
+    }
+
+    /**
+     * Inserts a batch of entries with a single wait for the log
+     * 
+     * @param entries the entries to insert
+     */
+    public void insertAll(Iterable<? extends Map.Entry<? extends T, ? extends V>> entries) {
+        long sequence = 0;
+        boolean full;
+        synchronized (this) {
+            for (Map.Entry<? extends T, ? extends V> entry : entries) {
+                sequence = append(INSERT, entry.getKey(), entry.getValue());
+                tree.insert(entry.getKey(), entry.getValue());
+            }
+            full = pendingLength >= NONE_BUFFER_BYTES;
+        }
+        if (sequence != 0 && (policy != SyncPolicy.NONE || full))
+            commit(sequence);
+    }
+
+    /**
+     * Deletes a key if it exists, returning according to the sync policy
+     * 
+     * @param key the key to be deleted
+     */
+    public void delete(T key) {
+        long sequence;
+        boolean full;
+        synchronized (this) {
+            sequence = append(DELETE, key, null);
+            tree.delete(key);
+            full = pendingLength >= NONE_BUFFER_BYTES;
+        }
+        if (policy != SyncPolicy.NONE || full)
+            commit(sequence);
+    }
+
+    /**
+     * Returns the value associated with a key if it exists
+     * 
+     * @param key the key to be searched for
+     * @return the value associated with the key, or null if it is not in the tree
+     */
+    public synchronized V search(T key) {
+        return tree.search(key);
+    }
+
+    /**
+     * Returns the number of entries in the tree
+     * 
+     * @return the size of the tree
+     */
+    public synchronized int size() {
+        return tree.size();
+    }
+
+    /**
+     * Inorder traversal of the tree
+     * 
+     * @return an inorder list of the values in the tree
+     */
+    public synchronized List<V> inorderRec() {
+        return tree.inorderRec();
+    }
+
+    /**
+     * Returns an iterator over a copy of the entries, taken under the lock
+     * 
+     * @return an iterator over all entries
+     */
+    @Override
+    public synchronized Iterator<Map.Entry<T, V>> iterator() {
+        return copy(tree).iterator();
+    }
+
+    /**
+     * Returns a copy of every value with its key, taken under the lock
+     * 
+     * @return the entries of the wrapped tree, one per value
+     */
+    @Override
+    public synchronized Iterable<Map.Entry<T, V>> entries() {
+        return copy(tree.entries());
+    }
+
+    /**
+     * Copies entries of the tree in order; the caller holds this
+     */
+    private List<Map.Entry<T, V>> copy(Iterable<Map.Entry<T, V>> entries) {
+        List<Map.Entry<T, V>> copy = new ArrayList<>(tree.size());
+        for (Map.Entry<T, V> entry : entries)
+            copy.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+        return copy;
+    }
+
+    /**
+     * Writes and forces every mutation made so far
+     */
+    public void flush() {
+        own(0, () -> writePending(true));
+    }
+
+    /**
+     * Writes the tree to a new checkpoint and starts a new, empty log
+     */
+    public void checkpoint() {
+        own(0, this::checkpointLocked);
+    }
+
+    /**
+     * Forces every mutation to disk and closes the log
+     */
+    @Override
+    public void close() {
+        // only the first call gets past here; later records are refused from now on
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+        }
+        own(0, () -> {
+            long written = writePending(true);
+            log.close();
+            return written;
+        });
+    }
+}
@@ -0,0 +1,388 @@
+package io.github.charlin2.trees;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * AVL Tree specialized for int keys
+ * 
+ * Keys are compared with plain {@code <} and never boxed. Nodes are not
+ * objects: they are slots in parallel arrays, linked by slot index, so an entry
+ * costs about 17 bytes of array space instead of a node object plus a boxed key.
+ * Deleted slots are reused through a free list.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public class IntAVLTree<V> {
+    /** slot index standing in for a missing child */
+    private static final int NIL = -1;
+
+    /** key of each slot */
+    private int[] keys;
+
+    /** value of each slot */
+    private Object[] values;
+
+    /** left and right children of each slot, or the next free slot for left */
+    private int[] left, right;
+
+    /** height of the subtree rooted at each slot (a leaf has height 0) */
+    private byte[] heights;
+
+    /** slot of the root */
+    private int root = NIL;
+
+    /** head of the list of free slots, chained through left */
+    private int free = NIL;
+
+    /** number of slots that have ever been used */
+    private int used;
+
+    /** number of entries in the tree */
+    private int size;
+
+    /**
+     * Creates a new AVL tree
+     */
+    public IntAVLTree() {
+        this(16);
+    }
+
+    /**
+     * Creates a new AVL tree with room for a number of entries before resizing
+     * 
+     * @param initialCapacity the number of entries to allocate space for
+     */
+    public IntAVLTree(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        keys = new int[capacity];
+        values = new Object[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        heights = new byte[capacity];
+    }
+
+    /**
+     * Takes a slot off the free list, or a fresh one if none is free
+     * 
+     * @param key   the key to store in the slot
+     * @param value the value to store in the slot
+     * @return the index of the slot
+     */
+    private int allocate(int key, V value) {
+        int slot;
+        if (free != NIL) {
+            slot = free;
+            free = left[slot];
+        } else {
+            if (used == keys.length) {
+                int capacity = used * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                values = Arrays.copyOf(values, capacity);
+                left = Arrays.copyOf(left, capacity);
+                right = Arrays.copyOf(right, capacity);
+                heights = Arrays.copyOf(heights, capacity);
+            }
+            slot = used++;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        left[slot] = right[slot] = NIL;
+        heights[slot] = 0;
+        return slot;
+    }
+
+    /**
+     * Returns a slot to the free list
+     * 
+     * @param slot the slot that is no longer in the tree
+     */
+    private void release(int slot) {
+        values[slot] = null;
+        left[slot] = free;
+        free = slot;
+    }
+
+    /**
+     * Returns the cached height of a subtree
+     * 
+     * @param slot the root of the subtree
+     * @return the height of the subtree, or -1 if it is empty
+     */
+    private int height(int slot) {
+        if (slot == NIL)
+            return -1;
+        return heights[slot];
+    }
+
+    /**
+     * Recomputes the cached height of a slot from its children
+     * 
+     * @param slot the slot whose children have changed
+     */
+    private void update(int slot) {
+        heights[slot] = (byte) (Math.max(height(left[slot]), height(right[slot])) + 1);
+    }
+
+    /**
+     * Returns the balance of a subtree
+     * 
+     * @param slot the root of the subtree
+     * @return the balance of the subtree
+     */
+    private int getBalance(int slot) {
+        if (slot != NIL)
+            return height(right[slot]) - height(left[slot]);
+        return 0;
+    }
+
+    /**
+     * Rightward rotation
+     * 
+     * @param slot the slot to be rotated around
+     * @return the new root of the subtree after the rotation
+     */
+    private int rotateRight(int slot) {
+        int leftChild = left[slot];
+        left[slot] = right[leftChild];
+        right[leftChild] = slot;
+        update(slot);
+        update(leftChild);
+        return leftChild;
+    }
+
+    /**
+     * Leftward rotation
+     * 
+     * @param slot the slot to be rotated around
+     * @return the new root of the subtree after the rotation
+     */
+    private int rotateLeft(int slot) {
+        int rightChild = right[slot];
+        right[slot] = left[rightChild];
+        left[rightChild] = slot;
+        update(slot);
+        update(rightChild);
+        return rightChild;
+    }
+
+    /**
+     * Restores the AVL balance of a subtree whose children are balanced
+     * 
+     * @param slot the root of the subtree
+     * @return the new root of the subtree
+     */
+    private int rebalance(int slot) {
+        update(slot);
+        int balance = getBalance(slot);
+        if (balance > 1) {
+            // right subtree, left imbalance
+            if (getBalance(right[slot]) < 0)
+                right[slot] = rotateRight(right[slot]);
+            return rotateLeft(slot);
+        }
+        if (balance < -1) {
+            // left subtree, right imbalance
+            if (getBalance(left[slot]) > 0)
+                left[slot] = rotateLeft(left[slot]);
+            return rotateRight(slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Recursive insert helper method
+     * 
+     * @param slot    the current slot to check for insertion
+     * @param newSlot the slot to be inserted
+     * @return the new root of the subtree
+     */
+    private int insert(int slot, int newSlot) {
+        if (slot == NIL)
+            return newSlot;
+        if (keys[newSlot] < keys[slot])
+            left[slot] = insert(left[slot], newSlot);
+        else
+            right[slot] = insert(right[slot], newSlot);
+        return rebalance(slot);
+    }
+
+    /**
+     * Inserts a key-value pair into the AVL Tree and rebalances accordingly
+     * 
+     * @param key   the key of the entry being inserted
+     * @param value the value stored with the key
+     */
+    public void insert(int key, V value) {
+        root = insert(root, allocate(key, value));
+        size++;
+    }
+
+    /**
+     * Returns the value associated with a key if it exists
+     * 
+     * @param key the key to be searched for
+     * @return the value associated with the key, or null if it is not in the tree
+     */
+    @SuppressWarnings("unchecked")
+    public V search(int key) {
+        int trav = root;
+        while (trav != NIL) {
+            int current = keys[trav];
+            if (key < current)
+                trav = left[trav];
+            else if (key > current)
+                trav = right[trav];
+            else
+                return (V) values[trav];
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether a key is in the tree
+     * 
+     * @param key the key to be searched for
+     * @return true if the tree holds the key
+     */
+    public boolean contains(int key) {
+        int trav = root;
+        while (trav != NIL) {
+            int current = keys[trav];
+            if (key < current)
+                trav = left[trav];
+            else if (key > current)
+                trav = right[trav];
+            else
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Recursive method to help with delete method
+     * 
+     * @param slot the root of the subtree to delete from
+     * @param key  the key to be deleted
+     * @return the new root of the subtree
+     */
+    private int remove(int slot, int key) {
+        if (slot == NIL)
+            return NIL;
+        if (key < keys[slot])
+            left[slot] = remove(left[slot], key);
+        else if (key > keys[slot])
+            right[slot] = remove(right[slot], key);
+        else if (left[slot] == NIL || right[slot] == NIL) { // one or no children
+            int child = left[slot] == NIL ? right[slot] : left[slot];
+            release(slot);
+            size--;
+            return child;
+        } else { // two children
+            int successor = right[slot];
+            while (left[successor] != NIL)
+                successor = left[successor];
+            keys[slot] = keys[successor];
+            values[slot] = values[successor];
+            right[slot] = remove(right[slot], keys[successor]);
+        }
+        return rebalance(slot);
+    }
+
+    /**
+     * Deletes a key if it exists
+     * 
+     * @param key the key to be deleted
+     */
+    public void delete(int key) {
+        root = remove(root, key);
+    }
+
+    /**
+     * Returns the number of entries in the tree
+     * 
+     * @return the size of the tree
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the height of the tree
+     * 
+     * @return the height of the tree, or -1 if it is empty
+     */
+    public int height() {
+        return height(root);
+    }
+
+    /**
+     * Recursive helper method for inorderRec
+     */
+    @SuppressWarnings("unchecked")
+    private List<V> inorder(int slot, List<V> list) {
+        if (slot == NIL)
+            return list;
+        inorder(left[slot], list);
+        list.add((V) values[slot]);
+        inorder(right[slot], list);
+        return list;
+    }
+
+    /**
+     * Inorder traversal of the tree recursively
+     * 
+     * @return an inorder list of the values in the tree
+     */
+    public List<V> inorderRec() {
+        return inorder(root, new ArrayList<V>(size));
+    }
+
+    /**
+     * Recursive helper method for postorder
+     */
+    @SuppressWarnings("unchecked")
+    private List<V> postorder(int slot, List<V> list) {
+        if (slot == NIL)
+            return list;
+        postorder(left[slot], list);
+        postorder(right[slot], list);
+        list.add((V) values[slot]);
+        return list;
+    }
+
+    /**
+     * Returns a list containing the post order traversal of the tree
+     * 
+     * @return list in postorder traversal
+     */
+    public List<V> postorder() {
+        return postorder(root, new LinkedList<V>());
+    }
+
+    /**
+     * Returns the keys of the tree in ascending order
+     * 
+     * @return a sorted array of the keys
+     */
+    public int[] keys() {
+        int[] sorted = new int[size];
+        int count = 0;
+        // iterative inorder walk: the AVL height bounds the stack
+        int[] stack = new int[height(root) + 1];
+        int top = 0;
+        int trav = root;
+        while (trav != NIL || top > 0) {
+            while (trav != NIL) {
+                stack[top++] = trav;
+                trav = left[trav];
+            }
+            trav = stack[--top];
+            sorted[count++] = keys[trav];
+            trav = right[trav];
+        }
+        return sorted;
+    }
+}
@@ -0,0 +1,153 @@
+package io.github.charlin2.trees;
+
+import java.util.Arrays;
+
+/**
+ * Log-linear histogram of non-negative values such as latencies in nanoseconds
+ * 
+ * Values are counted in buckets laid out as in HdrHistogram: every power of two
+ * is split into 32 linear sub-buckets, so a reported value is within about 3% of
+ * the recorded ones while the whole long range fits in under 2000 counters.
+ * Recording is O(1) and never allocates.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public class LatencyHistogram {
+    /** log2 of the number of sub-buckets per power of two */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /** number of sub-buckets per power of two */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** enough buckets for Long.MAX_VALUE */
+    private static final int BUCKETS = index(Long.MAX_VALUE) + 1;
+
+    /** number of values recorded in each bucket */
+    private final long[] counts;
+
+    /** total number of values recorded */
+    private long count;
+
+    /** largest value recorded */
+    private long max;
+
+    /**
+     * Creates an empty histogram
+     */
+    public LatencyHistogram() {
+        counts = new long[BUCKETS];
+    }
+
+    private LatencyHistogram(LatencyHistogram other) {
+        counts = other.counts.clone();
+        count = other.count;
+        max = other.max;
+    }
+
+    /**
+     * Returns the bucket of a value: values below 64 have their own bucket, larger
+     * ones share a bucket with the values that agree in their top 6 bits
+     */
+    private static int index(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the largest value that falls into a bucket
+     */
+    private static long highestValue(int index) {
+        int shift = Math.max(0, (index >>> SUB_BUCKET_BITS) - 1);
+        long lowest = (long) (index - (shift << SUB_BUCKET_BITS)) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Records a value, clamping negative values to 0
+     * 
+     * @param value the value to record
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        counts[index(value)]++;
+        count++;
+        if (value > max)
+            max = value;
+    }
+
+    /**
+     * Returns the number of values recorded
+     * 
+     * @return the total count
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Returns the largest value recorded
+     * 
+     * @return the maximum, or 0 if nothing was recorded
+     */
+    public long max() {
+        return max;
+    }
+
+    /**
+     * Returns a value that at least the given percentage of the recorded values do not exceed
+     * 
+     * @param percentile the percentage, between 0 and 100
+     * @return the value at the percentile, or 0 if nothing was recorded
+     */
+    public long valueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("percentile out of range: " + percentile);
+        if (count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(highestValue(i), max);
+        }
+        return max;
+    }
+
+    /**
+     * Adds every value recorded by another histogram to this one
+     * 
+     * @param other the histogram to add, which is not modified
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++)
+            counts[i] += other.counts[i];
+        count += other.count;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Forgets every recorded value
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        max = 0;
+    }
+
+    /**
+     * Returns an independent copy of the histogram
+     * 
+     * @return a copy holding the same counts
+     */
+    public LatencyHistogram copy() {
+        return new LatencyHistogram(this);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + " p50=" + valueAtPercentile(50) + " p99=" + valueAtPercentile(99) + " p99.9="
+                + valueAtPercentile(99.9) + " max=" + max;
+    }
+}
@@ -0,0 +1,339 @@
+package io.github.charlin2.trees;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Read-only tree served directly from a memory-mapped snapshot file
+ * 
+ * A snapshot written by AVLTree.writeSnapshot stores the entries as a sorted
+ * array of records with an index of record offsets, which is the in-order
+ * layout of a perfectly balanced tree: binary search over the index visits the
+ * same keys a search of that tree would. Opening a snapshot only maps the file,
+ * so it costs O(1) regardless of size, and the pages are shared through the OS
+ * page cache by every process that maps the same file. Lookups compare keys in
+ * place and decode only the value they return.
+ * 
+ * File layout, all integers big-endian:
+ * 
+ * <pre>
+ * header  magic "AVLS", format version, entry count, offset of the index
+ * records key length, key bytes, value length (-1 for null), value bytes
+ * index   offset of each record, in key order
+ * </pre>
+ * 
+ * Files are limited to 2 GB, the size of one mapping.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public class MappedAVLSnapshot<T extends Comparable<T>, V> implements Iterable<Map.Entry<T, V>> {
+    /** "AVLS" in ASCII */
+    private static final int MAGIC = 0x41564C53;
+
+    /** version of the file layout written by this class */
+    private static final int FORMAT_VERSION = 1;
+
+    /** size of the header in bytes */
+    private static final int HEADER_BYTES = 16;
+
+    /** value length recorded for a null value */
+    private static final int NULL_LENGTH = -1;
+
+    /** the mapped file */
+    private final MappedByteBuffer buffer;
+
+    /** number of entries in the snapshot */
+    private final int size;
+
+    /** absolute position of the record index */
+    private final int index;
+
+    /** encodings of the keys and values */
+    private final Codec<T> keyCodec;
+    private final Codec<V> valueCodec;
+
+    private MappedAVLSnapshot(MappedByteBuffer buffer, int size, int index, Codec<T> keyCodec,
+            Codec<V> valueCodec) {
+        this.buffer = buffer;
+        this.size = size;
+        this.index = index;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+    }
+
+    /**
+     * Writes entries in key order to a snapshot file, atomically replacing any existing file
+     * 
+     * @param file       the file to write
+     * @param entries    the entries, sorted by key
+     * @param keyCodec   the encoding of the keys
+     * @param valueCodec the encoding of the values
+     * @throws IOException if the file cannot be written or would exceed 2 GB
+     */
+    static <T extends Comparable<T>, V> void write(Path file, Iterable<? extends Map.Entry<T, V>> entries,
+            Codec<T> keyCodec, Codec<V> valueCodec) throws IOException {
+        // written beside the file and moved over it, so a failure midway leaves the old file intact
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        boolean moved = false;
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                // the header is rewritten once the index position is known
+                out.write(new byte[HEADER_BYTES]);
+                int[] offsets = new int[1 << 10];
+                int count = 0;
+                for (Map.Entry<T, V> entry : entries) {
+                    if (count == offsets.length)
+                        offsets = Arrays.copyOf(offsets, 2 * count);
+                    offsets[count++] = out.size();
+                    byte[] key = keyCodec.encode(entry.getKey());
+                    out.writeInt(key.length);
+                    out.write(key);
+                    if (entry.getValue() == null)
+                        out.writeInt(NULL_LENGTH);
+                    else {
+                        byte[] value = valueCodec.encode(entry.getValue());
+                        out.writeInt(value.length);
+                        out.write(value);
+                    }
+                }
+                int index = out.size();
+                for (int i = 0; i < count; i++)
+                    out.writeInt(offsets[i]);
+                out.flush();
+                // DataOutputStream.size() saturates at Integer.MAX_VALUE
+                if (out.size() == Integer.MAX_VALUE)
+                    throw new IOException("snapshot would exceed 2 GB: " + file);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(count).putInt(index).flip();
+                while (header.hasRemaining())
+                    channel.write(header, header.position());
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+        } finally {
+            if (!moved)
+                Files.deleteIfExists(temporary);
+        }
+        syncDirectory(file.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Makes a rename durable; not every platform can open a directory, in which case this does nothing
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // best effort
+        }
+    }
+
+    /**
+     * Maps a snapshot file written by AVLTree.writeSnapshot
+     * 
+     * @param file       the snapshot file
+     * @param keyCodec   the encoding the keys were written with
+     * @param valueCodec the encoding the values were written with
+     * @return a read-only view of the snapshot
+     * @throws IOException if the file cannot be mapped or is not a valid snapshot
+     */
+    public static <T extends Comparable<T>, V> MappedAVLSnapshot<T, V> open(Path file, Codec<T> keyCodec,
+            Codec<V> valueCodec) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_BYTES || length > Integer.MAX_VALUE)
+                throw new IOException("not a tree snapshot: " + file);
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (buffer.getInt(0) != MAGIC)
+                throw new IOException("not a tree snapshot: " + file);
+            if (buffer.getInt(4) != FORMAT_VERSION)
+                throw new IOException("unsupported snapshot version " + buffer.getInt(4) + ": " + file);
+            int size = buffer.getInt(8);
+            int index = buffer.getInt(12);
+            if (size < 0 || index < HEADER_BYTES || index + 4L * size != length)
+                throw new IOException("corrupt tree snapshot: " + file);
+            return new MappedAVLSnapshot<>(buffer, size, index, keyCodec, valueCodec);
+        }
+    }
+
+    /**
+     * Returns the absolute position of record i
+     */
+    private int record(int i) {
+        return buffer.getInt(index + 4 * i);
+    }
+
+    /**
+     * Compares a key against the key of record i in place
+     */
+    private int compare(T key, int i) {
+        int record = record(i);
+        return keyCodec.compare(key, buffer, record + 4, buffer.getInt(record));
+    }
+
+    /**
+     * Decodes the key of record i
+     */
+    private T keyOf(int i) {
+        int record = record(i);
+        return keyCodec.decode(buffer, record + 4, buffer.getInt(record));
+    }
+
+    /**
+     * Decodes the value of record i
+     */
+    private V valueOf(int i) {
+        int record = record(i);
+        int value = record + 4 + buffer.getInt(record);
+        int length = buffer.getInt(value);
+        if (length == NULL_LENGTH)
+            return null;
+        return valueCodec.decode(buffer, value + 4, length);
+    }
+
+    /**
+     * Returns the number of records whose keys are strictly smaller than key, in O(log n)
+     */
+    private int lowerBound(T key) {
+        int low = 0, high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(key, middle) > 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Returns the value associated with a key if it exists
+     * 
+     * @param key the key to be searched for
+     * @return the value associated with the key, or null if it is not in the snapshot
+     */
+    public V search(T key) {
+        int i = lowerBound(key);
+        if (i < size && compare(key, i) == 0)
+            return valueOf(i);
+        return null;
+    }
+
+    /**
+     * Returns the number of entries in the snapshot
+     * 
+     * @return the size of the snapshot
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the k-th smallest key in the snapshot (0-indexed) in O(1)
+     * 
+     * @param k the number of keys smaller than the one returned
+     * @return the key of rank k, or null if k is out of range
+     */
+    public T select(int k) {
+        if (k < 0 || k >= size)
+            return null;
+        return keyOf(k);
+    }
+
+    /**
+     * Returns the value with the k-th smallest key in the snapshot (1-indexed) in O(1)
+     * 
+     * @param k the position from the smallest element
+     * @return the k-th smallest value, or null if k is out of range
+     */
+    public V kthSmallest(int k) {
+        if (k < 1 || k > size)
+            return null;
+        return valueOf(k - 1);
+    }
+
+    /**
+     * Returns the number of keys in the snapshot that are strictly smaller than a key in O(log n)
+     * 
+     * @param key the key to rank, which does not need to be in the snapshot
+     * @return the rank of the key
+     */
+    public int rank(T key) {
+        return lowerBound(key);
+    }
+
+    /**
+     * Returns an iterator over the entries of the snapshot in key order
+     * 
+     * @return an iterator over all entries
+     */
+    @Override
+    public Iterator<Map.Entry<T, V>> iterator() {
+        return new EntryIterator(0, size);
+    }
+
+    /**
+     * Returns the entries with keys in [fromKey, toKey) in key order
+     * 
+     * @param fromKey the lowest key to include
+     * @param toKey   the key to stop before
+     * @return a lazy view of the entries in the range
+     */
+    public Iterable<Map.Entry<T, V>> range(T fromKey, T toKey) {
+        Objects.requireNonNull(fromKey);
+        Objects.requireNonNull(toKey);
+        return () -> {
+            int from = lowerBound(fromKey);
+            return new EntryIterator(from, Math.max(from, lowerBound(toKey)));
+        };
+    }
+
+    /**
+     * Iterator over a range of record positions, decoding each entry as it is returned
+     */
+    private class EntryIterator implements Iterator<Map.Entry<T, V>> {
+        /** position of the next record */
+        private int next;
+
+        /** position after the last record */
+        private final int end;
+
+        private EntryIterator(int from, int to) {
+            next = from;
+            end = to;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < end;
+        }
+
+        @Override
+        public Map.Entry<T, V> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            int i = next++;
+            return new AbstractMap.SimpleImmutableEntry<>(keyOf(i), valueOf(i));
+        }
+    }
+}
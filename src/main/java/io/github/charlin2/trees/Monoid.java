@@ -0,0 +1,64 @@
+package io.github.charlin2.trees;
+
+import java.util.Objects;
+import java.util.function.BinaryOperator;
+
+/**
+ * An associative operation with an identity, used by AVLTree to cache an
+ * aggregate of the values of every subtree
+ * 
+ * combine does not have to be commutative: values are always combined in key order.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public interface Monoid<V> {
+    /**
+     * @return the aggregate of no values, which combine leaves unchanged
+     */
+    V identity();
+
+    /**
+     * Combines two aggregates, the left one covering smaller keys
+     * 
+     * @param left  the aggregate of the smaller keys
+     * @param right the aggregate of the larger keys
+     * @return the aggregate of both
+     */
+    V combine(V left, V right);
+
+    /**
+     * Creates a monoid from an identity and an associative operation, e.g. of(0L, Long::sum)
+     * 
+     * @param identity the aggregate of no values
+     * @param combine  the associative operation
+     * @return the monoid
+     */
+    static <V> Monoid<V> of(V identity, BinaryOperator<V> combine) {
+        Objects.requireNonNull(combine);
+        return new Monoid<V>() {
+            @Override
+            public V identity() {
+                return identity;
+            }
+
+            @Override
+            public V combine(V left, V right) {
+                return combine.apply(left, right);
+            }
+        };
+    }
+
+    /**
+     * @return the monoid of the smallest value, whose identity is null; null values are ignored
+     */
+    static <V extends Comparable<? super V>> Monoid<V> min() {
+        return of(null, (a, b) -> a == null ? b : b == null || a.compareTo(b) <= 0 ? a : b);
+    }
+
+    /**
+     * @return the monoid of the largest value, whose identity is null; null values are ignored
+     */
+    static <V extends Comparable<? super V>> Monoid<V> max() {
+        return of(null, (a, b) -> a == null ? b : b == null || a.compareTo(b) >= 0 ? a : b);
+    }
+}
@@ -0,0 +1,108 @@
+package io.github.charlin2.trees;
+
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * A SearchTree that can also find the entries nearest to a key in O(h)
+ * 
+ * Entries returned by these methods are immutable snapshots. With duplicate
+ * keys any one of the equal entries may be returned.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public interface NavigableTree<T extends Comparable<T>, V> extends SearchTree<T, V> {
+    /**
+     * Associates a value with a key, replacing the value of an existing entry
+     * 
+     * @param key   the key to associate the value with
+     * @param value the new value
+     * @return the previous value of the key, or null if it was not in the tree
+     */
+    V put(T key, V value);
+
+    /**
+     * Returns the number of keys in the tree that are strictly smaller than a key
+     * 
+     * @param key the key to rank, which does not need to be in the tree
+     * @return the rank of the key
+     */
+    int rank(T key);
+
+    /**
+     * Returns the entries with keys greater than or equal to fromKey in key order
+     * 
+     * @param fromKey the lowest key to include
+     * @return a lazy view of the entries in the range
+     */
+    Iterable<Map.Entry<T, V>> tailRange(T fromKey);
+
+    /**
+     * @param key the key to search around
+     * @return the entry with the greatest key less than or equal to key, or null if there is none
+     */
+    Map.Entry<T, V> floorEntry(T key);
+
+    /**
+     * @param key the key to search around
+     * @return the entry with the least key greater than or equal to key, or null if there is none
+     */
+    Map.Entry<T, V> ceilingEntry(T key);
+
+    /**
+     * @param key the key to search around
+     * @return the entry with the greatest key strictly less than key, or null if there is none
+     */
+    Map.Entry<T, V> lowerEntry(T key);
+
+    /**
+     * @param key the key to search around
+     * @return the entry with the least key strictly greater than key, or null if there is none
+     */
+    Map.Entry<T, V> higherEntry(T key);
+
+    /**
+     * @return the entry with the smallest key, or null if the tree is empty
+     */
+    Map.Entry<T, V> firstEntry();
+
+    /**
+     * @return the entry with the largest key, or null if the tree is empty
+     */
+    Map.Entry<T, V> lastEntry();
+
+    /**
+     * Removes the entry with the smallest key
+     * 
+     * @return the removed entry, or null if the tree is empty
+     */
+    default Map.Entry<T, V> pollFirstEntry() {
+        Map.Entry<T, V> first = firstEntry();
+        if (first != null)
+            delete(first.getKey());
+        return first;
+    }
+
+    /**
+     * Removes the entry with the largest key
+     * 
+     * @return the removed entry, or null if the tree is empty
+     */
+    default Map.Entry<T, V> pollLastEntry() {
+        Map.Entry<T, V> last = lastEntry();
+        if (last != null)
+            delete(last.getKey());
+        return last;
+    }
+
+    /**
+     * Returns a NavigableMap view of the tree; changes to either are visible in both
+     * The view follows the Map contract only while keys are unique, as in
+     * DuplicateKeys.REPLACE mode.
+     * 
+     * @return a map backed by the tree
+     */
+    default NavigableMap<T, V> asNavigableMap() {
+        return new TreeNavigableMap<>(this);
+    }
+}
@@ -0,0 +1,513 @@
+package io.github.charlin2.trees;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * AVL Tree with long keys and values whose nodes live outside the Java heap
+ * 
+ * Nodes are 32-byte slots in direct memory slabs and link to their children by
+ * 32-bit slot index, so the garbage collector sees a handful of slab objects no
+ * matter how many entries the tree holds. Deleted slots are reused through a
+ * free list, and {@link #close()} hands the slabs back to the operating system
+ * right away instead of waiting for a collection.
+ * 
+ * Slot layout: key (8 bytes), value (8), left (4), right (4), height (4), unused (4)
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public class OffHeapAVLTree implements AutoCloseable {
+    /** slot index standing in for a missing child */
+    private static final int NIL = -1;
+
+    /** bytes per slot */
+    private static final int SLOT_BYTES = 32;
+
+    /** byte offsets of the fields within a slot */
+    private static final int KEY = 0, VALUE = 8, LEFT = 16, RIGHT = 20, HEIGHT = 24;
+
+    /** log2 of the number of slots per slab */
+    private static final int SLAB_SHIFT = 15;
+
+    /** number of slots per slab (1 MiB of memory) */
+    private static final int SLAB_SLOTS = 1 << SLAB_SHIFT;
+
+    /**
+     * Receives the entries of a traversal
+     */
+    @FunctionalInterface
+    public interface EntryVisitor {
+        /**
+         * Called once per entry
+         * 
+         * @param key   the key of the entry
+         * @param value the value of the entry
+         */
+        void visit(long key, long value);
+    }
+
+    /** the slabs holding the slots, null once the tree is closed */
+    private ByteBuffer[] slabs = new ByteBuffer[0];
+
+    /** slot of the root */
+    private int root = NIL;
+
+    /** head of the list of free slots, chained through left */
+    private int free = NIL;
+
+    /** number of slots that have ever been used */
+    private int used;
+
+    /** number of entries in the tree */
+    private int size;
+
+    /**
+     * Creates a new, empty off-heap AVL tree
+     */
+    public OffHeapAVLTree() {
+    }
+
+    /**
+     * Returns the slab holding a slot
+     */
+    private ByteBuffer slab(int slot) {
+        return slabs[slot >>> SLAB_SHIFT];
+    }
+
+    /**
+     * Returns the byte offset of a slot within its slab
+     */
+    private static int offset(int slot) {
+        return (slot & (SLAB_SLOTS - 1)) * SLOT_BYTES;
+    }
+
+    /* field accessors for a slot */
+
+    private long key(int slot) {
+        return slab(slot).getLong(offset(slot) + KEY);
+    }
+
+    private long value(int slot) {
+        return slab(slot).getLong(offset(slot) + VALUE);
+    }
+
+    private int left(int slot) {
+        return slab(slot).getInt(offset(slot) + LEFT);
+    }
+
+    private int right(int slot) {
+        return slab(slot).getInt(offset(slot) + RIGHT);
+    }
+
+    private void setKey(int slot, long key) {
+        slab(slot).putLong(offset(slot) + KEY, key);
+    }
+
+    private void setValue(int slot, long value) {
+        slab(slot).putLong(offset(slot) + VALUE, value);
+    }
+
+    private void setLeft(int slot, int child) {
+        slab(slot).putInt(offset(slot) + LEFT, child);
+    }
+
+    private void setRight(int slot, int child) {
+        slab(slot).putInt(offset(slot) + RIGHT, child);
+    }
+
+    /**
+     * Throws if the tree has been closed
+     */
+    private void ensureOpen() {
+        if (slabs == null)
+            throw new IllegalStateException("tree is closed");
+    }
+
+    /**
+     * Takes a slot off the free list, or a fresh one if none is free
+     * 
+     * @param key   the key to store in the slot
+     * @param value the value to store in the slot
+     * @return the index of the slot
+     */
+    private int allocate(long key, long value) {
+        int slot;
+        if (free != NIL) {
+            slot = free;
+            free = left(slot);
+        } else {
+            if (used == Integer.MAX_VALUE)
+                throw new IllegalStateException("tree is full");
+            if ((used >>> SLAB_SHIFT) == slabs.length) {
+                slabs = Arrays.copyOf(slabs, slabs.length + 1);
+                slabs[slabs.length - 1] = ByteBuffer.allocateDirect(SLAB_SLOTS * SLOT_BYTES)
+                        .order(ByteOrder.nativeOrder());
+            }
+            slot = used++;
+        }
+        setKey(slot, key);
+        setValue(slot, value);
+        setLeft(slot, NIL);
+        setRight(slot, NIL);
+        slab(slot).putInt(offset(slot) + HEIGHT, 0);
+        return slot;
+    }
+
+    /**
+     * Returns a slot to the free list
+     * 
+     * @param slot the slot that is no longer in the tree
+     */
+    private void release(int slot) {
+        setLeft(slot, free);
+        free = slot;
+    }
+
+    /**
+     * Returns the cached height of a subtree
+     * 
+     * @param slot the root of the subtree
+     * @return the height of the subtree, or -1 if it is empty
+     */
+    private int height(int slot) {
+        if (slot == NIL)
+            return -1;
+        return slab(slot).getInt(offset(slot) + HEIGHT);
+    }
+
+    /**
+     * Recomputes the cached height of a slot from its children
+     * 
+     * @param slot the slot whose children have changed
+     */
+    private void update(int slot) {
+        int height = Math.max(height(left(slot)), height(right(slot))) + 1;
+        slab(slot).putInt(offset(slot) + HEIGHT, height);
+    }
+
+    /**
+     * Returns the balance of a subtree
+     * 
+     * @param slot the root of the subtree
+     * @return the balance of the subtree
+     */
+    private int getBalance(int slot) {
+        if (slot != NIL)
+            return height(right(slot)) - height(left(slot));
+        return 0;
+    }
+
+    /**
+     * Rightward rotation
+     * 
+     * @param slot the slot to be rotated around
+     * @return the new root of the subtree after the rotation
+     */
+    private int rotateRight(int slot) {
+        int leftChild = left(slot);
+        setLeft(slot, right(leftChild));
+        setRight(leftChild, slot);
+        update(slot);
+        update(leftChild);
+        return leftChild;
+    }
+
+    /**
+     * Leftward rotation
+     * 
+     * @param slot the slot to be rotated around
+     * @return the new root of the subtree after the rotation
+     */
+    private int rotateLeft(int slot) {
+        int rightChild = right(slot);
+        setRight(slot, left(rightChild));
+        setLeft(rightChild, slot);
+        update(slot);
+        update(rightChild);
+        return rightChild;
+    }
+
+    /**
+     * Restores the AVL balance of a subtree whose children are balanced
+     * 
+     * @param slot the root of the subtree
+     * @return the new root of the subtree
+     */
+    private int rebalance(int slot) {
+        update(slot);
+        int balance = getBalance(slot);
+        if (balance > 1) {
+            // right subtree, left imbalance
+            if (getBalance(right(slot)) < 0)
+                setRight(slot, rotateRight(right(slot)));
+            return rotateLeft(slot);
+        }
+        if (balance < -1) {
+            // left subtree, right imbalance
+            if (getBalance(left(slot)) > 0)
+                setLeft(slot, rotateLeft(left(slot)));
+            return rotateRight(slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Recursive insert helper method
+     * 
+     * @param slot    the current slot to check for insertion
+     * @param newSlot the slot to be inserted
+     * @param key     the key of the new slot
+     * @return the new root of the subtree
+     */
+    private int insert(int slot, int newSlot, long key) {
+        if (slot == NIL)
+            return newSlot;
+        if (key < key(slot))
+            setLeft(slot, insert(left(slot), newSlot, key));
+        else
+            setRight(slot, insert(right(slot), newSlot, key));
+        return rebalance(slot);
+    }
+
+    /**
+     * Inserts a key-value pair into the AVL Tree and rebalances accordingly
+     * 
+     * @param key   the key of the entry being inserted
+     * @param value the value stored with the key
+     */
+    public void insert(long key, long value) {
+        ensureOpen();
+        root = insert(root, allocate(key, value), key);
+        size++;
+    }
+
+    /**
+     * Finds the slot holding a key
+     * 
+     * @param key the key to be searched for
+     * @return the slot of the key, or NIL if it is not in the tree
+     */
+    private int find(long key) {
+        ensureOpen();
+        int trav = root;
+        while (trav != NIL) {
+            long current = key(trav);
+            if (key < current)
+                trav = left(trav);
+            else if (key > current)
+                trav = right(trav);
+            else
+                return trav;
+        }
+        return NIL;
+    }
+
+    /**
+     * Returns the value associated with a key if it exists
+     * 
+     * @param key          the key to be searched for
+     * @param defaultValue the value to return if the key is not in the tree
+     * @return the value associated with the key, or defaultValue
+     */
+    public long search(long key, long defaultValue) {
+        int slot = find(key);
+        if (slot == NIL)
+            return defaultValue;
+        return value(slot);
+    }
+
+    /**
+     * Returns whether a key is in the tree
+     * 
+     * @param key the key to be searched for
+     * @return true if the tree holds the key
+     */
+    public boolean contains(long key) {
+        return find(key) != NIL;
+    }
+
+    /**
+     * Recursive method to help with delete method
+     * 
+     * @param slot the root of the subtree to delete from
+     * @param key  the key to be deleted
+     * @return the new root of the subtree
+     */
+    private int remove(int slot, long key) {
+        if (slot == NIL)
+            return NIL;
+        long current = key(slot);
+        if (key < current)
+            setLeft(slot, remove(left(slot), key));
+        else if (key > current)
+            setRight(slot, remove(right(slot), key));
+        else if (left(slot) == NIL || right(slot) == NIL) { // one or no children
+            int child = left(slot) == NIL ? right(slot) : left(slot);
+            release(slot);
+            size--;
+            return child;
+        } else { // two children
+            int successor = right(slot);
+            while (left(successor) != NIL)
+                successor = left(successor);
+            long successorKey = key(successor);
+            setKey(slot, successorKey);
+            setValue(slot, value(successor));
+            setRight(slot, remove(right(slot), successorKey));
+        }
+        return rebalance(slot);
+    }
+
+    /**
+     * Deletes a key if it exists
+     * 
+     * @param key the key to be deleted
+     */
+    public void delete(long key) {
+        ensureOpen();
+        root = remove(root, key);
+    }
+
+    /**
+     * Returns the number of entries in the tree
+     * 
+     * @return the size of the tree
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the height of the tree
+     * 
+     * @return the height of the tree, or -1 if it is empty
+     */
+    public int height() {
+        ensureOpen();
+        return height(root);
+    }
+
+    /**
+     * Returns the number of bytes of off-heap memory held by the tree
+     * 
+     * @return the capacity of all slabs in bytes
+     */
+    public long offHeapBytes() {
+        return slabs == null ? 0 : (long) slabs.length * SLAB_SLOTS * SLOT_BYTES;
+    }
+
+    /**
+     * Visits every entry in key order without allocating per entry
+     * 
+     * @param visitor receives each key and value
+     */
+    public void forEach(EntryVisitor visitor) {
+        ensureOpen();
+        // iterative inorder walk: the AVL height bounds the stack
+        int[] stack = new int[height(root) + 1];
+        int top = 0;
+        int trav = root;
+        while (trav != NIL || top > 0) {
+            while (trav != NIL) {
+                stack[top++] = trav;
+                trav = left(trav);
+            }
+            trav = stack[--top];
+            visitor.visit(key(trav), value(trav));
+            trav = right(trav);
+        }
+    }
+
+    /**
+     * Inorder traversal of the tree
+     * 
+     * @return an inorder array of the values in the tree
+     */
+    public long[] inorderRec() {
+        long[] values = new long[size];
+        int[] count = new int[1];
+        forEach((key, value) -> values[count[0]++] = value);
+        return values;
+    }
+
+    /**
+     * Recursive helper method for postorder
+     */
+    private int postorder(int slot, long[] values, int count) {
+        if (slot == NIL)
+            return count;
+        count = postorder(left(slot), values, count);
+        count = postorder(right(slot), values, count);
+        values[count] = value(slot);
+        return count + 1;
+    }
+
+    /**
+     * Returns the post order traversal of the tree
+     * 
+     * @return array of the values in postorder
+     */
+    public long[] postorder() {
+        ensureOpen();
+        long[] values = new long[size];
+        postorder(root, values, 0);
+        return values;
+    }
+
+    /**
+     * Releases the off-heap memory of the tree right away; the tree cannot be used afterwards
+     */
+    @Override
+    public void close() {
+        if (slabs == null)
+            return;
+        ByteBuffer[] released = slabs;
+        slabs = null;
+        root = free = NIL;
+        used = size = 0;
+        for (ByteBuffer slab : released)
+            Deallocator.free(slab);
+    }
+
+    /**
+     * Frees direct buffers eagerly through Unsafe.invokeCleaner, which is the only
+     * way to do so on Java 17; without it the memory is freed once the buffers
+     * are garbage collected
+     * Unsafe is only reached by reflection, so compiling against it raises no
+     * proprietary-API warnings.
+     */
+    private static final class Deallocator {
+        /** invokeCleaner bound to the Unsafe instance, or null if it is unavailable */
+        private static final MethodHandle INVOKE_CLEANER = lookup();
+
+        private static MethodHandle lookup() {
+            try {
+                Class<?> unsafe = Class.forName("sun.misc.Unsafe");
+                Field field = unsafe.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                return MethodHandles.lookup()
+                        .findVirtual(unsafe, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                        .bindTo(field.get(null));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        static void free(ByteBuffer buffer) {
+            if (INVOKE_CLEANER == null)
+                return;
+            try {
+                INVOKE_CLEANER.invokeExact(buffer);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                // the buffer is freed once it is collected instead
+            }
+        }
+    }
+}
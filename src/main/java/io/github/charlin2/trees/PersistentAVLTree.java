@@ -0,0 +1,457 @@
+package io.github.charlin2.trees;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Persistent AVL Tree with O(1) snapshots
+ * 
+ * Nodes are never modified once built. An insert or delete copies only the
+ * O(log n) nodes on the path it changes, shares every other subtree with the
+ * previous version, and publishes the new root with a compare-and-set. A
+ * snapshot is just a reference to one root, so taking one is O(1) and costs no
+ * copying; readers of a snapshot need no locks and never hold up writers.
+ * Concurrent writers are lock-free: a writer that loses the race retries on the
+ * newer root.
+ * 
+ * Duplicate keys are allowed and are kept in insertion order, as in AVLTree.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public class PersistentAVLTree<T extends Comparable<T>, V> implements Iterable<Map.Entry<T, V>> {
+    /** root of the current version of the tree */
+    private final AtomicReference<Node<T, V>> root = new AtomicReference<>();
+
+    /**
+     * Immutable node of the tree, handed out directly as an entry
+     */
+    private static final class Node<T, V> implements Map.Entry<T, V> {
+        /** references to left and right children */
+        private final Node<T, V> left, right;
+
+        /** the key associated with this node */
+        private final T key;
+
+        /** the element stored in this node */
+        private final V value;
+
+        /** height of the subtree rooted at this node (a leaf has height 0) */
+        private final int height;
+
+        /** number of nodes in the subtree rooted at this node */
+        private final int size;
+
+        private Node(T key, V value, Node<T, V> left, Node<T, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            height = Math.max(height(left), height(right)) + 1;
+            size = size(left) + size(right) + 1;
+        }
+
+        @Override
+        public T getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException("persistent tree entries are immutable");
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * Immutable view of the tree at one point in time
+     */
+    public static final class Snapshot<T extends Comparable<T>, V> implements Iterable<Map.Entry<T, V>> {
+        /** root of the version this snapshot sees */
+        private final Node<T, V> root;
+
+        private Snapshot(Node<T, V> root) {
+            this.root = root;
+        }
+
+        /**
+         * Returns the value associated with a key if it exists
+         * 
+         * @param key the key to be searched for
+         * @return the value associated with the key, or null if it is not in the snapshot
+         */
+        public V search(T key) {
+            Node<T, V> trav = root;
+            while (trav != null) {
+                int comparison = key.compareTo(trav.key);
+                if (comparison == 0)
+                    return trav.value;
+                trav = comparison < 0 ? trav.left : trav.right;
+            }
+            return null;
+        }
+
+        /**
+         * Returns the number of entries in the snapshot
+         * 
+         * @return the size of the snapshot
+         */
+        public int size() {
+            return PersistentAVLTree.size(root);
+        }
+
+        /**
+         * Returns the height of the snapshot
+         * 
+         * @return the height of the tree, or -1 if it is empty
+         */
+        public int height() {
+            return PersistentAVLTree.height(root);
+        }
+
+        /**
+         * Returns the k-th smallest key in the snapshot (0-indexed) in O(log n)
+         * 
+         * @param k the number of keys smaller than the one returned
+         * @return the key of rank k, or null if k is out of range
+         */
+        public T select(int k) {
+            if (k < 0 || k >= PersistentAVLTree.size(root))
+                return null;
+            Node<T, V> trav = root;
+            while (true) {
+                int leftSize = PersistentAVLTree.size(trav.left);
+                if (k < leftSize)
+                    trav = trav.left;
+                else if (k > leftSize) {
+                    k -= leftSize + 1;
+                    trav = trav.right;
+                } else
+                    return trav.key;
+            }
+        }
+
+        /**
+         * Returns the number of keys in the snapshot that are strictly smaller than a key in O(log n)
+         * 
+         * @param key the key to rank, which does not need to be in the tree
+         * @return the rank of the key
+         */
+        public int rank(T key) {
+            int rank = 0;
+            Node<T, V> trav = root;
+            while (trav != null) {
+                if (key.compareTo(trav.key) <= 0)
+                    trav = trav.left;
+                else {
+                    rank += PersistentAVLTree.size(trav.left) + 1;
+                    trav = trav.right;
+                }
+            }
+            return rank;
+        }
+
+        /**
+         * Inorder traversal of the snapshot
+         * 
+         * @return an inorder list of the values in the snapshot
+         */
+        public List<V> inorderRec() {
+            List<V> list = new ArrayList<>(PersistentAVLTree.size(root));
+            for (Map.Entry<T, V> entry : this)
+                list.add(entry.getValue());
+            return list;
+        }
+
+        /**
+         * Returns an iterator over the entries of the snapshot in key order
+         * 
+         * @return an iterator over all entries
+         */
+        @Override
+        public Iterator<Map.Entry<T, V>> iterator() {
+            return new EntryIterator<>(root, null, null);
+        }
+
+        /**
+         * Returns the entries with keys in [fromKey, toKey) in key order
+         * 
+         * @param fromKey the lowest key to include
+         * @param toKey   the key to stop before
+         * @return a lazy view of the entries in the range
+         */
+        public Iterable<Map.Entry<T, V>> range(T fromKey, T toKey) {
+            Objects.requireNonNull(fromKey);
+            Objects.requireNonNull(toKey);
+            return () -> new EntryIterator<>(root, fromKey, toKey);
+        }
+    }
+
+    /**
+     * Creates a new persistent AVL tree
+     */
+    public PersistentAVLTree() {
+    }
+
+    /**
+     * Returns the height of a subtree, or -1 if it is empty
+     */
+    private static int height(Node<?, ?> node) {
+        if (node == null)
+            return -1;
+        return node.height;
+    }
+
+    /**
+     * Returns the number of nodes in a subtree
+     */
+    private static int size(Node<?, ?> node) {
+        if (node == null)
+            return 0;
+        return node.size;
+    }
+
+    /**
+     * Builds a node over two subtrees whose heights differ by at most 2, rotating
+     * as needed so that the result is balanced
+     * 
+     * @return the root of the new, balanced subtree
+     */
+    private static <T, V> Node<T, V> balance(T key, V value, Node<T, V> left, Node<T, V> right) {
+        int balance = height(right) - height(left);
+        if (balance > 1) {
+            if (height(right.left) > height(right.right)) {
+                // right subtree, left imbalance
+                Node<T, V> middle = right.left;
+                return new Node<>(middle.key, middle.value, new Node<>(key, value, left, middle.left),
+                        new Node<>(right.key, right.value, middle.right, right.right));
+            }
+            // right subtree, right imbalance
+            return new Node<>(right.key, right.value, new Node<>(key, value, left, right.left), right.right);
+        }
+        if (balance < -1) {
+            if (height(left.right) > height(left.left)) {
+                // left subtree, right imbalance
+                Node<T, V> middle = left.right;
+                return new Node<>(middle.key, middle.value, new Node<>(left.key, left.value, left.left, middle.left),
+                        new Node<>(key, value, middle.right, right));
+            }
+            // left subtree, left imbalance
+            return new Node<>(left.key, left.value, left.left, new Node<>(key, value, left.right, right));
+        }
+        return new Node<>(key, value, left, right);
+    }
+
+    /**
+     * Recursive insert helper method, copying the nodes along the path
+     * 
+     * @return the root of the new version of the subtree
+     */
+    private static <T extends Comparable<T>, V> Node<T, V> insert(Node<T, V> node, T key, V value) {
+        if (node == null)
+            return new Node<>(key, value, null, null);
+        if (key.compareTo(node.key) < 0)
+            return balance(node.key, node.value, insert(node.left, key, value), node.right);
+        return balance(node.key, node.value, node.left, insert(node.right, key, value));
+    }
+
+    /**
+     * Recursive delete helper method, copying the nodes along the path
+     * 
+     * @return the root of the new version of the subtree, or node itself if the key is absent
+     */
+    private static <T extends Comparable<T>, V> Node<T, V> remove(Node<T, V> node, T key) {
+        if (node == null)
+            return null;
+        int comparison = key.compareTo(node.key);
+        if (comparison < 0) {
+            Node<T, V> left = remove(node.left, key);
+            return left == node.left ? node : balance(node.key, node.value, left, node.right);
+        }
+        if (comparison > 0) {
+            Node<T, V> right = remove(node.right, key);
+            return right == node.right ? node : balance(node.key, node.value, node.left, right);
+        }
+        if (node.left == null)
+            return node.right;
+        if (node.right == null)
+            return node.left;
+        // two children: the successor takes this node's place
+        Node<T, V> successor = node.right;
+        while (successor.left != null)
+            successor = successor.left;
+        return balance(successor.key, successor.value, node.left, removeFirst(node.right));
+    }
+
+    /**
+     * Returns a copy of a subtree without its smallest node
+     */
+    private static <T, V> Node<T, V> removeFirst(Node<T, V> node) {
+        if (node.left == null)
+            return node.right;
+        return balance(node.key, node.value, removeFirst(node.left), node.right);
+    }
+
+    /**
+     * Inserts a key-value pair into the tree, publishing a new version
+     * 
+     * @param key   the key of the entry being inserted
+     * @param value the value stored with the key
+     */
+    public void insert(T key, V value) {
+        Node<T, V> current, updated;
+        do {
+            current = root.get();
+            updated = insert(current, key, value);
+        } while (!root.compareAndSet(current, updated));
+    }
+
+    /**
+     * Deletes a key if it exists, publishing a new version
+     * 
+     * @param key the key to be deleted
+     */
+    public void delete(T key) {
+        Node<T, V> current, updated;
+        do {
+            current = root.get();
+            updated = remove(current, key);
+            if (updated == current) // not in the tree
+                return;
+        } while (!root.compareAndSet(current, updated));
+    }
+
+    /**
+     * Returns an immutable view of the current version of the tree in O(1)
+     * Later writes to the tree are not visible through the snapshot
+     * 
+     * @return a snapshot of the tree
+     */
+    public Snapshot<T, V> snapshot() {
+        return new Snapshot<>(root.get());
+    }
+
+    /**
+     * Returns the value associated with a key if it exists
+     * 
+     * @param key the key to be searched for
+     * @return the value associated with the key, or null if it is not in the tree
+     */
+    public V search(T key) {
+        return snapshot().search(key);
+    }
+
+    /**
+     * Returns the number of entries in the tree
+     * 
+     * @return the size of the tree
+     */
+    public int size() {
+        return size(root.get());
+    }
+
+    /**
+     * Returns the height of the tree
+     * 
+     * @return the height of the tree, or -1 if it is empty
+     */
+    public int height() {
+        return height(root.get());
+    }
+
+    /**
+     * Inorder traversal of the current version of the tree
+     * 
+     * @return an inorder list of the values in the tree
+     */
+    public List<V> inorderRec() {
+        return snapshot().inorderRec();
+    }
+
+    /**
+     * Returns an iterator over the entries of the current version in key order
+     * The iterator is unaffected by later writes
+     * 
+     * @return an iterator over all entries
+     */
+    @Override
+    public Iterator<Map.Entry<T, V>> iterator() {
+        return snapshot().iterator();
+    }
+
+    /**
+     * Inorder iterator over one version, with an explicit stack bounded by its height
+     */
+    private static final class EntryIterator<T extends Comparable<T>, V> implements Iterator<Map.Entry<T, V>> {
+        /** nodes whose entry and right subtree are still to be visited, next one on top */
+        private final Node<T, V>[] stack;
+
+        /** number of nodes on the stack */
+        private int top;
+
+        /** the key to stop before, or null to run to the end of the tree */
+        private final T toKey;
+
+        /**
+         * Descends to the first entry not smaller than fromKey
+         * 
+         * @param root    the root of the version to iterate over
+         * @param fromKey the lowest key to include, or null to start at the smallest key
+         * @param toKey   the key to stop before, or null to run to the end of the tree
+         */
+        @SuppressWarnings("unchecked")
+        private EntryIterator(Node<T, V> root, T fromKey, T toKey) {
+            stack = (Node<T, V>[]) new Node[height(root) + 1];
+            this.toKey = toKey;
+            Node<T, V> trav = root;
+            while (trav != null) {
+                if (fromKey == null || fromKey.compareTo(trav.key) <= 0) {
+                    stack[top++] = trav;
+                    trav = trav.left;
+                } else
+                    trav = trav.right;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return top > 0 && (toKey == null || toKey.compareTo(stack[top - 1].key) > 0);
+        }
+
+        @Override
+        public Map.Entry<T, V> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Node<T, V> next = stack[--top];
+            for (Node<T, V> trav = next.right; trav != null; trav = trav.left)
+                stack[top++] = trav;
+            return next;
+        }
+    }
+}
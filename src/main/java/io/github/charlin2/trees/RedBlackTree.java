@@ -0,0 +1,525 @@
+package io.github.charlin2.trees;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Implementation of a red-black tree (CLRS, chapter 13)
+ * 
+ * A red-black tree is less strictly balanced than an AVL tree, up to 2 log2(n + 1)
+ * deep instead of 1.44 log2(n), but rebalancing is cheaper: an insert does at
+ * most two rotations and a delete at most three, where the rest of the fixup
+ * only recolors nodes. That suits write-heavy workloads, while AVLTree keeps the
+ * shorter searches.
+ * 
+ * Duplicate keys are allowed, as in AVLTree; a new duplicate goes after the
+ * existing ones.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public class RedBlackTree<T extends Comparable<T>, V> implements SearchTree<T, V> {
+    /** black sentinel standing in for every missing child and the parent of the root */
+    private final Node nil;
+
+    /** root of the tree, nil when the tree is empty */
+    private Node root;
+
+    /** number of entries in the tree */
+    private int size;
+
+    /** number of structural modifications, used by iterators to detect them */
+    private int modCount;
+
+    /**
+     * Individual nodes of the tree, handed out directly as entries by the iterators
+     */
+    private class Node implements Map.Entry<T, V> {
+        /** references to parent and left and right children */
+        private Node parent, left, right;
+
+        /** the key associated with this node */
+        private T key;
+
+        /** the element stored in this node */
+        private V value;
+
+        /** color of the node, black unless set */
+        private boolean red;
+
+        /**
+         * Constructor for tree node
+         * 
+         * @param key   Key used for comparison and value access
+         * @param value Value stored in the node
+         */
+        private Node(T key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public T getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V old = this.value;
+            this.value = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * Creates a new red-black tree
+     */
+    public RedBlackTree() {
+        nil = new Node(null, null);
+        nil.parent = nil.left = nil.right = nil;
+        root = nil;
+    }
+
+    /**
+     * Leftward rotation
+     * 
+     * @param node the node to be rotated around, whose right child takes its place
+     */
+    private void rotateLeft(Node node) {
+        Node rightChild = node.right;
+        node.right = rightChild.left;
+        if (rightChild.left != nil)
+            rightChild.left.parent = node;
+        replace(node, rightChild);
+        rightChild.left = node;
+        node.parent = rightChild;
+    }
+
+    /**
+     * Rightward rotation
+     * 
+     * @param node the node to be rotated around, whose left child takes its place
+     */
+    private void rotateRight(Node node) {
+        Node leftChild = node.left;
+        node.left = leftChild.right;
+        if (leftChild.right != nil)
+            leftChild.right.parent = node;
+        replace(node, leftChild);
+        leftChild.right = node;
+        node.parent = leftChild;
+    }
+
+    /**
+     * Puts a subtree in the place of another one below the latter's parent
+     * 
+     * @param old         the subtree being replaced
+     * @param replacement the subtree taking its place, possibly nil
+     */
+    private void replace(Node old, Node replacement) {
+        if (old.parent == nil)
+            root = replacement;
+        else if (old == old.parent.left)
+            old.parent.left = replacement;
+        else
+            old.parent.right = replacement;
+        // the sentinel's parent is set too, as deleteFixup relies on it
+        replacement.parent = old.parent;
+    }
+
+    /**
+     * Inserts a key-value pair into the tree and restores the red-black properties
+     * 
+     * @param key   the key of the node being inserted
+     * @param value the value stored by the node being inserted
+     */
+    public void insert(T key, V value) {
+        modCount++;
+        Node parent = nil;
+        Node trav = root;
+        boolean left = false;
+        while (trav != nil) {
+            parent = trav;
+            left = key.compareTo(trav.key) < 0;
+            trav = left ? trav.left : trav.right;
+        }
+        Node node = new Node(key, value);
+        node.parent = parent;
+        node.left = node.right = nil;
+        node.red = true;
+        if (parent == nil)
+            root = node;
+        else if (left)
+            parent.left = node;
+        else
+            parent.right = node;
+        size++;
+        insertFixup(node);
+    }
+
+    /**
+     * Removes a red-red violation between a new node and its parent, walking up
+     * while the uncle is red and finishing with at most two rotations
+     * 
+     * @param node the newly linked red node
+     */
+    private void insertFixup(Node node) {
+        while (node.parent.red) {
+            Node parent = node.parent;
+            Node grandparent = parent.parent;
+            if (parent == grandparent.left) {
+                Node uncle = grandparent.right;
+                if (uncle.red) {
+                    // recolor and continue two levels up
+                    parent.red = uncle.red = false;
+                    grandparent.red = true;
+                    node = grandparent;
+                    continue;
+                }
+                if (node == parent.right) {
+                    // left subtree, right child: turn it into the outer case
+                    node = parent;
+                    rotateLeft(node);
+                    parent = node.parent;
+                }
+                parent.red = false;
+                grandparent.red = true;
+                rotateRight(grandparent);
+            } else {
+                Node uncle = grandparent.left;
+                if (uncle.red) {
+                    parent.red = uncle.red = false;
+                    grandparent.red = true;
+                    node = grandparent;
+                    continue;
+                }
+                if (node == parent.left) {
+                    // right subtree, left child
+                    node = parent;
+                    rotateRight(node);
+                    parent = node.parent;
+                }
+                parent.red = false;
+                grandparent.red = true;
+                rotateLeft(grandparent);
+            }
+        }
+        root.red = false;
+    }
+
+    /**
+     * Returns the node of a key, the first one in key order if it appears more than once
+     * 
+     * @param key the key to be searched for
+     * @return the node, or nil if the key is not in the tree
+     */
+    private Node find(T key) {
+        Node trav = root;
+        Node found = nil;
+        while (trav != nil) {
+            int comparison = key.compareTo(trav.key);
+            if (comparison == 0)
+                found = trav;
+            // equal keys can also sit in the left subtree after rotations
+            trav = comparison <= 0 ? trav.left : trav.right;
+        }
+        return found;
+    }
+
+    /**
+     * Returns the value associated with a key if it exists
+     * 
+     * @param key the key to be searched for
+     * @return the value associated with the key, or null if it is not in the tree
+     */
+    public V search(T key) {
+        Node trav = root;
+        while (trav != nil) {
+            int comparison = key.compareTo(trav.key);
+            if (comparison == 0)
+                return trav.value;
+            trav = comparison < 0 ? trav.left : trav.right;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the node with the smallest key in a subtree
+     * 
+     * @param node the root of a non-empty subtree
+     * @return the leftmost node
+     */
+    private Node minimum(Node node) {
+        while (node.left != nil)
+            node = node.left;
+        return node;
+    }
+
+    /**
+     * Returns the node that follows another in key order
+     * 
+     * @param node a node of the tree
+     * @return the next node, or nil if node is the last one
+     */
+    private Node successor(Node node) {
+        if (node.right != nil)
+            return minimum(node.right);
+        Node parent = node.parent;
+        while (parent != nil && node == parent.right) {
+            node = parent;
+            parent = parent.parent;
+        }
+        return parent;
+    }
+
+    /**
+     * Deletes a key if it exists and restores the red-black properties
+     * 
+     * @param key the key to be deleted
+     */
+    public void delete(T key) {
+        Node node = find(key);
+        if (node == nil)
+            return;
+        modCount++;
+        size--;
+        // the node that leaves its position and the one that moves into it
+        Node removed = node;
+        boolean removedRed = removed.red;
+        Node child;
+        if (node.left == nil) {
+            child = node.right;
+            replace(node, child);
+        } else if (node.right == nil) {
+            child = node.left;
+            replace(node, child);
+        } else {
+            // two children: the successor takes the node's place and color
+            removed = minimum(node.right);
+            removedRed = removed.red;
+            child = removed.right;
+            if (removed.parent == node)
+                child.parent = removed;
+            else {
+                replace(removed, child);
+                removed.right = node.right;
+                removed.right.parent = removed;
+            }
+            replace(node, removed);
+            removed.left = node.left;
+            removed.left.parent = removed;
+            removed.red = node.red;
+        }
+        if (!removedRed)
+            deleteFixup(child);
+        nil.parent = nil;
+    }
+
+    /**
+     * Restores the black height after a black node was unlinked above node, walking
+     * up while the sibling's children are black and finishing with at most three rotations
+     * 
+     * @param node the node carrying the extra black, possibly the sentinel
+     */
+    private void deleteFixup(Node node) {
+        while (node != root && !node.red) {
+            Node parent = node.parent;
+            if (node == parent.left) {
+                Node sibling = parent.right;
+                if (sibling.red) {
+                    // make the sibling black
+                    sibling.red = false;
+                    parent.red = true;
+                    rotateLeft(parent);
+                    sibling = parent.right;
+                }
+                if (!sibling.left.red && !sibling.right.red) {
+                    // move the extra black up
+                    sibling.red = true;
+                    node = parent;
+                    continue;
+                }
+                if (!sibling.right.red) {
+                    // the red child of the sibling is the inner one
+                    sibling.left.red = false;
+                    sibling.red = true;
+                    rotateRight(sibling);
+                    sibling = parent.right;
+                }
+                sibling.red = parent.red;
+                parent.red = false;
+                sibling.right.red = false;
+                rotateLeft(parent);
+                node = root;
+            } else {
+                Node sibling = parent.left;
+                if (sibling.red) {
+                    sibling.red = false;
+                    parent.red = true;
+                    rotateRight(parent);
+                    sibling = parent.left;
+                }
+                if (!sibling.right.red && !sibling.left.red) {
+                    sibling.red = true;
+                    node = parent;
+                    continue;
+                }
+                if (!sibling.left.red) {
+                    sibling.right.red = false;
+                    sibling.red = true;
+                    rotateLeft(sibling);
+                    sibling = parent.left;
+                }
+                sibling.red = parent.red;
+                parent.red = false;
+                sibling.left.red = false;
+                rotateRight(parent);
+                node = root;
+            }
+        }
+        node.red = false;
+    }
+
+    /**
+     * Returns the number of entries in the tree
+     * 
+     * @return the size of the tree
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Recursive helper method for height
+     */
+    private int height(Node node) {
+        if (node == nil)
+            return -1;
+        return Math.max(height(node.left), height(node.right)) + 1;
+    }
+
+    /**
+     * Returns the height of the tree, measured in O(n) since heights are not stored
+     * 
+     * @return the height of the tree, or -1 if it is empty
+     */
+    public int height() {
+        return height(root);
+    }
+
+    /**
+     * Inorder traversal of the tree, following parent links instead of recursing
+     * 
+     * @return an inorder list of the values in the tree
+     */
+    public List<V> inorderRec() {
+        List<V> list = new ArrayList<>(size);
+        if (root == nil)
+            return list;
+        for (Node node = minimum(root); node != nil; node = successor(node))
+            list.add(node.value);
+        return list;
+    }
+
+    /**
+     * Returns an iterator over the entries of the tree in key order
+     * Entries are produced lazily without extra memory
+     * 
+     * @return an iterator over all entries
+     */
+    @Override
+    public Iterator<Map.Entry<T, V>> iterator() {
+        return new EntryIterator(null, null);
+    }
+
+    /**
+     * Returns the entries with keys in [fromKey, toKey) in key order
+     * Finding the first entry costs O(log n), after which each entry costs O(1) amortized
+     * 
+     * @param fromKey the lowest key to include
+     * @param toKey   the key to stop before
+     * @return a lazy view of the entries in the range
+     */
+    public Iterable<Map.Entry<T, V>> range(T fromKey, T toKey) {
+        Objects.requireNonNull(fromKey);
+        Objects.requireNonNull(toKey);
+        return () -> new EntryIterator(fromKey, toKey);
+    }
+
+    /**
+     * Inorder iterator that steps to the successor through the parent links
+     */
+    private class EntryIterator implements Iterator<Map.Entry<T, V>> {
+        /** node of the next entry, or nil at the end */
+        private Node next;
+
+        /** the key to stop before, or null to run to the end of the tree */
+        private final T toKey;
+
+        /** modCount of the tree when the iterator was created */
+        private final int expectedModCount;
+
+        /**
+         * Descends to the first entry not smaller than fromKey
+         * 
+         * @param fromKey the lowest key to include, or null to start at the smallest key
+         * @param toKey   the key to stop before, or null to run to the end of the tree
+         */
+        private EntryIterator(T fromKey, T toKey) {
+            this.toKey = toKey;
+            expectedModCount = modCount;
+            next = nil;
+            Node trav = root;
+            while (trav != nil) {
+                if (fromKey == null || fromKey.compareTo(trav.key) <= 0) {
+                    next = trav;
+                    trav = trav.left;
+                } else
+                    trav = trav.right;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != nil && (toKey == null || toKey.compareTo(next.key) > 0);
+        }
+
+        @Override
+        public Map.Entry<T, V> next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Node current = next;
+            next = successor(current);
+            return current;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package io.github.charlin2.trees;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Operations shared by the ordered trees, so that one can be swapped for another
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public interface SearchTree<T extends Comparable<T>, V> extends Iterable<Map.Entry<T, V>> {
+    /**
+     * Inserts a key-value pair into the tree
+     * 
+     * @param key   the key of the entry being inserted
+     * @param value the value stored with the key
+     */
+    void insert(T key, V value);
+
+    /**
+     * Returns the value associated with a key if it exists
+     * 
+     * @param key the key to be searched for
+     * @return the value associated with the key, or null if it is not in the tree
+     */
+    V search(T key);
+
+    /**
+     * Deletes a key if it exists
+     * 
+     * @param key the key to be deleted
+     */
+    void delete(T key);
+
+    /**
+     * Returns the number of entries in the tree
+     * 
+     * @return the size of the tree
+     */
+    int size();
+
+    /**
+     * Returns the values of the tree in key order
+     * 
+     * @return an inorder list of the values in the tree
+     */
+    List<V> inorderRec();
+
+    /**
+     * Returns every value of the tree with its key, in key order
+     * Unlike the iterator, this yields a key of a DuplicateKeys.BUCKET tree once per
+     * value, in insertion order. The default suits trees without buckets.
+     * 
+     * @return the entries, one per value
+     */
+    default Iterable<Map.Entry<T, V>> entries() {
+        return this;
+    }
+}
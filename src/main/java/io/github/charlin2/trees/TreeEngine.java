@@ -0,0 +1,48 @@
+package io.github.charlin2.trees;
+
+/**
+ * The SearchTree implementations, so that the engine can be chosen by
+ * configuration, for example with TreeEngine.valueOf(name).create()
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public enum TreeEngine {
+    /** unbalanced BinarySearchTree: cheapest writes, degenerates on sorted input */
+    BST {
+        @Override
+        public <T extends Comparable<T>, V> SearchTree<T, V> create() {
+            return new BinarySearchTree<>();
+        }
+    },
+
+    /** AVLTree: shortest binary tree, for read-heavy workloads */
+    AVL {
+        @Override
+        public <T extends Comparable<T>, V> SearchTree<T, V> create() {
+            return new AVLTree<>();
+        }
+    },
+
+    /** RedBlackTree: at most two rotations per insert and three per delete, for write-heavy workloads */
+    RED_BLACK {
+        @Override
+        public <T extends Comparable<T>, V> SearchTree<T, V> create() {
+            return new RedBlackTree<>();
+        }
+    },
+
+    /** BTree of the default order: fewest cache misses on large trees */
+    BTREE {
+        @Override
+        public <T extends Comparable<T>, V> SearchTree<T, V> create() {
+            return new BTree<>();
+        }
+    };
+
+    /**
+     * Creates an empty tree of this engine
+     * 
+     * @return the new tree
+     */
+    public abstract <T extends Comparable<T>, V> SearchTree<T, V> create();
+}
@@ -0,0 +1,239 @@
+package io.github.charlin2.trees;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntSupplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Opt-in instrumentation of a tree, returned by enableMetrics()
+ * 
+ * A tree without metrics only pays a null check per operation. With metrics it
+ * counts the comparisons of each operation (one three-way compareTo per visited
+ * node), the rotations of rebalancing by case and the latency of each insert,
+ * search and delete. The counters are updated without synchronization by the
+ * thread using the tree, so readers on other threads, such as a JMX client, may
+ * see them lag slightly behind.
+ * 
+ * An AVL tree of n nodes is never taller than 1.4405 log2(n + 2) - 1.3277,
+ * counting a leaf as height 0, so isHeightExceeded() is a cheap alarm for a
+ * degenerate or corrupted tree.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public class TreeMetrics implements TreeMetricsMBean {
+    /** rebalancing cases, named after the path from the unbalanced node to the taller grandchild */
+    public enum Rotation {
+        LL, LR, RL, RR
+    }
+
+    /** size and height of the instrumented tree */
+    private final IntSupplier size, height;
+
+    /** latency of each operation */
+    final LatencyHistogram insertLatency = new LatencyHistogram();
+    final LatencyHistogram searchLatency = new LatencyHistogram();
+    final LatencyHistogram deleteLatency = new LatencyHistogram();
+
+    /** total number of key comparisons */
+    long comparisons;
+
+    /** number of rebalancing steps of each case */
+    final long[] rotations = new long[Rotation.values().length];
+
+    /** name the metrics are registered under, or null */
+    private ObjectName name;
+
+    /**
+     * Creates metrics for a tree
+     * 
+     * @param size   the current size of the tree
+     * @param height the current height of the tree
+     */
+    TreeMetrics(IntSupplier size, IntSupplier height) {
+        this.size = size;
+        this.height = height;
+    }
+
+    /**
+     * Counts one rebalancing step
+     */
+    void rotation(Rotation rotation) {
+        rotations[rotation.ordinal()]++;
+    }
+
+    /**
+     * Returns the height an AVL tree of a given size can reach at most
+     * 
+     * @param size the number of nodes
+     * @return the height bound, counting a leaf as height 0
+     */
+    public static double heightBound(int size) {
+        return 1.4405 * Math.log(size + 2) / Math.log(2) - 1.3277;
+    }
+
+    /**
+     * Returns a copy of the current metrics
+     * The counters are read without synchronization, so a copy taken while the
+     * tree is in use may mix values from before and after an operation.
+     * 
+     * @return the snapshot
+     */
+    public TreeStats stats() {
+        return new TreeStats(size.getAsInt(), height.getAsInt(), comparisons, rotations.clone(),
+                insertLatency.copy(), searchLatency.copy(), deleteLatency.copy());
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server
+     * 
+     * @param tree a name distinguishing the tree from others in the same JVM
+     * @return the name the metrics were registered under
+     * @throws JMException if the name is invalid or already taken
+     */
+    public synchronized ObjectName register(String tree) throws JMException {
+        if (name != null)
+            throw new IllegalStateException("already registered as " + name);
+        ObjectName name = new ObjectName("io.github.charlin2.trees:type=TreeMetrics,name=" + ObjectName.quote(tree));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        this.name = name;
+        return name;
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server if they were registered
+     * 
+     * @throws JMException if the server refuses
+     */
+    public synchronized void unregister() throws JMException {
+        if (name == null)
+            return;
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        name = null;
+    }
+
+    @Override
+    public int getSize() {
+        return size.getAsInt();
+    }
+
+    @Override
+    public int getHeight() {
+        return height.getAsInt();
+    }
+
+    @Override
+    public double getHeightBound() {
+        return heightBound(getSize());
+    }
+
+    @Override
+    public boolean isHeightExceeded() {
+        return getHeight() > getHeightBound();
+    }
+
+    @Override
+    public long getInserts() {
+        return insertLatency.count();
+    }
+
+    @Override
+    public long getSearches() {
+        return searchLatency.count();
+    }
+
+    @Override
+    public long getDeletes() {
+        return deleteLatency.count();
+    }
+
+    @Override
+    public long getComparisons() {
+        return comparisons;
+    }
+
+    @Override
+    public double getComparisonsPerOperation() {
+        long operations = getInserts() + getSearches() + getDeletes();
+        return operations == 0 ? 0 : (double) comparisons / operations;
+    }
+
+    @Override
+    public long getRotationsLL() {
+        return rotations[Rotation.LL.ordinal()];
+    }
+
+    @Override
+    public long getRotationsLR() {
+        return rotations[Rotation.LR.ordinal()];
+    }
+
+    @Override
+    public long getRotationsRL() {
+        return rotations[Rotation.RL.ordinal()];
+    }
+
+    @Override
+    public long getRotationsRR() {
+        return rotations[Rotation.RR.ordinal()];
+    }
+
+    @Override
+    public long getInsertLatencyP50() {
+        return insertLatency.valueAtPercentile(50);
+    }
+
+    @Override
+    public long getInsertLatencyP99() {
+        return insertLatency.valueAtPercentile(99);
+    }
+
+    @Override
+    public long getInsertLatencyP999() {
+        return insertLatency.valueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getSearchLatencyP50() {
+        return searchLatency.valueAtPercentile(50);
+    }
+
+    @Override
+    public long getSearchLatencyP99() {
+        return searchLatency.valueAtPercentile(99);
+    }
+
+    @Override
+    public long getSearchLatencyP999() {
+        return searchLatency.valueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getDeleteLatencyP50() {
+        return deleteLatency.valueAtPercentile(50);
+    }
+
+    @Override
+    public long getDeleteLatencyP99() {
+        return deleteLatency.valueAtPercentile(99);
+    }
+
+    @Override
+    public long getDeleteLatencyP999() {
+        return deleteLatency.valueAtPercentile(99.9);
+    }
+
+    /**
+     * Clears every counter and histogram
+     */
+    @Override
+    public void reset() {
+        comparisons = 0;
+        for (Rotation rotation : Rotation.values())
+            rotations[rotation.ordinal()] = 0;
+        insertLatency.reset();
+        searchLatency.reset();
+        deleteLatency.reset();
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.charlin2.trees;
+
+/**
+ * JMX view of the metrics of one tree, implemented by TreeMetrics
+ * 
+ * Latencies are in nanoseconds.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public interface TreeMetricsMBean {
+    int getSize();
+
+    int getHeight();
+
+    double getHeightBound();
+
+    boolean isHeightExceeded();
+
+    long getInserts();
+
+    long getSearches();
+
+    long getDeletes();
+
+    long getComparisons();
+
+    double getComparisonsPerOperation();
+
+    long getRotationsLL();
+
+    long getRotationsLR();
+
+    long getRotationsRL();
+
+    long getRotationsRR();
+
+    long getInsertLatencyP50();
+
+    long getInsertLatencyP99();
+
+    long getInsertLatencyP999();
+
+    long getSearchLatencyP50();
+
+    long getSearchLatencyP99();
+
+    long getSearchLatencyP999();
+
+    long getDeleteLatencyP50();
+
+    long getDeleteLatencyP99();
+
+    long getDeleteLatencyP999();
+
+    void reset();
+}
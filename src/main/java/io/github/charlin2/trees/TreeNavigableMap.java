@@ -0,0 +1,609 @@
+package io.github.charlin2.trees;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+/**
+ * NavigableMap view of a NavigableTree, optionally limited to a key range and in descending order
+ * 
+ * Every query is answered by the tree's own O(h) floor, ceiling and rank
+ * searches, so views are never copied and size() costs O(h) even on a sub-map.
+ * Ascending iterators walk the tree's inorder iterator at O(1) amortized per
+ * entry and are fail-fast; descending ones step from key to key with a lower
+ * search at O(h) per entry. Entries are immutable snapshots; values are changed
+ * with put. Null keys are not supported.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+class TreeNavigableMap<T extends Comparable<T>, V> extends AbstractMap<T, V> implements NavigableMap<T, V> {
+    /** the backing tree */
+    private final NavigableTree<T, V> tree;
+
+    /** lowest and highest keys of the view in ascending order, null if unbounded */
+    private final T low, high;
+
+    /** whether low and high themselves belong to the view */
+    private final boolean lowInclusive, highInclusive;
+
+    /** whether the view is in descending key order */
+    private final boolean descending;
+
+    /**
+     * View of a whole tree in ascending order
+     * 
+     * @param tree the backing tree
+     */
+    TreeNavigableMap(NavigableTree<T, V> tree) {
+        this(tree, null, false, null, false, false);
+    }
+
+    private TreeNavigableMap(NavigableTree<T, V> tree, T low, boolean lowInclusive, T high, boolean highInclusive,
+            boolean descending) {
+        this.tree = tree;
+        this.low = low;
+        this.lowInclusive = lowInclusive;
+        this.high = high;
+        this.highInclusive = highInclusive;
+        this.descending = descending;
+    }
+
+    private boolean tooLow(T key) {
+        if (low == null)
+            return false;
+        int comparison = key.compareTo(low);
+        return comparison < 0 || comparison == 0 && !lowInclusive;
+    }
+
+    private boolean tooHigh(T key) {
+        if (high == null)
+            return false;
+        int comparison = key.compareTo(high);
+        return comparison > 0 || comparison == 0 && !highInclusive;
+    }
+
+    private boolean inRange(T key) {
+        return !tooLow(key) && !tooHigh(key);
+    }
+
+    /**
+     * Checks a bound of a new sub-view, which may equal an excluded bound of this one
+     * as long as the new view excludes it too
+     */
+    private boolean inRange(T key, boolean inclusive) {
+        if (inclusive)
+            return inRange(key);
+        return (low == null || key.compareTo(low) >= 0) && (high == null || key.compareTo(high) <= 0);
+    }
+
+    /*
+     * Navigation in ascending key order, limited to the range of the view
+     */
+
+    private Map.Entry<T, V> absLowest() {
+        Map.Entry<T, V> entry = low == null ? tree.firstEntry()
+                : lowInclusive ? tree.ceilingEntry(low) : tree.higherEntry(low);
+        return entry == null || tooHigh(entry.getKey()) ? null : entry;
+    }
+
+    private Map.Entry<T, V> absHighest() {
+        Map.Entry<T, V> entry = high == null ? tree.lastEntry()
+                : highInclusive ? tree.floorEntry(high) : tree.lowerEntry(high);
+        return entry == null || tooLow(entry.getKey()) ? null : entry;
+    }
+
+    private Map.Entry<T, V> absCeiling(T key) {
+        if (tooLow(key))
+            return absLowest();
+        Map.Entry<T, V> entry = tree.ceilingEntry(key);
+        return entry == null || tooHigh(entry.getKey()) ? null : entry;
+    }
+
+    private Map.Entry<T, V> absHigher(T key) {
+        if (tooLow(key))
+            return absLowest();
+        Map.Entry<T, V> entry = tree.higherEntry(key);
+        return entry == null || tooHigh(entry.getKey()) ? null : entry;
+    }
+
+    private Map.Entry<T, V> absFloor(T key) {
+        if (tooHigh(key))
+            return absHighest();
+        Map.Entry<T, V> entry = tree.floorEntry(key);
+        return entry == null || tooLow(entry.getKey()) ? null : entry;
+    }
+
+    private Map.Entry<T, V> absLower(T key) {
+        if (tooHigh(key))
+            return absHighest();
+        Map.Entry<T, V> entry = tree.lowerEntry(key);
+        return entry == null || tooLow(entry.getKey()) ? null : entry;
+    }
+
+    /**
+     * Returns the number of keys in the tree less than or equal to a key
+     */
+    private int rankAbove(T key) {
+        Map.Entry<T, V> next = tree.higherEntry(key);
+        return next == null ? tree.size() : tree.rank(next.getKey());
+    }
+
+    /**
+     * Returns a view of the same tree in the same order with new bounds in ascending order,
+     * keeping a bound of this view where the new one is null
+     */
+    private NavigableMap<T, V> restrict(T fromKey, boolean fromInclusive, T toKey, boolean toInclusive) {
+        if (fromKey != null && !inRange(fromKey, fromInclusive))
+            throw new IllegalArgumentException("fromKey out of range");
+        if (toKey != null && !inRange(toKey, toInclusive))
+            throw new IllegalArgumentException("toKey out of range");
+        if (fromKey == null) {
+            fromKey = low;
+            fromInclusive = lowInclusive;
+        }
+        if (toKey == null) {
+            toKey = high;
+            toInclusive = highInclusive;
+        }
+        return new TreeNavigableMap<>(tree, fromKey, fromInclusive, toKey, toInclusive, descending);
+    }
+
+    private static <T> T keyOf(Map.Entry<T, ?> entry) {
+        return entry == null ? null : entry.getKey();
+    }
+
+    private static <T> T keyOrThrow(Map.Entry<T, ?> entry) {
+        if (entry == null)
+            throw new NoSuchElementException();
+        return entry.getKey();
+    }
+
+    @SuppressWarnings("unchecked")
+    private T cast(Object key) {
+        return (T) Objects.requireNonNull(key);
+    }
+
+    @Override
+    public int size() {
+        if (low == null && high == null)
+            return tree.size();
+        int from = low == null ? 0 : lowInclusive ? tree.rank(low) : rankAbove(low);
+        int to = high == null ? tree.size() : highInclusive ? rankAbove(high) : tree.rank(high);
+        return Math.max(0, to - from);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return absLowest() == null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        T k = cast(key);
+        if (!inRange(k))
+            return false;
+        Map.Entry<T, V> entry = tree.ceilingEntry(k);
+        return entry != null && k.compareTo(entry.getKey()) == 0;
+    }
+
+    @Override
+    public V get(Object key) {
+        T k = cast(key);
+        return inRange(k) ? tree.search(k) : null;
+    }
+
+    @Override
+    public V put(T key, V value) {
+        if (!inRange(Objects.requireNonNull(key)))
+            throw new IllegalArgumentException("key out of range");
+        return tree.put(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        T k = cast(key);
+        if (!inRange(k))
+            return null;
+        Map.Entry<T, V> entry = tree.ceilingEntry(k);
+        if (entry == null || k.compareTo(entry.getKey()) != 0)
+            return null;
+        tree.delete(k);
+        return entry.getValue();
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return descending ? Collections.reverseOrder() : null;
+    }
+
+    @Override
+    public Map.Entry<T, V> firstEntry() {
+        return descending ? absHighest() : absLowest();
+    }
+
+    @Override
+    public Map.Entry<T, V> lastEntry() {
+        return descending ? absLowest() : absHighest();
+    }
+
+    @Override
+    public Map.Entry<T, V> lowerEntry(T key) {
+        return descending ? absHigher(key) : absLower(key);
+    }
+
+    @Override
+    public Map.Entry<T, V> floorEntry(T key) {
+        return descending ? absCeiling(key) : absFloor(key);
+    }
+
+    @Override
+    public Map.Entry<T, V> ceilingEntry(T key) {
+        return descending ? absFloor(key) : absCeiling(key);
+    }
+
+    @Override
+    public Map.Entry<T, V> higherEntry(T key) {
+        return descending ? absLower(key) : absHigher(key);
+    }
+
+    @Override
+    public Map.Entry<T, V> pollFirstEntry() {
+        Map.Entry<T, V> first = firstEntry();
+        if (first != null)
+            tree.delete(first.getKey());
+        return first;
+    }
+
+    @Override
+    public Map.Entry<T, V> pollLastEntry() {
+        Map.Entry<T, V> last = lastEntry();
+        if (last != null)
+            tree.delete(last.getKey());
+        return last;
+    }
+
+    @Override
+    public T firstKey() {
+        return keyOrThrow(firstEntry());
+    }
+
+    @Override
+    public T lastKey() {
+        return keyOrThrow(lastEntry());
+    }
+
+    @Override
+    public T lowerKey(T key) {
+        return keyOf(lowerEntry(key));
+    }
+
+    @Override
+    public T floorKey(T key) {
+        return keyOf(floorEntry(key));
+    }
+
+    @Override
+    public T ceilingKey(T key) {
+        return keyOf(ceilingEntry(key));
+    }
+
+    @Override
+    public T higherKey(T key) {
+        return keyOf(higherEntry(key));
+    }
+
+    @Override
+    public NavigableMap<T, V> descendingMap() {
+        return new TreeNavigableMap<>(tree, low, lowInclusive, high, highInclusive, !descending);
+    }
+
+    @Override
+    public NavigableMap<T, V> subMap(T fromKey, boolean fromInclusive, T toKey, boolean toInclusive) {
+        int comparison = Objects.requireNonNull(fromKey).compareTo(Objects.requireNonNull(toKey));
+        if (descending ? comparison < 0 : comparison > 0)
+            throw new IllegalArgumentException("fromKey > toKey");
+        if (descending)
+            return restrict(toKey, toInclusive, fromKey, fromInclusive);
+        return restrict(fromKey, fromInclusive, toKey, toInclusive);
+    }
+
+    @Override
+    public NavigableMap<T, V> headMap(T toKey, boolean inclusive) {
+        Objects.requireNonNull(toKey);
+        if (descending)
+            return restrict(toKey, inclusive, null, false);
+        return restrict(null, false, toKey, inclusive);
+    }
+
+    @Override
+    public NavigableMap<T, V> tailMap(T fromKey, boolean inclusive) {
+        Objects.requireNonNull(fromKey);
+        if (descending)
+            return restrict(null, false, fromKey, inclusive);
+        return restrict(fromKey, inclusive, null, false);
+    }
+
+    @Override
+    public SortedMap<T, V> subMap(T fromKey, T toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<T, V> headMap(T toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<T, V> tailMap(T fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    @Override
+    public NavigableSet<T> keySet() {
+        return navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<T> navigableKeySet() {
+        return new KeySet<>(this);
+    }
+
+    @Override
+    public NavigableSet<T> descendingKeySet() {
+        return new KeySet<>(descendingMap());
+    }
+
+    @Override
+    public Set<Map.Entry<T, V>> entrySet() {
+        return new AbstractSet<Map.Entry<T, V>>() {
+            @Override
+            public Iterator<Map.Entry<T, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return TreeNavigableMap.this.size();
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return TreeNavigableMap.this.isEmpty();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Map.Entry))
+                    return false;
+                Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+                return containsKey(entry.getKey()) && Objects.equals(get(entry.getKey()), entry.getValue());
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                if (!contains(o))
+                    return false;
+                TreeNavigableMap.this.remove(((Map.Entry<?, ?>) o).getKey());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Iterator in the order of the view; after a removal the inorder iterator of
+     * the tree is reopened past the removed key
+     */
+    private class EntryIterator implements Iterator<Map.Entry<T, V>> {
+        /** the entry to return next, or null if it has to be looked up */
+        private Map.Entry<T, V> next;
+
+        /** key of the last entry returned, null before the first */
+        private T last;
+
+        /** whether the last entry returned can still be removed */
+        private boolean removable;
+
+        /** inorder iterator of the tree for ascending views, null until (re)opened */
+        private Iterator<Map.Entry<T, V>> entries;
+
+        private Map.Entry<T, V> peek() {
+            if (next != null)
+                return next;
+            if (descending)
+                return next = last == null ? absHighest() : absLower(last);
+            if (entries == null) {
+                Map.Entry<T, V> start = last == null ? absLowest() : absHigher(last);
+                if (start == null)
+                    return null;
+                entries = tree.tailRange(start.getKey()).iterator();
+            }
+            if (!entries.hasNext())
+                return null;
+            Map.Entry<T, V> entry = entries.next();
+            if (tooHigh(entry.getKey()))
+                return null;
+            return next = new AbstractMap.SimpleImmutableEntry<>(entry);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return peek() != null;
+        }
+
+        @Override
+        public Map.Entry<T, V> next() {
+            Map.Entry<T, V> entry = peek();
+            if (entry == null)
+                throw new NoSuchElementException();
+            next = null;
+            last = entry.getKey();
+            removable = true;
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            if (!removable)
+                throw new IllegalStateException();
+            removable = false;
+            entries = null;
+            tree.delete(last);
+        }
+    }
+
+    /**
+     * NavigableSet view of the keys of a map
+     */
+    private static class KeySet<T> extends AbstractSet<T> implements NavigableSet<T> {
+        /** the map whose keys are viewed */
+        private final NavigableMap<T, ?> map;
+
+        private KeySet(NavigableMap<T, ?> map) {
+            this.map = map;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            Iterator<? extends Map.Entry<T, ?>> entries = map.entrySet().iterator();
+            return new Iterator<T>() {
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public T next() {
+                    return entries.next().getKey();
+                }
+
+                @Override
+                public void remove() {
+                    entries.remove();
+                }
+            };
+        }
+
+        @Override
+        public Iterator<T> descendingIterator() {
+            return descendingSet().iterator();
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return map.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return map.containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!map.containsKey(o))
+                return false;
+            map.remove(o);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public Comparator<? super T> comparator() {
+            return map.comparator();
+        }
+
+        @Override
+        public T first() {
+            return map.firstKey();
+        }
+
+        @Override
+        public T last() {
+            return map.lastKey();
+        }
+
+        @Override
+        public T lower(T key) {
+            return map.lowerKey(key);
+        }
+
+        @Override
+        public T floor(T key) {
+            return map.floorKey(key);
+        }
+
+        @Override
+        public T ceiling(T key) {
+            return map.ceilingKey(key);
+        }
+
+        @Override
+        public T higher(T key) {
+            return map.higherKey(key);
+        }
+
+        @Override
+        public T pollFirst() {
+            return keyOf(map.pollFirstEntry());
+        }
+
+        @Override
+        public T pollLast() {
+            return keyOf(map.pollLastEntry());
+        }
+
+        @Override
+        public NavigableSet<T> descendingSet() {
+            return new KeySet<>(map.descendingMap());
+        }
+
+        @Override
+        public NavigableSet<T> subSet(T fromKey, boolean fromInclusive, T toKey, boolean toInclusive) {
+            return new KeySet<>(map.subMap(fromKey, fromInclusive, toKey, toInclusive));
+        }
+
+        @Override
+        public NavigableSet<T> headSet(T toKey, boolean inclusive) {
+            return new KeySet<>(map.headMap(toKey, inclusive));
+        }
+
+        @Override
+        public NavigableSet<T> tailSet(T fromKey, boolean inclusive) {
+            return new KeySet<>(map.tailMap(fromKey, inclusive));
+        }
+
+        @Override
+        public SortedSet<T> subSet(T fromKey, T toKey) {
+            return subSet(fromKey, true, toKey, false);
+        }
+
+        @Override
+        public SortedSet<T> headSet(T toKey) {
+            return headSet(toKey, false);
+        }
+
+        @Override
+        public SortedSet<T> tailSet(T fromKey) {
+            return tailSet(fromKey, true);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.charlin2.trees;
+
+/**
+ * Immutable snapshot of the metrics of a tree, taken by stats()
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+public final class TreeStats {
+    private final int size;
+    private final int height;
+    private final long comparisons;
+    private final long[] rotations;
+    private final LatencyHistogram insertLatency, searchLatency, deleteLatency;
+
+    TreeStats(int size, int height, long comparisons, long[] rotations, LatencyHistogram insertLatency,
+            LatencyHistogram searchLatency, LatencyHistogram deleteLatency) {
+        this.size = size;
+        this.height = height;
+        this.comparisons = comparisons;
+        this.rotations = rotations;
+        this.insertLatency = insertLatency;
+        this.searchLatency = searchLatency;
+        this.deleteLatency = deleteLatency;
+    }
+
+    /** @return the number of entries in the tree */
+    public int size() {
+        return size;
+    }
+
+    /** @return the height of the tree, -1 if it is empty */
+    public int height() {
+        return height;
+    }
+
+    /** @return the largest height allowed for an AVL tree of this size */
+    public double heightBound() {
+        return TreeMetrics.heightBound(size);
+    }
+
+    /** @return whether the tree is taller than any AVL tree of its size */
+    public boolean heightExceeded() {
+        return height > heightBound();
+    }
+
+    /** @return the number of inserts, searches and deletes */
+    public long operations() {
+        return insertLatency.count() + searchLatency.count() + deleteLatency.count();
+    }
+
+    /** @return the total number of key comparisons */
+    public long comparisons() {
+        return comparisons;
+    }
+
+    /** @return the average number of key comparisons per operation */
+    public double comparisonsPerOperation() {
+        long operations = operations();
+        return operations == 0 ? 0 : (double) comparisons / operations;
+    }
+
+    /**
+     * @param rotation the rebalancing case
+     * @return the number of rebalancing steps of that case
+     */
+    public long rotations(TreeMetrics.Rotation rotation) {
+        return rotations[rotation.ordinal()];
+    }
+
+    /** @return the latency of inserts in nanoseconds */
+    public LatencyHistogram insertLatency() {
+        return insertLatency.copy();
+    }
+
+    /** @return the latency of searches in nanoseconds */
+    public LatencyHistogram searchLatency() {
+        return searchLatency.copy();
+    }
+
+    /** @return the latency of deletes in nanoseconds */
+    public LatencyHistogram deleteLatency() {
+        return deleteLatency.copy();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("size=").append(size).append(" height=").append(height);
+        builder.append(String.format(" (bound %.1f)", heightBound()));
+        builder.append(String.format(" comparisons/op=%.2f", comparisonsPerOperation()));
+        for (TreeMetrics.Rotation rotation : TreeMetrics.Rotation.values())
+            builder.append(' ').append(rotation).append('=').append(rotations(rotation));
+        builder.append("\ninsert ").append(insertLatency);
+        builder.append("\nsearch ").append(searchLatency);
+        builder.append("\ndelete ").append(deleteLatency);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,53 @@
+package io.github.charlin2.trees;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Growable array of the values after the first one of a key in DuplicateKeys.BUCKET mode
+ * 
+ * Nodes only get a bucket once a second value arrives, so keys without
+ * duplicates pay a single null reference.
+ * 
+ * @author <i>Charlie Lin</i>
+ */
+final class ValueBucket<V> {
+    /** the values, in insertion order */
+    private Object[] values = new Object[2];
+
+    /** number of values in the bucket */
+    private int size;
+
+    /**
+     * Appends a value to the bucket
+     */
+    void add(V value) {
+        if (size == values.length)
+            values = Arrays.copyOf(values, size + (size >> 1) + 1);
+        values[size++] = value;
+    }
+
+    /**
+     * Appends every value of the bucket to a list
+     */
+    @SuppressWarnings("unchecked")
+    void addTo(List<? super V> list) {
+        for (int i = 0; i < size; i++)
+            list.add((V) values[i]);
+    }
+
+    /**
+     * Returns the value at a position of the bucket
+     */
+    @SuppressWarnings("unchecked")
+    V get(int i) {
+        return (V) values[i];
+    }
+
+    /**
+     * Returns the number of values in the bucket
+     */
+    int size() {
+        return size;
+    }
+}
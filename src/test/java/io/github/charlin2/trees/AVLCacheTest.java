@@ -0,0 +1,152 @@
+package io.github.charlin2.trees;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AVLCacheTest {
+    /** fake clock for the TTL tests, in nanoseconds */
+    long now;
+
+    private static List<Integer> keys(Iterable<Map.Entry<Integer, Integer>> entries) {
+        List<Integer> keys = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : entries)
+            keys.add(entry.getKey());
+        return keys;
+    }
+
+    @Test
+    public void testKeyOrderEviction() {
+        AVLCache<Integer, Integer> smallest = new AVLCache<>(AVLCache.Eviction.SMALLEST_KEY, 100);
+        AVLCache<Integer, Integer> largest = new AVLCache<>(AVLCache.Eviction.LARGEST_KEY, 100);
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        Random random = new Random(233);
+        int added = 0;
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(10000);
+            if (smallest.put(key, i) == null)
+                added++;
+            largest.put(key, i);
+            expected.put(key, i);
+        }
+        Assert.assertEquals(100, smallest.size());
+        Assert.assertEquals(new ArrayList<>(expected.descendingKeySet()).subList(0, 100).stream().sorted().toList(),
+                keys(smallest));
+        Assert.assertEquals(new ArrayList<>(expected.keySet()).subList(0, 100), keys(largest));
+        Assert.assertEquals(added - 100, smallest.evictions());
+        // a key that the policy would evict right away is not kept
+        Assert.assertNull(smallest.put(-1, 0));
+        Assert.assertNull(smallest.search(-1));
+        Assert.assertEquals(100, smallest.size());
+    }
+
+    @Test
+    public void testClockOnlyReadByTTL() {
+        for (AVLCache.Eviction eviction : new AVLCache.Eviction[] { AVLCache.Eviction.SMALLEST_KEY,
+                AVLCache.Eviction.LARGEST_KEY, AVLCache.Eviction.LRU }) {
+            AVLCache<Integer, Integer> cache = new AVLCache<>(eviction, 4, Long.MAX_VALUE, null, null, () -> {
+                throw new AssertionError("clock read under " + eviction);
+            });
+            for (int i = 0; i < 10; i++)
+                cache.put(i, i);
+            for (int i = 0; i < 10; i++)
+                cache.search(i);
+            Assert.assertEquals(4, keys(cache).size());
+            Assert.assertEquals(4, cache.size());
+        }
+    }
+
+    @Test
+    public void testLRU() {
+        AVLCache<Integer, Integer> cache = new AVLCache<>(AVLCache.Eviction.LRU, 64);
+        LinkedHashMap<Integer, Integer> expected = new LinkedHashMap<Integer, Integer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+                return size() > 64;
+            }
+        };
+        Random random = new Random(233);
+        long hits = 0, misses = 0;
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(200);
+            switch (random.nextInt(4)) {
+                case 0:
+                    Assert.assertEquals(expected.put(key, i), cache.put(key, i));
+                    break;
+                case 1:
+                    cache.delete(key);
+                    expected.remove(key);
+                    break;
+                default:
+                    Integer value = expected.get(key);
+                    if (value == null)
+                        misses++;
+                    else
+                        hits++;
+                    Assert.assertEquals(value, cache.search(key));
+            }
+            Assert.assertEquals(expected.size(), cache.size());
+        }
+        Assert.assertEquals(new TreeMap<>(expected).keySet().stream().toList(), keys(cache));
+        Assert.assertEquals(hits, cache.hits());
+        Assert.assertEquals(misses, cache.misses());
+    }
+
+    @Test
+    public void testTTL() {
+        AVLCache<Integer, Integer> cache = new AVLCache<>(AVLCache.Eviction.TTL, 1000, Long.MAX_VALUE, null,
+                Duration.ofNanos(100), () -> now);
+        for (int key = 0; key < 10; key++) {
+            cache.put(key, key);
+            now += 10;
+        }
+        // key k was written at 10k and expires at 10k + 100
+        now = 125;
+        Assert.assertNull(cache.search(2));
+        Assert.assertEquals(Integer.valueOf(3), cache.search(3));
+        Assert.assertEquals(Arrays.asList(3, 4, 5, 6, 7, 8, 9), keys(cache));
+        Assert.assertEquals(Arrays.asList(3, 4, 5), keys(cache.range(1, 6)));
+        Assert.assertEquals(10, cache.size());
+        // rewriting a key restarts its lifetime; the write sweeps the expired entries
+        cache.put(4, 40);
+        Assert.assertEquals(7, cache.size());
+        Assert.assertEquals(3, cache.evictions());
+        now = 195;
+        cache.cleanUp();
+        Assert.assertEquals(Arrays.asList(4), keys(cache));
+        Assert.assertEquals(Arrays.asList(40), cache.inorderRec());
+        try {
+            new AVLCache<Integer, Integer>(AVLCache.Eviction.TTL, 10);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void testWeightBudget() {
+        AVLCache<Integer, String> cache = new AVLCache<>(AVLCache.Eviction.LRU, Integer.MAX_VALUE, 100,
+                (key, value) -> value.length(), null, System::nanoTime);
+        for (int key = 0; key < 10; key++)
+            cache.put(key, "0123456789");
+        Assert.assertEquals(100, cache.weight());
+        cache.search(0);
+        cache.put(10, "01234567890123456789"); // evicts the two least recently used: 1 and 2
+        Assert.assertEquals(100, cache.weight());
+        Assert.assertNull(cache.search(1));
+        Assert.assertNull(cache.search(2));
+        Assert.assertEquals("0123456789", cache.search(0));
+        cache.put(10, "0");
+        Assert.assertEquals(81, cache.weight());
+        cache.delete(10);
+        Assert.assertEquals(80, cache.weight());
+        Assert.assertEquals(2, cache.evictions());
+    }
+}
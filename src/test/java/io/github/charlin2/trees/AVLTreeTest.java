@@ -0,0 +1,626 @@
+package io.github.charlin2.trees;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AVLTreeTest {
+    AVLTree<Integer, Integer> tree = new AVLTree<>();
+
+    @Test
+    public void testInsertDelete() {
+        tree.insert(1, 1);
+        Assert.assertEquals("[1]", tree.inorderRec().toString());
+        Assert.assertEquals(Integer.valueOf(1), tree.search(1));
+        tree.insert(2, 2);
+        Assert.assertEquals("[1, 2]", tree.inorderRec().toString());
+        tree.insert(3, 3); // tree will have to rebalance
+        Assert.assertEquals("[1, 2, 3]", tree.inorderRec().toString());
+        Assert.assertEquals("[1, 3, 2]", tree.postorder().toString());
+        tree.insert(7, 7);
+        tree.insert(6, 6); // rebalance
+        Assert.assertEquals("[1, 3, 7, 6, 2]", tree.postorder().toString());
+        Assert.assertEquals("[1, 2, 3, 6, 7]", tree.inorderRec().toString());
+        tree.insert(9, 9); // rebalance
+        Assert.assertEquals("[1, 2, 3, 6, 7, 9]", tree.inorderRec().toString());
+        Assert.assertEquals("[1, 3, 2, 9, 7, 6]", tree.postorder().toString());
+        tree.insert(-3, -3);
+        tree.insert(-2, -2); // rebalance
+        Assert.assertEquals("[-3, -2, 1, 2, 3, 6, 7, 9]", tree.inorderRec().toString());
+        Assert.assertEquals("[-3, 1, -2, 3, 2, 9, 7, 6]", tree.postorder().toString());
+
+        // Testing delete
+        tree.delete(-3); // should do nothing but remove -3
+        Assert.assertEquals("[-2, 1, 2, 3, 6, 7, 9]", tree.inorderRec().toString());
+        Assert.assertEquals("[1, -2, 3, 2, 9, 7, 6]", tree.postorder().toString());
+        tree.delete(3); // needs rebalance
+        Assert.assertEquals("[-2, 1, 2, 6, 7, 9]", tree.inorderRec().toString());
+        Assert.assertEquals("[-2, 2, 1, 9, 7, 6]", tree.postorder().toString());
+        tree.delete(7); // no rebalancing
+        Assert.assertEquals("[-2, 1, 2, 6, 9]", tree.inorderRec().toString());
+        Assert.assertEquals("[-2, 2, 1, 9, 6]", tree.postorder().toString());
+        tree.delete(9); // rebalancing
+        Assert.assertEquals("[-2, 1, 2, 6]", tree.inorderRec().toString());
+        Assert.assertEquals("[-2, 2, 6, 1]", tree.postorder().toString());
+        tree.delete(1);
+        tree.delete(-2);
+        tree.delete(6);
+        tree.delete(2); // deleting rest of tree should not throw any errors
+        Assert.assertEquals("[]", tree.inorderRec().toString());
+    }
+
+    @Test(timeout = 10000)
+    public void testLargeSequentialInsert() {
+        // with cached heights this is O(n log n); recomputing depths made it quadratic
+        int n = 1 << 20;
+        for (int i = 0; i < n; i++)
+            tree.insert(i, i);
+        Assert.assertEquals(20, tree.height()); // a perfectly balanced tree of 2^20 - 1 keys plus one leaf
+        Assert.assertEquals(Integer.valueOf(n - 1), tree.search(n - 1));
+        for (int i = 0; i < n; i += 2)
+            tree.delete(i);
+        Assert.assertEquals(null, tree.search(0));
+        Assert.assertEquals(Integer.valueOf(1), tree.search(1));
+        Assert.assertTrue(tree.height() <= 1.44 * Math.log(n / 2) / Math.log(2));
+    }
+
+    @Test
+    public void testDeleteRoot() {
+        tree.delete(1); // deleting from an empty tree should do nothing
+        tree.insert(1, 1);
+        tree.insert(2, 2);
+        tree.delete(1); // root with a single child
+        Assert.assertEquals("[2]", tree.inorderRec().toString());
+        Assert.assertEquals(0, tree.height());
+    }
+
+    @Test
+    public void testOrderStatistics() {
+        Assert.assertEquals(0, tree.size());
+        Assert.assertEquals(null, tree.kthSmallest(1));
+        // descending inserts rotate on almost every step
+        for (int i = 100; i > 0; i--)
+            tree.insert(i, i * 10);
+        Assert.assertEquals(100, tree.size());
+        for (int k = 0; k < 100; k++) {
+            Assert.assertEquals(Integer.valueOf(k + 1), tree.select(k));
+            Assert.assertEquals(k, tree.rank(k + 1));
+        }
+        Assert.assertEquals(Integer.valueOf(10), tree.kthSmallest(1));
+        Assert.assertEquals(Integer.valueOf(1000), tree.kthSmallest(100));
+        Assert.assertEquals(null, tree.kthSmallest(101));
+        for (int i = 1; i <= 100; i += 3)
+            tree.delete(i);
+        Assert.assertEquals(66, tree.size());
+        Assert.assertEquals(Integer.valueOf(2), tree.select(0));
+        Assert.assertEquals(Integer.valueOf(3), tree.select(1));
+        Assert.assertEquals(Integer.valueOf(5), tree.select(2));
+        Assert.assertEquals(2, tree.rank(4)); // 2 and 3 are smaller
+        Assert.assertEquals(66, tree.rank(101));
+    }
+
+    @Test
+    public void testAgainstTreeMap() {
+        // retracing stops early once heights settle, so check sizes and balance throughout
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        Random random = new Random(233);
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(2000);
+            if (random.nextBoolean() && !expected.containsKey(key)) {
+                tree.insert(key, i);
+                expected.put(key, i);
+            } else {
+                tree.delete(key);
+                expected.remove(key);
+            }
+            Assert.assertEquals(expected.get(key), tree.search(key));
+            Assert.assertEquals(expected.headMap(key).size(), tree.rank(key));
+        }
+        Assert.assertEquals(expected.size(), tree.size());
+        Assert.assertEquals(new ArrayList<>(expected.values()), tree.inorderRec());
+        int k = 0;
+        for (int key : expected.keySet())
+            Assert.assertEquals(Integer.valueOf(key), tree.select(k++));
+        Assert.assertTrue(tree.height() <= 1.44 * Math.log(tree.size() + 2) / Math.log(2));
+    }
+
+    /** collects lazily produced entries so they can be compared as strings */
+    private static List<Map.Entry<Integer, Integer>> list(Iterable<Map.Entry<Integer, Integer>> entries) {
+        List<Map.Entry<Integer, Integer>> list = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : entries)
+            list.add(entry);
+        return list;
+    }
+
+    @Test
+    public void testRange() {
+        // Test 0
+        Assert.assertEquals("[]", list(tree).toString());
+        Assert.assertEquals("[]", list(tree.range(1, 5)).toString());
+
+        // Test many
+        int[] keys = { 50, 30, 70, 20, 40, 60, 80, 35, 45, 65 };
+        for (int key : keys)
+            tree.insert(key, key / 5);
+        Assert.assertEquals("[20=4, 30=6, 35=7, 40=8, 45=9, 50=10, 60=12, 65=13, 70=14, 80=16]", list(tree).toString());
+        Assert.assertEquals("[35=7, 40=8, 45=9, 50=10]", list(tree.range(35, 60)).toString()); // upper bound excluded
+        Assert.assertEquals("[35=7, 40=8, 45=9, 50=10]", list(tree.range(31, 51)).toString()); // bounds not in tree
+        Assert.assertEquals("[]", list(tree.range(51, 59)).toString());
+        Assert.assertEquals("[]", list(tree.range(60, 60)).toString());
+        Assert.assertEquals("[20=4, 30=6]", list(tree.headRange(35)).toString());
+        Assert.assertEquals("[70=14, 80=16]", list(tree.tailRange(70)).toString());
+        Assert.assertEquals("[]", list(tree.tailRange(81)).toString());
+
+        // entries write through to the tree
+        tree.iterator().next().setValue(0);
+        Assert.assertEquals(Integer.valueOf(0), tree.search(20));
+
+        Iterator<Map.Entry<Integer, Integer>> iterator = tree.iterator();
+        tree.delete(20);
+        try {
+            iterator.next();
+            Assert.fail();
+        } catch (ConcurrentModificationException e) {
+            Assert.assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testBulkLoad() {
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++)
+            keys.add(i);
+        tree = AVLTree.fromSorted(keys, keys);
+        Assert.assertEquals(1000, tree.size());
+        Assert.assertEquals(9, tree.height()); // floor(log2(1000))
+        Assert.assertEquals(keys, tree.inorderRec());
+        Assert.assertEquals(Integer.valueOf(500), tree.kthSmallest(500));
+        tree.insert(1001, 1001); // the loaded tree keeps working as usual
+        tree.delete(1);
+        Assert.assertEquals(Integer.valueOf(2), tree.select(0));
+
+        // unsorted input is sorted first
+        tree = AVLTree.fromSorted(Arrays.asList(3, 1, 2), Arrays.asList(30, 10, 20));
+        Assert.assertEquals("[10, 20, 30]", tree.inorderRec().toString());
+        Assert.assertEquals("[10, 30, 20]", tree.postorder().toString());
+
+        TreeMap<Integer, Integer> map = new TreeMap<>();
+        for (int i = 0; i < 7; i++)
+            map.put(i * 2, i);
+        tree = AVLTree.bulkLoad(map.entrySet().iterator());
+        Assert.assertEquals("[0, 1, 2, 3, 4, 5, 6]", tree.inorderRec().toString());
+        Assert.assertEquals(2, tree.height());
+        Assert.assertEquals(0, AVLTree.bulkLoad(new TreeMap<Integer, Integer>().entrySet().iterator()).size());
+    }
+
+    /** builds a tree holding the given map */
+    private static AVLTree<Integer, Integer> treeOf(TreeMap<Integer, Integer> map) {
+        AVLTree<Integer, Integer> tree = new AVLTree<>();
+        for (Map.Entry<Integer, Integer> entry : map.entrySet())
+            tree.insert(entry.getKey(), entry.getValue());
+        return tree;
+    }
+
+    /** checks that a tree holds exactly the entries of a map and is still balanced */
+    private static void assertSameEntries(TreeMap<Integer, Integer> expected, AVLTree<Integer, Integer> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        Assert.assertEquals(new ArrayList<>(expected.entrySet()).toString(), list(actual).toString());
+        Assert.assertTrue(actual.height() <= 1.44 * Math.log(actual.size() + 2) / Math.log(2));
+        for (int k = 0; k < expected.size(); k += 97)
+            Assert.assertEquals(k, actual.rank(actual.select(k)));
+    }
+
+    @Test
+    public void testSetOperations() {
+        // large enough for the recursion to fork
+        Random random = new Random(233);
+        TreeMap<Integer, Integer> a = new TreeMap<>();
+        TreeMap<Integer, Integer> b = new TreeMap<>();
+        for (int i = 0; i < 30000; i++)
+            a.put(random.nextInt(100000), 1);
+        for (int i = 0; i < 5000; i++)
+            b.put(random.nextInt(100000), 2);
+
+        TreeMap<Integer, Integer> union = new TreeMap<>(a);
+        union.putAll(b); // entries of the other tree win
+        AVLTree<Integer, Integer> other = treeOf(b);
+        tree = treeOf(a);
+        tree.union(other);
+        assertSameEntries(union, tree);
+        Assert.assertEquals(0, other.size());
+
+        TreeMap<Integer, Integer> intersection = new TreeMap<>(a);
+        intersection.keySet().retainAll(b.keySet());
+        other = treeOf(b);
+        tree = treeOf(a);
+        tree.intersection(other);
+        assertSameEntries(intersection, tree);
+        assertSameEntries(b, other); // left untouched
+
+        TreeMap<Integer, Integer> difference = new TreeMap<>(a);
+        difference.keySet().removeAll(b.keySet());
+        tree = treeOf(a);
+        tree.difference(other);
+        assertSameEntries(difference, tree);
+
+        // empty operands
+        tree = treeOf(a);
+        tree.union(new AVLTree<>());
+        assertSameEntries(a, tree);
+        tree.intersection(new AVLTree<>());
+        Assert.assertEquals(0, tree.size());
+    }
+
+    @Test
+    public void testSplitJoin() {
+        for (int i = 0; i < 1000; i++)
+            tree.insert(i, i);
+        AVLTree<Integer, Integer> tail = tree.split(300);
+        Assert.assertEquals(300, tree.size());
+        Assert.assertEquals(700, tail.size());
+        Assert.assertEquals(Integer.valueOf(299), tree.select(299));
+        Assert.assertEquals(Integer.valueOf(300), tail.select(0));
+        Assert.assertTrue(tree.height() <= 12 && tail.height() <= 14);
+
+        AVLTree<Integer, Integer> small = tail.split(990);
+        tail.join(small); // a short tree onto a tall one
+        Assert.assertEquals(700, tail.size());
+        tree.join(tail);
+        Assert.assertEquals(1000, tree.size());
+        Assert.assertEquals(0, tail.size());
+        for (int k = 0; k < 1000; k++)
+            Assert.assertEquals(Integer.valueOf(k), tree.select(k));
+        Assert.assertTrue(tree.height() <= 14);
+
+        AVLTree<Integer, Integer> low = new AVLTree<>();
+        low.insert(500, 500);
+        try {
+            low.join(tree); // keys overlap
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals(1000, tree.size());
+        }
+        AVLTree<Integer, Integer> all = tree.split(-1);
+        Assert.assertEquals(1000, all.size());
+        Assert.assertEquals(0, tree.size());
+    }
+
+    @Test
+    public void testCursorAgainstTreeMap() {
+        // clustered accesses: short runs around a random point
+        Random random = new Random(233);
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        AVLTree<Integer, Integer>.Cursor cursor = tree.cursor();
+        int center = 0;
+        for (int i = 0; i < 20000; i++) {
+            if (i % 50 == 0)
+                center = random.nextInt(10000);
+            int key = center + random.nextInt(20);
+            int op = random.nextInt(10);
+            if (op < 5) {
+                if (cursor.search(key) == null) {
+                    cursor.insert(key, i);
+                    expected.put(key, i);
+                }
+            } else if (op < 9)
+                Assert.assertEquals(expected.get(key), cursor.search(key));
+            else {
+                // deleting through the tree sends the cursor back to the root
+                tree.delete(key);
+                expected.remove(key);
+            }
+        }
+        assertSameEntries(expected, tree);
+    }
+
+    @Test
+    public void testCursorSequential() {
+        AVLTree<Integer, Integer>.Cursor cursor = tree.cursor();
+        Assert.assertNull(cursor.search(1));
+        for (int i = 0; i < 10000; i++)
+            cursor.insert(i, i);
+        Assert.assertEquals(10000, tree.size());
+        Assert.assertTrue(tree.height() <= 14);
+        for (int i = 0; i < 10000; i++)
+            Assert.assertEquals(Integer.valueOf(i), cursor.search(i));
+        for (int i = 9999; i >= 0; i -= 3)
+            Assert.assertEquals(Integer.valueOf(i), cursor.search(i));
+        Assert.assertNull(cursor.search(-1));
+        Assert.assertNull(cursor.search(10000));
+        for (int k = 0; k < 10000; k += 97)
+            Assert.assertEquals(k, tree.rank(tree.select(k)));
+    }
+
+    @Test
+    public void testDuplicateKeys() {
+        AVLTree<String, Integer> allow = new AVLTree<>();
+        AVLTree<String, Integer> replace = new AVLTree<>(DuplicateKeys.REPLACE);
+        AVLTree<String, Integer> bucket = new AVLTree<>(DuplicateKeys.BUCKET);
+        String[] keys = { "M", "A", "M", "Z", "M", "B", "M" };
+        for (int i = 0; i < keys.length; i++) {
+            allow.insert(keys[i], i);
+            replace.insert(keys[i], i);
+            bucket.insert(keys[i], i);
+        }
+        Assert.assertEquals(7, allow.size());
+        Assert.assertEquals(4, replace.size());
+        Assert.assertEquals(4, bucket.size());
+        Assert.assertEquals(4, allow.searchAll("M").size());
+        Assert.assertEquals(Arrays.asList(6), replace.searchAll("M"));
+        Assert.assertEquals(Arrays.asList(0, 2, 4, 6), bucket.searchAll("M"));
+        Assert.assertEquals(Integer.valueOf(0), bucket.search("M"));
+        Assert.assertEquals("[1, 5, 0, 2, 4, 6, 3]", bucket.inorderRec().toString());
+        Assert.assertEquals(Arrays.asList(), bucket.searchAll("C"));
+
+        // put replaces in place in every mode, buckets included
+        Assert.assertEquals(Integer.valueOf(0), bucket.put("M", 9));
+        Assert.assertEquals(Arrays.asList(9), bucket.searchAll("M"));
+        Assert.assertEquals(null, allow.put("C", 8));
+        Assert.assertEquals(Integer.valueOf(8), allow.put("C", 7));
+        Assert.assertEquals(8, allow.size());
+
+        // a deleted node's bucket does not survive on the node that replaces it
+        bucket.insert("A", 10);
+        bucket.insert("B", 11);
+        bucket.delete("A");
+        Assert.assertEquals(Arrays.asList(5, 11), bucket.searchAll("B"));
+        Assert.assertEquals(Arrays.asList(), bucket.searchAll("A"));
+        // the root has two children, so its successor's entry and bucket move up
+        bucket.insert("Z", 13);
+        bucket.delete("M");
+        Assert.assertEquals(Arrays.asList(3, 13), bucket.searchAll("Z"));
+        Assert.assertEquals("[5, 11, 3, 13]", bucket.inorderRec().toString());
+
+        // replacing a value is not a structural modification
+        Iterator<Map.Entry<String, Integer>> iterator = replace.iterator();
+        replace.insert("A", 12);
+        Assert.assertEquals("A=12", iterator.next().toString());
+    }
+
+    @Test
+    public void testStreams() {
+        AVLTree<Integer, Integer> numbers = new AVLTree<>();
+        Random random = new Random(233);
+        for (int i = 0; i < 100000; i++)
+            numbers.insert(random.nextInt(1000000), i);
+        List<Integer> keys = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : numbers)
+            keys.add(entry.getKey());
+        long sum = keys.stream().mapToLong(Integer::longValue).sum();
+        Assert.assertEquals(sum, numbers.parallelStream().mapToLong(Map.Entry::getKey).sum());
+        Assert.assertEquals(keys, numbers.parallelStream().map(Map.Entry::getKey).collect(Collectors.toList()));
+        Assert.assertEquals(keys.subList(500, 510),
+                numbers.stream().skip(500).limit(10).map(Map.Entry::getKey).collect(Collectors.toList()));
+
+        Spliterator<Map.Entry<Integer, Integer>> spliterator = numbers.spliterator();
+        Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED | Spliterator.SUBSIZED));
+        Spliterator<Map.Entry<Integer, Integer>> prefix = spliterator.trySplit();
+        Assert.assertEquals(50000, prefix.estimateSize());
+        Assert.assertEquals(50000, spliterator.estimateSize());
+        List<Integer> halves = new ArrayList<>();
+        prefix.forEachRemaining(entry -> halves.add(entry.getKey()));
+        spliterator.forEachRemaining(entry -> halves.add(entry.getKey()));
+        Assert.assertEquals(keys, halves);
+        Assert.assertEquals(0, new AVLTree<Integer, Integer>().stream().count());
+
+        Spliterator<Map.Entry<Integer, Integer>> stale = numbers.spliterator();
+        numbers.insert(-1, -1);
+        try {
+            stale.tryAdvance(entry -> {
+            });
+            Assert.fail();
+        } catch (ConcurrentModificationException e) {
+        }
+    }
+    @Test
+    public void testNavigation() {
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        Assert.assertNull(tree.firstEntry());
+        Assert.assertNull(tree.pollLastEntry());
+        Random random = new Random(233);
+        for (int i = 0; i < 2000; i++) {
+            int key = random.nextInt(4000) * 2; // even keys, so odd probes miss
+            tree.put(key, i);
+            expected.put(key, i);
+        }
+        for (int probe = -3; probe < 8003; probe++) {
+            Assert.assertEquals(expected.floorEntry(probe), tree.floorEntry(probe));
+            Assert.assertEquals(expected.ceilingEntry(probe), tree.ceilingEntry(probe));
+            Assert.assertEquals(expected.lowerEntry(probe), tree.lowerEntry(probe));
+            Assert.assertEquals(expected.higherEntry(probe), tree.higherEntry(probe));
+        }
+        while (!expected.isEmpty()) {
+            Assert.assertEquals(expected.firstEntry(), tree.firstEntry());
+            Assert.assertEquals(expected.lastEntry(), tree.lastEntry());
+            Map.Entry<Integer, Integer> polled = random.nextBoolean() ? tree.pollFirstEntry() : tree.pollLastEntry();
+            Assert.assertEquals(expected.remove(polled.getKey()), polled.getValue());
+            Assert.assertEquals(expected.size(), tree.size());
+        }
+    }
+
+    @Test
+    public void testNavigableMapView() {
+        NavigableMap<Integer, Integer> map = tree.asNavigableMap();
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        Random random = new Random(233);
+        for (int i = 0; i < 500; i++) {
+            int key = random.nextInt(1000);
+            Assert.assertEquals(expected.put(key, i), map.put(key, i));
+        }
+        Assert.assertEquals(expected, map);
+        Assert.assertEquals(expected.hashCode(), map.hashCode());
+
+        List<NavigableMap<Integer, Integer>> expectedViews = Arrays.asList(expected, expected.descendingMap(),
+                expected.subMap(100, false, 600, true), expected.headMap(300, true).descendingMap(),
+                expected.tailMap(700, false), expected.descendingMap().subMap(800, true, 200, false),
+                expected.subMap(100, true, 600, false).tailMap(400, true).headMap(500, false));
+        List<NavigableMap<Integer, Integer>> actualViews = Arrays.asList(map, map.descendingMap(),
+                map.subMap(100, false, 600, true), map.headMap(300, true).descendingMap(),
+                map.tailMap(700, false), map.descendingMap().subMap(800, true, 200, false),
+                map.subMap(100, true, 600, false).tailMap(400, true).headMap(500, false));
+        for (int v = 0; v < expectedViews.size(); v++) {
+            NavigableMap<Integer, Integer> e = expectedViews.get(v), a = actualViews.get(v);
+            Assert.assertEquals(new ArrayList<>(e.entrySet()), new ArrayList<>(a.entrySet()));
+            Assert.assertEquals(new ArrayList<>(e.descendingKeySet()), new ArrayList<>(a.descendingKeySet()));
+            Assert.assertEquals(e.size(), a.size());
+            Assert.assertEquals(e.firstEntry(), a.firstEntry());
+            Assert.assertEquals(e.lastEntry(), a.lastEntry());
+            for (int probe = -1; probe <= 1000; probe++) {
+                Assert.assertEquals(e.floorKey(probe), a.floorKey(probe));
+                Assert.assertEquals(e.ceilingKey(probe), a.ceilingKey(probe));
+                Assert.assertEquals(e.lowerKey(probe), a.lowerKey(probe));
+                Assert.assertEquals(e.higherKey(probe), a.higherKey(probe));
+                Assert.assertEquals(e.get(probe), a.get(probe));
+                Assert.assertEquals(e.containsKey(probe), a.containsKey(probe));
+            }
+        }
+
+        // writes through views reach the tree, and bounds are enforced
+        NavigableMap<Integer, Integer> middle = map.subMap(400, true, 600, false);
+        try {
+            middle.put(600, 0);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            middle.subMap(300, 500);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+        }
+        middle.put(450, -1);
+        expected.put(450, -1);
+        Assert.assertEquals(expected.pollFirstEntry(), map.pollFirstEntry());
+        Assert.assertEquals(expected.descendingMap().pollFirstEntry(), map.descendingMap().pollFirstEntry());
+        Assert.assertEquals(expected.remove(expected.higherKey(500)), middle.remove(middle.higherKey(500)));
+        for (Iterator<Integer> keys = middle.keySet().iterator(); keys.hasNext();)
+            if (keys.next() % 2 == 0)
+                keys.remove();
+        expected.subMap(400, true, 600, false).keySet().removeIf(key -> key % 2 == 0);
+        Assert.assertEquals(expected, map);
+        map.headMap(500).clear();
+        expected.headMap(500).clear();
+        Assert.assertEquals(expected, map);
+        Assert.assertEquals(expected.size(), tree.size());
+        Assert.assertEquals(new ArrayList<>(expected.values()), tree.inorderRec());
+    }
+
+    @Test
+    public void testGetBatch() {
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        Random random = new Random(233);
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(10000);
+            tree.put(key, i);
+            expected.put(key, i);
+        }
+        for (int k : new int[] { 0, 1, 2, 7, 100, 3000 }) {
+            Integer[] keys = new Integer[k];
+            for (int i = 0; i < k; i++)
+                keys[i] = random.nextInt(10200) - 100; // misses at both ends and in between, repeats
+            List<Integer> unsorted = Arrays.asList(keys.clone());
+            Arrays.sort(keys);
+            Integer[] out = new Integer[k + 1];
+            Arrays.fill(out, -1);
+            tree.getBatch(keys, out);
+            for (int i = 0; i < k; i++)
+                Assert.assertEquals(expected.get(keys[i]), out[i]);
+            Assert.assertEquals(Integer.valueOf(-1), out[k]);
+            Assert.assertEquals(unsorted.stream().map(expected::get).collect(Collectors.toList()),
+                    tree.getBatch(unsorted));
+        }
+        try {
+            tree.getBatch(new Integer[] { 2, 1 }, new Integer[2]);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            tree.getBatch(new Integer[] { 1, 2 }, new Integer[1]);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+        }
+        Integer[] out = { 5 };
+        new AVLTree<Integer, Integer>().getBatch(new Integer[] { 1 }, out);
+        Assert.assertNull(out[0]);
+    }
+
+    @Test
+    public void testAggregate() {
+        AVLTree<Integer, Long> sums = new AVLTree<>(DuplicateKeys.REPLACE, Monoid.of(0L, Long::sum));
+        AVLTree<Integer, Long> maxima = new AVLTree<>(DuplicateKeys.REPLACE, Monoid.<Long>max());
+        TreeMap<Integer, Long> expected = new TreeMap<>();
+        Random random = new Random(233);
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(2000);
+            long value = random.nextInt(1000);
+            if (random.nextInt(3) == 0) {
+                sums.delete(key);
+                maxima.delete(key);
+                expected.remove(key);
+            } else if (random.nextBoolean()) {
+                sums.insert(key, value);
+                maxima.cursor().insert(key, value);
+                expected.put(key, value);
+            } else {
+                sums.put(key, value);
+                maxima.put(key, value);
+                expected.put(key, value);
+            }
+            if (i % 100 == 0) {
+                for (int j = 0; j < 20; j++) {
+                    int from = random.nextInt(2100) - 50, to = from + random.nextInt(600);
+                    Collection<Long> values = expected.subMap(from, to).values();
+                    Assert.assertEquals(Long.valueOf(values.stream().mapToLong(Long::longValue).sum()),
+                            sums.aggregate(from, to));
+                    Assert.assertEquals(values.stream().max(Long::compare).orElse(null), maxima.aggregate(from, to));
+                }
+                Assert.assertEquals(Long.valueOf(expected.values().stream().mapToLong(Long::longValue).sum()),
+                        sums.aggregate());
+            }
+        }
+        Assert.assertEquals(Long.valueOf(0), sums.aggregate(1000, 1000));
+        Assert.assertEquals(Long.valueOf(0), sums.aggregate(1000, 500));
+
+        // concatenation is not commutative, so this checks that values are combined in key order
+        AVLTree<Integer, String> concat = new AVLTree<>(DuplicateKeys.BUCKET, Monoid.of("", String::concat));
+        for (int i = 0; i < 1000; i++)
+            concat.insert(random.nextInt(300), Integer.toString(i, 36));
+        Assert.assertEquals(String.join("", concat.inorderRec()), concat.aggregate());
+        StringBuilder range = new StringBuilder();
+        for (int key = 100; key < 200; key++)
+            concat.searchAll(key).forEach(range::append);
+        Assert.assertEquals(range.toString(), concat.aggregate(100, 200));
+        AVLTree<Integer, String> tail = concat.split(150);
+        Assert.assertEquals(String.join("", concat.inorderRec()), concat.aggregate());
+        Assert.assertEquals(String.join("", tail.inorderRec()), tail.aggregate());
+        concat.join(tail);
+        Assert.assertEquals(range.toString(), concat.aggregate(100, 200));
+
+        try {
+            concat.iterator().next().setValue("");
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+        }
+        try {
+            tree.aggregate();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+        }
+        try {
+            concat.join(new AVLTree<>(DuplicateKeys.BUCKET));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}
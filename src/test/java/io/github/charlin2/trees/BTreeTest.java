@@ -0,0 +1,104 @@
+package io.github.charlin2.trees;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BTreeTest {
+    BTree<Integer, String> tree = new BTree<>(4); // the smallest order splits and merges the most
+
+    @Test
+    public void testInsertDelete() {
+        Assert.assertEquals(null, tree.search(1));
+        Assert.assertEquals(-1, tree.height());
+        for (int i = 1; i <= 10; i++)
+            tree.insert(i, "v" + i);
+        Assert.assertEquals("[v1, v2, v3, v4, v5, v6, v7, v8, v9, v10]", tree.inorderRec().toString());
+        Assert.assertEquals(2, tree.height());
+        Assert.assertEquals("v7", tree.search(7));
+        tree.delete(4);
+        tree.delete(11); // not in the tree
+        Assert.assertEquals(null, tree.search(4));
+        Assert.assertEquals(9, tree.size());
+        for (int i = 1; i <= 10; i++)
+            tree.delete(i);
+        Assert.assertEquals("[]", tree.inorderRec().toString());
+        Assert.assertEquals(-1, tree.height());
+    }
+
+    @Test
+    public void testDuplicates() {
+        tree.insert(1, "a");
+        tree.insert(1, "b");
+        tree.insert(1, "c");
+        Assert.assertEquals("[a, b, c]", tree.inorderRec().toString());
+        tree.delete(1);
+        Assert.assertEquals(2, tree.size());
+        tree.delete(1);
+        tree.delete(1);
+        Assert.assertEquals(null, tree.search(1));
+    }
+
+    @Test
+    public void testAgainstTreeMap() {
+        for (int order : new int[] { 4, 5, 16 }) {
+            tree = new BTree<>(order);
+            TreeMap<Integer, String> expected = new TreeMap<>();
+            Random random = new Random(233);
+            for (int i = 0; i < 20000; i++) {
+                int key = random.nextInt(2000) - 1000;
+                if (random.nextBoolean() && !expected.containsKey(key)) {
+                    tree.insert(key, "v" + key);
+                    expected.put(key, "v" + key);
+                } else {
+                    tree.delete(key);
+                    expected.remove(key);
+                }
+                Assert.assertEquals(expected.get(key), tree.search(key));
+            }
+            Assert.assertEquals(expected.size(), tree.size());
+            Assert.assertEquals(expected.values().toString(), tree.inorderRec().toString());
+            List<Integer> keys = new ArrayList<>();
+            for (Map.Entry<Integer, String> entry : tree)
+                keys.add(entry.getKey());
+            Assert.assertEquals(new ArrayList<>(expected.keySet()), keys);
+            keys.clear();
+            for (Map.Entry<Integer, String> entry : tree.range(-100, 100))
+                keys.add(entry.getKey());
+            Assert.assertEquals(new ArrayList<>(expected.subMap(-100, 100).keySet()), keys);
+        }
+    }
+
+    @Test
+    public void testShallow() {
+        BTree<Integer, Integer> wide = new BTree<>();
+        for (int i = 0; i < 1000000; i++)
+            wide.insert(i, i);
+        // at least 32 children per node: 32^4 > 10^6
+        Assert.assertTrue(wide.height() <= 4);
+        Assert.assertEquals(Integer.valueOf(123456), wide.search(123456));
+    }
+
+    @Test
+    public void testDeleteAbsentDuringIteration() {
+        for (int i = 1; i <= 64; i++)
+            tree.insert(i, "v" + i);
+        Iterator<Map.Entry<Integer, String>> iterator = tree.iterator();
+        iterator.next();
+        // rebalances on the way down even though the key is not there
+        tree.delete(-1);
+        Assert.assertEquals(64, tree.size());
+        try {
+            iterator.next();
+            Assert.fail();
+        } catch (ConcurrentModificationException e) {
+        }
+    }
+}
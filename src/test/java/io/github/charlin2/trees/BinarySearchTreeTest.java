@@ -0,0 +1,512 @@
+package io.github.charlin2.trees;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BinarySearchTreeTest {
+    BinarySearchTree<Integer, Integer> intTree = new BinarySearchTree<>();
+    BinarySearchTree<String, String> stringTree = new BinarySearchTree<>();
+
+    @Test
+    public void testInsertSearch() {
+        // searching nonexistant key (Test 0)
+        Assert.assertEquals(null, intTree.search(100));
+        Assert.assertEquals(null, stringTree.search("Null"));
+
+        // Test 0
+        intTree.insert(5, 50);
+        stringTree.insert("G", "Game");
+
+        Assert.assertEquals(Integer.valueOf(50), intTree.search(5));
+        Assert.assertEquals("Game", stringTree.search("G"));
+
+        // Test many
+        intTree.insert(5, 55); // duplicate insert
+        stringTree.insert("G", "AB");
+
+        Assert.assertEquals(Integer.valueOf(50), intTree.search(5)); // will return first instance of duplicate key
+        Assert.assertEquals("Game", stringTree.search("G"));
+
+        for (int i = 2; i < 8; i++)
+            intTree.insert(i, i * 10);
+
+        stringTree.insert("A", "Abacus");
+        stringTree.insert("N", "Name");
+        stringTree.insert("E", "Elephant");
+        stringTree.insert("Z", "Zebra");
+
+        Assert.assertEquals(Integer.valueOf(20), intTree.search(2));
+        Assert.assertEquals(Integer.valueOf(30), intTree.search(3));
+        Assert.assertEquals(Integer.valueOf(40), intTree.search(4));
+        Assert.assertEquals(Integer.valueOf(50), intTree.search(5));
+        Assert.assertEquals(Integer.valueOf(60), intTree.search(6));
+        Assert.assertEquals(Integer.valueOf(70), intTree.search(7));
+
+        Assert.assertEquals("Abacus", stringTree.search("A"));
+        Assert.assertEquals("Name", stringTree.search("N"));
+        Assert.assertEquals("Elephant", stringTree.search("E"));
+        Assert.assertEquals("Zebra", stringTree.search("Z"));
+        Assert.assertEquals("Game", stringTree.search("G"));
+
+        // searching nonexistant key
+        Assert.assertEquals(null, intTree.search(100));
+        Assert.assertEquals(null, stringTree.search("Null"));
+    }
+
+    @Test
+    public void testDelete() {
+        // Test 0
+        try {
+            intTree.delete(4);
+            stringTree.delete("A");
+            Assert.assertTrue(true);
+        } catch (Exception e) {
+            Assert.assertTrue(false);
+        }
+
+        // Test 1
+        intTree.insert(5, 50);
+        stringTree.insert("H", "Helmet");
+
+        // should do nothing to BSTs
+        intTree.delete(1);
+        stringTree.delete("A");
+        Assert.assertEquals(Integer.valueOf(50), intTree.search(5));
+        Assert.assertEquals("Helmet", stringTree.search("H"));
+
+        // objects should be deleted
+        intTree.delete(5);
+        stringTree.delete("H");
+        Assert.assertEquals(null, intTree.search(5));
+        Assert.assertEquals(null, stringTree.search("H"));
+
+        // Test many
+        intTree.insert(5, 55);
+        intTree.insert(9, 90);
+        intTree.insert(3, 30);
+        intTree.insert(5, 50);
+        intTree.insert(13, 130);
+        intTree.insert(20, 200);
+        intTree.insert(1, 10);
+        intTree.insert(7, 70);
+
+        stringTree.insert("A", "Abacus");
+        stringTree.insert("N", "Name");
+        stringTree.insert("E", "Elephant");
+        stringTree.insert("Z", "Zebra");
+        stringTree.insert("H", "Helmet");
+        stringTree.insert("A", "Alphabet");
+
+        // deleting root of tree (second duplicate should still exist)
+        intTree.delete(5);
+        stringTree.delete("A");
+        Assert.assertEquals(Integer.valueOf(50), intTree.search(5));
+        Assert.assertEquals("Alphabet", stringTree.search("A"));
+        Assert.assertEquals("Zebra", stringTree.search("Z"));
+        Assert.assertEquals("Helmet", stringTree.search("H"));
+        Assert.assertEquals("Elephant", stringTree.search("E"));
+        Assert.assertEquals("Name", stringTree.search("N"));
+
+        intTree.delete(7);
+        stringTree.delete("E");
+        Assert.assertEquals(null, intTree.search(7));
+        Assert.assertEquals(null, stringTree.search("E"));
+    }
+
+    @Test
+    public void testInorderRec() {
+        /** Inorder traversal will always return elements of BST in ascending order */
+        // Test 0
+        Assert.assertEquals("[]", intTree.inorderRec().toString());
+        Assert.assertEquals("[]", stringTree.inorderRec().toString());
+
+        // Test 1
+        intTree.insert(6, 60);
+        stringTree.insert("F", "Frolic");
+        Assert.assertEquals("[60]", intTree.inorderRec().toString());
+        Assert.assertEquals("[Frolic]", stringTree.inorderRec().toString());
+
+        // Test many
+        intTree.insert(4, 40);
+        intTree.insert(2, 20);
+        intTree.insert(5, 50);
+        intTree.insert(9, 90);
+        intTree.insert(13, 130);
+        stringTree.insert("B", "Bee");
+        stringTree.insert("E", "Elephant");
+        stringTree.insert("P", "Platypus");
+        stringTree.insert("Z", "Zebra");
+        Assert.assertEquals("[20, 40, 50, 60, 90, 130]", intTree.inorderRec().toString());
+        Assert.assertEquals("[Bee, Elephant, Frolic, Platypus, Zebra]", stringTree.inorderRec().toString());
+
+        intTree.delete(5);
+        stringTree.delete("F");
+        Assert.assertEquals("[20, 40, 60, 90, 130]", intTree.inorderRec().toString());
+        Assert.assertEquals("[Bee, Elephant, Platypus, Zebra]", stringTree.inorderRec().toString());
+        intTree.delete(13);
+        intTree.delete(4);
+        stringTree.delete("B");
+        stringTree.delete("Z");
+        Assert.assertEquals("[20, 60, 90]", intTree.inorderRec().toString());
+        Assert.assertEquals("[Elephant, Platypus]", stringTree.inorderRec().toString());
+    }
+
+    @Test
+    public void testKthSmallest() {
+        // Test 0
+        Assert.assertEquals(null, intTree.kthSmallest(1));
+        Assert.assertEquals(null, stringTree.kthSmallest(1));
+
+        // Test 1
+        intTree.insert(8, 80);
+        stringTree.insert("G", "Giraffe");
+        Assert.assertEquals(Integer.valueOf(80), intTree.kthSmallest(1));
+        Assert.assertEquals("Giraffe", stringTree.kthSmallest(1));
+        Assert.assertEquals(null, intTree.kthSmallest(3));
+        Assert.assertEquals(null, stringTree.kthSmallest(2));
+
+        // Test many
+        for (int i = 2; i < 15; i++)
+            intTree.insert(i, i * 10);
+        stringTree.insert("A", "Aardvark");
+        stringTree.insert("B", "Buffalo");
+        stringTree.insert("C", "Cheetah");
+        stringTree.insert("D", "Dinosaur");
+        stringTree.insert("E", "Elephant");
+        stringTree.insert("F", "Frog");
+        stringTree.insert("G", "Giant");
+        stringTree.insert("H", "Horse");
+        stringTree.insert("I", "Ibex");
+        stringTree.insert("J", "Jackal");
+        stringTree.insert("K", "Kangaroo");
+        stringTree.insert("L", "Lemur");
+        stringTree.insert("P", "Panda");
+        stringTree.insert("Z", "Zebra");
+        Assert.assertEquals(Integer.valueOf(20), intTree.kthSmallest(1));
+        Assert.assertEquals(Integer.valueOf(40), intTree.kthSmallest(3));
+        Assert.assertEquals(Integer.valueOf(130), intTree.kthSmallest(13));
+        Assert.assertEquals(null, intTree.kthSmallest(16));
+        Assert.assertEquals("Aardvark", stringTree.kthSmallest(1));
+        Assert.assertEquals("Ibex", stringTree.kthSmallest(10));
+        Assert.assertEquals("Zebra", stringTree.kthSmallest(15));
+        Assert.assertEquals(null, stringTree.kthSmallest(16));
+    }
+
+    @Test
+    public void testRankSelect() {
+        // Test 0
+        Assert.assertEquals(0, intTree.size());
+        Assert.assertEquals(0, intTree.rank(5));
+        Assert.assertEquals(null, intTree.select(0));
+
+        // Test many
+        int[] keys = { 50, 30, 70, 20, 40, 60, 80, 35, 45, 65 };
+        for (int key : keys)
+            intTree.insert(key, key * 10);
+        Assert.assertEquals(10, intTree.size());
+        Assert.assertEquals(Integer.valueOf(20), intTree.select(0));
+        Assert.assertEquals(Integer.valueOf(45), intTree.select(4));
+        Assert.assertEquals(Integer.valueOf(80), intTree.select(9));
+        Assert.assertEquals(null, intTree.select(10));
+        Assert.assertEquals(0, intTree.rank(20));
+        Assert.assertEquals(4, intTree.rank(45));
+        Assert.assertEquals(4, intTree.rank(42)); // keys not in the tree can be ranked too
+        Assert.assertEquals(10, intTree.rank(100));
+
+        // sizes must survive deleting leaves, single-child nodes and the root
+        intTree.delete(65);
+        intTree.delete(60);
+        intTree.delete(50);
+        intTree.delete(99); // not in the tree
+        Assert.assertEquals(7, intTree.size());
+        Assert.assertEquals("[200, 300, 350, 400, 450, 700, 800]", intTree.inorderRec().toString());
+        for (int k = 0; k < 7; k++)
+            Assert.assertEquals(k, intTree.rank(intTree.select(k)));
+        Assert.assertEquals(Integer.valueOf(700), intTree.kthSmallest(6));
+    }
+
+    /** collects lazily produced entries so they can be compared as strings */
+    private static List<Map.Entry<Integer, Integer>> list(Iterable<Map.Entry<Integer, Integer>> entries) {
+        List<Map.Entry<Integer, Integer>> list = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : entries)
+            list.add(entry);
+        return list;
+    }
+
+    @Test
+    public void testRange() {
+        // Test 0
+        Assert.assertEquals("[]", list(intTree).toString());
+        Assert.assertEquals("[]", list(intTree.range(1, 5)).toString());
+
+        // Test many
+        int[] keys = { 50, 30, 70, 20, 40, 60, 80, 35, 45, 65 };
+        for (int key : keys)
+            intTree.insert(key, key / 5);
+        Assert.assertEquals("[20=4, 30=6, 35=7, 40=8, 45=9, 50=10, 60=12, 65=13, 70=14, 80=16]", list(intTree).toString());
+        Assert.assertEquals("[35=7, 40=8, 45=9, 50=10]", list(intTree.range(35, 60)).toString()); // upper bound excluded
+        Assert.assertEquals("[35=7, 40=8, 45=9, 50=10]", list(intTree.range(31, 51)).toString()); // bounds not in tree
+        Assert.assertEquals("[]", list(intTree.range(51, 59)).toString());
+        Assert.assertEquals("[]", list(intTree.range(60, 60)).toString());
+        Assert.assertEquals("[20=4, 30=6]", list(intTree.headRange(35)).toString());
+        Assert.assertEquals("[70=14, 80=16]", list(intTree.tailRange(70)).toString());
+        Assert.assertEquals("[]", list(intTree.tailRange(81)).toString());
+
+        // entries write through to the tree
+        intTree.iterator().next().setValue(0);
+        Assert.assertEquals(Integer.valueOf(0), intTree.search(20));
+
+        Iterator<Map.Entry<Integer, Integer>> iterator = intTree.iterator();
+        intTree.delete(20);
+        try {
+            iterator.next();
+            Assert.fail();
+        } catch (ConcurrentModificationException e) {
+            Assert.assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testBulkLoad() {
+        // sorted input that would make a 20001-deep list if inserted one at a time
+        List<Integer> keys = new ArrayList<>();
+        for (int i = -10000; i <= 10000; i++)
+            keys.add(i);
+        intTree = BinarySearchTree.fromSorted(keys, keys);
+        Assert.assertEquals(20001, intTree.size());
+        Assert.assertEquals(keys, intTree.inorderRec());
+        Assert.assertEquals(Integer.valueOf(8000), intTree.search(8000));
+        intTree.delete(8000);
+        Assert.assertEquals(null, intTree.search(8000));
+        Assert.assertEquals(Integer.valueOf(0), intTree.kthSmallest(10001));
+
+        // unsorted input with duplicate keys, which keep their input order
+        stringTree = BinarySearchTree.fromSorted(Arrays.asList("M", "A", "M", "Z", "M"),
+                Arrays.asList("Matt", "Alyssa", "Madeline", "Zebra", "Max"));
+        Assert.assertEquals("[Alyssa, Matt, Madeline, Max, Zebra]", stringTree.inorderRec().toString());
+        // the balanced layout puts the middle duplicate at the root
+        Assert.assertEquals("Madeline", stringTree.search("M"));
+        stringTree.delete("M");
+        stringTree.delete("M");
+        Assert.assertEquals(3, stringTree.size());
+        List<String> left = stringTree.inorderRec();
+        Assert.assertEquals(Arrays.asList("Alyssa", "Zebra"), Arrays.asList(left.get(0), left.get(2)));
+        Assert.assertTrue(Arrays.asList("Matt", "Max").contains(left.get(1)));
+
+        stringTree = BinarySearchTree.bulkLoad(stringTree.iterator());
+        Assert.assertEquals(left, stringTree.inorderRec());
+    }
+
+    @Test
+    public void testBulkLoadDuplicates() {
+        // equal keys are split around the midpoint like any others, so the tree stays balanced
+        int n = 200000;
+        List<Integer> keys = new ArrayList<>(), values = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            keys.add(i < n / 2 ? 7 : 9);
+            values.add(i);
+        }
+        intTree = BinarySearchTree.fromSorted(keys, values);
+        intTree.enableMetrics();
+        Assert.assertEquals(17, intTree.stats().height());
+        Assert.assertEquals(values, intTree.inorderRec());
+        Assert.assertEquals(values.subList(0, n / 2), intTree.searchAll(7));
+        Assert.assertEquals(n / 2, intTree.rank(9));
+        // deleting from both sides of each equal run keeps sizes and links consistent
+        for (int i = 0; i < n / 2; i++) {
+            intTree.delete(i % 2 == 0 ? 7 : 9);
+            Assert.assertEquals(n - i - 1, intTree.size());
+        }
+        Assert.assertEquals(n / 4, intTree.searchAll(7).size());
+        Assert.assertEquals(n / 4, intTree.searchAll(9).size());
+        Assert.assertEquals(n / 4, intTree.rank(9));
+        Assert.assertEquals(n / 2, list(intTree).size());
+    }
+
+    @Test
+    public void testDuplicateKeys() {
+        BinarySearchTree<String, Integer> allow = new BinarySearchTree<>();
+        BinarySearchTree<String, Integer> replace = new BinarySearchTree<>(DuplicateKeys.REPLACE);
+        BinarySearchTree<String, Integer> bucket = new BinarySearchTree<>(DuplicateKeys.BUCKET);
+        String[] keys = { "M", "A", "M", "Z", "M", "B", "M" };
+        for (int i = 0; i < keys.length; i++) {
+            allow.insert(keys[i], i);
+            replace.insert(keys[i], i);
+            bucket.insert(keys[i], i);
+        }
+        Assert.assertEquals(7, allow.size());
+        Assert.assertEquals(4, replace.size());
+        Assert.assertEquals(4, bucket.size());
+        Assert.assertEquals(4, allow.searchAll("M").size());
+        Assert.assertEquals(Arrays.asList(6), replace.searchAll("M"));
+        Assert.assertEquals(Arrays.asList(0, 2, 4, 6), bucket.searchAll("M"));
+        Assert.assertEquals(Integer.valueOf(0), bucket.search("M"));
+        Assert.assertEquals("[1, 5, 0, 2, 4, 6, 3]", bucket.inorderRec().toString());
+        Assert.assertEquals(Arrays.asList(), bucket.searchAll("C"));
+
+        // put replaces in place in every mode, buckets included
+        Assert.assertEquals(Integer.valueOf(0), bucket.put("M", 9));
+        Assert.assertEquals(Arrays.asList(9), bucket.searchAll("M"));
+        Assert.assertEquals(null, allow.put("C", 8));
+        Assert.assertEquals(Integer.valueOf(8), allow.put("C", 7));
+        Assert.assertEquals(8, allow.size());
+
+        // a deleted node's bucket does not survive on the node that replaces it
+        bucket.insert("A", 10);
+        bucket.insert("B", 11);
+        bucket.delete("A");
+        Assert.assertEquals(Arrays.asList(5, 11), bucket.searchAll("B"));
+        Assert.assertEquals(Arrays.asList(), bucket.searchAll("A"));
+        // the root has two children, so its successor's entry and bucket move up
+        bucket.insert("Z", 13);
+        bucket.delete("M");
+        Assert.assertEquals(Arrays.asList(3, 13), bucket.searchAll("Z"));
+        Assert.assertEquals("[5, 11, 3, 13]", bucket.inorderRec().toString());
+
+        // replacing a value is not a structural modification
+        Iterator<Map.Entry<String, Integer>> iterator = replace.iterator();
+        replace.insert("A", 12);
+        Assert.assertEquals("A=12", iterator.next().toString());
+    }
+
+    @Test
+    public void testStreams() {
+        BinarySearchTree<Integer, Integer> numbers = new BinarySearchTree<>();
+        Random random = new Random(233);
+        for (int i = 0; i < 100000; i++)
+            numbers.insert(random.nextInt(1000000), i);
+        List<Integer> keys = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : numbers)
+            keys.add(entry.getKey());
+        long sum = keys.stream().mapToLong(Integer::longValue).sum();
+        Assert.assertEquals(sum, numbers.parallelStream().mapToLong(Map.Entry::getKey).sum());
+        Assert.assertEquals(keys, numbers.parallelStream().map(Map.Entry::getKey).collect(Collectors.toList()));
+        Assert.assertEquals(keys.subList(500, 510),
+                numbers.stream().skip(500).limit(10).map(Map.Entry::getKey).collect(Collectors.toList()));
+
+        Spliterator<Map.Entry<Integer, Integer>> spliterator = numbers.spliterator();
+        Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED | Spliterator.SUBSIZED));
+        Spliterator<Map.Entry<Integer, Integer>> prefix = spliterator.trySplit();
+        Assert.assertEquals(50000, prefix.estimateSize());
+        Assert.assertEquals(50000, spliterator.estimateSize());
+        List<Integer> halves = new ArrayList<>();
+        prefix.forEachRemaining(entry -> halves.add(entry.getKey()));
+        spliterator.forEachRemaining(entry -> halves.add(entry.getKey()));
+        Assert.assertEquals(keys, halves);
+        Assert.assertEquals(0, new BinarySearchTree<Integer, Integer>().stream().count());
+
+        Spliterator<Map.Entry<Integer, Integer>> stale = numbers.spliterator();
+        numbers.insert(-1, -1);
+        try {
+            stale.tryAdvance(entry -> {
+            });
+            Assert.fail();
+        } catch (ConcurrentModificationException e) {
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testDegenerateTraversal() throws Exception {
+        // sorted inserts make a list 20000 deep, far beyond what a small stack can recurse through
+        for (int i = 0; i < 20000; i++)
+            intTree.insert(i, i);
+        List<Integer> values = new ArrayList<>();
+        Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                values.addAll(intTree.inorderRec());
+                Assert.assertEquals(Integer.valueOf(19999), intTree.kthSmallest(20000));
+            } catch (Throwable e) {
+                failure[0] = e;
+            }
+        }, "small-stack", 1 << 16);
+        thread.start();
+        thread.join();
+        if (failure[0] != null)
+            throw new AssertionError(failure[0]);
+        Assert.assertEquals(20000, values.size());
+        Assert.assertEquals(Integer.valueOf(12345), values.get(12345));
+    }
+
+    @Test
+    public void testForEachInOrder() {
+        Random random = new Random(233);
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int key = random.nextInt(500); // with duplicates
+            intTree.insert(key, key);
+            keys.add(key);
+        }
+        keys.sort(null);
+        String before = list(intTree).toString();
+
+        // stopping early, at every possible position, leaves no threads behind
+        for (int stop : new int[] { 0, 1, 17, 500, 999 }) {
+            List<Integer> visited = new ArrayList<>();
+            Assert.assertFalse(intTree.forEachInOrder((key, value) -> {
+                visited.add(key);
+                return visited.size() <= stop;
+            }));
+            Assert.assertEquals(keys.subList(0, stop + 1), visited);
+            Assert.assertEquals(before, list(intTree).toString());
+        }
+        List<Integer> all = new ArrayList<>();
+        Assert.assertTrue(intTree.forEachInOrder((key, value) -> all.add(key)));
+        Assert.assertEquals(keys, all);
+
+        // a visitor that throws leaves no threads behind either
+        try {
+            intTree.forEachInOrder((key, value) -> {
+                if (key > 250)
+                    throw new IllegalStateException();
+                return true;
+            });
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals(before, list(intTree).toString());
+        }
+        Assert.assertTrue(new BinarySearchTree<Integer, Integer>().forEachInOrder((key, value) -> false));
+    }
+    @Test
+    public void testNavigation() {
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        Assert.assertNull(intTree.lastEntry());
+        Assert.assertNull(intTree.pollFirstEntry());
+        Random random = new Random(233);
+        for (int i = 0; i < 2000; i++) {
+            int key = random.nextInt(4000) * 2; // even keys, so odd probes miss
+            intTree.put(key, i);
+            expected.put(key, i);
+        }
+        for (int probe = -3; probe < 8003; probe++) {
+            Assert.assertEquals(expected.floorEntry(probe), intTree.floorEntry(probe));
+            Assert.assertEquals(expected.ceilingEntry(probe), intTree.ceilingEntry(probe));
+            Assert.assertEquals(expected.lowerEntry(probe), intTree.lowerEntry(probe));
+            Assert.assertEquals(expected.higherEntry(probe), intTree.higherEntry(probe));
+        }
+        NavigableMap<Integer, Integer> map = intTree.asNavigableMap();
+        Assert.assertEquals(expected, map);
+        Assert.assertEquals(new ArrayList<>(expected.descendingMap().subMap(5000, false, 1000, true).entrySet()),
+                new ArrayList<>(map.descendingMap().subMap(5000, false, 1000, true).entrySet()));
+        Assert.assertEquals(expected.tailMap(3000).size(), map.tailMap(3000).size());
+        while (!expected.isEmpty()) {
+            Assert.assertEquals(expected.firstEntry(), intTree.firstEntry());
+            Assert.assertEquals(expected.lastEntry(), intTree.lastEntry());
+            Map.Entry<Integer, Integer> polled = random.nextBoolean() ? map.pollFirstEntry() : map.pollLastEntry();
+            Assert.assertEquals(expected.remove(polled.getKey()), polled.getValue());
+            Assert.assertEquals(expected.size(), intTree.size());
+        }
+    }
+}
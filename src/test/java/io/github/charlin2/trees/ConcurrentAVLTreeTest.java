@@ -0,0 +1,128 @@
+package io.github.charlin2.trees;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrentAVLTreeTest {
+    ConcurrentAVLTree<Integer, String> tree = new ConcurrentAVLTree<>();
+
+    @Test
+    public void testInsertDelete() {
+        Assert.assertEquals(null, tree.search(1));
+        tree.insert(1, "one");
+        tree.insert(2, "two");
+        tree.insert(3, "three"); // tree will have to rebalance
+        Assert.assertEquals("[one, two, three]", tree.inorderRec().toString());
+        Assert.assertEquals(1, tree.height());
+        Assert.assertEquals("two", tree.put(2, "TWO")); // replaces the value
+        Assert.assertEquals(3, tree.size());
+
+        tree.delete(2); // root with two children becomes a routing node
+        tree.delete(4); // not in the tree
+        Assert.assertEquals(null, tree.search(2));
+        Assert.assertEquals("[one, three]", tree.inorderRec().toString());
+        Assert.assertEquals("three", tree.remove(3));
+        Assert.assertEquals(null, tree.remove(3));
+        tree.insert(2, "two"); // revives the routing node if it is still there
+        Assert.assertEquals("[one, two]", tree.inorderRec().toString());
+        tree.delete(1);
+        tree.delete(2);
+        Assert.assertEquals("[]", tree.inorderRec().toString());
+        Assert.assertEquals(0, tree.size());
+        Assert.assertEquals(-1, tree.height());
+    }
+
+    @Test
+    public void testAgainstTreeMap() {
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        Random random = new Random(233);
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(2000) - 1000;
+            if (random.nextBoolean())
+                Assert.assertEquals(expected.put(key, "v" + i), tree.put(key, "v" + i));
+            else
+                Assert.assertEquals(expected.remove(key), tree.remove(key));
+            Assert.assertEquals(expected.get(key), tree.search(key));
+        }
+        Assert.assertEquals(expected.size(), tree.size());
+        Assert.assertEquals(expected.values().toString(), tree.inorderRec().toString());
+        Assert.assertTrue(tree.height() <= 1.44 * Math.log(tree.size() + 2) / Math.log(2));
+
+        List<Integer> keys = new ArrayList<>();
+        for (Map.Entry<Integer, String> entry : tree.range(-100, 100))
+            keys.add(entry.getKey());
+        Assert.assertEquals(new ArrayList<>(expected.subMap(-100, 100).keySet()), keys);
+    }
+
+    @Test(timeout = 60000)
+    public void testConcurrentWriters() throws InterruptedException {
+        int threads = 4;
+        int perThread = 20000;
+        ConcurrentHashMap<Integer, String> expected = new ConcurrentHashMap<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers.add(new Thread(() -> {
+                try {
+                    start.await();
+                    Random random = new Random(id);
+                    // each writer owns the keys equal to id modulo threads
+                    for (int i = 0; i < perThread; i++) {
+                        int key = random.nextInt(10000) * threads + id;
+                        if (random.nextInt(3) > 0) {
+                            tree.put(key, "v" + key);
+                            expected.put(key, "v" + key);
+                        } else {
+                            tree.remove(key);
+                            expected.remove(key);
+                        }
+                        if (!("v" + key).equals(tree.search(key)) && expected.containsKey(key))
+                            throw new AssertionError("lost " + key);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        // a reader that checks iteration stays sorted while the tree changes
+        workers.add(new Thread(() -> {
+            try {
+                start.await();
+                for (int i = 0; i < 50; i++) {
+                    Integer previous = null;
+                    for (Map.Entry<Integer, String> entry : tree) {
+                        if (previous != null && previous >= entry.getKey())
+                            throw new AssertionError("out of order at " + entry.getKey());
+                        previous = entry.getKey();
+                    }
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        }));
+        for (Thread worker : workers)
+            worker.start();
+        start.countDown();
+        for (Thread worker : workers)
+            worker.join();
+        if (failure.get() != null)
+            throw new AssertionError(failure.get());
+
+        TreeMap<Integer, String> sorted = new TreeMap<>(expected);
+        Assert.assertEquals(sorted.size(), tree.size());
+        Assert.assertEquals(sorted.values().toString(), tree.inorderRec().toString());
+        for (int key = 0; key < 10000 * threads; key++)
+            Assert.assertEquals(sorted.get(key), tree.search(key));
+    }
+}
@@ -0,0 +1,311 @@
+package io.github.charlin2.trees;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DurableTreeTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DurableTree<Integer, String> open(Path directory, DurableTree.SyncPolicy policy, long checkpointBytes)
+            throws IOException {
+        return new DurableTree<>(directory, new AVLTree<>(), Codec.INTEGER, Codec.STRING, policy, checkpointBytes);
+    }
+
+    private static List<String> files(Path directory) throws IOException {
+        try (Stream<Path> list = Files.list(directory)) {
+            return list.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void testReplay() throws IOException {
+        Path directory = folder.getRoot().toPath().resolve("tree");
+        try (DurableTree<Integer, String> tree = open(directory, DurableTree.SyncPolicy.FSYNC, 1 << 20)) {
+            tree.insert(1, "one");
+            tree.insert(2, "two");
+            tree.insert(3, null);
+            tree.delete(1);
+            Assert.assertEquals("[two, null]", tree.inorderRec().toString());
+        }
+        try (DurableTree<Integer, String> tree = open(directory, DurableTree.SyncPolicy.FSYNC, 1 << 20)) {
+            Assert.assertEquals("[two, null]", tree.inorderRec().toString());
+            Assert.assertEquals(null, tree.search(1));
+            tree.insert(4, "four");
+        }
+        try (DurableTree<Integer, String> tree = open(directory, DurableTree.SyncPolicy.NONE, 1 << 20)) {
+            Assert.assertEquals("[two, null, four]", tree.inorderRec().toString());
+        }
+        Assert.assertEquals("[wal-0.log]", files(directory).toString());
+    }
+
+    @Test
+    public void testCheckpoints() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (DurableTree<Integer, String> tree = open(directory, DurableTree.SyncPolicy.WRITE, 256)) {
+            for (int i = 0; i < 1000; i++)
+                tree.insert(i, "v" + i);
+            for (int i = 0; i < 1000; i += 2)
+                tree.delete(i);
+        }
+        // the log never grew far past the threshold, and older generations are gone
+        List<String> files = files(directory);
+        Assert.assertEquals(2, files.size());
+        Assert.assertTrue(files.get(0).startsWith("checkpoint-"));
+        Assert.assertTrue(files.get(1).startsWith("wal-"));
+        Assert.assertTrue(Files.size(directory.resolve(files.get(1))) < 512);
+        try (DurableTree<Integer, String> tree = open(directory, DurableTree.SyncPolicy.WRITE, 256)) {
+            Assert.assertEquals(500, tree.size());
+            Assert.assertEquals("v999", tree.search(999));
+            Assert.assertEquals(null, tree.search(998));
+        }
+    }
+
+    @Test
+    public void testTornTail() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (DurableTree<Integer, String> tree = open(directory, DurableTree.SyncPolicy.FSYNC, 1 << 20)) {
+            tree.insert(1, "one");
+            tree.insert(2, "two");
+        }
+        // a crash in the middle of a write leaves part of a record behind
+        Path log = directory.resolve("wal-0.log");
+        long intact = Files.size(log);
+        Files.write(log, new byte[] { 0, 0, 0, 40, 1, 2, 3 }, StandardOpenOption.APPEND);
+        try (DurableTree<Integer, String> tree = open(directory, DurableTree.SyncPolicy.FSYNC, 1 << 20)) {
+            Assert.assertEquals("[one, two]", tree.inorderRec().toString());
+            Assert.assertEquals(intact, Files.size(log));
+            tree.insert(3, "three");
+        }
+        try (DurableTree<Integer, String> tree = open(directory, DurableTree.SyncPolicy.FSYNC, 1 << 20)) {
+            Assert.assertEquals("[one, two, three]", tree.inorderRec().toString());
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testConcurrentWriters() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        int threads = 4, perThread = 250;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try (DurableTree<Integer, String> tree = open(directory, DurableTree.SyncPolicy.FSYNC, 4096)) {
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int id = t;
+                workers.add(new Thread(() -> {
+                    try {
+                        for (int i = 0; i < perThread; i++)
+                            tree.insert(i * threads + id, "v");
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }));
+            }
+            for (Thread worker : workers)
+                worker.start();
+            for (Thread worker : workers)
+                worker.join();
+        }
+        if (failure.get() != null)
+            throw new AssertionError(failure.get());
+        try (DurableTree<Integer, String> tree = open(directory, DurableTree.SyncPolicy.FSYNC, 4096)) {
+            Assert.assertEquals(threads * perThread, tree.size());
+            for (int key = 0; key < threads * perThread; key++)
+                Assert.assertEquals("v", tree.search(key));
+        }
+    }
+
+    @Test
+    public void testBinarySearchTreeCheckpoint() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        int n = 100000;
+        try (DurableTree<Integer, String> tree = new DurableTree<>(directory, new BinarySearchTree<>(), Codec.INTEGER,
+                Codec.STRING, DurableTree.SyncPolicy.NONE)) {
+            List<Map.Entry<Integer, String>> batch = new ArrayList<>();
+            for (int i = 0; i < n; i++)
+                batch.add(new AbstractMap.SimpleEntry<>(i, "v"));
+            Collections.shuffle(batch, new Random(1));
+            tree.insertAll(batch);
+            tree.checkpoint();
+        }
+        // the checkpoint is sorted; loading it middle-first keeps the unbalanced tree shallow
+        try (DurableTree<Integer, String> tree = new DurableTree<>(directory, new BinarySearchTree<>(), Codec.INTEGER,
+                Codec.STRING, DurableTree.SyncPolicy.NONE)) {
+            Assert.assertEquals(n, tree.size());
+            Assert.assertEquals(n, tree.inorderRec().size());
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testCheckpointOutsideLock() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        AtomicBoolean stall = new AtomicBoolean();
+        CountDownLatch writing = new CountDownLatch(1), release = new CountDownLatch(1);
+        // a codec without encodedLength or in-place encode, which stalls while the checkpoint is written
+        Codec<String> slow = new Codec<String>() {
+            @Override
+            public byte[] encode(String value) {
+                if (stall.compareAndSet(true, false)) {
+                    writing.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return Codec.STRING.encode(value);
+            }
+
+            @Override
+            public String decode(ByteBuffer buffer, int offset, int length) {
+                return Codec.STRING.decode(buffer, offset, length);
+            }
+
+            @Override
+            public int compare(String key, ByteBuffer buffer, int offset, int length) {
+                return Codec.STRING.compare(key, buffer, offset, length);
+            }
+        };
+        try (DurableTree<Integer, String> tree = new DurableTree<>(directory, new AVLTree<>(), Codec.INTEGER, slow,
+                DurableTree.SyncPolicy.NONE)) {
+            for (int i = 0; i < 10; i++)
+                tree.insert(i, "v" + i);
+            stall.set(true);
+            Thread checkpoint = new Thread(tree::checkpoint);
+            checkpoint.start();
+            writing.await();
+            // the tree stays usable while the checkpoint is being written
+            Assert.assertEquals("v3", tree.search(3));
+            tree.insert(10, null);
+            tree.delete(0);
+            Assert.assertEquals(10, tree.size());
+            release.countDown();
+            checkpoint.join();
+        }
+        try (DurableTree<Integer, String> tree = new DurableTree<>(directory, new AVLTree<>(), Codec.INTEGER, slow,
+                DurableTree.SyncPolicy.NONE)) {
+            Assert.assertEquals("[v1, v2, v3, v4, v5, v6, v7, v8, v9, null]", tree.inorderRec().toString());
+        }
+        Assert.assertEquals("[checkpoint-1.avls, wal-1.log]", files(directory).toString());
+    }
+
+    @Test
+    public void testFailedLogRefusesWrites() throws IOException {
+        Path directory = folder.getRoot().toPath().resolve("tree");
+        try (DurableTree<Integer, String> tree = open(directory, DurableTree.SyncPolicy.NONE, 1 << 20)) {
+            tree.insert(1, "one");
+            // with its directory gone the next checkpoint fails and breaks the log
+            for (String file : files(directory))
+                Files.delete(directory.resolve(file));
+            Files.delete(directory);
+            try {
+                tree.checkpoint();
+                Assert.fail();
+            } catch (UncheckedIOException e) {
+            }
+            // even writes that would not wait for the log leave the tree alone
+            try {
+                tree.insert(2, "two");
+                Assert.fail();
+            } catch (UncheckedIOException e) {
+            }
+            try {
+                tree.delete(1);
+                Assert.fail();
+            } catch (UncheckedIOException e) {
+            }
+            try {
+                tree.insertAll(Collections.singletonList(new AbstractMap.SimpleEntry<>(3, "three")));
+                Assert.fail();
+            } catch (UncheckedIOException e) {
+            }
+            Assert.assertEquals("[one]", tree.inorderRec().toString());
+        } catch (UncheckedIOException e) {
+            // close cannot write to the broken log either
+        }
+    }
+
+    @Test
+    public void testBucketCheckpoint() throws IOException {
+        List<SearchTree<Integer, String>> trees = Arrays.asList(new AVLTree<>(DuplicateKeys.BUCKET),
+                new AVLTree<>(DuplicateKeys.BUCKET), new BinarySearchTree<>(DuplicateKeys.BUCKET),
+                new BinarySearchTree<>(DuplicateKeys.BUCKET));
+        for (int t = 0; t < trees.size(); t += 2) {
+            Path directory = folder.getRoot().toPath().resolve("tree" + t);
+            try (DurableTree<Integer, String> tree = new DurableTree<>(directory, trees.get(t), Codec.INTEGER,
+                    Codec.STRING, DurableTree.SyncPolicy.FSYNC)) {
+                for (int key = 0; key < 5; key++)
+                    tree.insert(key, "v" + key);
+                tree.insert(1, "w1");
+                tree.insert(1, "x1");
+                tree.insert(3, null);
+                tree.checkpoint();
+            }
+            // the checkpoint keeps every value of a bucket, in insertion order
+            try (DurableTree<Integer, String> tree = new DurableTree<>(directory, trees.get(t + 1), Codec.INTEGER,
+                    Codec.STRING, DurableTree.SyncPolicy.FSYNC)) {
+                Assert.assertEquals("[v0, v1, w1, x1, v2, v3, null, v4]", tree.inorderRec().toString());
+                List<String> values = new ArrayList<>();
+                for (Map.Entry<Integer, String> entry : tree.entries())
+                    values.add(entry.getKey() + "=" + entry.getValue());
+                Assert.assertEquals("[0=v0, 1=v1, 1=w1, 1=x1, 2=v2, 3=v3, 3=null, 4=v4]", values.toString());
+                Assert.assertEquals(5, tree.size());
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosed() throws IOException {
+        DurableTree<Integer, String> tree = open(folder.getRoot().toPath(), DurableTree.SyncPolicy.FSYNC, 1 << 20);
+        tree.close();
+        tree.insert(1, "one");
+    }
+
+    @Test
+    public void testLogOperationsAfterClose() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        DurableTree<Integer, String> tree = open(directory, DurableTree.SyncPolicy.NONE, 1 << 20);
+        tree.insert(1, "one");
+        List<Thread> closers = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+            closers.add(new Thread(tree::close));
+        for (Thread closer : closers)
+            closer.start();
+        for (Thread closer : closers)
+            closer.join();
+        for (Runnable operation : new Runnable[] { tree::flush, tree::checkpoint }) {
+            try {
+                operation.run();
+                Assert.fail();
+            } catch (IllegalStateException e) {
+            }
+        }
+        // a closed log is not a failed one
+        tree.close();
+        Assert.assertEquals("one", tree.search(1));
+        try (DurableTree<Integer, String> reopened = open(directory, DurableTree.SyncPolicy.NONE, 1 << 20)) {
+            Assert.assertEquals("one", reopened.search(1));
+        }
+    }
+}
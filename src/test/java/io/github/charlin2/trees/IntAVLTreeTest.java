@@ -0,0 +1,60 @@
+package io.github.charlin2.trees;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IntAVLTreeTest {
+    IntAVLTree<String> tree = new IntAVLTree<>(2);
+
+    @Test
+    public void testInsertDelete() {
+        Assert.assertEquals(null, tree.search(1));
+        tree.insert(1, "one");
+        tree.insert(2, "two");
+        tree.insert(3, "three"); // tree will have to rebalance
+        Assert.assertEquals("[one, two, three]", tree.inorderRec().toString());
+        Assert.assertEquals("[one, three, two]", tree.postorder().toString());
+        tree.insert(-3, "minus three");
+        Assert.assertEquals("two", tree.search(2));
+        Assert.assertTrue(tree.contains(-3));
+        Assert.assertFalse(tree.contains(4));
+
+        tree.delete(2); // root with two children
+        tree.delete(4); // not in the tree
+        Assert.assertEquals(null, tree.search(2));
+        Assert.assertEquals("[minus three, one, three]", tree.inorderRec().toString());
+        Assert.assertEquals(3, tree.size());
+        tree.delete(1);
+        tree.delete(3);
+        tree.delete(-3);
+        Assert.assertEquals("[]", tree.inorderRec().toString());
+        Assert.assertEquals(-1, tree.height());
+    }
+
+    @Test
+    public void testAgainstTreeMap() {
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        Random random = new Random(233);
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(2000) - 1000;
+            if (random.nextBoolean() && !expected.containsKey(key)) {
+                tree.insert(key, "v" + key);
+                expected.put(key, "v" + key);
+            } else {
+                tree.delete(key);
+                expected.remove(key);
+            }
+            Assert.assertEquals(expected.get(key), tree.search(key));
+        }
+        Assert.assertEquals(expected.size(), tree.size());
+        Assert.assertEquals(expected.values().toString(), tree.inorderRec().toString());
+        int[] keys = tree.keys();
+        int k = 0;
+        for (int key : expected.keySet())
+            Assert.assertEquals(key, keys[k++]);
+        Assert.assertTrue(tree.height() <= 1.44 * Math.log(tree.size() + 2) / Math.log(2));
+    }
+}
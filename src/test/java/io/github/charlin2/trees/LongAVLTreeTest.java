@@ -0,0 +1,30 @@
+package io.github.charlin2.trees;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LongAVLTreeTest {
+    LongAVLTree<Long> tree = new LongAVLTree<>();
+
+    @Test
+    public void testInsertSearchDelete() {
+        // keys beyond the int range must keep their order
+        long base = 1L << 40;
+        for (long i = 0; i < 1000; i++)
+            tree.insert(base - i * (1L << 33), i);
+        Assert.assertEquals(1000, tree.size());
+        Assert.assertEquals(Long.valueOf(0), tree.search(base));
+        Assert.assertEquals(Long.valueOf(999), tree.search(base - 999 * (1L << 33)));
+        Assert.assertEquals(null, tree.search(base + 1));
+        Assert.assertTrue(tree.height() <= 14);
+
+        for (long i = 0; i < 1000; i += 2)
+            tree.delete(base - i * (1L << 33));
+        Assert.assertEquals(500, tree.size());
+        Assert.assertFalse(tree.contains(base));
+        long[] keys = tree.keys();
+        for (int k = 1; k < keys.length; k++)
+            Assert.assertTrue(keys[k - 1] < keys[k]);
+        Assert.assertEquals(Long.valueOf(999), tree.inorderRec().get(0));
+    }
+}
@@ -0,0 +1,151 @@
+package io.github.charlin2.trees;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedAVLSnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        AVLTree<Integer, String> tree = new AVLTree<>();
+        for (int i = 0; i < 1000; i++)
+            tree.insert(3 * i, "v" + i);
+        tree.insert(-1, null);
+        Path file = folder.newFile().toPath();
+        tree.writeSnapshot(file, Codec.INTEGER, Codec.STRING);
+
+        MappedAVLSnapshot<Integer, String> snapshot = MappedAVLSnapshot.open(file, Codec.INTEGER, Codec.STRING);
+        Assert.assertEquals(1001, snapshot.size());
+        Assert.assertEquals("v0", snapshot.search(0));
+        Assert.assertEquals("v999", snapshot.search(2997));
+        Assert.assertEquals(null, snapshot.search(1));
+        Assert.assertEquals(null, snapshot.search(-1)); // stored null value
+        Assert.assertEquals(Integer.valueOf(-1), snapshot.select(0));
+        Assert.assertEquals(Integer.valueOf(30), snapshot.select(11));
+        Assert.assertEquals(null, snapshot.select(1001));
+        Assert.assertEquals("v0", snapshot.kthSmallest(2));
+        Assert.assertEquals(11, snapshot.rank(29));
+        Assert.assertEquals(tree.inorderRec().toString(), values(snapshot).toString());
+
+        List<Integer> keys = new ArrayList<>();
+        for (Map.Entry<Integer, String> entry : snapshot.range(10, 22))
+            keys.add(entry.getKey());
+        Assert.assertEquals("[12, 15, 18, 21]", keys.toString());
+        Assert.assertFalse(snapshot.range(22, 10).iterator().hasNext());
+    }
+
+    @Test
+    public void testBucketValues() throws IOException {
+        AVLTree<Integer, String> tree = new AVLTree<>(DuplicateKeys.BUCKET);
+        tree.insert(1, "a");
+        tree.insert(2, "b");
+        tree.insert(1, "c");
+        tree.insert(1, "d");
+        Path file = folder.newFile().toPath();
+        tree.writeSnapshot(file, Codec.INTEGER, Codec.STRING);
+
+        // every value of a bucket gets its own entry
+        MappedAVLSnapshot<Integer, String> snapshot = MappedAVLSnapshot.open(file, Codec.INTEGER, Codec.STRING);
+        Assert.assertEquals(4, snapshot.size());
+        Assert.assertEquals("[a, c, d, b]", values(snapshot).toString());
+    }
+
+    @Test
+    public void testFailedWriteKeepsOldSnapshot() throws IOException {
+        AVLTree<Integer, Integer> tree = new AVLTree<>();
+        for (int i = 0; i < 100; i++)
+            tree.insert(i, i);
+        Path file = folder.getRoot().toPath().resolve("tree.avls");
+        tree.writeSnapshot(file, Codec.INTEGER, Codec.INTEGER);
+        tree.insert(100, 100);
+        // a codec that fails partway through the second write
+        Codec<Integer> failing = new Codec<Integer>() {
+            @Override
+            public byte[] encode(Integer value) {
+                if (value == 50)
+                    throw new IllegalStateException("cannot encode " + value);
+                return Codec.INTEGER.encode(value);
+            }
+
+            @Override
+            public Integer decode(ByteBuffer buffer, int offset, int length) {
+                return Codec.INTEGER.decode(buffer, offset, length);
+            }
+
+            @Override
+            public int compare(Integer key, ByteBuffer buffer, int offset, int length) {
+                return Codec.INTEGER.compare(key, buffer, offset, length);
+            }
+        };
+        try {
+            tree.writeSnapshot(file, Codec.INTEGER, failing);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+        }
+        MappedAVLSnapshot<Integer, Integer> snapshot = MappedAVLSnapshot.open(file, Codec.INTEGER, Codec.INTEGER);
+        Assert.assertEquals(100, snapshot.size());
+        Assert.assertEquals(Integer.valueOf(99), snapshot.search(99));
+        Assert.assertEquals("[tree.avls]", Arrays.toString(folder.getRoot().list()));
+    }
+
+    @Test
+    public void testStringKeys() throws IOException {
+        AVLTree<String, Long> tree = new AVLTree<>();
+        String[] words = { "pear", "apple", "", "😀smile", "zebra", "Apple", "app" };
+        for (long i = 0; i < words.length; i++)
+            tree.insert(words[(int) i], i);
+        Path file = folder.newFile().toPath();
+        tree.writeSnapshot(file, Codec.STRING, Codec.LONG);
+
+        MappedAVLSnapshot<String, Long> snapshot = MappedAVLSnapshot.open(file, Codec.STRING, Codec.LONG);
+        // the in-place comparison must agree with String.compareTo
+        List<String> keys = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : snapshot)
+            keys.add(entry.getKey());
+        List<String> expected = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : tree)
+            expected.add(entry.getKey());
+        Assert.assertEquals(expected, keys);
+        for (long i = 0; i < words.length; i++)
+            Assert.assertEquals(Long.valueOf(i), snapshot.search(words[(int) i]));
+        Assert.assertEquals(null, snapshot.search("ap"));
+    }
+
+    @Test
+    public void testEmptyAndInvalid() throws IOException {
+        Path file = folder.newFile().toPath();
+        new AVLTree<Integer, Integer>().writeSnapshot(file, Codec.INTEGER, Codec.INTEGER);
+        MappedAVLSnapshot<Integer, Integer> snapshot = MappedAVLSnapshot.open(file, Codec.INTEGER, Codec.INTEGER);
+        Assert.assertEquals(0, snapshot.size());
+        Assert.assertEquals(null, snapshot.search(1));
+
+        Path garbage = folder.newFile().toPath();
+        Files.write(garbage, "definitely not a snapshot".getBytes());
+        try {
+            MappedAVLSnapshot.open(garbage, Codec.INTEGER, Codec.INTEGER);
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().startsWith("not a tree snapshot"));
+        }
+    }
+
+    private static <V> List<V> values(MappedAVLSnapshot<?, V> snapshot) {
+        List<V> list = new ArrayList<>();
+        for (Map.Entry<?, V> entry : snapshot)
+            list.add(entry.getValue());
+        return list;
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.charlin2.trees;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OffHeapAVLTreeTest {
+    OffHeapAVLTree tree = new OffHeapAVLTree();
+
+    @After
+    public void tearDown() {
+        tree.close();
+    }
+
+    @Test
+    public void testInsertDelete() {
+        Assert.assertEquals(-1, tree.search(1, -1));
+        tree.insert(1, 10);
+        tree.insert(2, 20);
+        tree.insert(3, 30); // tree will have to rebalance
+        Assert.assertEquals("[10, 20, 30]", Arrays.toString(tree.inorderRec()));
+        Assert.assertEquals("[10, 30, 20]", Arrays.toString(tree.postorder()));
+        tree.delete(2); // root with two children
+        tree.delete(4); // not in the tree
+        Assert.assertFalse(tree.contains(2));
+        Assert.assertEquals(30, tree.search(3, -1));
+        Assert.assertEquals(2, tree.size());
+    }
+
+    @Test
+    public void testAgainstTreeMap() {
+        // enough entries to span several slabs and reuse freed slots
+        TreeMap<Long, Long> expected = new TreeMap<>();
+        Random random = new Random(233);
+        for (int i = 0; i < 200000; i++) {
+            long key = random.nextInt(100000) * 7919L;
+            if (random.nextInt(3) > 0 && !expected.containsKey(key)) {
+                tree.insert(key, -key);
+                expected.put(key, -key);
+            } else {
+                tree.delete(key);
+                expected.remove(key);
+            }
+        }
+        Assert.assertEquals(expected.size(), tree.size());
+        long[] values = tree.inorderRec();
+        int k = 0;
+        for (long value : expected.values())
+            Assert.assertEquals(value, values[k++]);
+        StringBuilder keys = new StringBuilder();
+        tree.forEach((key, value) -> keys.append(key).append(','));
+        StringBuilder expectedKeys = new StringBuilder();
+        for (long key : expected.keySet())
+            expectedKeys.append(key).append(',');
+        Assert.assertEquals(expectedKeys.toString(), keys.toString());
+        Assert.assertTrue(tree.height() <= 1.44 * Math.log(tree.size() + 2) / Math.log(2));
+        Assert.assertTrue(tree.offHeapBytes() >= 32L * tree.size());
+    }
+
+    @Test
+    public void testClose() {
+        tree.insert(1, 1);
+        tree.close();
+        Assert.assertEquals(0, tree.offHeapBytes());
+        try {
+            tree.search(1, 0);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(true);
+        }
+        tree.close(); // closing twice is harmless
+    }
+
+    @Test
+    public void testCloseFreesMemory() {
+        for (int i = 0; i < 100000; i++)
+            tree.insert(i, i);
+        long capacity = tree.offHeapBytes();
+        long before = directMemoryUsed();
+        tree.close();
+        // the slabs are freed by close itself, not by a later collection
+        Assert.assertTrue(before - directMemoryUsed() >= capacity);
+    }
+
+    private static long directMemoryUsed() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class))
+            if (pool.getName().equals("direct"))
+                return pool.getMemoryUsed();
+        throw new IllegalStateException("no direct buffer pool");
+    }
+}
@@ -0,0 +1,119 @@
+package io.github.charlin2.trees;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PersistentAVLTreeTest {
+    PersistentAVLTree<Integer, String> tree = new PersistentAVLTree<>();
+
+    @Test
+    public void testInsertDelete() {
+        Assert.assertEquals(null, tree.search(1));
+        tree.insert(1, "one");
+        tree.insert(2, "two");
+        tree.insert(3, "three"); // tree will have to rebalance
+        Assert.assertEquals("[one, two, three]", tree.inorderRec().toString());
+        Assert.assertEquals(1, tree.height());
+        tree.delete(2); // root with two children
+        tree.delete(4); // not in the tree
+        Assert.assertEquals(null, tree.search(2));
+        Assert.assertEquals("[one, three]", tree.inorderRec().toString());
+        tree.delete(1);
+        tree.delete(3);
+        Assert.assertEquals(0, tree.size());
+        Assert.assertEquals(-1, tree.height());
+    }
+
+    @Test
+    public void testSnapshotIsolation() {
+        for (int i = 0; i < 100; i++)
+            tree.insert(i, "v" + i);
+        PersistentAVLTree.Snapshot<Integer, String> snapshot = tree.snapshot();
+        for (int i = 0; i < 100; i += 2)
+            tree.delete(i);
+        tree.insert(1000, "v1000");
+
+        Assert.assertEquals(100, snapshot.size());
+        Assert.assertEquals("v42", snapshot.search(42));
+        Assert.assertEquals(null, snapshot.search(1000));
+        Assert.assertEquals(Integer.valueOf(10), snapshot.select(10));
+        Assert.assertEquals(10, snapshot.rank(10));
+        List<Integer> keys = new ArrayList<>();
+        for (Map.Entry<Integer, String> entry : snapshot.range(5, 9))
+            keys.add(entry.getKey());
+        Assert.assertEquals("[5, 6, 7, 8]", keys.toString());
+
+        Assert.assertEquals(51, tree.size());
+        Assert.assertEquals(null, tree.search(42));
+        Assert.assertEquals("v1000", tree.search(1000));
+    }
+
+    @Test
+    public void testAgainstTreeMap() {
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        Random random = new Random(233);
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(2000) - 1000;
+            if (random.nextBoolean() && !expected.containsKey(key)) {
+                tree.insert(key, "v" + key);
+                expected.put(key, "v" + key);
+            } else {
+                tree.delete(key);
+                expected.remove(key);
+            }
+            Assert.assertEquals(expected.get(key), tree.search(key));
+        }
+        Assert.assertEquals(expected.size(), tree.size());
+        Assert.assertEquals(expected.values().toString(), tree.inorderRec().toString());
+        Assert.assertTrue(tree.height() <= 1.44 * Math.log(tree.size() + 2) / Math.log(2));
+    }
+
+    @Test(timeout = 60000)
+    public void testScanDuringWrites() throws InterruptedException {
+        for (int i = 0; i < 10000; i++)
+            tree.insert(2 * i, "v");
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            Random random = new Random(1);
+            for (int i = 0; i < 50000; i++) {
+                int key = random.nextInt(20000);
+                if (key % 2 == 0)
+                    continue; // leave the original keys alone
+                if (random.nextBoolean())
+                    tree.insert(key, "w");
+                else
+                    tree.delete(key);
+            }
+        });
+        writer.start();
+        try {
+            while (writer.isAlive()) {
+                // every snapshot must be a complete, sorted version of the tree
+                PersistentAVLTree.Snapshot<Integer, String> snapshot = tree.snapshot();
+                int count = 0, even = 0;
+                Integer previous = null;
+                for (Map.Entry<Integer, String> entry : snapshot) {
+                    Assert.assertTrue(previous == null || previous <= entry.getKey());
+                    previous = entry.getKey();
+                    count++;
+                    if (entry.getKey() % 2 == 0)
+                        even++;
+                }
+                Assert.assertEquals(snapshot.size(), count);
+                Assert.assertEquals(10000, even);
+            }
+        } catch (Throwable e) {
+            failure.set(e);
+        }
+        writer.join();
+        if (failure.get() != null)
+            throw new AssertionError(failure.get());
+    }
+}
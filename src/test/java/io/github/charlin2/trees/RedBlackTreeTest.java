@@ -0,0 +1,96 @@
+package io.github.charlin2.trees;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RedBlackTreeTest {
+    RedBlackTree<Integer, String> tree = new RedBlackTree<>();
+
+    @Test
+    public void testInsertDelete() {
+        Assert.assertEquals(null, tree.search(1));
+        Assert.assertEquals(-1, tree.height());
+        for (int i = 1; i <= 1000; i++)
+            tree.insert(i, "v" + i);
+        // sorted input stays within 2 log2(n + 1)
+        Assert.assertTrue(tree.height() < 2 * Math.log(1001) / Math.log(2));
+        Assert.assertEquals("v7", tree.search(7));
+        tree.delete(4);
+        tree.delete(1001); // not in the tree
+        Assert.assertEquals(null, tree.search(4));
+        Assert.assertEquals(999, tree.size());
+        for (int i = 1; i <= 1000; i++)
+            tree.delete(i);
+        Assert.assertEquals("[]", tree.inorderRec().toString());
+        Assert.assertEquals(0, tree.size());
+        Assert.assertEquals(-1, tree.height());
+    }
+
+    @Test
+    public void testDuplicates() {
+        tree.insert(1, "a");
+        tree.insert(1, "b");
+        tree.insert(1, "c");
+        Assert.assertEquals("[a, b, c]", tree.inorderRec().toString());
+        tree.delete(1);
+        Assert.assertEquals("[b, c]", tree.inorderRec().toString());
+        tree.delete(1);
+        tree.delete(1);
+        Assert.assertEquals(null, tree.search(1));
+    }
+
+    @Test
+    public void testAgainstTreeMap() {
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        Random random = new Random(233);
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(2000) - 1000;
+            if (random.nextBoolean() && !expected.containsKey(key)) {
+                tree.insert(key, "v" + key);
+                expected.put(key, "v" + key);
+            } else {
+                tree.delete(key);
+                expected.remove(key);
+            }
+            if (i % 1000 == 0)
+                Assert.assertTrue(tree.height() < 2 * Math.log(tree.size() + 1) / Math.log(2) + 1);
+        }
+        Assert.assertEquals(expected.size(), tree.size());
+        Assert.assertEquals(new ArrayList<>(expected.values()), tree.inorderRec());
+        List<String> range = new ArrayList<>();
+        for (Map.Entry<Integer, String> entry : tree.range(-100, 100))
+            range.add(entry.getValue());
+        Assert.assertEquals(new ArrayList<>(expected.subMap(-100, 100).values()), range);
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testConcurrentModification() {
+        tree.insert(1, "a");
+        tree.insert(2, "b");
+        Iterator<Map.Entry<Integer, String>> iterator = tree.iterator();
+        iterator.next();
+        tree.delete(2);
+        iterator.next();
+    }
+
+    @Test
+    public void testEngines() {
+        for (TreeEngine engine : TreeEngine.values()) {
+            SearchTree<Integer, Integer> searchTree = TreeEngine.valueOf(engine.name()).create();
+            for (int i = 0; i < 100; i++)
+                searchTree.insert((i * 37) % 100, i);
+            searchTree.delete(50);
+            Assert.assertEquals(99, searchTree.size());
+            Assert.assertEquals(null, searchTree.search(50));
+            Assert.assertEquals(Integer.valueOf(1), searchTree.search(37));
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package io.github.charlin2.trees;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TreeMetricsTest {
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.valueAtPercentile(99));
+        for (int i = 1; i <= 1000; i++)
+            histogram.record(i);
+        Assert.assertEquals(1000, histogram.count());
+        Assert.assertEquals(1000, histogram.max());
+        // within the 1/32 precision of a bucket
+        Assert.assertEquals(500, histogram.valueAtPercentile(50), 500 / 32);
+        Assert.assertEquals(990, histogram.valueAtPercentile(99), 990 / 32);
+        Assert.assertEquals(1000, histogram.valueAtPercentile(100));
+        Assert.assertEquals(63, histogram.valueAtPercentile(6.3)); // small values are exact
+        histogram.record(Long.MAX_VALUE);
+        Assert.assertEquals(Long.MAX_VALUE, histogram.valueAtPercentile(100));
+        LatencyHistogram copy = histogram.copy();
+        histogram.reset();
+        Assert.assertEquals(0, histogram.count());
+        Assert.assertEquals(1001, copy.count());
+        histogram.record(5);
+        copy.add(histogram);
+        Assert.assertEquals(1002, copy.count());
+        Assert.assertEquals(Long.MAX_VALUE, copy.max());
+    }
+
+    @Test
+    public void testRotations() {
+        int[][] orders = { { 3, 2, 1 }, { 3, 1, 2 }, { 1, 3, 2 }, { 1, 2, 3 } };
+        TreeMetrics.Rotation[] expected = TreeMetrics.Rotation.values();
+        for (int i = 0; i < orders.length; i++) {
+            AVLTree<Integer, Integer> tree = new AVLTree<>();
+            tree.enableMetrics();
+            for (int key : orders[i])
+                tree.insert(key, key);
+            TreeStats stats = tree.stats();
+            for (TreeMetrics.Rotation rotation : TreeMetrics.Rotation.values())
+                Assert.assertEquals(rotation == expected[i] ? 1 : 0, stats.rotations(rotation));
+            Assert.assertEquals(1, stats.height());
+            // 0 + 1 + 2 comparisons for the inserts
+            Assert.assertEquals(3, stats.comparisons());
+        }
+    }
+
+    @Test
+    public void testAVLTreeStats() {
+        AVLTree<Integer, Integer> tree = new AVLTree<>();
+        try {
+            tree.stats();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+        }
+        TreeMetrics metrics = tree.enableMetrics();
+        Assert.assertSame(metrics, tree.enableMetrics());
+        for (int i = 0; i < 10000; i++)
+            tree.insert(i, i);
+        for (int i = 0; i < 10000; i += 2)
+            Assert.assertEquals(Integer.valueOf(i), tree.search(i));
+        for (int i = 0; i < 10000; i += 3)
+            tree.delete(i);
+        TreeStats stats = tree.stats();
+        Assert.assertEquals(tree.size(), stats.size());
+        Assert.assertEquals(tree.height(), stats.height());
+        Assert.assertFalse(stats.heightExceeded());
+        Assert.assertEquals(10000 + 5000 + 3334, stats.operations());
+        Assert.assertEquals(5000, stats.searchLatency().count());
+        Assert.assertTrue(stats.comparisonsPerOperation() > 1 && stats.comparisonsPerOperation() <= stats.heightBound() + 1);
+        Assert.assertTrue(stats.rotations(TreeMetrics.Rotation.RR) > 0);
+
+        metrics.reset();
+        Assert.assertEquals(0, tree.stats().operations());
+        tree.disableMetrics();
+        tree.search(1);
+        Assert.assertEquals(0, metrics.getSearches());
+    }
+
+    @Test
+    public void testDegenerateBinarySearchTree() {
+        BinarySearchTree<Integer, Integer> tree = new BinarySearchTree<>();
+        for (int i = 0; i < 100; i++)
+            tree.insert(i, i);
+        tree.enableMetrics();
+        Assert.assertEquals(99, tree.stats().height());
+        Assert.assertTrue(tree.stats().heightExceeded());
+        tree.insert(100, 100);
+        Assert.assertEquals(100, tree.stats().height());
+        Assert.assertEquals(100, tree.stats().comparisons());
+        Assert.assertNull(tree.search(-1));
+        Assert.assertEquals(101, tree.stats().comparisons());
+    }
+
+    @Test
+    public void testBinarySearchTreeHeightAfterDelete() {
+        BinarySearchTree<Integer, Integer> tree = new BinarySearchTree<>();
+        for (int key : new int[] { 4, 2, 6, 1, 3, 5, 7 })
+            tree.insert(key, key);
+        tree.enableMetrics();
+        Assert.assertEquals(2, tree.stats().height());
+        for (int i = 8; i < 48; i++)
+            tree.insert(i, i);
+        Assert.assertEquals(42, tree.stats().height());
+        Assert.assertTrue(tree.stats().heightExceeded());
+        for (int i = 8; i < 48; i++)
+            tree.delete(i);
+        Assert.assertEquals(2, tree.stats().height());
+        Assert.assertFalse(tree.stats().heightExceeded());
+    }
+
+    @Test
+    public void testBinarySearchTreeHeightMaintained() {
+        BinarySearchTree<Integer, Integer> tree = new BinarySearchTree<>(DuplicateKeys.ALLOW);
+        BinarySearchTree<Integer, Integer> shadow = new BinarySearchTree<>(DuplicateKeys.ALLOW);
+        tree.enableMetrics();
+        Random random = new Random(233);
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(300);
+            if (random.nextInt(5) < 3) {
+                tree.insert(key, i);
+                shadow.insert(key, i);
+            } else {
+                tree.delete(key);
+                shadow.delete(key);
+            }
+            // the shadow's height is measured afresh each time metrics are enabled
+            shadow.enableMetrics();
+            Assert.assertEquals(shadow.stats().height(), tree.stats().height());
+            shadow.disableMetrics();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testBinarySearchTreeHeightDuringTraversal() {
+        BinarySearchTree<Integer, Integer> tree = new BinarySearchTree<>();
+        for (int key : new int[] { 4, 2, 6, 1, 3, 5, 7 })
+            tree.insert(key, key);
+        TreeMetrics metrics = tree.enableMetrics();
+        // reading the metrics mid-traversal must not walk the threaded tree
+        List<Integer> heights = new ArrayList<>();
+        tree.forEachInOrder((key, value) -> heights.add(metrics.getHeight()));
+        Assert.assertEquals(Collections.nCopies(7, 2), heights);
+        Assert.assertFalse(metrics.isHeightExceeded());
+    }
+
+    @Test
+    public void testJmx() throws Exception {
+        AVLTree<Integer, Integer> tree = new AVLTree<>();
+        TreeMetrics metrics = tree.enableMetrics();
+        ObjectName name = metrics.register("jmx-test");
+        try {
+            for (int i = 0; i < 100; i++)
+                tree.insert(i, i);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            Assert.assertEquals(100, server.getAttribute(name, "Size"));
+            Assert.assertEquals(6, server.getAttribute(name, "Height"));
+            Assert.assertEquals(false, server.getAttribute(name, "HeightExceeded"));
+            Assert.assertEquals(100L, server.getAttribute(name, "Inserts"));
+            server.invoke(name, "reset", null, null);
+            Assert.assertEquals(0L, server.getAttribute(name, "Inserts"));
+        } finally {
+            metrics.unregister();
+        }
+        Assert.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+}